@@ -57,6 +57,9 @@ public class IdResolver
     @SuppressWarnings("unchecked")
     protected Map<MultiKey, Map<String, Set<String>>> orgIdSynMaps = new MultiKeyMap();
 
+    // contents restored from a cache file are kept in a memory-mapped index, not in the maps
+    private IdResolverIndex index = null;
+
     /**
      * Construct and empty IdResolver
      */
@@ -74,7 +77,7 @@ public class IdResolver
     // check that the given taxon id has some data for it
     // if an exception thrown, there must be something wrong with resolver factory.
     protected void checkTaxonId(String taxonId, String clsName) {
-        if (!orgIdMaps.containsKey(new MultiKey(taxonId, clsName))) {
+        if (!hasTaxonAndClassName(taxonId, clsName)) {
             throw new IllegalArgumentException(clsName + " IdResolver has "
                                                + "no data for taxonId: "
                                                + taxonId + ".");
@@ -90,7 +93,12 @@ public class IdResolver
      */
     public boolean isPrimaryIdentifier(String taxonId, String clsName, String id) {
         checkTaxonId(taxonId, clsName);
-        return orgIdMaps.get(new MultiKey(taxonId, clsName)).containsKey(id);
+        MultiKey key = new MultiKey(taxonId, clsName);
+        Map<String, Set<String>> idMap = orgIdMaps.get(key);
+        if (idMap != null && idMap.containsKey(id)) {
+            return true;
+        }
+        return index != null && index.containsKey(IdResolverIndex.IDS, key, id);
     }
 
     /**
@@ -118,13 +126,14 @@ public class IdResolver
         if (isPrimaryIdentifier(taxonId, clsName, id)) {
             return Collections.singleton(id);
         }
-        if (orgMainMaps.containsKey(new MultiKey(taxonId, clsName))
-            && orgMainMaps.get(new MultiKey(taxonId, clsName)).containsKey(id)) {
-            return orgMainMaps.get(new MultiKey(taxonId, clsName)).get(id);
+        MultiKey key = new MultiKey(taxonId, clsName);
+        Set<String> primaryIds = lookup(orgMainMaps, IdResolverIndex.MAIN, key, id);
+        if (primaryIds != null) {
+            return primaryIds;
         }
-        if (orgSynMaps.containsKey(new MultiKey(taxonId, clsName))
-            && orgSynMaps.get(new MultiKey(taxonId, clsName)).containsKey(id)) {
-            return orgSynMaps.get(new MultiKey(taxonId, clsName)).get(id);
+        primaryIds = lookup(orgSynMaps, IdResolverIndex.SYN, key, id);
+        if (primaryIds != null) {
+            return primaryIds;
         }
         return Collections.emptySet();
     }
@@ -191,7 +200,8 @@ public class IdResolver
         if (!isPrimaryIdentifier(taxonId, clsName, primaryIdentifier)) {
             return null;
         }
-        return orgIdMaps.get(new MultiKey(taxonId, clsName)).get(primaryIdentifier);
+        return lookup(orgIdMaps, IdResolverIndex.IDS, new MultiKey(taxonId, clsName),
+                primaryIdentifier);
     }
 
     /**
@@ -244,7 +254,7 @@ public class IdResolver
      */
     public boolean hasTaxons(Set<String> taxonIds) {
         Set<String> taxonIdSet = new HashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             taxonIdSet.add((String) key.getKey(0));
         }
         return taxonIdSet.containsAll(taxonIds);
@@ -256,7 +266,7 @@ public class IdResolver
      */
     public Set<String> getTaxons() {
         Set<String> taxonIdSet = new LinkedHashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             taxonIdSet.add((String) key.getKey(0));
         }
         return taxonIdSet;
@@ -269,7 +279,7 @@ public class IdResolver
      */
     public boolean hasClassName(String clsName) {
         Set<String> clsNameSet = new HashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             clsNameSet.add((String) key.getKey(1));
         }
         return clsNameSet.contains(clsName);
@@ -281,7 +291,7 @@ public class IdResolver
      */
     public Set<String> getClassNames() {
         Set<String> clsNameSet = new HashSet<String>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             clsNameSet.add((String) key.getKey(1));
         }
         return clsNameSet;
@@ -293,7 +303,8 @@ public class IdResolver
      * @param clsName class name as string
      */
     public boolean hasTaxonAndClassName(String taxonId, String clsName) {
-        return orgIdMaps.keySet().contains(new MultiKey(taxonId, clsName));
+        MultiKey key = new MultiKey(taxonId, clsName);
+        return orgIdMaps.containsKey(key) || (index != null && index.hasKey(key));
     }
 
     /**
@@ -336,7 +347,7 @@ public class IdResolver
             }
         }
 
-        return orgIdMaps.keySet().containsAll(keySet);
+        return getKeys().containsAll(keySet);
     }
 
     /**
@@ -345,7 +356,7 @@ public class IdResolver
      */
     public Map<String, Set<String>> getTaxonsAndClassNames() {
         Map<String, Set<String>> taxonIdAndClsNameMap = new HashMap<String, Set<String>>();
-        for (MultiKey key : orgIdMaps.keySet()) {
+        for (MultiKey key : getKeys()) {
             String taxonId = (String) key.getKey(0);
             String clsName = (String) key.getKey(1);
             if (taxonIdAndClsNameMap.get(taxonId) == null) {
@@ -494,53 +505,82 @@ public class IdResolver
         FileWriter fw = new FileWriter(f, true); // append if true
 //        FileWriter fw = new FileWriter(f);
         for (MultiKey key : orgIdMaps.keySet()) {
+            writeEntries(fw, key, orgIdMaps.get(key), orgIdMainMaps.get(key),
+                    orgIdSynMaps.get(key));
+        }
+        if (index != null) {
+            for (MultiKey key : index.getKeys()) {
+                writeEntries(fw, key, index.getTable(IdResolverIndex.IDS, key),
+                        index.getTable(IdResolverIndex.ID_MAIN, key),
+                        index.getTable(IdResolverIndex.ID_SYN, key));
+            }
+        }
+        fw.flush();
+        fw.close();
+    }
+
+    // write a line for each primary identifier of a taxon id and class name
+    private void writeEntries(FileWriter fw, MultiKey key, Map<String, Set<String>> idMap,
+            Map<String, Set<String>> mainIdsMap, Map<String, Set<String>> synonymMap)
+        throws IOException {
+        for (Map.Entry<String, Set<String>> idMapEntry : idMap.entrySet()) {
+            StringBuffer sb = new StringBuffer();
+
+            String primaryId = idMapEntry.getKey();
+
+            sb.append((String) key.getKey(0) + "\t");  // write taxon id
+            sb.append((String) key.getKey(1) + "\t");  // write class name
+            sb.append(primaryId + "\t");  // write primary id
 
-            // get maps for this organism
-            Map<String, Set<String>> idMap = orgIdMaps.get(key);
-            Map<String, Set<String>> mainIdsMap = orgIdMainMaps.get(key);
-            Map<String, Set<String>> synonymMap = orgIdSynMaps.get(key);
-
-            for (Map.Entry<String, Set<String>> idMapEntry : idMap.entrySet()) {
-                StringBuffer sb = new StringBuffer();
-
-                String primaryId = idMapEntry.getKey();
-
-                sb.append((String) key.getKey(0) + "\t");  // write taxon id
-                sb.append((String) key.getKey(1) + "\t");  // write class name
-                sb.append(primaryId + "\t");  // write primary id
-
-                if (mainIdsMap != null && mainIdsMap.containsKey(primaryId)) {
-                    boolean first = true;
-                    for (String mainId : mainIdsMap.get(primaryId)) {
-                        if (!first) {
-                            sb.append(",");
-                        } else {
-                            first = false;
-                        }
-                        sb.append(mainId);
+            if (mainIdsMap != null && mainIdsMap.containsKey(primaryId)) {
+                boolean first = true;
+                for (String mainId : mainIdsMap.get(primaryId)) {
+                    if (!first) {
+                        sb.append(",");
+                    } else {
+                        first = false;
                     }
+                    sb.append(mainId);
                 }
+            }
 
-                if (synonymMap != null && synonymMap.containsKey(primaryId)) {
-                    boolean first = true;
-                    sb.append("\t");
-                    for (String synonym : synonymMap.get(primaryId)) {
-                        if (!first) {
-                            sb.append(",");
-                        } else {
-                            first = false;
-                        }
-                        sb.append(synonym);
+            if (synonymMap != null && synonymMap.containsKey(primaryId)) {
+                boolean first = true;
+                sb.append("\t");
+                for (String synonym : synonymMap.get(primaryId)) {
+                    if (!first) {
+                        sb.append(",");
+                    } else {
+                        first = false;
                     }
+                    sb.append(synonym);
                 }
-                sb.append(System.getProperty("line.separator"));
-                fw.write(sb.toString());
             }
+            sb.append(System.getProperty("line.separator"));
+            fw.write(sb.toString());
         }
-        fw.flush();
-        fw.close();
     }
 
+    /**
+     * Write IdResolver contents to a compact index file that can be memory-mapped with
+     * useIndex() instead of being read onto the heap.
+     * @param source the cache file this IdResolver was populated from
+     * @param f the index file to write
+     * @throws IOException if fail to write
+     */
+    public void writeIndex(File source, File f) throws IOException {
+        IdResolverIndex.write(this, source, f);
+    }
+
+    /**
+     * Use a memory-mapped index for lookups, in addition to the entries added to this
+     * IdResolver. Replaces any index used before.
+     * @param f an index file written by writeIndex()
+     * @throws IOException if problem reading the index
+     */
+    public void useIndex(File f) throws IOException {
+        index = IdResolverIndex.open(f);
+    }
 
     /**
      * Read contents of an IdResolver from file, allows for caching during a build.
@@ -574,6 +614,31 @@ public class IdResolver
         reader.close();
     }
 
+    // the taxon ids and class names with entries in the maps or the index
+    private Set<MultiKey> getKeys() {
+        if (index == null) {
+            return orgIdMaps.keySet();
+        }
+        Set<MultiKey> keys = new LinkedHashSet<MultiKey>(orgIdMaps.keySet());
+        keys.addAll(index.getKeys());
+        return keys;
+    }
+
+    // look up an id in one of the maps and the same table of the index, null if in neither
+    private Set<String> lookup(Map<MultiKey, Map<String, Set<String>>> maps, int table,
+            MultiKey key, String id) {
+        Map<String, Set<String>> map = maps.get(key);
+        Set<String> fromMap = (map == null ? null : map.get(id));
+        Set<String> fromIndex = (index == null ? null : index.get(table, key, id));
+        if (fromIndex == null) {
+            return fromMap;
+        }
+        if (fromMap != null) {
+            fromIndex.addAll(fromMap);
+        }
+        return fromIndex;
+    }
+
     // TODO populate part from file with given taxons and classes, what if there
     // are some data nonexists? Maybe not a good idea...
 
@@ -16,6 +16,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.log4j.Logger;
 import org.intermine.sql.Database;
 
 /**
@@ -26,6 +27,8 @@ import org.intermine.sql.Database;
  */
 public abstract class IdResolverFactory
 {
+    private static final Logger LOG = Logger.getLogger(IdResolverFactory.class);
+
     protected static IdResolver resolver = null;
 
     protected boolean caughtError = false;
@@ -36,6 +39,7 @@ public abstract class IdResolverFactory
     protected Set<String> clsCol = new HashSet<String>();
 
     protected String ID_RESOLVER_CACHED_FILE_NAME = "build/idresolver.cache";
+    protected static final String ID_RESOLVER_INDEX_SUFFIX = ".index";
 
     /**
      * Return an IdResolver, if not already built then create it.
@@ -77,7 +81,7 @@ public abstract class IdResolverFactory
     protected boolean restoreFromFile(File f)
         throws IOException {
         if (f.exists()) {
-            resolver.populateFromFile(f);
+            restoreFromCache(f);
             return true;
         } else {
             return false;
@@ -95,13 +99,39 @@ public abstract class IdResolverFactory
         throws IOException {
         File f = new File(ID_RESOLVER_CACHED_FILE_NAME);
         if (f.exists()) {
-            resolver.populateFromFile(f);
+            restoreFromCache(f);
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Restore the IdResolver from a cache file. The first time a cache file is read, its contents
+     * are written to a compact index next to it, which is memory-mapped by the IdResolver rather
+     * than read onto the heap, so later converters can share the pages. The index is rebuilt
+     * whenever the cache file changes. If the index cannot be written, the cache file is read
+     * into the IdResolver as before.
+     *
+     * @param f the cache file
+     * @throws IOException if problem reading from file
+     */
+    protected void restoreFromCache(File f) throws IOException {
+        File indexFile = new File(f.getPath() + ID_RESOLVER_INDEX_SUFFIX);
+        try {
+            if (!IdResolverIndex.isCurrent(indexFile, f)) {
+                IdResolver fromCache = new IdResolver();
+                fromCache.populateFromFile(f);
+                fromCache.writeIndex(f, indexFile);
+            }
+            resolver.useIndex(indexFile);
+        } catch (IOException e) {
+            LOG.warn("Failed to use id resolver index " + indexFile + ", reading " + f
+                    + " instead", e);
+            resolver.populateFromFile(f);
+        }
+    }
+
     /**
      * Read IdResolver contents from a database.
      *
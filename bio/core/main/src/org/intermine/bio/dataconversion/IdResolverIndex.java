@@ -0,0 +1,505 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.keyvalue.MultiKey;
+import org.apache.log4j.Logger;
+
+/**
+ * A read-only copy of the contents of an IdResolver, in a file that is memory-mapped rather than
+ * read onto the heap. Every identifier, taxon id and class name is stored once, in a sorted
+ * dictionary, and the five maps of the IdResolver are stored for each taxon id and class name
+ * as tables of dictionary codes sorted by key. Lookups are binary searches, first of the
+ * dictionary and then of the table.
+ *
+ * The file records the length and modification time of the cache file it was built from, so
+ * that it can be rebuilt when the cache file changes.
+ */
+public final class IdResolverIndex
+{
+    private static final Logger LOG = Logger.getLogger(IdResolverIndex.class);
+
+    private static final int MAGIC = 0x49445249;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    /** Table of primary identifiers to all of their main identifiers and synonyms */
+    static final int IDS = 0;
+    /** Table of main identifiers to primary identifiers */
+    static final int MAIN = 1;
+    /** Table of synonyms to primary identifiers */
+    static final int SYN = 2;
+    /** Table of primary identifiers to main identifiers */
+    static final int ID_MAIN = 3;
+    /** Table of primary identifiers to synonyms */
+    static final int ID_SYN = 4;
+    private static final int TABLE_COUNT = 5;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringData;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final Map<MultiKey, int[]> tables = new LinkedHashMap<MultiKey, int[]>();
+
+    private IdResolverIndex(File file) throws IOException {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() > Integer.MAX_VALUE) {
+                throw new IOException("Id resolver index " + file + " is too large to map");
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            // the mapping remains valid after the channel is closed
+            raf.close();
+        }
+        if ((buffer.limit() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC)) {
+            throw new IOException(file + " is not an id resolver index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Id resolver index " + file + " has unsupported version "
+                    + buffer.getInt(4));
+        }
+        sourceLength = buffer.getLong(8);
+        sourceModified = buffer.getLong(16);
+        stringCount = buffer.getInt(24);
+        int keyCount = buffer.getInt(28);
+        stringOffsets = HEADER_SIZE;
+        stringData = stringOffsets + 4 * (stringCount + 1);
+        int directory = align(stringData + buffer.getInt(stringData - 4));
+        for (int i = 0; i < keyCount; i++) {
+            int entry = directory + 4 * i * (2 + TABLE_COUNT);
+            MultiKey key = new MultiKey(getString(buffer.getInt(entry)),
+                    getString(buffer.getInt(entry + 4)));
+            int[] offsets = new int[TABLE_COUNT];
+            for (int t = 0; t < TABLE_COUNT; t++) {
+                offsets[t] = buffer.getInt(entry + 8 + 4 * t);
+            }
+            tables.put(key, offsets);
+        }
+    }
+
+    /**
+     * Memory-maps an id resolver index.
+     *
+     * @param file the file written by write()
+     * @return an IdResolverIndex
+     * @throws IOException if the file cannot be read or is not an id resolver index
+     */
+    public static IdResolverIndex open(File file) throws IOException {
+        IdResolverIndex index = new IdResolverIndex(file);
+        LOG.info("Mapped id resolver index " + file + " containing " + index.stringCount
+                + " identifiers for " + index.tables.size() + " taxon ids and class names");
+        return index;
+    }
+
+    /**
+     * Returns true if the given file is an index that was built from the source file as it is
+     * now.
+     *
+     * @param file an id resolver index file, which need not exist
+     * @param source the cache file the index is built from
+     * @return true if the index is up to date
+     */
+    public static boolean isCurrent(File file, File source) {
+        if (!file.exists()) {
+            return false;
+        }
+        try {
+            IdResolverIndex index = new IdResolverIndex(file);
+            return (index.sourceLength == source.length())
+                && (index.sourceModified == source.lastModified());
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable id resolver index " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the contents of an IdResolver, as read from a cache file, to an index file. The
+     * index is written under a temporary name and then renamed, so a reader never sees a
+     * partly written index.
+     *
+     * @param resolver the IdResolver to write
+     * @param source the cache file the resolver was populated from
+     * @param file the index file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(IdResolver resolver, File source, File file) throws IOException {
+        // build the dictionary of every string, sorted by UTF-8 bytes so lookups can compare
+        // encoded bytes
+        Set<String> strings = new LinkedHashSet<String>();
+        for (MultiKey key : resolver.orgIdMaps.keySet()) {
+            strings.add((String) key.getKey(0));
+            strings.add((String) key.getKey(1));
+        }
+        for (Map<MultiKey, Map<String, Set<String>>> maps : getMaps(resolver)) {
+            for (Map<String, Set<String>> map : maps.values()) {
+                for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+                    strings.add(entry.getKey());
+                    strings.addAll(entry.getValue());
+                }
+            }
+        }
+        strings.remove(null);
+        byte[][] encoded = new byte[strings.size()][];
+        int i = 0;
+        for (String s : strings) {
+            encoded[i++] = s.getBytes("UTF-8");
+        }
+        strings = null;
+        Arrays.sort(encoded, new Comparator<byte[]>() {
+            public int compare(byte[] a, byte[] b) {
+                return compareBytes(a, b);
+            }
+        });
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        long stringBytes = 0;
+        for (i = 0; i < encoded.length; i++) {
+            codes.put(new String(encoded[i], "UTF-8"), new Integer(i));
+            stringBytes += encoded[i].length;
+        }
+
+        // lay out the tables after the dictionary and the directory
+        Set<MultiKey> keys = resolver.orgIdMaps.keySet();
+        long position = align(HEADER_SIZE + 4L * (encoded.length + 1) + stringBytes)
+            + 4L * keys.size() * (2 + TABLE_COUNT);
+        Map<MultiKey, long[]> offsets = new HashMap<MultiKey, long[]>();
+        for (MultiKey key : keys) {
+            long[] keyOffsets = new long[TABLE_COUNT];
+            int t = 0;
+            for (Map<MultiKey, Map<String, Set<String>>> maps : getMaps(resolver)) {
+                keyOffsets[t++] = position;
+                position += tableSize(maps.get(key));
+            }
+            offsets.put(key, keyOffsets);
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Id resolver contents are too large to write to an index ("
+                    + position + " bytes)");
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp), 65536));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+            out.writeInt(encoded.length);
+            out.writeInt(keys.size());
+            int stringOffset = 0;
+            for (byte[] bytes : encoded) {
+                out.writeInt(stringOffset);
+                stringOffset += bytes.length;
+            }
+            out.writeInt(stringOffset);
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+            for (long pad = stringBytes; pad % 4 != 0; pad++) {
+                out.writeByte(0);
+            }
+            for (MultiKey key : keys) {
+                out.writeInt(codes.get(key.getKey(0)).intValue());
+                out.writeInt(codes.get(key.getKey(1)).intValue());
+                for (long offset : offsets.get(key)) {
+                    out.writeInt((int) offset);
+                }
+            }
+            for (MultiKey key : keys) {
+                for (Map<MultiKey, Map<String, Set<String>>> maps : getMaps(resolver)) {
+                    writeTable(out, maps.get(key), codes);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Failed to rename " + tmp + " to " + file);
+            }
+        }
+        LOG.info("Wrote id resolver index " + file + " (" + position + " bytes, "
+                + encoded.length + " identifiers)");
+    }
+
+    /**
+     * Returns the maps of an IdResolver, in the order of the table numbers.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<MultiKey, Map<String, Set<String>>>[] getMaps(IdResolver resolver) {
+        return new Map[] {resolver.orgIdMaps, resolver.orgMainMaps, resolver.orgSynMaps,
+            resolver.orgIdMainMaps, resolver.orgIdSynMaps};
+    }
+
+    private static long tableSize(Map<String, Set<String>> map) {
+        if (map == null) {
+            return 8;
+        }
+        long size = 4L * (2 + 2 * map.size());
+        for (Set<String> values : map.values()) {
+            size += 4L * values.size();
+        }
+        return size;
+    }
+
+    /**
+     * Writes a table: the number of keys, the key codes in order, the start of the values of
+     * each key plus the end of the last, and then the value codes.
+     */
+    private static void writeTable(DataOutputStream out, Map<String, Set<String>> map,
+            final Map<String, Integer> codes) throws IOException {
+        if (map == null) {
+            out.writeInt(0);
+            out.writeInt(0);
+            return;
+        }
+        String[] keys = map.keySet().toArray(new String[map.size()]);
+        Arrays.sort(keys, new Comparator<String>() {
+            public int compare(String a, String b) {
+                return codes.get(a).compareTo(codes.get(b));
+            }
+        });
+        out.writeInt(keys.length);
+        for (String key : keys) {
+            out.writeInt(codes.get(key).intValue());
+        }
+        int start = 0;
+        for (String key : keys) {
+            out.writeInt(start);
+            start += map.get(key).size();
+        }
+        out.writeInt(start);
+        for (String key : keys) {
+            for (String value : map.get(key)) {
+                out.writeInt(codes.get(value).intValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the taxon ids and class names that the index has data for.
+     *
+     * @return a Set of MultiKeys of taxon id and class name
+     */
+    public Set<MultiKey> getKeys() {
+        return Collections.unmodifiableSet(tables.keySet());
+    }
+
+    /**
+     * Returns true if the index has data for the given taxon id and class name.
+     *
+     * @param key a MultiKey of taxon id and class name
+     * @return a boolean
+     */
+    public boolean hasKey(MultiKey key) {
+        return tables.containsKey(key);
+    }
+
+    /**
+     * Returns true if the given table for a taxon id and class name contains the identifier.
+     *
+     * @param table the table number
+     * @param key a MultiKey of taxon id and class name
+     * @param id an identifier
+     * @return a boolean
+     */
+    public boolean containsKey(int table, MultiKey key, String id) {
+        return findEntry(table, key, id) >= 0;
+    }
+
+    /**
+     * Looks up an identifier in the given table for a taxon id and class name.
+     *
+     * @param table the table number
+     * @param key a MultiKey of taxon id and class name
+     * @param id an identifier
+     * @return the identifiers it maps to, or null if the identifier is not in the table
+     */
+    public Set<String> get(int table, MultiKey key, String id) {
+        int entry = findEntry(table, key, id);
+        if (entry < 0) {
+            return null;
+        }
+        return getValues(tables.get(key)[table], entry);
+    }
+
+    /**
+     * Reads the whole of the given table for a taxon id and class name onto the heap.
+     *
+     * @param table the table number
+     * @param key a MultiKey of taxon id and class name
+     * @return a Map from identifier to the identifiers it maps to
+     */
+    public Map<String, Set<String>> getTable(int table, MultiKey key) {
+        Map<String, Set<String>> retval = new LinkedHashMap<String, Set<String>>();
+        int[] offsets = tables.get(key);
+        if (offsets != null) {
+            int offset = offsets[table];
+            int size = buffer.getInt(offset);
+            for (int entry = 0; entry < size; entry++) {
+                retval.put(getString(buffer.getInt(offset + 4 + 4 * entry)),
+                        getValues(offset, entry));
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the index within a table of the entry for an identifier, or -1 if there is none.
+     */
+    private int findEntry(int table, MultiKey key, String id) {
+        int[] offsets = tables.get(key);
+        if ((offsets == null) || (id == null)) {
+            return -1;
+        }
+        int code = findString(id);
+        if (code < 0) {
+            return -1;
+        }
+        int offset = offsets[table];
+        int low = 0;
+        int high = buffer.getInt(offset) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midCode = buffer.getInt(offset + 4 + 4 * mid);
+            if (midCode < code) {
+                low = mid + 1;
+            } else if (midCode > code) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private Set<String> getValues(int offset, int entry) {
+        int size = buffer.getInt(offset);
+        int starts = offset + 4 + 4 * size;
+        int values = starts + 4 * (size + 1);
+        int start = buffer.getInt(starts + 4 * entry);
+        int end = buffer.getInt(starts + 4 * entry + 4);
+        Set<String> retval = new LinkedHashSet<String>();
+        for (int i = start; i < end; i++) {
+            retval.add(getString(buffer.getInt(values + 4 * i)));
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the dictionary code of a string, or -1 if it is not in the dictionary.
+     */
+    private int findString(String s) {
+        byte[] bytes;
+        try {
+            bytes = s.getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = stringData + buffer.getInt(stringOffsets + 4 * mid);
+            int end = stringData + buffer.getInt(stringOffsets + 4 * mid + 4);
+            int cmp = compareBytes(start, end, bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String getString(int code) {
+        int start = stringData + buffer.getInt(stringOffsets + 4 * code);
+        int end = stringData + buffer.getInt(stringOffsets + 4 * code + 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Compares the bytes in the buffer between start and end with an array, as unsigned bytes.
+     */
+    private int compareBytes(int start, int end, byte[] bytes) {
+        int length = Math.min(end - start, bytes.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = (buffer.get(start + i) & 0xff) - (bytes[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return (end - start) - bytes.length;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static int align(int position) {
+        return (position + 3) & ~3;
+    }
+
+    private static long align(long position) {
+        return (position + 3) & ~3L;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "IdResolverIndex(" + file + ")";
+    }
+}
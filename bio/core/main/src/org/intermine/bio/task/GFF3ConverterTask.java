@@ -20,6 +20,7 @@ import org.intermine.bio.dataconversion.GFF3Converter;
 import org.intermine.bio.dataconversion.GFF3RecordHandler;
 import org.intermine.bio.dataconversion.GFF3SeqHandler;
 import org.intermine.bio.io.gff3.GFF3Parser;
+import org.intermine.dataconversion.ItemLogWriter;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.metadata.Model;
@@ -54,6 +55,8 @@ public class GFF3ConverterTask extends Task
 
     private boolean dontCreateLocations = false;
 
+    private String itemLog = null;
+
      /**
      * Set the data fileset
      * @param fs the fileset
@@ -80,6 +83,14 @@ public class GFF3ConverterTask extends Task
     }
 
 
+    /**
+     * Set a file to write Items to instead of the target ObjectStore
+     * @param itemLog the name of the file, or an empty string to write to the ObjectStore
+     */
+    public void setItemLog(String itemLog) {
+        this.itemLog = itemLog;
+    }
+
      /**
      * Set the sequenceClassName
      * @param seqClsName the seqClsName;
@@ -190,8 +201,12 @@ public class GFF3ConverterTask extends Task
         ObjectStoreWriter osw = null;
         ItemWriter writer = null;
         try {
-            osw = ObjectStoreWriterFactory.getObjectStoreWriter(targetAlias);
-            writer = new ObjectStoreItemWriter(osw);
+            if (StringUtils.isEmpty(itemLog)) {
+                osw = ObjectStoreWriterFactory.getObjectStoreWriter(targetAlias);
+                writer = new ObjectStoreItemWriter(osw);
+            } else {
+                writer = new ItemLogWriter(new File(itemLog));
+            }
             Model tgtModel = Model.getInstanceByName(model);
             GFF3RecordHandler recordHandler;
             if (handlerClassName == null) {
@@ -13,7 +13,6 @@ package org.intermine.bio.task;
 import org.apache.tools.ant.BuildException;
 import org.intermine.bio.dataconversion.OboConverter;
 import org.intermine.dataconversion.ItemWriter;
-import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
@@ -97,8 +96,10 @@ public class OboConverterTask extends ConverterTask
         ObjectStoreWriter osw = null;
         ItemWriter writer = null;
         try {
-            osw = ObjectStoreWriterFactory.getObjectStoreWriter(osName);
-            writer = new ObjectStoreItemWriter(osw);
+            if (getItemLog() == null) {
+                osw = ObjectStoreWriterFactory.getObjectStoreWriter(osName);
+            }
+            writer = getItemWriter(osw);
             Model model = Model.getInstanceByName(getModelName());
 
             OboConverter converter;
@@ -113,8 +114,12 @@ public class OboConverterTask extends ConverterTask
             throw new BuildException(e);
         } finally {
             try {
-                writer.close();
-                osw.close();
+                if (writer != null) {
+                    writer.close();
+                }
+                if (osw != null) {
+                    osw.close();
+                }
             } catch (Exception e) {
                 throw new BuildException(e);
             }
@@ -38,6 +38,7 @@ public class ClobAccessReverseComplement extends ClobAccess
         originalClobAccess = ca;
         os = ca.getOs();
         results = ca.getResultsWithoutInit();
+        pageCache = ca.getPageCacheWithoutInit();
         clob = ca.getClob();
         offset = ca.getOffset();
         length = ca.getLengthWithoutInit();
@@ -133,19 +134,16 @@ public class ClobAccessReverseComplement extends ClobAccess
     public String toString() {
         init();
         StringBuilder retval = new StringBuilder();
-        int lowestPage = offset / CLOB_PAGE_SIZE;
-        int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
-        for (int page = highestPage; page >= lowestPage; page--) {
-            String pageText = (String) results.get(page);
-            if (page == highestPage) {
-                pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
-            }
-            if (page == lowestPage) {
-                pageText = pageText.substring(offset - page * CLOB_PAGE_SIZE, pageText.length());
-            }
-            for (int cNo = pageText.length() - 1; cNo >= 0; cNo--) {
-                char origC = pageText.charAt(cNo);
-                retval.append(translate(origC));
+        if (length > 0) {
+            int lowestPage = offset / CLOB_PAGE_SIZE;
+            int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
+            String[] pages = getPages(lowestPage, highestPage);
+            for (int page = highestPage; page >= lowestPage; page--) {
+                String pageText = trimPage(pages[page - lowestPage], page);
+                for (int cNo = pageText.length() - 1; cNo >= 0; cNo--) {
+                    char origC = pageText.charAt(cNo);
+                    retval.append(translate(origC));
+                }
             }
         }
         return retval.toString();
@@ -157,22 +155,23 @@ public class ClobAccessReverseComplement extends ClobAccess
     @Override
     public void drainToPrintStream(PrintStream out) {
         init();
+        if (length == 0) {
+            return;
+        }
         int lowestPage = offset / CLOB_PAGE_SIZE;
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
-        for (int page = highestPage; page >= lowestPage; page--) {
-            StringBuilder retval = new StringBuilder();
-            String pageText = (String) results.get(page);
-            if (page == highestPage) {
-                pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
-            }
-            if (page == lowestPage) {
-                pageText = pageText.substring(offset - page * CLOB_PAGE_SIZE, pageText.length());
-            }
-            for (int cNo = pageText.length() - 1; cNo >= 0; cNo--) {
-                char origC = pageText.charAt(cNo);
-                retval.append(translate(origC));
+        for (int to = highestPage; to >= lowestPage; to -= FETCH_PAGES) {
+            int from = Math.max(lowestPage, to - FETCH_PAGES + 1);
+            String[] pages = getPages(from, to);
+            for (int page = to; page >= from; page--) {
+                StringBuilder retval = new StringBuilder();
+                String pageText = trimPage(pages[page - from], page);
+                for (int cNo = pageText.length() - 1; cNo >= 0; cNo--) {
+                    char origC = pageText.charAt(cNo);
+                    retval.append(translate(origC));
+                }
+                out.print(retval.toString());
             }
-            out.print(retval.toString());
         }
     }
 
@@ -219,4 +219,52 @@ public class IdResolverTest extends TestCase
         assertEquals(resolver.orgMainMaps, readFromFile.orgMainMaps);
         assertEquals(resolver.orgSynMaps, readFromFile.orgSynMaps);
     }
+
+    public void testIndex() throws Exception {
+        File f = File.createTempFile("resolver", ".cache");
+        File indexFile = new File(f.getPath() + ".index");
+        try {
+            resolver.writeToFile(f);
+            assertFalse(IdResolverIndex.isCurrent(indexFile, f));
+            resolver.writeIndex(f, indexFile);
+            assertTrue(IdResolverIndex.isCurrent(indexFile, f));
+
+            IdResolver mapped = new IdResolver();
+            mapped.useIndex(indexFile);
+            assertTrue(mapped.orgIdMaps.isEmpty());
+            assertEquals(resolver.getTaxonsAndClassNames(), mapped.getTaxonsAndClassNames());
+            assertTrue(mapped.isPrimaryIdentifier(taxId1, clsName1, primaryId1));
+            assertFalse(mapped.isPrimaryIdentifier(taxId1, clsName1, mainId1));
+            assertEquals(Collections.singleton(primaryId1), mapped.resolveId(taxId1, clsName1, mainId1));
+            assertEquals(new HashSet<String>(Arrays.asList(primaryId1, primaryId2)), mapped.resolveId(taxId1, clsName1, synonym1));
+            assertEquals(Collections.emptySet(), mapped.resolveId(taxId1, clsName2, primaryId1));
+            assertEquals(0, mapped.countResolutions(taxId1, clsName1, synonym4));
+            assertEquals(resolver.getSynonyms(taxId2, clsName1, primaryId1), mapped.getSynonyms(taxId2, clsName1, primaryId1));
+            try {
+                mapped.resolveId(taxId1, clsName3, primaryId1);
+                fail("Expected to Fail to assert: No exception thrown");
+            } catch(IllegalArgumentException ex) {
+                // expected
+            }
+
+            // entries added after the index is mapped are resolved along with it
+            mapped.addSynonyms(taxId1, clsName1, primaryId3, SynonymSet2);
+            assertEquals(new HashSet<String>(Arrays.asList(primaryId2, primaryId3)), mapped.resolveId(taxId1, clsName1, synonym3));
+
+            // and both are written back out to a cache file
+            File copy = File.createTempFile("resolver", ".cache");
+            try {
+                mapped.writeToFile(copy);
+                IdResolver readFromFile = new IdResolver();
+                readFromFile.populateFromFile(copy);
+                assertEquals(new HashSet<String>(Arrays.asList(primaryId2, primaryId3)), readFromFile.resolveId(taxId1, clsName1, synonym3));
+                assertEquals(resolver.orgMainMaps, readFromFile.orgMainMaps);
+            } finally {
+                copy.delete();
+            }
+        } finally {
+            f.delete();
+            indexFile.delete();
+        }
+    }
 }
@@ -0,0 +1,451 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStoreWriter;
+import org.intermine.objectstore.intermine.ObjectStoreWriterInterMineImpl;
+import org.intermine.sql.Database;
+import org.intermine.sql.writebatch.Batch;
+import org.intermine.sql.writebatch.BatchWriterPostgresCopyImpl;
+
+/**
+ * A task to fill the overlappingfeaturessequencefeature table with the overlaps between
+ * locations, instead of replacing it with a view that calculates them on every query. The
+ * locations are read once, sorted by start, and the overlaps on each chromosome are found with a
+ * sweep line in a pool of threads. The table is written with COPY into a new table, which is
+ * indexed and then swapped in, so the table or view that was there is readable until the end.
+ *
+ * The overlaps are the same as those of the view made by OverlapViewTask: every pair of different
+ * features with locations on the same object whose ranges overlap, in both directions.
+ */
+public class OverlapTableTask
+{
+    private static final Logger LOG = Logger.getLogger(OverlapTableTask.class);
+
+    /** The name of the indirection table for SequenceFeature.overlappingFeatures */
+    public static final String TABLE_NAME = "overlappingfeaturessequencefeature";
+    private static final String NEW_TABLE_NAME = TABLE_NAME + "_new";
+    private static final String LEFT_COLUMN = "overlappingfeatures";
+    private static final String RIGHT_COLUMN = "sequencefeature";
+    /** The number of pairs of feature ids passed to the writer at a time */
+    private static final int CHUNK_SIZE = 8192;
+    private static final int[] END_OF_CHUNKS = new int[0];
+
+    protected ObjectStoreWriterInterMineImpl osw;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Construct a new OverlapTableTask that will change the given object store.
+     *
+     * @param osw an ObjectStore to write to
+     */
+    public OverlapTableTask(ObjectStoreWriter osw) {
+        if (osw instanceof ObjectStoreWriterInterMineImpl) {
+            this.osw = (ObjectStoreWriterInterMineImpl) osw;
+        } else {
+            throw new RuntimeException("the ObjectStoreWriter is not an "
+                                       + "ObjectStoreWriterInterMineImpl");
+        }
+    }
+
+    /**
+     * Sets the number of threads that find overlaps. The default is the number of processors.
+     *
+     * @param threads the number of threads, set by the overlap.threads property
+     */
+    public void setOverlapThreads(String threads) {
+        this.threads = Integer.parseInt(threads.trim());
+    }
+
+    /**
+     * Replace the overlappingfeaturessequencefeature table or view with a table holding every
+     * overlap.
+     *
+     * @throws SQLException if there is a problem reading locations or writing the table
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void createTable() throws SQLException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Database db = this.osw.getDatabase();
+        Connection con = db.getConnection();
+        try {
+            con.setAutoCommit(true);
+            Statement statement = con.createStatement();
+            statement.execute("DROP TABLE IF EXISTS " + NEW_TABLE_NAME);
+            statement.execute("CREATE TABLE " + NEW_TABLE_NAME + " (" + LEFT_COLUMN
+                    + " integer, " + RIGHT_COLUMN + " integer)");
+            statement.close();
+        } finally {
+            con.close();
+        }
+
+        ChunkWriter writer = new ChunkWriter(db);
+        Thread writerThread = new Thread(writer, "OverlapTableTask writer");
+        writerThread.start();
+        long overlaps;
+        try {
+            overlaps = findAllOverlaps(db, writer);
+        } finally {
+            writer.put(END_OF_CHUNKS);
+            writerThread.join();
+        }
+        if (writer.getException() != null) {
+            throw writer.getException();
+        }
+        LOG.info("Wrote " + overlaps + " overlaps in " + (System.currentTimeMillis() - start)
+                + " ms");
+
+        con = db.getConnection();
+        try {
+            con.setAutoCommit(true);
+            Statement statement = con.createStatement();
+            statement.execute("CREATE INDEX " + NEW_TABLE_NAME + "__" + LEFT_COLUMN + " ON "
+                    + NEW_TABLE_NAME + " (" + LEFT_COLUMN + ", " + RIGHT_COLUMN + ")");
+            statement.execute("CREATE INDEX " + NEW_TABLE_NAME + "__" + RIGHT_COLUMN + " ON "
+                    + NEW_TABLE_NAME + " (" + RIGHT_COLUMN + ", " + LEFT_COLUMN + ")");
+            statement.execute("ANALYSE " + NEW_TABLE_NAME);
+
+            con.setAutoCommit(false);
+            String kind = null;
+            PreparedStatement kindStatement = con.prepareStatement("SELECT relkind FROM pg_class"
+                    + " WHERE relname = ? AND pg_table_is_visible(oid)");
+            kindStatement.setString(1, TABLE_NAME);
+            ResultSet r = kindStatement.executeQuery();
+            if (r.next()) {
+                kind = r.getString(1);
+            }
+            kindStatement.close();
+            if ("v".equals(kind)) {
+                statement.execute("DROP VIEW " + TABLE_NAME);
+            } else if ("r".equals(kind)) {
+                statement.execute("DROP TABLE " + TABLE_NAME);
+            }
+            statement.execute("ALTER TABLE " + NEW_TABLE_NAME + " RENAME TO " + TABLE_NAME);
+            for (String column : Arrays.asList(LEFT_COLUMN, RIGHT_COLUMN)) {
+                statement.execute("ALTER INDEX " + NEW_TABLE_NAME + "__" + column
+                        + " RENAME TO " + TABLE_NAME + "__" + column);
+            }
+            statement.close();
+            con.commit();
+        } finally {
+            con.setAutoCommit(true);
+            con.close();
+        }
+        LOG.info("Created " + TABLE_NAME + " in " + (System.currentTimeMillis() - start)
+                + " ms");
+    }
+
+    /**
+     * Reads the locations sorted by object and start, and hands each object's locations to the
+     * pool of threads as soon as they have all been read.
+     */
+    private long findAllOverlaps(Database db, final ChunkWriter writer)
+        throws SQLException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // Bound the number of objects read but not yet swept
+        final Semaphore pending = new Semaphore(threads * 2);
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+        Connection con = db.getConnection();
+        try {
+            // A cursor, so that the locations are not all held in memory by the driver
+            con.setAutoCommit(false);
+            Statement statement = con.createStatement();
+            statement.setFetchSize(10000);
+            ResultSet r = statement.executeQuery("SELECT locatedonid, intermine_start,"
+                    + " intermine_end, featureid FROM location WHERE locatedonid IS NOT NULL"
+                    + " AND featureid IS NOT NULL AND intermine_start IS NOT NULL"
+                    + " AND intermine_end IS NOT NULL"
+                    + " ORDER BY locatedonid, LEAST(intermine_start, intermine_end)");
+            Locations locations = null;
+            while (r.next()) {
+                int locatedOnId = r.getInt(1);
+                if ((locations == null) || (locations.locatedOnId != locatedOnId)) {
+                    if (locations != null) {
+                        pending.acquire();
+                        results.add(pool.submit(new Sweep(locations, writer, pending)));
+                    }
+                    locations = new Locations(locatedOnId);
+                }
+                locations.add(r.getInt(2), r.getInt(3), r.getInt(4));
+            }
+            if (locations != null) {
+                pending.acquire();
+                results.add(pool.submit(new Sweep(locations, writer, pending)));
+            }
+            statement.close();
+            con.commit();
+        } finally {
+            con.setAutoCommit(true);
+            con.close();
+            pool.shutdown();
+        }
+        long overlaps = 0;
+        try {
+            for (Future<Long> result : results) {
+                overlaps += result.get().longValue();
+            }
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            if (writer.getException() != null) {
+                // The sweeps fail when the writer does
+                throw writer.getException();
+            }
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new RuntimeException("Failed to find overlaps", e.getCause());
+        }
+        return overlaps;
+    }
+
+    /**
+     * Finds every pair of overlapping ranges, with a sweep line. The ranges must be sorted by
+     * start. Ranges overlap if they have at least one base in common, as for bioseg. Pairs with
+     * the same id are left out.
+     *
+     * @param starts the start of each range, in ascending order
+     * @param ends the end of each range
+     * @param ids the feature id of each range
+     * @param count the number of ranges
+     * @param sink receives each overlapping pair, once
+     * @throws InterruptedException if interrupted while passing pairs on
+     */
+    public static void findOverlaps(int[] starts, int[] ends, int[] ids, int count,
+            PairSink sink) throws InterruptedException {
+        // A binary heap of the indexes of the ranges that may still overlap, ordered by end
+        int[] active = new int[16];
+        int activeCount = 0;
+        for (int i = 0; i < count; i++) {
+            while ((activeCount > 0) && (ends[active[0]] < starts[i])) {
+                activeCount--;
+                active[0] = active[activeCount];
+                siftDown(active, activeCount, ends);
+            }
+            for (int j = 0; j < activeCount; j++) {
+                if (ids[active[j]] != ids[i]) {
+                    sink.pair(ids[active[j]], ids[i]);
+                }
+            }
+            if (activeCount == active.length) {
+                active = Arrays.copyOf(active, activeCount * 2);
+            }
+            int pos = activeCount++;
+            while ((pos > 0) && (ends[active[(pos - 1) / 2]] > ends[i])) {
+                active[pos] = active[(pos - 1) / 2];
+                pos = (pos - 1) / 2;
+            }
+            active[pos] = i;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, int[] keys) {
+        int pos = 0;
+        int value = heap[0];
+        while (2 * pos + 1 < size) {
+            int child = 2 * pos + 1;
+            if ((child + 1 < size) && (keys[heap[child + 1]] < keys[heap[child]])) {
+                child++;
+            }
+            if (keys[heap[child]] >= keys[value]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = value;
+    }
+
+    /**
+     * Receives pairs of overlapping features.
+     */
+    public interface PairSink
+    {
+        /**
+         * Called for each pair of overlapping features.
+         *
+         * @param id1 the id of one feature
+         * @param id2 the id of the other feature
+         * @throws InterruptedException if interrupted while passing the pair on
+         */
+        void pair(int id1, int id2) throws InterruptedException;
+    }
+
+    /**
+     * The locations on one object, in order of start.
+     */
+    private static class Locations
+    {
+        final int locatedOnId;
+        int[] starts = new int[64];
+        int[] ends = new int[64];
+        int[] ids = new int[64];
+        int count = 0;
+
+        Locations(int locatedOnId) {
+            this.locatedOnId = locatedOnId;
+        }
+
+        void add(int start, int end, int id) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            starts[count] = Math.min(start, end);
+            ends[count] = Math.max(start, end);
+            ids[count] = id;
+            count++;
+        }
+    }
+
+    /**
+     * Finds the overlaps on one object, and passes them to the writer in chunks.
+     */
+    private static class Sweep implements Callable<Long>, PairSink
+    {
+        private final Locations locations;
+        private final ChunkWriter writer;
+        private final Semaphore pending;
+        private int[] chunk = new int[CHUNK_SIZE * 2];
+        private int size = 0;
+        private long total = 0;
+
+        Sweep(Locations locations, ChunkWriter writer, Semaphore pending) {
+            this.locations = locations;
+            this.writer = writer;
+            this.pending = pending;
+        }
+
+        public Long call() throws InterruptedException {
+            try {
+                findOverlaps(locations.starts, locations.ends, locations.ids, locations.count,
+                        this);
+                if (size > 0) {
+                    writer.put(Arrays.copyOf(chunk, size));
+                }
+                return new Long(total);
+            } finally {
+                pending.release();
+            }
+        }
+
+        public void pair(int id1, int id2) throws InterruptedException {
+            if (size + 4 > chunk.length) {
+                writer.put(chunk);
+                chunk = new int[CHUNK_SIZE * 2];
+                size = 0;
+            }
+            chunk[size++] = id1;
+            chunk[size++] = id2;
+            chunk[size++] = id2;
+            chunk[size++] = id1;
+            total += 2;
+        }
+    }
+
+    /**
+     * Writes chunks of pairs to the new table through a Batch, which uses COPY.
+     */
+    private static class ChunkWriter implements Runnable
+    {
+        private final Database db;
+        private final BlockingQueue<int[]> chunks = new ArrayBlockingQueue<int[]>(64);
+        private volatile SQLException exception = null;
+
+        ChunkWriter(Database db) {
+            this.db = db;
+        }
+
+        void put(int[] chunk) throws InterruptedException {
+            if ((exception != null) && (chunk != END_OF_CHUNKS)) {
+                // Nothing is draining the queue any more
+                throw new InterruptedException("Writing overlaps failed: " + exception);
+            }
+            chunks.put(chunk);
+        }
+
+        SQLException getException() {
+            return exception;
+        }
+
+        public void run() {
+            Connection con = null;
+            Batch batch = null;
+            try {
+                con = db.getConnection();
+                con.setAutoCommit(false);
+                batch = new Batch(new BatchWriterPostgresCopyImpl());
+                int[] chunk = chunks.take();
+                while (chunk != END_OF_CHUNKS) {
+                    for (int i = 0; i < chunk.length; i += 2) {
+                        batch.addRow(con, NEW_TABLE_NAME, LEFT_COLUMN, RIGHT_COLUMN, chunk[i],
+                                chunk[i + 1]);
+                    }
+                    chunk = chunks.take();
+                }
+                batch.flush(con);
+                con.commit();
+            } catch (SQLException e) {
+                exception = e;
+            } catch (InterruptedException e) {
+                exception = new SQLException("Interrupted while writing overlaps");
+            } finally {
+                // Keep draining, so that no thread blocks on a full queue
+                if (exception != null) {
+                    LOG.error("Failed to write overlaps", exception);
+                    try {
+                        if (con != null) {
+                            con.rollback();
+                        }
+                    } catch (SQLException e) {
+                        LOG.warn("Failed to roll back", e);
+                    }
+                    try {
+                        while (chunks.take() != END_OF_CHUNKS) {
+                            // discard
+                        }
+                    } catch (InterruptedException e) {
+                        // give up
+                    }
+                }
+                try {
+                    if (batch != null) {
+                        batch.close(con);
+                    }
+                    if (con != null) {
+                        con.setAutoCommit(true);
+                        con.close();
+                    }
+                } catch (SQLException e) {
+                    LOG.warn("Failed to close connection", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.objectstore.ObjectStoreWriter;
+
+/**
+ * A named post-processing operation, with the data that it reads and writes. The data are
+ * either unqualified class names from the model, which also cover the subclasses and
+ * superclasses of the class, or names of other things such as tables, metadata keys and files.
+ * The name ALL stands for everything. Two operations may run at the same time unless one of
+ * them writes something that the other reads or writes.
+ */
+public abstract class PostProcessOperation
+{
+    /** Stands for all the data in the objectstore */
+    public static final String ALL = "*";
+
+    private final String name;
+    private final Set<String> reads;
+    private final Set<String> writes;
+
+    /**
+     * Construct an operation.
+     *
+     * @param name the name of the operation, as used in the project.xml
+     * @param reads the data read by the operation
+     * @param writes the data written by the operation
+     */
+    public PostProcessOperation(String name, String[] reads, String[] writes) {
+        this.name = name;
+        this.reads = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(reads)));
+        this.writes = Collections.unmodifiableSet(new LinkedHashSet<String>(
+                    Arrays.asList(writes)));
+    }
+
+    /**
+     * Returns the name of the operation.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the data read by the operation.
+     *
+     * @return a Set of class and other names
+     */
+    public Set<String> getReads() {
+        return reads;
+    }
+
+    /**
+     * Returns the data written by the operation.
+     *
+     * @return a Set of class and other names
+     */
+    public Set<String> getWrites() {
+        return writes;
+    }
+
+    /**
+     * Returns true if this operation and the given operation must not run at the same time.
+     *
+     * @param other another operation
+     * @param model the model used to relate class names, or null to compare names only
+     * @return true if one of the operations writes something that the other reads or writes
+     */
+    public boolean conflictsWith(PostProcessOperation other, Model model) {
+        return overlaps(writes, other.writes, model) || overlaps(writes, other.reads, model)
+            || overlaps(reads, other.writes, model);
+    }
+
+    private static boolean overlaps(Set<String> some, Set<String> others, Model model) {
+        for (String one : some) {
+            for (String another : others) {
+                if (matches(one, another, model)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String one, String another, Model model) {
+        if (ALL.equals(one) || ALL.equals(another) || one.equals(another)) {
+            return true;
+        }
+        if (model != null) {
+            ClassDescriptor oneCld = model.getClassDescriptorByName(one);
+            ClassDescriptor anotherCld = model.getClassDescriptorByName(another);
+            if ((oneCld != null) && (anotherCld != null)) {
+                return oneCld.getAllSuperclassNames().contains(anotherCld.getName())
+                    || anotherCld.getAllSuperclassNames().contains(oneCld.getName());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the operation.
+     *
+     * @param task the task running the operation, for configuring the classes that do the work
+     * @param osw an ObjectStoreWriter used by this operation only
+     * @throws Exception if anything goes wrong
+     */
+    public abstract void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+        throws Exception;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -15,6 +15,8 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -25,6 +27,7 @@ import org.apache.tools.ant.BuildException;
 
 import org.intermine.api.config.ClassKeyHelper;
 import org.intermine.metadata.FieldDescriptor;
+import org.intermine.metadata.Model;
 import org.intermine.modelproduction.MetadataManager;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreSummary;
@@ -36,11 +39,14 @@ import org.intermine.task.CreateIndexesTask;
 import org.intermine.task.DynamicAttributeTask;
 import org.intermine.task.PrecomputeTask;
 import org.intermine.util.PropertiesUtil;
+import org.intermine.util.StringUtil;
 import org.intermine.web.autocompletion.AutoCompleter;
 import org.intermine.web.search.KeywordSearch;
 
 /**
- * Run operations on genomic model database after DataLoading
+ * Run operations on genomic model database after DataLoading. Either a single operation is
+ * run, or a list of operations is run by a PostProcessScheduler, with operations that do not
+ * conflict running at the same time on their own ObjectStoreWriters.
  *
  * @author Richard Smith
  */
@@ -48,7 +54,12 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
 {
     private static final Logger LOGGER = Logger.getLogger(PostProcessOperationsTask.class);
 
+    private static final Map<String, PostProcessOperation> OPERATIONS =
+        new LinkedHashMap<String, PostProcessOperation>();
+
     protected String operation, objectStoreWriter, ensemblDb, organisms = null;
+    protected List<String> operations = null;
+    protected int threads = 1;
     protected File outputFile;
     protected ObjectStoreWriter osw;
 
@@ -61,6 +72,29 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
         this.operation = operation;
     }
 
+    /**
+     * Sets the operations to perform, in the order that they would be performed one at a time.
+     *
+     * @param operations a comma separated list of operation names
+     */
+    public void setOperations(String operations) {
+        this.operations = new ArrayList<String>();
+        for (String name : StringUtil.split(operations, ",")) {
+            if (name.trim().length() > 0) {
+                this.operations.add(name.trim());
+            }
+        }
+    }
+
+    /**
+     * Sets the number of operations that may run at the same time. The default is one.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(String threads) {
+        this.threads = Integer.parseInt(threads.trim());
+    }
+
     /**
      * Sets the value of objectStoreWriter
      *
@@ -98,71 +132,243 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
         return osw;
     }
 
+    /**
+     * Returns the operations that this task knows about, by name.
+     *
+     * @return an unmodifiable Map from operation name to operation
+     */
+    public static Map<String, PostProcessOperation> getKnownOperations() {
+        return Collections.unmodifiableMap(OPERATIONS);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void execute() {
-        if (operation == null) {
-            throw new BuildException("operation attribute is not set");
+        List<String> names = operations;
+        if (names == null) {
+            if (operation == null) {
+                throw new BuildException("operation attribute is not set");
+            }
+            names = Collections.singletonList(operation);
         }
+        List<PostProcessOperation> toRun = new ArrayList<PostProcessOperation>();
+        for (String name : names) {
+            PostProcessOperation op = OPERATIONS.get(name);
+            if (op == null) {
+                throw new BuildException("unknown operation: " + name);
+            }
+            toRun.add(op);
+        }
+        if (objectStoreWriter == null) {
+            throw new BuildException("objectStoreWriter attribute is not set");
+        }
+        PostProcessScheduler scheduler = null;
+        try {
+            Model model = (toRun.size() > 1) ? getObjectStoreWriter().getModel() : null;
+            scheduler = new PostProcessScheduler(model, threads);
+            scheduler.execute(toRun, new PostProcessScheduler.OperationRunner() {
+                public void run(PostProcessOperation op) throws Exception {
+                    runOperation(op);
+                }
+            });
+        } catch (BuildException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BuildException("Failed postprocess. Operations were: " + names, e);
+        } finally {
+            if ((scheduler != null) && (toRun.size() > 1)) {
+                String report = scheduler.getReport();
+                LOGGER.info(report);
+                System.out .println(report);
+            }
+            try {
+                if (osw != null) {
+                    osw.close();
+                }
+            } catch (Exception e) {
+                throw new BuildException(e);
+            }
+        }
+    }
+
+    private void runOperation(PostProcessOperation op) throws Exception {
         long startTime = System.currentTimeMillis();
+        ObjectStoreWriter opOsw = null;
         try {
-            if ("create-chromosome-locations-and-lengths".equals(operation)) {
-                CalculateLocations cl = new CalculateLocations(getObjectStoreWriter());
+            opOsw = ObjectStoreWriterFactory.getObjectStoreWriter(objectStoreWriter);
+            op.run(this, opOsw);
+            LOGGER.info("PP - " + op.getName() + " took "
+                     + (System.currentTimeMillis() - startTime) + " ms.");
+        } catch (BuildException e) {
+            LOGGER.error("Failed postprocess. Operation was: " + op.getName(), e);
+            throw e;
+        } catch (Exception e) {
+            LOGGER.error("Failed postprocess. Operation was: " + op.getName(), e);
+            throw new BuildException("Operation was:" + op.getName(), e);
+        } finally {
+            if (opOsw != null) {
+                opOsw.close();
+            }
+        }
+    }
+
+    private static void register(PostProcessOperation op) {
+        OPERATIONS.put(op.getName(), op);
+    }
+
+    private static String[] data(String... names) {
+        return names;
+    }
+
+    private static final String[] ALL = data(PostProcessOperation.ALL);
+    private static final String[] NOTHING = data();
+    private static final String OVERLAP_TABLE = "overlappingfeaturessequencefeature";
+
+    static {
+        register(new PostProcessOperation("create-chromosome-locations-and-lengths",
+                    data("Location", "Chromosome", "SequenceFeature"),
+                    data("SequenceFeature")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CalculateLocations cl = new CalculateLocations(osw);
                 LOGGER.info("Starting CalculateLocations.setChromosomeLocationsAndLengths()");
                 cl.setChromosomeLocationsAndLengths();
-            } else if ("set-missing-chromosome-locations".equals(operation)) {
-                CalculateLocations cl = new CalculateLocations(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("set-missing-chromosome-locations",
+                    data("Location", "Chromosome", "SequenceFeature"),
+                    data("SequenceFeature", "Location")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CalculateLocations cl = new CalculateLocations(osw);
                 LOGGER.info("Starting CalculateLocations.setMissingChromosomeLocations()");
                 cl.setMissingChromosomeLocations();
-            } else if ("create-references".equals(operation)) {
-                CreateReferences cr = new CreateReferences(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("create-references",
+                    data("Location", "Chromosome", "ChromosomeBand", "Gene", "Transcript", "Exon",
+                        "UTR", "CDS"),
+                    data("Chromosome", "Gene", "Exon", "UTR", "CDS")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CreateReferences cr = new CreateReferences(osw);
                 LOGGER.info("Starting CreateReferences.insertReferences()");
                 cr.insertReferences();
-            } else if ("create-symmetrical-relation-references".equals(operation)) {
+            }
+        });
+        register(new PostProcessOperation("create-symmetrical-relation-references", NOTHING,
+                    NOTHING) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw) {
                 throw new BuildException("create-symmetrical-relation-references task is"
                         + " deprecated");
-            } else if ("create-utr-references".equals(operation)) {
-                CreateReferences cr = new CreateReferences(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("create-utr-references", data("MRNA", "UTR"),
+                    data("MRNA", "UTR")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CreateReferences cr = new CreateReferences(osw);
                 LOGGER.info("Starting CreateReferences.createUtrRefs()");
                 cr.createUtrRefs();
-            } else if ("transfer-sequences".equals(operation)) {
-                TransferSequences ts = new TransferSequences(getObjectStoreWriter());
-                ts = new TransferSequences(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("transfer-sequences",
+                    data("Location", "Chromosome", "SequenceFeature", "Sequence"),
+                    data("SequenceFeature", "Sequence")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                TransferSequences ts = new TransferSequences(osw);
                 LOGGER.info("Starting TransferSequences.transferToLocatedSequenceFeatures()");
                 ts.transferToLocatedSequenceFeatures();
 
-                ts = new TransferSequences(getObjectStoreWriter());
+                ts = new TransferSequences(osw);
                 LOGGER.info("Starting TransferSequences.transferToTranscripts()");
                 ts.transferToTranscripts();
-            } else if ("transfer-sequences-located-sequence-feature".equals(operation)) {
-                TransferSequences ts = new TransferSequences(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("transfer-sequences-located-sequence-feature",
+                    data("Location", "Chromosome", "SequenceFeature", "Sequence"),
+                    data("SequenceFeature", "Sequence")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                TransferSequences ts = new TransferSequences(osw);
                 LOGGER.info("Starting TransferSequences.transferToLocatedSequenceFeatures()");
                 ts.transferToLocatedSequenceFeatures();
-            } else if ("transfer-sequences-transcripts".equals(operation)) {
-                TransferSequences ts = new TransferSequences(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("transfer-sequences-transcripts",
+                    data("Location", "Transcript", "Exon", "Sequence"),
+                    data("Transcript", "Sequence")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                TransferSequences ts = new TransferSequences(osw);
                 LOGGER.info("Starting TransferSequences.transferToTranscripts()");
                 ts.transferToTranscripts();
-            } else if ("make-spanning-locations".equals(operation)) {
-                CalculateLocations cl = new CalculateLocations(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("make-spanning-locations",
+                    data("Location", "Gene", "Transcript", "Exon"), data("Location")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CalculateLocations cl = new CalculateLocations(osw);
                 LOGGER.info("Starting CalculateLocations.createSpanningLocations()");
                 cl.createSpanningLocations("Transcript", "Exon", "exons");
                 cl.createSpanningLocations("Gene", "Transcript", "transcripts");
-            } else if ("create-intergenic-region-features".equals(operation)) {
-                IntergenicRegionUtil ig = new IntergenicRegionUtil(getObjectStoreWriter());
+            }
+        });
+        // the operations that create features also create the FlyMine DataSource and a DataSet
+        register(new PostProcessOperation("create-intergenic-region-features",
+                    data("Location", "Chromosome", "Gene", "Organism", "DataSource", "DataSet"),
+                    data("IntergenicRegion", "Gene", "Location", "DataSource", "DataSet")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                IntergenicRegionUtil ig = new IntergenicRegionUtil(osw);
                 LOGGER.info("Starting IntergenicRegionUtil.createIntergenicRegionFeatures()");
                 ig.createIntergenicRegionFeatures();
-            } else if ("create-gene-flanking-features".equals(operation)) {
-                CreateFlankingRegions cfr = new CreateFlankingRegions(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("create-gene-flanking-features",
+                    data("Location", "Chromosome", "Gene", "Organism", "DataSource", "DataSet"),
+                    data("GeneFlankingRegion", "Location", "DataSource", "DataSet")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CreateFlankingRegions cfr = new CreateFlankingRegions(osw);
                 LOGGER.info("Starting CreateFlankingRegions.createFlankingFeatures()");
                 cfr.createFlankingFeatures();
-            } else if ("create-intron-features".equals(operation)) {
-                IntronUtil iu = new IntronUtil(getObjectStoreWriter());
-                configureDynamicAttributes(iu);
+            }
+        });
+        register(new PostProcessOperation("create-intron-features",
+                    data("Location", "Gene", "Transcript", "Exon", "Organism", "DataSource",
+                        "DataSet"),
+                    data("Intron", "Location", "DataSource", "DataSet")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                IntronUtil iu = new IntronUtil(osw);
+                task.configureDynamicAttributes(iu);
                 LOGGER.info("Starting IntronUtil.createIntronFeatures()");
                 iu.createIntronFeatures();
-            } else if ("create-overlap-relations-flymine".equals(operation)) {
+            }
+        });
+        register(new PostProcessOperation("create-overlap-relations-flymine",
+                    data("Location", "SequenceFeature"),
+                    data("SequenceFeature", OVERLAP_TABLE)) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
                 LOGGER.info("Starting CalculateLocations.createOverlapRelations()");
                 List<String> classNamesToIgnoreList = new ArrayList<String>();
                 String ignoreFileName = "overlap.config";
@@ -180,19 +386,37 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
                     line = classesToIgnoreReader.readLine();
                 }
 
-                CalculateLocations cl = new CalculateLocations(getObjectStoreWriter());
+                CalculateLocations cl = new CalculateLocations(osw);
                 cl.createOverlapRelations(classNamesToIgnoreList, false);
-            } else if ("set-collection-counts".equals(operation)) {
-                SetCollectionCounts setCounts = new SetCollectionCounts(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("set-collection-counts", data("Transcript", "Exon"),
+                    data("Transcript")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                SetCollectionCounts setCounts = new SetCollectionCounts(osw);
                 setCounts.setCollectionCount();
-            } else if ("create-attribute-indexes".equals(operation)) {
+            }
+        });
+        // creating an index stops the table being written to, so this reads everything
+        register(new PostProcessOperation("create-attribute-indexes", ALL, NOTHING) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
                 CreateIndexesTask cit = new CreateIndexesTask();
                 cit.setAttributeIndexes(true);
-                cit.setObjectStore(getObjectStoreWriter().getObjectStore());
+                cit.setObjectStore(osw.getObjectStore());
                 cit.execute();
-            } else if ("summarise-objectstore".equals(operation)) {
+            }
+        });
+        register(new PostProcessOperation("summarise-objectstore", ALL,
+                    data(MetadataManager.OS_SUMMARY)) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
                 System.out .println("summarising objectstore ...");
-                ObjectStore os = getObjectStoreWriter().getObjectStore();
+                ObjectStore os = osw.getObjectStore();
                 if (!(os instanceof ObjectStoreInterMineImpl)) {
                     throw new RuntimeException("cannot summarise ObjectStore - must be an "
                                                + "instance of ObjectStoreInterMineImpl");
@@ -210,39 +434,40 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
                 Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
                 MetadataManager.store(db, MetadataManager.OS_SUMMARY,
                                       PropertiesUtil.serialize(oss.toProperties()));
-            } else if ("precompute-queries".equals(operation)) {
-                (new PrecomputeTask()).precompute(false, getObjectStoreWriter().getObjectStore(),
-                        0);
-            } else if ("create-lucene-index".equals(operation)
-                       || "create-autocomplete-index".equals(operation)) {
-                System.out .println("create lucene index ...");
-                ObjectStore os = getObjectStoreWriter().getObjectStore();
-                if (!(os instanceof ObjectStoreInterMineImpl)) {
-                    throw new RuntimeException("cannot summarise ObjectStore - must be an "
-                                   + "instance of ObjectStoreInterMineImpl (create lucene index)");
-                }
-                String configFileName = "objectstoresummary.config.properties";
-                ClassLoader classLoader = PostProcessOperationsTask.class.getClassLoader();
-                InputStream configStream =
-                    classLoader.getResourceAsStream(configFileName);
-                if (configStream == null) {
-                    throw new RuntimeException("can't find resource: " + configFileName);
-                }
-
-                Properties properties = new Properties();
-                properties.load(configStream);
-
-                Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
-
-                AutoCompleter ac = new AutoCompleter(os, properties);
-                if (ac.getBinaryIndexMap() != null) {
-                    MetadataManager.storeBinary(db, MetadataManager.AUTOCOMPLETE_INDEX,
-                                        ac.getBinaryIndexMap());
-                }
-            } else if ("create-search-index".equals(operation)) {
+            }
+        });
+        register(new PostProcessOperation("precompute-queries", ALL, data("precompute")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                (new PrecomputeTask()).precompute(false, osw.getObjectStore(), 0);
+            }
+        });
+        PostProcessOperation autocomplete = new PostProcessOperation("create-autocomplete-index",
+                ALL, data(MetadataManager.AUTOCOMPLETE_INDEX)) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                createAutocompleteIndex(osw);
+            }
+        };
+        register(autocomplete);
+        register(new PostProcessOperation("create-lucene-index", autocomplete.getReads().toArray(
+                        new String[0]), autocomplete.getWrites().toArray(new String[0])) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                createAutocompleteIndex(osw);
+            }
+        });
+        register(new PostProcessOperation("create-search-index", ALL,
+                    data(MetadataManager.SEARCH_INDEX, MetadataManager.SEARCH_INDEX_DIRECTORY)) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
                 System .out.println("Creating lucene index for keyword search...");
 
-                ObjectStore os = getObjectStoreWriter().getObjectStore();
+                ObjectStore os = osw.getObjectStore();
                 if (!(os instanceof ObjectStoreInterMineImpl)) {
                     throw new RuntimeException("Got invalid ObjectStore - must be an "
                             + "instance of ObjectStoreInterMineImpl!");
@@ -250,16 +475,6 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
 
                 ClassLoader classLoader = PostProcessOperationsTask.class.getClassLoader();
 
-                /*
-                String configFileName = "objectstoresummary.config.properties";
-                InputStream configStream = classLoader.getResourceAsStream(configFileName);
-                if (configStream == null) {
-                    throw new RuntimeException("can't find resource: " + configFileName);
-                }
-
-                Properties properties = new Properties();
-                properties.load(configStream);*/
-
                 //read class keys to figure out what are keyFields during indexing
                 InputStream is = classLoader.getResourceAsStream("class_keys.properties");
                 Properties classKeyProperties = new Properties();
@@ -270,35 +485,77 @@ public class PostProcessOperationsTask extends DynamicAttributeTask
                 //index and save
                 KeywordSearch.saveIndexToDatabase(os, classKeys);
                 KeywordSearch.deleteIndexDirectory();
-            } else if ("create-overlap-view".equals(operation)) {
-                OverlapViewTask ovt = new OverlapViewTask(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("create-overlap-view", data("Location"),
+                    data(OVERLAP_TABLE)) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                OverlapViewTask ovt = new OverlapViewTask(osw);
                 ovt.createView();
-            } else if ("create-bioseg-location-index".equals(operation)) {
-                BiosegIndexTask bit = new BiosegIndexTask(getObjectStoreWriter());
+            }
+        });
+        register(new PostProcessOperation("create-overlap-table", data("Location"),
+                    data(OVERLAP_TABLE)) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                OverlapTableTask ott = new OverlapTableTask(osw);
+                task.configureDynamicAttributes(ott);
+                ott.createTable();
+            }
+        });
+        register(new PostProcessOperation("create-bioseg-location-index", data("Location"),
+                    NOTHING) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                BiosegIndexTask bit = new BiosegIndexTask(osw);
                 bit.createIndex();
-            } else if ("link-ins".equals(operation)) {
-                CreateFlyBaseLinkIns.createLinkInFile(getObjectStoreWriter().getObjectStore());
-            } else if ("modmine-metadata-cache".equals(operation)) {
-                CreateModMineMetaDataCache.createCache(getObjectStoreWriter().getObjectStore());
-            } else {
-                throw new BuildException("unknown operation: " + operation);
             }
-            LOGGER.info("PP - " + operation + " took "
-                     + (System.currentTimeMillis() - startTime) + " ms.");
-        } catch (BuildException e) {
-            LOGGER.error("Failed postprocess. Operation was: " + operation, e);
-            throw e;
-        } catch (Exception e) {
-            LOGGER.error("Failed postprocess. Operation was: " + operation, e);
-            throw new BuildException("Operation was:" + operation, e);
-        } finally {
-            try {
-                if (osw != null) {
-                    osw.close();
-                }
-            } catch (Exception e) {
-                throw new BuildException(e);
+        });
+        register(new PostProcessOperation("link-ins", ALL, data("link-ins")) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CreateFlyBaseLinkIns.createLinkInFile(osw.getObjectStore());
+            }
+        });
+        register(new PostProcessOperation("modmine-metadata-cache", ALL,
+                    data(MetadataManager.MODMINE_METADATA_CACHE)) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw)
+                throws Exception {
+                CreateModMineMetaDataCache.createCache(osw.getObjectStore());
             }
+        });
+    }
+
+    private static void createAutocompleteIndex(ObjectStoreWriter osw) throws Exception {
+        System.out .println("create lucene index ...");
+        ObjectStore os = osw.getObjectStore();
+        if (!(os instanceof ObjectStoreInterMineImpl)) {
+            throw new RuntimeException("cannot summarise ObjectStore - must be an "
+                           + "instance of ObjectStoreInterMineImpl (create lucene index)");
+        }
+        String configFileName = "objectstoresummary.config.properties";
+        ClassLoader classLoader = PostProcessOperationsTask.class.getClassLoader();
+        InputStream configStream =
+            classLoader.getResourceAsStream(configFileName);
+        if (configStream == null) {
+            throw new RuntimeException("can't find resource: " + configFileName);
+        }
+
+        Properties properties = new Properties();
+        properties.load(configStream);
+
+        Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+
+        AutoCompleter ac = new AutoCompleter(os, properties);
+        if (ac.getBinaryIndexMap() != null) {
+            MetadataManager.storeBinary(db, MetadataManager.AUTOCOMPLETE_INDEX,
+                                ac.getBinaryIndexMap());
         }
     }
 }
@@ -0,0 +1,253 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.intermine.metadata.Model;
+
+/**
+ * Runs a list of post-processing operations, with as many at a time as there are threads. An
+ * operation waits for every earlier operation in the list that it conflicts with, so each
+ * operation sees the same data as it would if they all ran one after another. When there is a
+ * choice, the operation that comes first in the list is started first, so with one thread the
+ * operations run in the order of the list.
+ *
+ * After running, the scheduler can report the time taken by each operation and the critical
+ * path - the chain of operations that waited for each other that took longest, and so set the
+ * time taken by the whole post-processing.
+ */
+public class PostProcessScheduler
+{
+    private final Model model;
+    private final int threads;
+
+    private List<PostProcessOperation> operations;
+    private List<List<Integer>> dependencies;
+    private long[] startTimes;
+    private long[] endTimes;
+    private long startTime, endTime;
+
+    /**
+     * Construct a scheduler.
+     *
+     * @param model the model used to relate the class names read and written by the operations,
+     * or null to compare names only
+     * @param threads the number of operations to run at the same time
+     */
+    public PostProcessScheduler(Model model, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, was " + threads);
+        }
+        this.model = model;
+        this.threads = threads;
+    }
+
+    /**
+     * Runs the operations. If an operation fails no more operations are started, and the
+     * exception is thrown once the operations that are already running have finished.
+     *
+     * @param operations the operations, in the order that they would run one at a time
+     * @param runner runs each operation
+     * @throws Exception the exception thrown by the first operation to fail
+     */
+    public void execute(List<PostProcessOperation> operations, OperationRunner runner)
+        throws Exception {
+        this.operations = new ArrayList<PostProcessOperation>(operations);
+        int count = this.operations.size();
+        dependencies = new ArrayList<List<Integer>>();
+        for (int i = 0; i < count; i++) {
+            List<Integer> deps = new ArrayList<Integer>();
+            for (int j = 0; j < i; j++) {
+                if (this.operations.get(i).conflictsWith(this.operations.get(j), model)) {
+                    deps.add(new Integer(j));
+                }
+            }
+            dependencies.add(deps);
+        }
+        startTimes = new long[count];
+        endTimes = new long[count];
+        boolean[] started = new boolean[count];
+        boolean[] finished = new boolean[count];
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(pool);
+        Exception failure = null;
+        int running = 0;
+        int done = 0;
+        startTime = System.currentTimeMillis();
+        try {
+            while (done < count) {
+                for (int i = 0; (i < count) && (running < threads) && (failure == null); i++) {
+                    if (!started[i] && isReady(i, finished)) {
+                        started[i] = true;
+                        running++;
+                        completion.submit(new Run(i, runner));
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+                Future<Integer> future = completion.take();
+                running--;
+                try {
+                    int i = future.get().intValue();
+                    finished[i] = true;
+                    done++;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause()
+                            : e;
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+            endTime = System.currentTimeMillis();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private boolean isReady(int i, boolean[] finished) {
+        for (Integer dep : dependencies.get(i)) {
+            if (!finished[dep.intValue()]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the operations on the critical path of the last run, in the order that they ran.
+     *
+     * @return a List of operations
+     */
+    public List<PostProcessOperation> getCriticalPath() {
+        int count = operations.size();
+        long[] pathTimes = new long[count];
+        int[] previous = new int[count];
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            previous[i] = -1;
+            for (Integer dep : dependencies.get(i)) {
+                int j = dep.intValue();
+                if ((previous[i] == -1) || (pathTimes[j] > pathTimes[previous[i]])) {
+                    previous[i] = j;
+                }
+            }
+            pathTimes[i] = (endTimes[i] - startTimes[i])
+                + (previous[i] == -1 ? 0 : pathTimes[previous[i]]);
+            if ((last == -1) || (pathTimes[i] >= pathTimes[last])) {
+                last = i;
+            }
+        }
+        List<PostProcessOperation> retval = new ArrayList<PostProcessOperation>();
+        for (int i = last; i != -1; i = previous[i]) {
+            retval.add(operations.get(i));
+        }
+        Collections.reverse(retval);
+        return retval;
+    }
+
+    /**
+     * Returns a report of the last run, giving the time at which each operation started, the
+     * time it took, and the operations that it waited for, with the operations on the critical
+     * path marked.
+     *
+     * @return the report
+     */
+    public String getReport() {
+        List<PostProcessOperation> criticalPath = getCriticalPath();
+        StringBuilder sb = new StringBuilder();
+        long work = 0;
+        long pathTime = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            work += endTimes[i] - startTimes[i];
+            if (criticalPath.contains(operations.get(i))) {
+                pathTime += endTimes[i] - startTimes[i];
+            }
+        }
+        sb.append("Post-processing took " + (endTime - startTime) + " ms with " + threads
+                + (threads == 1 ? " thread" : " threads") + ", for " + work
+                + " ms of operations\n");
+        for (int i = 0; i < operations.size(); i++) {
+            PostProcessOperation operation = operations.get(i);
+            sb.append(String.format("%s %-45s", criticalPath.contains(operation) ? "*" : " ",
+                        operation.getName()));
+            if (endTimes[i] == 0) {
+                sb.append(" not run\n");
+                continue;
+            }
+            sb.append(String.format(" started %10d ms, took %10d ms", startTimes[i] - startTime,
+                        endTimes[i] - startTimes[i]));
+            if (!dependencies.get(i).isEmpty()) {
+                sb.append(", after");
+                for (Integer dep : dependencies.get(i)) {
+                    sb.append(" " + operations.get(dep.intValue()).getName());
+                }
+            }
+            sb.append("\n");
+        }
+        sb.append("Critical path (" + pathTime + " ms):");
+        boolean needComma = false;
+        for (PostProcessOperation operation : criticalPath) {
+            sb.append(needComma ? " -> " : " ").append(operation.getName());
+            needComma = true;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Runs one operation for the scheduler.
+     */
+    public interface OperationRunner
+    {
+        /**
+         * Runs the given operation. This is called by several threads at once.
+         *
+         * @param operation the operation
+         * @throws Exception if anything goes wrong
+         */
+        void run(PostProcessOperation operation) throws Exception;
+    }
+
+    private class Run implements Callable<Integer>
+    {
+        private final int index;
+        private final OperationRunner runner;
+
+        Run(int index, OperationRunner runner) {
+            this.index = index;
+            this.runner = runner;
+        }
+
+        public Integer call() throws Exception {
+            startTimes[index] = System.currentTimeMillis();
+            try {
+                runner.run(operations.get(index));
+            } finally {
+                endTimes[index] = System.currentTimeMillis();
+            }
+            return new Integer(index);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the sweep line of OverlapTableTask.
+ */
+public class OverlapTableTaskTest extends TestCase
+{
+    public void testFindOverlaps() throws Exception {
+        int[] starts = new int[] {1, 5, 10, 10, 30};
+        int[] ends = new int[] {10, 6, 20, 10, 40};
+        int[] ids = new int[] {1, 2, 3, 4, 5};
+        Set<String> expected = new HashSet<String>(Arrays.asList("1-2", "1-3", "1-4", "3-4"));
+        assertEquals(expected, findOverlaps(starts, ends, ids, 5));
+    }
+
+    public void testSameFeature() throws Exception {
+        int[] starts = new int[] {1, 5};
+        int[] ends = new int[] {10, 15};
+        int[] ids = new int[] {1, 1};
+        assertEquals(new HashSet<String>(), findOverlaps(starts, ends, ids, 2));
+    }
+
+    public void testRandom() throws Exception {
+        Random random = new Random(42);
+        for (int run = 0; run < 20; run++) {
+            int count = random.nextInt(500);
+            int[] starts = new int[count];
+            int[] ends = new int[count];
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                starts[i] = random.nextInt(10000);
+                ends[i] = starts[i] + random.nextInt(200);
+                ids[i] = random.nextInt(count * 2);
+            }
+            sort(starts, ends, ids);
+            Set<String> expected = new HashSet<String>();
+            for (int i = 0; i < count; i++) {
+                for (int j = i + 1; j < count; j++) {
+                    if ((ids[i] != ids[j]) && (starts[j] <= ends[i]) && (starts[i] <= ends[j])) {
+                        expected.add(key(ids[i], ids[j]));
+                    }
+                }
+            }
+            assertEquals(expected, findOverlaps(starts, ends, ids, count));
+        }
+    }
+
+    private Set<String> findOverlaps(int[] starts, int[] ends, int[] ids, int count)
+        throws InterruptedException {
+        final Set<String> pairs = new HashSet<String>();
+        OverlapTableTask.findOverlaps(starts, ends, ids, count, new OverlapTableTask.PairSink() {
+            public void pair(int id1, int id2) {
+                pairs.add(key(id1, id2));
+            }
+        });
+        return pairs;
+    }
+
+    private static String key(int id1, int id2) {
+        return Math.min(id1, id2) + "-" + Math.max(id1, id2);
+    }
+
+    private static void sort(int[] starts, int[] ends, int[] ids) {
+        long[] packed = new long[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            packed[i] = (((long) starts[i]) << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] oldStarts = starts.clone();
+        int[] oldEnds = ends.clone();
+        int[] oldIds = ids.clone();
+        for (int i = 0; i < packed.length; i++) {
+            int index = (int) packed[i];
+            starts[i] = oldStarts[index];
+            ends[i] = oldEnds[index];
+            ids[i] = oldIds[index];
+        }
+    }
+}
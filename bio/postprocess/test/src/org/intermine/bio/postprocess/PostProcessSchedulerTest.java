@@ -0,0 +1,170 @@
+package org.intermine.bio.postprocess;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.intermine.metadata.AttributeDescriptor;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.CollectionDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.objectstore.ObjectStoreWriter;
+
+/**
+ * Tests for PostProcessScheduler and the conflicts between PostProcessOperations.
+ */
+public class PostProcessSchedulerTest extends TestCase
+{
+    private Model model;
+
+    public void setUp() throws Exception {
+        Set<ClassDescriptor> clds = new LinkedHashSet<ClassDescriptor>();
+        clds.add(cld("SequenceFeature", null));
+        clds.add(cld("Gene", "SequenceFeature"));
+        clds.add(cld("Exon", "SequenceFeature"));
+        clds.add(cld("Location", null));
+        model = new Model("test", "org.intermine.model.test", clds);
+    }
+
+    private ClassDescriptor cld(String name, String supers) {
+        return new ClassDescriptor("org.intermine.model.test." + name,
+                supers == null ? null : "org.intermine.model.test." + supers, true,
+                Collections.<AttributeDescriptor>emptySet(),
+                Collections.<ReferenceDescriptor>emptySet(),
+                Collections.<CollectionDescriptor>emptySet());
+    }
+
+    public void testConflicts() throws Exception {
+        PostProcessOperation readGene = op("a", data("Gene"), data());
+        PostProcessOperation writeGene = op("b", data(), data("Gene"));
+        PostProcessOperation writeExon = op("c", data(), data("Exon"));
+        PostProcessOperation readFeatures = op("d", data("SequenceFeature"), data("file"));
+        PostProcessOperation readAll = op("e", data(PostProcessOperation.ALL), data());
+        PostProcessOperation writeFile = op("f", data(), data("file"));
+
+        assertTrue(readGene.conflictsWith(writeGene, model));
+        assertTrue(writeGene.conflictsWith(readGene, model));
+        assertFalse(readGene.conflictsWith(readFeatures, model));
+        assertFalse(writeGene.conflictsWith(writeExon, model));
+        assertTrue(writeExon.conflictsWith(readFeatures, model));
+        assertTrue(writeGene.conflictsWith(readAll, model));
+        assertFalse(readGene.conflictsWith(readAll, model));
+        assertTrue(readFeatures.conflictsWith(writeFile, model));
+        assertFalse(readAll.conflictsWith(op("g", data("Location"), data()), model));
+        // with no model, only the same names conflict
+        assertFalse(writeExon.conflictsWith(readFeatures, null));
+    }
+
+    public void testIndependentRunTogether() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        PostProcessOperation gene = op("gene", data(), data("Gene"));
+        PostProcessOperation exon = op("exon", data(), data("Exon"));
+        PostProcessScheduler scheduler = new PostProcessScheduler(model, 2);
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        scheduler.execute(Arrays.asList(gene, exon), new PostProcessScheduler.OperationRunner() {
+            public void run(PostProcessOperation op) throws Exception {
+                latch.countDown();
+                if (!latch.await(10, TimeUnit.SECONDS)) {
+                    throw new Exception("operations did not run at the same time");
+                }
+                ran.add(op.getName());
+            }
+        });
+        assertEquals(new HashSet<String>(Arrays.asList("gene", "exon")),
+                new HashSet<String>(ran));
+    }
+
+    public void testConflictingRunInOrder() throws Exception {
+        PostProcessOperation writeLocation = op("writeLocation", data(), data("Location"));
+        PostProcessOperation gene = op("gene", data(), data("Gene"));
+        PostProcessOperation readLocation = op("readLocation", data("Location"), data());
+        PostProcessOperation features = op("features", data(), data("SequenceFeature"));
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        PostProcessScheduler scheduler = new PostProcessScheduler(model, 4);
+        scheduler.execute(Arrays.asList(writeLocation, gene, readLocation, features),
+                new PostProcessScheduler.OperationRunner() {
+                    public void run(PostProcessOperation op) throws Exception {
+                        if ("writeLocation".equals(op.getName())) {
+                            Thread.sleep(200);
+                        }
+                        ran.add(op.getName());
+                    }
+                });
+        assertTrue(ran.indexOf("writeLocation") < ran.indexOf("readLocation"));
+        assertTrue(ran.indexOf("gene") < ran.indexOf("features"));
+        assertEquals(Arrays.asList(writeLocation, readLocation), scheduler.getCriticalPath());
+        String report = scheduler.getReport();
+        assertTrue(report, report.contains("after writeLocation"));
+        assertTrue(report, report.contains("Critical path"));
+    }
+
+    public void testOneThreadKeepsOrder() throws Exception {
+        PostProcessOperation gene = op("gene", data(), data("Gene"));
+        PostProcessOperation readGene = op("readGene", data("Gene"), data());
+        PostProcessOperation exon = op("exon", data(), data("Exon"));
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        PostProcessScheduler scheduler = new PostProcessScheduler(model, 1);
+        scheduler.execute(Arrays.asList(gene, readGene, exon),
+                new PostProcessScheduler.OperationRunner() {
+                    public void run(PostProcessOperation op) {
+                        ran.add(op.getName());
+                    }
+                });
+        assertEquals(Arrays.asList("gene", "readGene", "exon"), ran);
+    }
+
+    public void testFailure() throws Exception {
+        PostProcessOperation fail = op("fail", data(), data("Gene"));
+        PostProcessOperation after = op("after", data("Gene"), data());
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        PostProcessScheduler scheduler = new PostProcessScheduler(model, 2);
+        try {
+            scheduler.execute(Arrays.asList(fail, after),
+                    new PostProcessScheduler.OperationRunner() {
+                        public void run(PostProcessOperation op) throws Exception {
+                            ran.add(op.getName());
+                            if ("fail".equals(op.getName())) {
+                                throw new IllegalStateException("failed");
+                            }
+                        }
+                    });
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(Arrays.asList("fail"), ran);
+        assertTrue(scheduler.getReport().contains("not run"));
+    }
+
+    private static String[] data(String... names) {
+        return names;
+    }
+
+    private static PostProcessOperation op(String name, String[] reads, String[] writes) {
+        return new PostProcessOperation(name, reads, writes) {
+            @Override
+            public void run(PostProcessOperationsTask task, ObjectStoreWriter osw) {
+                // run by the test's OperationRunner instead
+            }
+        };
+    }
+}
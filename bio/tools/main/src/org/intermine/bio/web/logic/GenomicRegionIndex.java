@@ -0,0 +1,462 @@
+package org.intermine.bio.web.logic;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+import org.intermine.model.bio.Chromosome;
+import org.intermine.model.bio.Location;
+import org.intermine.model.bio.Organism;
+import org.intermine.model.bio.SequenceFeature;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.query.ConstraintOp;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.ContainsConstraint;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.QueryValue;
+import org.intermine.objectstore.query.SimpleConstraint;
+
+/**
+ * An in-memory index of the chromosome locations of all the sequence features of one organism,
+ * used to answer genomic region searches without running a database query per region.
+ *
+ * The features of each chromosome are held in arrays sorted by start position, laid out as an
+ * implicit augmented interval tree: the element at index i is a node at level k, where k is the
+ * number of trailing one bits of i, and stores the largest end position in its subtree.  A
+ * search then only visits the subtrees that can hold an overlapping feature.
+ *
+ * Indexes are built on first use for each organism and shared by all searches, as the data only
+ * changes with a new release.  Only the indexes of the most recently searched organisms are kept,
+ * so that a mine with many organisms does not hold all their features in memory.
+ */
+public final class GenomicRegionIndex
+{
+    private static final Logger LOG = Logger.getLogger(GenomicRegionIndex.class);
+    private static final int BATCH_SIZE = 10000;
+    // subtrees this small are scanned rather than descended
+    private static final int SCAN_LEVEL = 3;
+
+    /** The number of organisms whose indexes are kept by default */
+    public static final int DEFAULT_CACHE_SIZE = 4;
+
+    private static int cacheSize = DEFAULT_CACHE_SIZE;
+    // in access order, so the least recently searched organism is dropped first
+    private static final Map<String, FutureTask<GenomicRegionIndex>> INDEXES =
+        new LinkedHashMap<String, FutureTask<GenomicRegionIndex>>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, FutureTask<GenomicRegionIndex>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+    private final String organism;
+    private final Map<String, Intervals> chromosomes = new HashMap<String, Intervals>();
+    private int size = 0;
+
+    /**
+     * Builds an index from rows of feature id, primaryIdentifier, symbol, class, chromosome
+     * primaryIdentifier, location start and location end - the same columns as the queries
+     * created by GenomicRegionSearchUtil.createQueryList().
+     *
+     * @param organism the short name of the organism
+     * @param rows an Iterator over the rows, each being a List
+     */
+    GenomicRegionIndex(String organism, Iterator<?> rows) {
+        this.organism = organism;
+        Map<String, IntervalsBuilder> builders = new HashMap<String, IntervalsBuilder>();
+        while (rows.hasNext()) {
+            List<?> row = (List<?>) rows.next();
+            String chr = (String) row.get(4);
+            Integer start = (Integer) row.get(5);
+            Integer end = (Integer) row.get(6);
+            if (chr == null || start == null || end == null) {
+                continue;
+            }
+            IntervalsBuilder builder = builders.get(chr);
+            if (builder == null) {
+                builder = new IntervalsBuilder();
+                builders.put(chr, builder);
+            }
+            builder.add((Integer) row.get(0), (String) row.get(1), (String) row.get(2),
+                    (Class<?>) row.get(3), Math.min(start.intValue(), end.intValue()),
+                    Math.max(start.intValue(), end.intValue()));
+            size++;
+        }
+        for (Map.Entry<String, IntervalsBuilder> entry : builders.entrySet()) {
+            chromosomes.put(entry.getKey(), new Intervals(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the index for an organism, building it if it is not in the cache.  Concurrent
+     * requests for the same organism wait for a single build.
+     *
+     * @param os the production ObjectStore
+     * @param organism the short name of the organism
+     * @return a GenomicRegionIndex
+     */
+    public static GenomicRegionIndex getIndex(final ObjectStore os, final String organism) {
+        return getIndex(organism, new Callable<GenomicRegionIndex>() {
+            public GenomicRegionIndex call() {
+                return build(os, organism);
+            }
+        });
+    }
+
+    /**
+     * Returns the index for an organism from the cache, or builds it with the given Callable.
+     *
+     * @param organism the short name of the organism
+     * @param builder builds the index if it is not in the cache
+     * @return a GenomicRegionIndex
+     */
+    static GenomicRegionIndex getIndex(String organism, Callable<GenomicRegionIndex> builder) {
+        FutureTask<GenomicRegionIndex> task;
+        boolean build = false;
+        synchronized (INDEXES) {
+            task = INDEXES.get(organism);
+            if (task == null) {
+                task = new FutureTask<GenomicRegionIndex>(builder);
+                INDEXES.put(organism, task);
+                build = true;
+            }
+        }
+        if (build) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while building region index for "
+                    + organism, e);
+        } catch (ExecutionException e) {
+            // allow a later search to try again
+            synchronized (INDEXES) {
+                if (INDEXES.get(organism) == task) {
+                    INDEXES.remove(organism);
+                }
+            }
+            throw new RuntimeException("Failed to build region index for " + organism,
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Sets the number of organisms whose indexes are kept.  When an index is built for another
+     * organism, the index of the least recently searched one is dropped.
+     *
+     * @param size a number of organisms, at least one
+     */
+    public static void setCacheSize(int size) {
+        synchronized (INDEXES) {
+            cacheSize = Math.max(1, size);
+            Iterator<String> iter = INDEXES.keySet().iterator();
+            while (INDEXES.size() > cacheSize && iter.hasNext()) {
+                iter.next();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards all the indexes, so that they are rebuilt on next use.
+     */
+    public static void clear() {
+        synchronized (INDEXES) {
+            INDEXES.clear();
+        }
+    }
+
+    private static GenomicRegionIndex build(ObjectStore os, String organism) {
+        long start = System.currentTimeMillis();
+
+        Query q = new Query();
+        q.setDistinct(true);
+
+        QueryClass qcOrg = new QueryClass(Organism.class);
+        QueryClass qcChr = new QueryClass(Chromosome.class);
+        QueryClass qcFeature = new QueryClass(SequenceFeature.class);
+        QueryClass qcLoc = new QueryClass(Location.class);
+
+        q.addFrom(qcFeature);
+        q.addFrom(qcChr);
+        q.addFrom(qcOrg);
+        q.addFrom(qcLoc);
+
+        q.addToSelect(new QueryField(qcFeature, "id"));
+        q.addToSelect(new QueryField(qcFeature, "primaryIdentifier"));
+        q.addToSelect(new QueryField(qcFeature, "symbol"));
+        q.addToSelect(new QueryField(qcFeature, "class"));
+        q.addToSelect(new QueryField(qcChr, "primaryIdentifier"));
+        q.addToSelect(new QueryField(qcLoc, "start"));
+        q.addToSelect(new QueryField(qcLoc, "end"));
+
+        ConstraintSet constraints = new ConstraintSet(ConstraintOp.AND);
+        constraints.addConstraint(new ContainsConstraint(new QueryObjectReference(qcFeature,
+                "organism"), ConstraintOp.CONTAINS, qcOrg));
+        constraints.addConstraint(new SimpleConstraint(new QueryField(qcOrg, "shortName"),
+                ConstraintOp.EQUALS, new QueryValue(organism)));
+        constraints.addConstraint(new ContainsConstraint(new QueryObjectReference(qcLoc,
+                "feature"), ConstraintOp.CONTAINS, qcFeature));
+        constraints.addConstraint(new ContainsConstraint(new QueryObjectReference(qcLoc,
+                "locatedOn"), ConstraintOp.CONTAINS, qcChr));
+        q.setConstraint(constraints);
+
+        GenomicRegionIndex retval = new GenomicRegionIndex(organism,
+                os.execute(q, BATCH_SIZE, true, false, false).iterator());
+        LOG.info("Built region index for " + organism + " with " + retval.size()
+                + " locations on " + retval.chromosomes.size() + " chromosomes in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return retval;
+    }
+
+    /**
+     * Returns the organism this index covers.
+     *
+     * @return the organism short name
+     */
+    public String getOrganism() {
+        return organism;
+    }
+
+    /**
+     * Returns the number of feature locations in the index.
+     *
+     * @return an int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the features located on a chromosome that overlap a region, in order of start
+     * position. Each row holds the feature id, primaryIdentifier, symbol, class, chromosome
+     * primaryIdentifier, start and end, as for the region queries.
+     *
+     * @param chr the primaryIdentifier of the chromosome
+     * @param start the start of the region, inclusive
+     * @param end the end of the region, inclusive
+     * @param featureTypes the feature classes to include
+     * @return a List of rows
+     */
+    public List<List<Object>> findOverlaps(String chr, int start, int end,
+            Set<Class<?>> featureTypes) {
+        Intervals intervals = chromosomes.get(chr);
+        if (intervals == null) {
+            return Collections.emptyList();
+        }
+        int[] hits = intervals.overlaps(start, end);
+        List<List<Object>> retval = new ArrayList<List<Object>>();
+        for (int i : hits) {
+            if (featureTypes.contains(intervals.classes[i])) {
+                retval.add(intervals.getRow(i));
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Collects the features of one chromosome before they are sorted into Intervals.
+     */
+    private static class IntervalsBuilder
+    {
+        private int size = 0;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private List<Integer> ids = new ArrayList<Integer>();
+        private List<String> identifiers = new ArrayList<String>();
+        private List<String> symbols = new ArrayList<String>();
+        private List<Class<?>> classes = new ArrayList<Class<?>>();
+
+        void add(Integer id, String identifier, String symbol, Class<?> clazz, int start,
+                int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            ids.add(id);
+            identifiers.add(identifier);
+            symbols.add(symbol);
+            classes.add(clazz);
+            size++;
+        }
+    }
+
+    /**
+     * The features located on one chromosome, sorted by start position, with the largest end
+     * position of each subtree of the implicit interval tree.
+     */
+    private static class Intervals
+    {
+        private final String chr;
+        private final int size;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] maxEnds;
+        private final Integer[] ids;
+        private final String[] identifiers;
+        private final String[] symbols;
+        private final Class<?>[] classes;
+        private final int maxLevel;
+
+        Intervals(String chr, IntervalsBuilder builder) {
+            this.chr = chr;
+            size = builder.size;
+            // sort by start, carrying the original position in the low bits
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (((long) builder.starts[i]) << 32) | i;
+            }
+            Arrays.sort(order);
+            starts = new int[size];
+            ends = new int[size];
+            ids = new Integer[size];
+            identifiers = new String[size];
+            symbols = new String[size];
+            classes = new Class<?>[size];
+            for (int i = 0; i < size; i++) {
+                int from = (int) (order[i] & 0xFFFFFFFFL);
+                starts[i] = builder.starts[from];
+                ends[i] = builder.ends[from];
+                ids[i] = builder.ids.get(from);
+                identifiers[i] = builder.identifiers.get(from);
+                symbols[i] = builder.symbols.get(from);
+                classes[i] = builder.classes.get(from);
+            }
+            maxEnds = new int[size];
+            maxLevel = buildTree();
+        }
+
+        /**
+         * Fills in maxEnds, level by level from the leaves up, and returns the level of the root.
+         */
+        private int buildTree() {
+            if (size == 0) {
+                return -1;
+            }
+            int lastIndex = 0;
+            int last = 0;
+            for (int i = 0; i < size; i += 2) {
+                lastIndex = i;
+                last = ends[i];
+                maxEnds[i] = ends[i];
+            }
+            int k;
+            for (k = 1; (1L << k) <= size; k++) {
+                int x = 1 << (k - 1);
+                int first = (x << 1) - 1;
+                int step = x << 2;
+                for (int i = first; i < size; i += step) {
+                    int max = Math.max(ends[i], maxEnds[i - x]);
+                    // a right child past the end of the array stands for the last subtree
+                    max = Math.max(max, i + x < size ? maxEnds[i + x] : last);
+                    maxEnds[i] = max;
+                }
+                lastIndex = ((lastIndex >> k) & 1) != 0 ? lastIndex - x : lastIndex + x;
+                if (lastIndex < size && maxEnds[lastIndex] > last) {
+                    last = maxEnds[lastIndex];
+                }
+            }
+            return k - 1;
+        }
+
+        /**
+         * Returns the indexes of the intervals that overlap [start, end], in ascending order.
+         */
+        int[] overlaps(int start, int end) {
+            int[] hits = new int[16];
+            int count = 0;
+            if (maxLevel < 0) {
+                return new int[0];
+            }
+            // each stack entry is a node index, its level and whether its left child is done
+            int[] nodes = new int[64];
+            int[] levels = new int[64];
+            boolean[] leftDone = new boolean[64];
+            int top = 0;
+            nodes[top] = (1 << maxLevel) - 1;
+            levels[top] = maxLevel;
+            leftDone[top] = false;
+            top++;
+            while (top > 0) {
+                top--;
+                int node = nodes[top];
+                int level = levels[top];
+                if (level <= SCAN_LEVEL) {
+                    int first = (node >> level) << level;
+                    int last = Math.min(first + (1 << (level + 1)) - 1, size);
+                    for (int i = first; i < last && starts[i] <= end; i++) {
+                        if (ends[i] >= start) {
+                            if (count == hits.length) {
+                                hits = Arrays.copyOf(hits, count * 2);
+                            }
+                            hits[count++] = i;
+                        }
+                    }
+                } else if (!leftDone[top]) {
+                    int left = node - (1 << (level - 1));
+                    leftDone[top] = true;
+                    top++;
+                    if (left >= size || maxEnds[left] >= start) {
+                        nodes[top] = left;
+                        levels[top] = level - 1;
+                        leftDone[top] = false;
+                        top++;
+                    }
+                } else if (node < size && starts[node] <= end) {
+                    if (ends[node] >= start) {
+                        if (count == hits.length) {
+                            hits = Arrays.copyOf(hits, count * 2);
+                        }
+                        hits[count++] = node;
+                    }
+                    nodes[top] = node + (1 << (level - 1));
+                    levels[top] = level - 1;
+                    leftDone[top] = false;
+                    top++;
+                }
+            }
+            int[] retval = Arrays.copyOf(hits, count);
+            Arrays.sort(retval);
+            return retval;
+        }
+
+        List<Object> getRow(int i) {
+            List<Object> row = new ArrayList<Object>(7);
+            row.add(ids[i]);
+            row.add(identifiers[i]);
+            row.add(symbols[i]);
+            row.add(classes[i]);
+            row.add(chr);
+            row.add(Integer.valueOf(starts[i]));
+            row.add(Integer.valueOf(ends[i]));
+            return row;
+        }
+    }
+}
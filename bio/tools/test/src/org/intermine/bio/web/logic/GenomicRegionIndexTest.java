@@ -0,0 +1,185 @@
+package org.intermine.bio.web.logic;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import junit.framework.TestCase;
+
+import org.intermine.model.bio.Exon;
+import org.intermine.model.bio.Gene;
+
+/**
+ * Tests for the GenomicRegionIndex class.
+ */
+public class GenomicRegionIndexTest extends TestCase
+{
+    private static final Set<Class<?>> GENES = Collections.<Class<?>>singleton(Gene.class);
+    private static final Set<Class<?>> ALL = new HashSet<Class<?>>(
+            Arrays.<Class<?>>asList(Gene.class, Exon.class));
+
+    public void tearDown() {
+        GenomicRegionIndex.setCacheSize(GenomicRegionIndex.DEFAULT_CACHE_SIZE);
+        GenomicRegionIndex.clear();
+    }
+
+    public void testFindOverlaps() {
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+        rows.add(row(1, Gene.class, "X", 100, 200));
+        rows.add(row(2, Exon.class, "X", 150, 160));
+        // reversed coordinates are stored with start before end
+        rows.add(row(3, Gene.class, "X", 400, 300));
+        rows.add(row(4, Gene.class, "2L", 100, 200));
+        rows.add(row(5, Gene.class, "X", null, 200));
+        GenomicRegionIndex index = new GenomicRegionIndex("org", rows.iterator());
+        assertEquals(4, index.size());
+
+        assertEquals(Arrays.asList(1, 2), ids(index.findOverlaps("X", 160, 170, ALL)));
+        assertEquals(Arrays.asList(1), ids(index.findOverlaps("X", 160, 170, GENES)));
+        // both ends of the region and of the locations are inclusive
+        assertEquals(Arrays.asList(1, 3), ids(index.findOverlaps("X", 200, 300, ALL)));
+        assertEquals(Arrays.asList(3), ids(index.findOverlaps("X", 350, 350, ALL)));
+        assertEquals(Collections.emptyList(), ids(index.findOverlaps("X", 201, 299, ALL)));
+        assertEquals(Arrays.asList(4), ids(index.findOverlaps("2L", 0, 1000, ALL)));
+        assertEquals(Collections.emptyList(), ids(index.findOverlaps("3R", 0, 1000, ALL)));
+
+        List<Object> found = index.findOverlaps("X", 300, 300, ALL).get(0);
+        assertEquals(Arrays.asList((Object) 3, "ID3", "symbol3", Gene.class, "X", 300, 400),
+                found);
+    }
+
+    public void testEmpty() {
+        GenomicRegionIndex index = new GenomicRegionIndex("org",
+                new ArrayList<List<Object>>().iterator());
+        assertEquals(0, index.size());
+        assertTrue(index.findOverlaps("X", 0, Integer.MAX_VALUE, ALL).isEmpty());
+    }
+
+    /**
+     * Checks the interval tree against a scan of all the locations, for every size of chromosome
+     * up to a few levels of the tree and for some large ones.
+     */
+    public void testAgainstBruteForce() {
+        Random random = new Random(8739L);
+        for (int size = 1; size < 300; size++) {
+            checkAgainstBruteForce(random, size, 20);
+        }
+        for (int size = 1000; size <= 20000; size *= 2) {
+            checkAgainstBruteForce(random, size, 200);
+        }
+    }
+
+    private void checkAgainstBruteForce(Random random, int size, int queries) {
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+        for (int i = 0; i < size; i++) {
+            int start = random.nextInt(100000);
+            // mostly short locations, with a few long ones to exercise the subtree maxima
+            int length = (random.nextInt(20) == 0) ? random.nextInt(50000) : random.nextInt(500);
+            Class<?> type = random.nextBoolean() ? Gene.class : Exon.class;
+            rows.add(row(i, type, "X", start, start + length));
+        }
+        GenomicRegionIndex index = new GenomicRegionIndex("org", rows.iterator());
+        for (int q = 0; q < queries; q++) {
+            int start = random.nextInt(110000);
+            int end = start + random.nextInt(3000);
+            Set<Class<?>> types = random.nextBoolean() ? GENES : ALL;
+            List<List<Object>> found = index.findOverlaps("X", start, end, types);
+
+            Set<Integer> expected = new HashSet<Integer>();
+            for (List<Object> row : rows) {
+                if (((Integer) row.get(5)).intValue() <= end
+                        && ((Integer) row.get(6)).intValue() >= start
+                        && types.contains(row.get(3))) {
+                    expected.add((Integer) row.get(0));
+                }
+            }
+            int lastStart = Integer.MIN_VALUE;
+            for (List<Object> row : found) {
+                int rowStart = ((Integer) row.get(5)).intValue();
+                assertTrue("Results are not in order of start", rowStart >= lastStart);
+                lastStart = rowStart;
+            }
+            List<Integer> foundIds = ids(found);
+            assertEquals("Duplicate results for " + size + " locations", foundIds.size(),
+                    new HashSet<Integer>(foundIds).size());
+            assertEquals("Wrong results for " + start + ".." + end + " in " + size
+                    + " locations", expected, new HashSet<Integer>(foundIds));
+        }
+    }
+
+    public void testCacheSize() {
+        final int[] builds = new int[1];
+        Callable<GenomicRegionIndex> builder = new Callable<GenomicRegionIndex>() {
+            public GenomicRegionIndex call() {
+                builds[0]++;
+                return new GenomicRegionIndex("org", new ArrayList<List<Object>>().iterator());
+            }
+        };
+        GenomicRegionIndex.setCacheSize(2);
+        GenomicRegionIndex a = GenomicRegionIndex.getIndex("A", builder);
+        GenomicRegionIndex.getIndex("B", builder);
+        assertSame(a, GenomicRegionIndex.getIndex("A", builder));
+        assertEquals(2, builds[0]);
+        // B is now the least recently used, so it is dropped
+        GenomicRegionIndex.getIndex("C", builder);
+        assertSame(a, GenomicRegionIndex.getIndex("A", builder));
+        assertEquals(3, builds[0]);
+        GenomicRegionIndex.getIndex("B", builder);
+        assertEquals(4, builds[0]);
+
+        GenomicRegionIndex.setCacheSize(1);
+        GenomicRegionIndex.getIndex("B", builder);
+        assertEquals(4, builds[0]);
+        GenomicRegionIndex.getIndex("A", builder);
+        assertEquals(5, builds[0]);
+    }
+
+    public void testFailedBuild() {
+        final int[] builds = new int[1];
+        Callable<GenomicRegionIndex> builder = new Callable<GenomicRegionIndex>() {
+            public GenomicRegionIndex call() {
+                builds[0]++;
+                if (builds[0] == 1) {
+                    throw new IllegalStateException("database unavailable");
+                }
+                return new GenomicRegionIndex("org", new ArrayList<List<Object>>().iterator());
+            }
+        };
+        try {
+            GenomicRegionIndex.getIndex("A", builder);
+            fail("Expected the build to fail");
+        } catch (RuntimeException e) {
+            assertEquals("database unavailable", e.getCause().getMessage());
+        }
+        assertNotNull(GenomicRegionIndex.getIndex("A", builder));
+        assertEquals(2, builds[0]);
+    }
+
+    private static List<Object> row(int id, Class<?> type, String chr, Integer start,
+            Integer end) {
+        return Arrays.<Object>asList(id, "ID" + id, "symbol" + id, type, chr, start, end);
+    }
+
+    private static List<Integer> ids(List<List<Object>> rows) {
+        List<Integer> retval = new ArrayList<Integer>();
+        for (List<Object> row : rows) {
+            retval.add((Integer) row.get(0));
+        }
+        return retval;
+    }
+}
@@ -130,6 +130,7 @@ public class BEDHttpExporter extends HttpExporterBase implements TableHttpExport
             } finally {
                 if (iter != null) {
                     iter.releaseGoFaster();
+                    iter.close();
                 }
             }
         } catch (Exception e) {
@@ -21,8 +21,15 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -56,13 +63,29 @@ import org.intermine.web.logic.session.SessionMethods;
  */
 public class GenomicRegionSearchQueryRunner implements Runnable
 {
-    @SuppressWarnings("unused")
     private static final Logger LOG = Logger.getLogger(GenomicRegionSearchQueryRunner.class);
+    private static final int SEARCH_THREADS = 4;
+    private static final int MAX_QUEUED_SEARCHES = 100;
+
+    // searches from all users share these threads; when the queue is full further searches are
+    // refused, rather than being run on the threads that serve web requests
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(SEARCH_THREADS,
+            SEARCH_THREADS, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(MAX_QUEUED_SEARCHES), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "GenomicRegionSearch-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            }, new ThreadPoolExecutor.AbortPolicy());
 
     private HttpServletRequest request = null;
     private String spanUUIDString = null;
     private GenomicRegionSearchConstraint grsc = null;
     private Map<GenomicRegion, Query> queryMap = null;
+    private ObjectStore os = null;
+    private boolean useIndex = true;
 
     private static Map<String, Map<String, ChromosomeInfo>> chrInfoMap = null;
 
@@ -85,8 +108,10 @@ public class GenomicRegionSearchQueryRunner implements Runnable
 
     /**
      * Main body of db search
+     *
+     * @return false if the search was refused because too many searches are waiting to run
      */
-    public void search() {
+    public boolean search() {
 
         // Use spanConstraintMap to check whether the spanUpload is duplicated, the map is saved in
         // the session
@@ -99,21 +124,42 @@ public class GenomicRegionSearchQueryRunner implements Runnable
             spanConstraintMap = new HashMap<GenomicRegionSearchConstraint, String>();
         }
 
-        if (spanConstraintMap.size() == 0) {
+        boolean newSearch = !spanConstraintMap.containsKey(grsc);
+        if (newSearch) {
             spanConstraintMap.put(grsc, spanUUIDString);
         } else {
-            if (spanConstraintMap.containsKey(grsc)) {
-                spanUUIDString = spanConstraintMap.get(grsc);
-                request.setAttribute("spanUUIDString", spanUUIDString);
-            } else {
-                spanConstraintMap.put(grsc, spanUUIDString);
-            }
+            spanUUIDString = spanConstraintMap.get(grsc);
+            request.setAttribute("spanUUIDString", spanUUIDString);
         }
 
         request.getSession().setAttribute("spanConstraintMap", spanConstraintMap);
         request.setAttribute("spanQueryTotalCount", grsc.getGenomicRegionList().size());
 
-        (new Thread(this)).start();
+        os = SessionMethods.getInterMineAPI(request.getSession()).getObjectStore();
+        Properties webProperties = SessionMethods.getWebProperties(request.getSession()
+                .getServletContext());
+        useIndex = !"false".equals(webProperties.getProperty("genomicRegionSearch.useIndex"));
+        String cacheSize = webProperties.getProperty("genomicRegionSearch.indexCacheSize");
+        if (cacheSize != null) {
+            try {
+                GenomicRegionIndex.setCacheSize(Integer.parseInt(cacheSize.trim()));
+            } catch (NumberFormatException e) {
+                LOG.error("genomicRegionSearch.indexCacheSize is not a number: " + cacheSize);
+            }
+        }
+
+        try {
+            EXECUTOR.execute(this);
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Refused a genomic region search, as " + MAX_QUEUED_SEARCHES
+                    + " searches are waiting to run");
+            if (newSearch) {
+                // so that the same search can be submitted again
+                spanConstraintMap.remove(grsc);
+            }
+            return false;
+        }
+        return true;
     }
 
     @Override
@@ -125,7 +171,6 @@ public class GenomicRegionSearchQueryRunner implements Runnable
     /**
      * The method to run all the queries.
      */
-    @SuppressWarnings("rawtypes")
     private void queryExecutor() {
 
         // Use spanOverlapFullResultMap to store the data in the session
@@ -165,61 +210,95 @@ public class GenomicRegionSearchQueryRunner implements Runnable
             spanOverlapFullStatMap.put(spanUUIDString, spanOverlapResultStatMap);
             request.getSession().setAttribute("spanOverlapFullStatMap", spanOverlapFullStatMap);
 
+            if (useIndex) {
+                try {
+                    searchIndex(spanOverlapResultDisplayMap, spanOverlapResultStatMap);
+                    return;
+                } catch (RuntimeException e) {
+                    LOG.warn("Region index search failed, falling back to queries", e);
+                    spanOverlapResultDisplayMap.clear();
+                    spanOverlapResultStatMap.clear();
+                }
+            }
             try {
-                ObjectStore os = SessionMethods.getInterMineAPI(
-                        request.getSession()).getObjectStore();
-
                 for (Entry<GenomicRegion, Query> e : queryMap.entrySet()) {
                     Results results = os.execute(e.getValue());
+                    addResults(e.getKey(), results == null ? null : results.iterator(),
+                            spanOverlapResultDisplayMap, spanOverlapResultStatMap);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-                    List<List<String>> spanResults = new ArrayList<List<String>>();
+    /**
+     * Answers all the regions of the search from the in-memory index of the organism.
+     */
+    private void searchIndex(Map<GenomicRegion, List<List<String>>> displayMap,
+            Map<GenomicRegion, Map<String, Integer>> statMap) {
+        GenomicRegionIndex index = GenomicRegionIndex.getIndex(os, grsc.getOrgName());
+        boolean extended = grsc.getExtendedRegionSize() > 0;
+        for (GenomicRegion region : queryMap.keySet()) {
+            int start = extended ? region.getExtendedStart() : region.getStart();
+            int end = extended ? region.getExtendedEnd() : region.getEnd();
+            List<List<Object>> rows = index.findOverlaps(region.getChr(), start, end,
+                    grsc.getFeatureTypes());
+            addResults(region, rows.iterator(), displayMap, statMap);
+        }
+    }
 
-                    Map<String, Integer> spanStatMap = new HashMap<String, Integer>();
-                    ValueComparator bvc =  new ValueComparator(spanStatMap);
-                    @SuppressWarnings("unchecked")
-                    TreeMap<String, Integer> sortedStatMap = new TreeMap<String, Integer>(bvc);
+    /**
+     * Converts the rows found for one region to strings, and adds them and the count of each
+     * feature class to the maps in the session.
+     */
+    @SuppressWarnings("rawtypes")
+    private void addResults(GenomicRegion region, Iterator<?> rows,
+            Map<GenomicRegion, List<List<String>>> displayMap,
+            Map<GenomicRegion, Map<String, Integer>> statMap) {
+        if (rows == null || !rows.hasNext()) {
+            displayMap.put(region, null);
+            return;
+        }
 
-                    if (results == null || results.isEmpty()) {
-                        spanOverlapResultDisplayMap.put(e.getKey(), null);
-                    }
-                    else {
-                        for (Iterator<?> iter = results.iterator(); iter.hasNext();) {
-                            ResultsRow<?> row = (ResultsRow<?>) iter.next();
-
-                            List<String> resultRow = new ArrayList<String>();
-
-                            for (Object o : row) {
-                                String item = new String();
-
-                                // NULL for symbol or PID
-                                o = o == null ? new String() : o;
-
-                                if (o instanceof Class) {
-                                    item = ((Class) o).getSimpleName();
-                                    // add class stat to spanStatMap
-                                    if (spanStatMap.containsKey(item)) {
-                                        spanStatMap.put(item, spanStatMap.get(item) + 1);
-                                    } else {
-                                        spanStatMap.put(item, 1);
-                                    }
-                                } else {
-                                    item = o.toString();
-                                }
-
-                                resultRow.add(item);
-                            }
-                            spanResults.add(resultRow);
-                        }
-                        spanOverlapResultDisplayMap.put(e.getKey(), spanResults);
+        List<List<String>> spanResults = new ArrayList<List<String>>();
 
-                        sortedStatMap.putAll(spanStatMap);
-                        spanOverlapResultStatMap.put(e.getKey(), sortedStatMap);
+        Map<String, Integer> spanStatMap = new HashMap<String, Integer>();
+        ValueComparator bvc =  new ValueComparator(spanStatMap);
+        @SuppressWarnings("unchecked")
+        TreeMap<String, Integer> sortedStatMap = new TreeMap<String, Integer>(bvc);
+
+        while (rows.hasNext()) {
+            List<?> row = (List<?>) rows.next();
+
+            List<String> resultRow = new ArrayList<String>();
+
+            for (Object o : row) {
+                String item = new String();
+
+                // NULL for symbol or PID
+                o = o == null ? new String() : o;
+
+                if (o instanceof Class) {
+                    item = ((Class) o).getSimpleName();
+                    // add class stat to spanStatMap
+                    if (spanStatMap.containsKey(item)) {
+                        spanStatMap.put(item, spanStatMap.get(item) + 1);
+                    } else {
+                        spanStatMap.put(item, 1);
                     }
+                } else {
+                    item = o.toString();
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+
+                resultRow.add(item);
             }
+            spanResults.add(resultRow);
         }
+        displayMap.put(region, spanResults);
+
+        sortedStatMap.putAll(spanStatMap);
+        statMap.put(region, sortedStatMap);
     }
 
     /**
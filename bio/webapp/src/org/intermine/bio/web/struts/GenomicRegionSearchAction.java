@@ -217,7 +217,10 @@ public class GenomicRegionSearchAction extends InterMineAction
         GenomicRegionSearchQueryRunner grsqRunner = new GenomicRegionSearchQueryRunner(
                 request, spanUUIDString, grsService.getConstraint(), queryMap);
 
-        grsqRunner.search();
+        if (!grsqRunner.search()) {
+            recordError(new ActionMessage("genomicRegionSearch.busy"), request);
+            return mapping.findForward("genomicRegionSearchOptions");
+        }
 
         // User selections
         request.setAttribute("selectionInfo", grsService.getSelectionInformation());
@@ -12,7 +12,10 @@ package org.intermine.task;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.tools.ant.BuildException;
@@ -31,7 +34,9 @@ import org.intermine.task.project.UserProperty;
  * Class that operates on the PostProcessing section of a Mines project.xml file.
  *
  * The class will iterate over the post processes in the project.xml in the order that they are
- * listed in.
+ * listed in. Each run of post processes between do-sources steps is passed to a single
+ * PostProcessOperationsTask, which runs the operations that do not conflict at the same time if
+ * the postprocess.threads property is more than one.
  *
  * If there is a do-source postprocess all the sources included in the project.xml will
  * be examined to see if they have a post process step of their own, if so, it will be called.
@@ -45,6 +50,12 @@ public class PostProcessTask extends Task
      */
     public static final String POSTPROCESSOR_CLASS = "postprocessor.class";
 
+    /**
+     * The property (from the command line or the project.xml) that sets the number of core post
+     * processes that may run at the same time.
+     */
+    public static final String POSTPROCESS_THREADS = "postprocess.threads";
+
     private Reference classPathRef;
     private File projectXml;
     private Project project;
@@ -103,22 +114,26 @@ public class PostProcessTask extends Task
 
         // Default - do it all
         if ("".equals(action)) {
+            List<String> coreNames = new ArrayList<String>();
             for (String name: project.getPostProcesses().keySet()) {
                 System.out.print(" executing post process: " + name + "\n");
 
                 if (DO_SOURCES.equals(name)) {
+                    doCorePostProcesses(coreNames);
+                    coreNames.clear();
                     doAllSourcePostProcessing();
                 } else {
-                    doCorePostProcess(name);
+                    coreNames.add(name);
                 }
             }
+            doCorePostProcesses(coreNames);
 
         // ok - do a specific task only
         } else {
             if (DO_SOURCES.equals(action)) {
                 doAllSourcePostProcessing();
             } else if (project.getPostProcesses().containsKey(action)) {
-                doCorePostProcess(action);
+                doCorePostProcesses(Collections.singletonList(action));
             } else if (project.getSources().containsKey(action)) {
                 doSourcePostProcess(action);
             } else {
@@ -127,27 +142,52 @@ public class PostProcessTask extends Task
         }
     }
 
-    private void doCorePostProcess (String postProcessName) {
-        System.err.print("Performing postprocess: " + postProcessName + "\n");
+    private void doCorePostProcesses(List<String> postProcessNames) {
+        if (postProcessNames.isEmpty()) {
+            return;
+        }
+        System.err.print("Performing postprocess: " + postProcessNames + "\n");
 
-        PostProcess p = project.getPostProcesses().get(postProcessName);
         try {
             Task pp = newPostProcessTask();
-            setProperty(pp, "operation", postProcessName);
-
-            for (UserProperty up: p.getUserProperties()) {
-                if (up.isLocation()) {
-                    pp.getProject().setUserProperty(up.getName(), up.getLocation());
-                } else {
-                    pp.getProject().setUserProperty(up.getName(), up.getValue());
+            StringBuilder operations = new StringBuilder();
+            for (String postProcessName : postProcessNames) {
+                if (operations.length() > 0) {
+                    operations.append(",");
                 }
+                operations.append(postProcessName);
+                PostProcess p = project.getPostProcesses().get(postProcessName);
+                for (UserProperty up: p.getUserProperties()) {
+                    if (up.isLocation()) {
+                        pp.getProject().setUserProperty(up.getName(), up.getLocation());
+                    } else {
+                        pp.getProject().setUserProperty(up.getName(), up.getValue());
+                    }
+                }
+            }
+            setProperty(pp, "operations", operations.toString());
+            String threads = getThreads();
+            if (threads != null) {
+                setProperty(pp, "threads", threads);
             }
 
             pp.getClass().getMethod("execute", new Class[0]).invoke(pp, new Object[0]);
         } catch (Exception err) {
             throw new BuildException("error running PostProcessTask (action: "
-                    + postProcessName + ")", err);
+                    + postProcessNames + ")", err);
+        }
+    }
+
+    private String getThreads() {
+        String threads = getProject().getProperty(POSTPROCESS_THREADS);
+        if (threads == null) {
+            for (UserProperty up : project.getProperties()) {
+                if (POSTPROCESS_THREADS.equals(up.getName())) {
+                    threads = up.getValue();
+                }
+            }
         }
+        return threads;
     }
 
     private void doAllSourcePostProcessing() {
@@ -23,6 +23,7 @@ import org.intermine.api.profile.ProfileManager;
 import org.intermine.api.profile.TagManager;
 import org.intermine.api.query.MemoryQueryStore;
 import org.intermine.api.query.PathQueryExecutor;
+import org.intermine.api.query.QueryPlanCache;
 import org.intermine.api.query.QueryStore;
 import org.intermine.api.query.WebResultsExecutor;
 import org.intermine.api.template.TemplateManager;
@@ -57,6 +58,7 @@ public class InterMineAPI
     protected LinkRedirectManager linkRedirector;
     protected FriendlyMineManager friendlyMineManager;
     protected QueryStore queryStore;
+    protected QueryPlanCache queryPlanCache = new QueryPlanCache();
 
     // query executors are cached per profile
     private final Map<Profile, WebResultsExecutor> wreCache =
@@ -176,12 +178,21 @@ public class InterMineAPI
             if (retval == null) {
                 retval = new PathQueryExecutor(objectStore, classKeys, profile,
                         bagQueryRunner, bagManager);
+                retval.setQueryPlanCache(queryPlanCache);
                 pqeCache.put(profile, retval);
             }
             return retval;
         }
     }
 
+    /**
+     * The cache of ObjectStore queries compiled from PathQueries, shared by the query executors.
+     * @return the queryPlanCache
+     */
+    public QueryPlanCache getQueryPlanCache() {
+        return queryPlanCache;
+    }
+
     /**
      * The bag-query runner is the object that performs look-up queries used when
      * constructing bags from lists of identifiers, and in path-queries when
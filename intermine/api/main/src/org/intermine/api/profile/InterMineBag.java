@@ -36,6 +36,7 @@ import org.intermine.model.userprofile.SavedBag;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.ObjectStoreWriter;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
 import org.intermine.objectstore.query.BagConstraint;
 import org.intermine.objectstore.query.Constraint;
 import org.intermine.objectstore.query.ConstraintOp;
@@ -50,6 +51,7 @@ import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.objectstore.query.SingletonResults;
+import org.intermine.util.IntBitmap;
 import org.intermine.util.TypeUtil;
 
 /**
@@ -240,12 +242,33 @@ public class InterMineBag extends StorableBag implements WebSearchable, Cloneabl
     }
 
     /**
-     * Returns a List which contains the contents of this bag as Integer IDs.
+     * Returns the contents of this bag as a compressed bitmap, if the ObjectStore can provide
+     * one.
+     *
+     * @return an IntBitmap, or null if the ObjectStore does not hold bags as bitmaps
+     */
+    private IntBitmap getBitmap() {
+        if (os instanceof ObjectStoreInterMineImpl) {
+            try {
+                return ((ObjectStoreInterMineImpl) os).getBagBitmap(osb);
+            } catch (ObjectStoreException e) {
+                throw new RuntimeException("Error reading the contents of list " + name, e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a List which contains the contents of this bag as Integer IDs, in ascending order.
      *
      * @return a List of Integers
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public List<Integer> getContentsAsIds() {
+        IntBitmap bitmap = getBitmap();
+        if (bitmap != null) {
+            return new ArrayList<Integer>(bitmap);
+        }
         Query q = new Query();
         q.addToSelect(osb);
         q.setDistinct(false);
@@ -261,6 +284,16 @@ public class InterMineBag extends StorableBag implements WebSearchable, Cloneabl
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public List<Integer> getIdsContained(Collection<Integer> ids) {
+        IntBitmap bitmap = getBitmap();
+        if (bitmap != null) {
+            IntBitmap contained = new IntBitmap();
+            for (Integer id : ids) {
+                if (bitmap.contains(id.intValue())) {
+                    contained.add(id.intValue());
+                }
+            }
+            return new ArrayList<Integer>(contained);
+        }
         Query q = new Query();
         q.setDistinct(false);
         try {
@@ -435,6 +468,9 @@ public class InterMineBag extends StorableBag implements WebSearchable, Cloneabl
 
     @Override
     public int getSize() throws ObjectStoreException {
+        if (os instanceof ObjectStoreInterMineImpl) {
+            return ((ObjectStoreInterMineImpl) os).getBagBitmap(osb).size();
+        }
         Query q = new Query();
         q.addToSelect(osb);
         q.setDistinct(false);
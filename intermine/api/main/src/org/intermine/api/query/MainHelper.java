@@ -129,6 +129,32 @@ public final class MainHelper
     public static Query makeQuery(PathQuery pathQuery, Map<String, InterMineBag> savedBags,
             Map<String, QuerySelectable> pathToQueryNode, BagQueryRunner bagQueryRunner,
             Map<String, BagQueryResult> returnBagQueryResults) throws ObjectStoreException {
+        return makeQuery(pathQuery, savedBags, pathToQueryNode, bagQueryRunner,
+                returnBagQueryResults, null);
+    }
+
+    /**
+     * Converts a PathQuery object into an ObjectStore Query object, as above, and optionally
+     * populates a Map from the code of each PathConstraint in the outermost join group of the
+     * PathQuery to the Constraint in the Query generated for it. This is used by QueryPlanCache to
+     * find the parts of a Query that depend on constraint values.
+     *
+     * @param pathQuery the PathQuery
+     * @param savedBags the current saved bags map (a Map from bag name to InterMineBag)
+     * @param pathToQueryNode optional parameter which will be populated with entries, mapping from
+     * String path in the pathQuery to objects in the result Query
+     * @param bagQueryRunner a BagQueryRunner to use to perform LOOKUPs
+     * @param returnBagQueryResults optional parameter in which any BagQueryResult objects can be
+     * returned
+     * @param codeToConstraintReturn optional parameter which will be populated with the
+     * Constraint generated for each constraint code that is not inside an outer join
+     * @return an ObjectStore Query object
+     * @throws ObjectStoreException if something goes wrong
+     */
+    static Query makeQuery(PathQuery pathQuery, Map<String, InterMineBag> savedBags,
+            Map<String, QuerySelectable> pathToQueryNode, BagQueryRunner bagQueryRunner,
+            Map<String, BagQueryResult> returnBagQueryResults,
+            Map<String, Constraint> codeToConstraintReturn) throws ObjectStoreException {
         synchronized (pathQuery) {
             List<String> problems = pathQuery.verifyQuery();
             if (!problems.isEmpty()) {
@@ -137,7 +163,7 @@ public final class MainHelper
             Query q = new Query();
             try {
                 makeQuery(q, pathQuery.getRootClass(), pathQuery, savedBags, pathToQueryNode,
-                        bagQueryRunner, returnBagQueryResults);
+                        bagQueryRunner, returnBagQueryResults, codeToConstraintReturn);
             } catch (PathException e) {
                 throw new Error("PathQuery is invalid, but was valid earlier", e);
             }
@@ -161,12 +187,14 @@ public final class MainHelper
      * @param bagQueryRunner a BagQueryRunner to use to perform LOOKUPs
      * @param returnBagQueryResults optional parameter in which any BagQueryResult objects can be
      * returned
+     * @param codeToConstraintReturn optional parameter which will be populated with the
+     * Constraint generated for each constraint code in this outer join group
      * @throws ObjectStoreException if something goes wrong
      */
     private static void makeQuery(Queryable q, String root, PathQuery pathQuery,
             Map<String, InterMineBag> savedBags, Map<String, QuerySelectable> pathToQueryNode,
-            BagQueryRunner bagQueryRunner,
-            Map<String, BagQueryResult> returnBagQueryResults) throws ObjectStoreException {
+            BagQueryRunner bagQueryRunner, Map<String, BagQueryResult> returnBagQueryResults,
+            Map<String, Constraint> codeToConstraintReturn) throws ObjectStoreException {
         Model model = pathQuery.getModel();
 
         // We need to call getQueryToExecute() first.  For template queries this gets a query that
@@ -327,7 +355,8 @@ public final class MainHelper
                                         = new QueryCollectionPathExpression(parentQc,
                                                 path.getLastElement(), path.getEndType());
                                     makeQuery(qn, stringPath, pathQuery, savedBags,
-                                            pathToQueryNode, bagQueryRunner, returnBagQueryResults);
+                                            pathToQueryNode, bagQueryRunner, returnBagQueryResults,
+                                            null);
                                     queryBits.put(stringPath, qn);
                                     pathExpressions.put(stringPath, qn);
                                 } else {
@@ -335,7 +364,7 @@ public final class MainHelper
                                         = new QueryObjectPathExpression(parentQc,
                                                 path.getLastElement(), path.getEndType());
                                     makeQuery(qn, stringPath, pathQuery, savedBags, pathToQueryNode,
-                                            bagQueryRunner, returnBagQueryResults);
+                                            bagQueryRunner, returnBagQueryResults, null);
                                     queryBits.put(stringPath, qn);
                                     pathExpressions.put(stringPath, qn);
                                 }
@@ -366,21 +395,10 @@ public final class MainHelper
                         field = new QueryField(qc, path.getLastElement());
                         queryBits.put(stringPath, field);
                     }
-                    if (constraint instanceof PathConstraintAttribute) {
-                        PathConstraintAttribute pca = (PathConstraintAttribute) constraint;
-                        Class<?> fieldType = path.getEndType();
-                        if (String.class.equals(fieldType)) {
-                            codeToConstraint.put(code, makeQueryStringConstraint(
-                                        (QueryField) field, pca));
-                        } else if (Date.class.equals(fieldType)) {
-                            codeToConstraint.put(code, makeQueryDateConstraint(
-                                        (QueryField) field, pca));
-                        } else {
-                            codeToConstraint.put(code, new SimpleConstraint((QueryField) field,
-                                        pca.getOp(), new QueryValue(TypeUtil.stringToObject(
-                                                fieldType, pca.getValue()))));
-                        }
-                    
+                    if (isValueConstraint(constraint)) {
+                        codeToConstraint.put(code, makeValueConstraint(constraint,
+                                    (QueryNode) field, path.getEndType(), savedBags,
+                                    bagQueryRunner, returnBagQueryResults));
                     } else if (constraint instanceof PathConstraintNull) {
                         // This is a null constraint. If it is on a class, then we need do nothing,
                         // as the mere presence of the constraint has caused the class to make it
@@ -439,61 +457,12 @@ public final class MainHelper
                         }
                     } else if (constraint instanceof PathConstraintSubclass) {
                         // No action needed.
-                    } else if (constraint instanceof PathConstraintBag) {
-                        PathConstraintBag pcb = (PathConstraintBag) constraint;
-                        InterMineBag bag = savedBags.get(pcb.getBag());
-                        if (bag == null) {
-                            throw new BagNotFound(pcb.getBag());
-                        }
-                        codeToConstraint.put(code, new BagConstraint((QueryNode) field, pcb.getOp(),
-                                    bag.getOsb()));
-                    } else if (constraint instanceof PathConstraintIds) {
-                        codeToConstraint.put(code, new BagConstraint(new QueryField(
-                                        (QueryClass) field, "id"), constraint.getOp(),
-                                    ((PathConstraintIds) constraint).getIds()));
                     } else if (constraint instanceof PathConstraintRange) {
                         PathConstraintRange pcr = (PathConstraintRange) constraint;
                         codeToConstraint.put(code, makeRangeConstraint(q, (QueryNode) field, pcr));
                     } else if (constraint instanceof PathConstraintMultitype) {
                         PathConstraintMultitype pcmt = (PathConstraintMultitype) constraint;
                         codeToConstraint.put(code, makeMultiTypeConstraint(pathQuery.getModel(), (QueryNode) field, pcmt));
-                    } else if (constraint instanceof PathConstraintMultiValue) {
-                        Class<?> fieldType = path.getEndType();
-                        if (String.class.equals(fieldType)) {
-                            codeToConstraint.put(code, new BagConstraint((QueryField) field,
-                                    constraint.getOp(), ((PathConstraintMultiValue) constraint)
-                                    .getValues()));
-                        } else {
-                            Collection<Object> objects = new ArrayList<Object>();
-                            for (String s : ((PathConstraintMultiValue) constraint).getValues()) {
-                                objects.add(TypeUtil.stringToObject(fieldType, s));
-                            }
-                            codeToConstraint.put(code, new BagConstraint((QueryField) field,
-                                    constraint.getOp(), objects));
-                        }
-                    } else if (constraint instanceof PathConstraintLookup) {
-                        QueryClass qc = (QueryClass) field;
-                        PathConstraintLookup pcl = (PathConstraintLookup) constraint;
-                        if (bagQueryRunner == null) {
-                            throw new NullPointerException("Cannot convert this PathQuery to an "
-                                    + "ObjectStore Query without a BagQueryRunner");
-                        }
-                        String identifiers = pcl.getValue();
-                        BagQueryResult bagQueryResult;
-                        List<String> identifierList = LOOKUP_TOKENISER.tokenise(identifiers);
-                        try {
-                            bagQueryResult = bagQueryRunner.searchForBag(qc.getType()
-                                    .getSimpleName(), identifierList, pcl.getExtraValue(), true);
-                        } catch (ClassNotFoundException e) {
-                            throw new ObjectStoreException(e);
-                        } catch (InterMineException e) {
-                            throw new ObjectStoreException(e);
-                        }
-                        codeToConstraint.put(code, new BagConstraint(new QueryField(qc, "id"),
-                                    ConstraintOp.IN, bagQueryResult.getMatchAndIssueIds()));
-                        if (returnBagQueryResults != null) {
-                            returnBagQueryResults.put(stringPath, bagQueryResult);
-                        }
                     } else {
                         throw new ObjectStoreException("Unknown constraint type "
                                 + constraint.getClass().getName());
@@ -501,6 +470,10 @@ public final class MainHelper
                 }
             }
 
+            if (codeToConstraintReturn != null) {
+                codeToConstraintReturn.putAll(codeToConstraint);
+            }
+
             // Use the constraint logic to create a ConstraintSet structure with the constraints
             // inserted into it
             createConstraintStructure(logic, andCs, codeToConstraint);
@@ -617,6 +590,99 @@ public final class MainHelper
         }
     }
 
+    /**
+     * Returns true if the Constraint generated for the given PathConstraint depends only on its
+     * value and on the node it constrains, and not on the rest of the query. These are the
+     * constraints that makeValueConstraint() handles.
+     *
+     * @param constraint a PathConstraint
+     * @return a boolean
+     */
+    static boolean isValueConstraint(PathConstraint constraint) {
+        // PathConstraintRange and PathConstraintMultitype are subclasses of
+        // PathConstraintMultiValue, but are handled differently
+        return (constraint instanceof PathConstraintAttribute)
+            || (constraint instanceof PathConstraintBag)
+            || (constraint instanceof PathConstraintIds)
+            || (constraint instanceof PathConstraintLookup)
+            || PathConstraintMultiValue.class.equals(constraint.getClass());
+    }
+
+    /**
+     * Makes the Constraint for an attribute, bag, ids, multi-value or lookup PathConstraint.
+     *
+     * @param constraint the PathConstraint
+     * @param field the QueryField or QueryClass for the path of the constraint
+     * @param fieldType the type at the end of the path of the constraint
+     * @param savedBags the current saved bags map (a Map from bag name to InterMineBag)
+     * @param bagQueryRunner a BagQueryRunner to use to perform LOOKUPs
+     * @param returnBagQueryResults optional parameter in which any BagQueryResult objects can be
+     * returned
+     * @return a Constraint
+     * @throws ObjectStoreException if a bag cannot be found or a LOOKUP fails
+     */
+    static Constraint makeValueConstraint(PathConstraint constraint, QueryNode field,
+            Class<?> fieldType, Map<String, InterMineBag> savedBags,
+            BagQueryRunner bagQueryRunner, Map<String, BagQueryResult> returnBagQueryResults)
+        throws ObjectStoreException {
+        if (constraint instanceof PathConstraintAttribute) {
+            PathConstraintAttribute pca = (PathConstraintAttribute) constraint;
+            if (String.class.equals(fieldType)) {
+                return makeQueryStringConstraint((QueryField) field, pca);
+            } else if (Date.class.equals(fieldType)) {
+                return makeQueryDateConstraint((QueryField) field, pca);
+            } else {
+                return new SimpleConstraint((QueryField) field, pca.getOp(),
+                        new QueryValue(TypeUtil.stringToObject(fieldType, pca.getValue())));
+            }
+        } else if (constraint instanceof PathConstraintBag) {
+            PathConstraintBag pcb = (PathConstraintBag) constraint;
+            InterMineBag bag = savedBags.get(pcb.getBag());
+            if (bag == null) {
+                throw new BagNotFound(pcb.getBag());
+            }
+            return new BagConstraint(field, pcb.getOp(), bag.getOsb());
+        } else if (constraint instanceof PathConstraintIds) {
+            return new BagConstraint(new QueryField((QueryClass) field, "id"),
+                    constraint.getOp(), ((PathConstraintIds) constraint).getIds());
+        } else if (constraint instanceof PathConstraintLookup) {
+            QueryClass qc = (QueryClass) field;
+            PathConstraintLookup pcl = (PathConstraintLookup) constraint;
+            if (bagQueryRunner == null) {
+                throw new NullPointerException("Cannot convert this PathQuery to an "
+                        + "ObjectStore Query without a BagQueryRunner");
+            }
+            String identifiers = pcl.getValue();
+            BagQueryResult bagQueryResult;
+            List<String> identifierList = LOOKUP_TOKENISER.tokenise(identifiers);
+            try {
+                bagQueryResult = bagQueryRunner.searchForBag(qc.getType().getSimpleName(),
+                        identifierList, pcl.getExtraValue(), true);
+            } catch (ClassNotFoundException e) {
+                throw new ObjectStoreException(e);
+            } catch (InterMineException e) {
+                throw new ObjectStoreException(e);
+            }
+            if (returnBagQueryResults != null) {
+                returnBagQueryResults.put(constraint.getPath(), bagQueryResult);
+            }
+            return new BagConstraint(new QueryField(qc, "id"), ConstraintOp.IN,
+                    bagQueryResult.getMatchAndIssueIds());
+        } else if (PathConstraintMultiValue.class.equals(constraint.getClass())) {
+            if (String.class.equals(fieldType)) {
+                return new BagConstraint(field, constraint.getOp(),
+                        ((PathConstraintMultiValue) constraint).getValues());
+            } else {
+                Collection<Object> objects = new ArrayList<Object>();
+                for (String s : ((PathConstraintMultiValue) constraint).getValues()) {
+                    objects.add(TypeUtil.stringToObject(fieldType, s));
+                }
+                return new BagConstraint(field, constraint.getOp(), objects);
+            }
+        }
+        throw new IllegalArgumentException("Not a value constraint: " + constraint);
+    }
+
     /**
      * Construct a new multi-type constraint. 
      * @param model The model to look for types within.
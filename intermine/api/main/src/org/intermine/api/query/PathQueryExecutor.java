@@ -30,6 +30,7 @@ import org.intermine.metadata.FieldDescriptor;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.intermine.StreamingResults;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QuerySelectable;
 import org.intermine.objectstore.query.Results;
@@ -48,6 +49,7 @@ public class PathQueryExecutor extends QueryExecutor
     public static final int DEFAULT_BATCH_SIZE = 5000;
     private static final long MAX_WAIT_TIME = 2000;
     private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean streaming = false;
 
     /**
      * Sets batch size.
@@ -58,6 +60,18 @@ public class PathQueryExecutor extends QueryExecutor
         this.batchSize = size;
     }
 
+    /**
+     * Sets whether ranges of results that span more than one batch should be read through a
+     * database cursor rather than in batches, which is much cheaper for large exports. Smaller
+     * results are still read in batches, and the ObjectStore falls back to batches if it cannot
+     * stream.
+     *
+     * @param streaming true to stream large results
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     /**
      * Constructor with necessary objects.
      *
@@ -94,6 +108,11 @@ public class PathQueryExecutor extends QueryExecutor
             Map<String, BagQueryResult> returnBagQueryResults = new HashMap<String, BagQueryResult>();
 
             Query q = makeQuery(pathQuery, returnBagQueryResults, pathToQueryNode);
+            if (streaming && (os instanceof ObjectStoreInterMineImpl)) {
+                StreamingResults stream = ((ObjectStoreInterMineImpl) os).executeStreaming(q, 0,
+                        Integer.MAX_VALUE, batchSize, true);
+                return new ExportResultsIterator(pathQuery, q, stream, pathToQueryNode);
+            }
             Results results = os.execute(q, batchSize, true, true, false);
 
             //Query realQ = results.getQuery();
@@ -127,6 +146,11 @@ public class PathQueryExecutor extends QueryExecutor
             Map<String, BagQueryResult> returnBagQueryResults = new HashMap<String, BagQueryResult>();
 
             Query q = makeQuery(pathQuery, returnBagQueryResults, pathToQueryNode);
+            if (streaming && (os instanceof ObjectStoreInterMineImpl) && (limit > batchSize)) {
+                StreamingResults stream = ((ObjectStoreInterMineImpl) os).executeStreaming(q,
+                        start, limit, batchSize, true);
+                return new ResultIterator(pathQuery, q, stream, pathToQueryNode, start, limit);
+            }
             Results results = os.execute(q, batchSize, true, true, false);
 
             /* 
@@ -156,8 +180,7 @@ public class PathQueryExecutor extends QueryExecutor
 
         Map<String, InterMineBag> allBags = bagManager.getCurrentBags(profile);
 
-        Query q = MainHelper.makeQuery(pathQuery, allBags, pathToQueryNode, bagQueryRunner,
-                pathToBagQueryResult);
+        Query q = compileQuery(pathQuery, allBags, pathToQueryNode, pathToBagQueryResult);
         return q;
     }
     
@@ -282,6 +305,30 @@ class ResultIterator extends ExportResultsIterator
         this.start = start;
     }
 
+    /**
+     * Constructor for a ResultIterator that reads from streaming results, which already start at
+     * the first row of the range. The stream is closed as soon as the last row of the range has
+     * been read.
+     *
+     * @param pathQuery a PathQuery to run.
+     * @param q The object-store query this path-query corresponds to.
+     * @param stream the streaming results created when executing the query
+     * @param pathToQueryNode a map from path in pathQuery to QuerySelectable in the generated
+     * ObjectStore query
+     * @param start the first row of results to be returned
+     * @param limit the number of result rows to return
+     * @throws ObjectStoreException if something goes wrong executing the query
+     */
+    public ResultIterator(PathQuery pathQuery, Query q, StreamingResults stream,
+            Map<String, QuerySelectable> pathToQueryNode, int start, int limit)
+        throws ObjectStoreException {
+        super(pathQuery, q, stream, pathToQueryNode);
+        this.limit = limit;
+        this.start = start;
+        // the rows before start were skipped by the ObjectStore
+        this.counter = start;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -297,6 +344,7 @@ class ResultIterator extends ExportResultsIterator
         }
 
         if (counter >= (limit + start)) {
+            close();
             return false;
         } else {
             return super.hasNext();
@@ -17,6 +17,7 @@ import java.util.WeakHashMap;
 
 import org.apache.log4j.Logger;
 import org.intermine.api.bag.BagManager;
+import org.intermine.api.bag.BagQueryResult;
 import org.intermine.api.bag.BagQueryRunner;
 import org.intermine.api.profile.InterMineBag;
 import org.intermine.api.profile.Profile;
@@ -58,6 +59,40 @@ public abstract class QueryExecutor
     protected BagManager bagManager;
     protected BagQueryRunner bagQueryRunner;
     protected ObjectStore os;
+    protected QueryPlanCache queryPlanCache = null;
+
+    /**
+     * Sets the cache of compiled queries to use when converting PathQueries to ObjectStore
+     * Queries. If none is set, every PathQuery is converted by MainHelper.
+     *
+     * @param queryPlanCache a QueryPlanCache, or null
+     */
+    public void setQueryPlanCache(QueryPlanCache queryPlanCache) {
+        this.queryPlanCache = queryPlanCache;
+    }
+
+    /**
+     * Converts a PathQuery to an ObjectStore Query, using the QueryPlanCache if there is one.
+     *
+     * @param pathQuery the PathQuery
+     * @param savedBags the current saved bags map (a Map from bag name to InterMineBag)
+     * @param pathToQueryNode optional parameter which will be populated with entries, mapping from
+     * String path in the pathQuery to objects in the result Query
+     * @param returnBagQueryResults optional parameter in which any BagQueryResult objects can be
+     * returned
+     * @return an ObjectStore Query object
+     * @throws ObjectStoreException if something goes wrong
+     */
+    protected Query compileQuery(PathQuery pathQuery, Map<String, InterMineBag> savedBags,
+            Map<String, QuerySelectable> pathToQueryNode,
+            Map<String, BagQueryResult> returnBagQueryResults) throws ObjectStoreException {
+        if (queryPlanCache == null) {
+            return MainHelper.makeQuery(pathQuery, savedBags, pathToQueryNode, bagQueryRunner,
+                    returnBagQueryResults);
+        }
+        return queryPlanCache.makeQuery(pathQuery, savedBags, pathToQueryNode, bagQueryRunner,
+                returnBagQueryResults);
+    }
 
 
     /**
@@ -0,0 +1,368 @@
+package org.intermine.api.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+import org.intermine.api.bag.BagQueryResult;
+import org.intermine.api.bag.BagQueryRunner;
+import org.intermine.api.profile.InterMineBag;
+import org.intermine.api.util.LimitedMap;
+import org.intermine.metadata.Model;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Constraint;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.FromElement;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryNode;
+import org.intermine.objectstore.query.QueryOrderable;
+import org.intermine.objectstore.query.QuerySelectable;
+import org.intermine.pathquery.OuterJoinStatus;
+import org.intermine.pathquery.PathConstraint;
+import org.intermine.pathquery.PathException;
+import org.intermine.pathquery.PathQuery;
+
+/**
+ * A cache of ObjectStore Queries compiled from PathQueries, so that a PathQuery that differs from
+ * one seen before only in the values of its constraints does not have to go through
+ * MainHelper.makeQuery() again. Templates run many times with different identifiers are the main
+ * beneficiaries.
+ *
+ * PathQueries are keyed on their shape, which is everything that MainHelper uses to build the
+ * Query apart from the values of attribute, multi-value, bag, ids and LOOKUP constraints. Those
+ * constraints are slots: when a cached shape is reused, the Constraint for each slot is made
+ * again from the new value, and a new Query is built from the cached one with those Constraints
+ * swapped in. The Query shares its QueryClasses and QueryFields with the cached Query, so the
+ * cached pathToQueryNode map is valid for it too. Because bags and LOOKUPs are resolved again
+ * every time, changes to lists never leave a stale plan in the cache. The cache is cleared if it
+ * is used with a different model.
+ *
+ * Only slots in the outermost join group of a query can be swapped. Queries with value
+ * constraints inside outer joins are compiled every time.
+ */
+public class QueryPlanCache
+{
+    private static final Logger LOG = Logger.getLogger(QueryPlanCache.class);
+    /** The default number of query shapes to cache */
+    public static final int DEFAULT_SIZE = 1000;
+    private static final int LOG_INTERVAL = 10000;
+
+    private final Map<String, Plan> plans;
+    private Model model = null;
+    private long hits = 0;
+    private long misses = 0;
+    private long uncacheable = 0;
+
+    /**
+     * Constructs a QueryPlanCache holding the default number of query shapes.
+     */
+    public QueryPlanCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructs a QueryPlanCache.
+     *
+     * @param size the maximum number of query shapes to hold
+     */
+    public QueryPlanCache(int size) {
+        plans = new LimitedMap<String, Plan>(size);
+    }
+
+    /**
+     * Converts a PathQuery into an ObjectStore Query, in the same way as MainHelper.makeQuery(),
+     * reusing the compiled Query for a PathQuery of the same shape if there is one.
+     *
+     * @param pathQuery the PathQuery
+     * @param savedBags the current saved bags map (a Map from bag name to InterMineBag)
+     * @param pathToQueryNode optional parameter which will be populated with entries, mapping from
+     * String path in the pathQuery to objects in the result Query
+     * @param bagQueryRunner a BagQueryRunner to use to perform LOOKUPs
+     * @param returnBagQueryResults optional parameter in which any BagQueryResult objects can be
+     * returned
+     * @return an ObjectStore Query object
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public Query makeQuery(PathQuery pathQuery, Map<String, InterMineBag> savedBags,
+            Map<String, QuerySelectable> pathToQueryNode, BagQueryRunner bagQueryRunner,
+            Map<String, BagQueryResult> returnBagQueryResults) throws ObjectStoreException {
+        String key;
+        PathQuery queryToExecute;
+        synchronized (pathQuery) {
+            List<String> problems = pathQuery.verifyQuery();
+            if (!problems.isEmpty()) {
+                throw new ObjectStoreException("PathQuery is invalid: " + problems);
+            }
+            queryToExecute = pathQuery.getQueryToExecute();
+            key = getShape(queryToExecute);
+        }
+        Plan plan;
+        synchronized (this) {
+            if (model != pathQuery.getModel()) {
+                if (model != null) {
+                    LOG.info("Clearing query plan cache for new model "
+                            + pathQuery.getModel().getName());
+                }
+                plans.clear();
+                model = pathQuery.getModel();
+            }
+            plan = plans.get(key);
+            if (plan == null) {
+                misses++;
+            } else if (plan.template == null) {
+                uncacheable++;
+            } else {
+                hits++;
+            }
+            if ((hits + misses + uncacheable) % LOG_INTERVAL == 0) {
+                LOG.info(this);
+            }
+        }
+        if ((plan != null) && (plan.template != null)) {
+            Map<Constraint, Constraint> substitutions = new IdentityHashMap<Constraint,
+                Constraint>();
+            for (Map.Entry<PathConstraint, String> entry
+                    : queryToExecute.getConstraints().entrySet()) {
+                Constraint old = plan.slots.get(entry.getValue());
+                if (old != null) {
+                    PathConstraint constraint = entry.getKey();
+                    substitutions.put(old, MainHelper.makeValueConstraint(constraint,
+                                (QueryNode) plan.pathToQueryNode.get(constraint.getPath()),
+                                plan.slotTypes.get(entry.getValue()), savedBags, bagQueryRunner,
+                                returnBagQueryResults));
+                }
+            }
+            if (pathToQueryNode != null) {
+                pathToQueryNode.putAll(plan.pathToQueryNode);
+            }
+            return copy(plan.template, substitutions);
+        }
+
+        Map<String, QuerySelectable> compiledPathToQueryNode
+            = new HashMap<String, QuerySelectable>();
+        Map<String, Constraint> codeToConstraint = new HashMap<String, Constraint>();
+        Query q = MainHelper.makeQuery(pathQuery, savedBags, compiledPathToQueryNode,
+                bagQueryRunner, returnBagQueryResults, codeToConstraint);
+        if (pathToQueryNode != null) {
+            pathToQueryNode.putAll(compiledPathToQueryNode);
+        }
+        if (plan == null) {
+            plan = makePlan(queryToExecute, q, compiledPathToQueryNode, codeToConstraint);
+            synchronized (this) {
+                plans.put(key, plan);
+            }
+        }
+        return q;
+    }
+
+    /**
+     * Makes a Plan from a newly compiled Query, or an empty Plan if the Query cannot be reused.
+     */
+    private Plan makePlan(PathQuery queryToExecute, Query q,
+            Map<String, QuerySelectable> pathToQueryNode, Map<String, Constraint> codeToConstraint) {
+        Plan plan = new Plan();
+        Map<Constraint, Constraint> slotConstraints = new IdentityHashMap<Constraint,
+            Constraint>();
+        try {
+            for (Map.Entry<PathConstraint, String> entry
+                    : queryToExecute.getConstraints().entrySet()) {
+                PathConstraint constraint = entry.getKey();
+                if (MainHelper.isValueConstraint(constraint)) {
+                    Constraint c = codeToConstraint.get(entry.getValue());
+                    if ((c == null) || (!(pathToQueryNode.get(constraint.getPath())
+                                    instanceof QueryNode))) {
+                        // Inside an outer join
+                        return plan;
+                    }
+                    plan.slots.put(entry.getValue(), c);
+                    plan.slotTypes.put(entry.getValue(), queryToExecute.makePath(
+                                constraint.getPath()).getEndType());
+                    slotConstraints.put(c, c);
+                }
+            }
+        } catch (PathException e) {
+            LOG.warn("Not caching query with invalid path: " + queryToExecute, e);
+            return plan;
+        }
+        if (countSlots(q.getConstraint(), slotConstraints) != slotConstraints.size()) {
+            // A slot has been merged into another constraint, or appears more than once
+            return plan;
+        }
+        plan.pathToQueryNode = pathToQueryNode;
+        // slots are kept as they are, rather than copied, so they can be found for substitution
+        plan.template = copy(q, slotConstraints);
+        return plan;
+    }
+
+    private static int countSlots(Constraint c, Map<Constraint, Constraint> slotConstraints) {
+        if (slotConstraints.containsKey(c)) {
+            return 1;
+        } else if (c instanceof ConstraintSet) {
+            int count = 0;
+            for (Constraint child : ((ConstraintSet) c).getConstraints()) {
+                count += countSlots(child, slotConstraints);
+            }
+            return count;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a new Query with the same FROM, SELECT and ORDER BY elements as the given Query, and
+     * its constraints apart from those that have substitutes. ConstraintSets are copied, so
+     * neither Query is affected by changes to the other.
+     */
+    private static Query copy(Query template, Map<Constraint, Constraint> substitutions) {
+        Query q = new Query();
+        for (Map.Entry<Object, String> alias : template.getAliases().entrySet()) {
+            q.alias(alias.getKey(), alias.getValue());
+        }
+        for (FromElement from : template.getFrom()) {
+            q.addFrom(from, template.getAliases().get(from));
+        }
+        for (QuerySelectable select : template.getSelect()) {
+            q.addToSelect(select, template.getAliases().get(select));
+        }
+        for (QueryOrderable order : template.getOrderBy()) {
+            q.addToOrderBy(order);
+        }
+        for (QueryNode group : template.getGroupBy()) {
+            q.addToGroupBy(group);
+        }
+        q.setDistinct(template.isDistinct());
+        q.setLimit(template.getLimit());
+        if (template.getConstraint() != null) {
+            q.setConstraint(copy(template.getConstraint(), substitutions));
+        }
+        return q;
+    }
+
+    private static Constraint copy(Constraint c, Map<Constraint, Constraint> substitutions) {
+        Constraint substitute = substitutions.get(c);
+        if (substitute != null) {
+            return substitute;
+        } else if (c instanceof ConstraintSet) {
+            ConstraintSet retval = new ConstraintSet(c.getOp());
+            for (Constraint child : ((ConstraintSet) c).getConstraints()) {
+                retval.addConstraint(copy(child, substitutions));
+            }
+            return retval;
+        }
+        return c;
+    }
+
+    /**
+     * Returns a String that is the same for two PathQueries if they differ only in the values of
+     * their slots.
+     */
+    private static String getShape(PathQuery pathQuery) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("view: ").append(pathQuery.getView())
+            .append(", orderBy: ").append(pathQuery.getOrderBy())
+            .append(", logic: ").append(pathQuery.getConstraintLogic())
+            .append(", outer: ");
+        TreeSet<String> outer = new TreeSet<String>();
+        for (Map.Entry<String, OuterJoinStatus> entry
+                : pathQuery.getOuterJoinStatus().entrySet()) {
+            if (OuterJoinStatus.OUTER.equals(entry.getValue())) {
+                outer.add(entry.getKey());
+            }
+        }
+        sb.append(outer).append(", constraints: [");
+        for (Map.Entry<PathConstraint, String> entry : pathQuery.getConstraints().entrySet()) {
+            PathConstraint constraint = entry.getKey();
+            sb.append(entry.getValue()).append(": ");
+            if (MainHelper.isValueConstraint(constraint)) {
+                sb.append(constraint.getClass().getSimpleName()).append("(")
+                    .append(constraint.getPath()).append(" ").append(constraint.getOp())
+                    .append(")");
+            } else {
+                sb.append(constraint.getClass().getSimpleName()).append("(").append(constraint)
+                    .append(")");
+            }
+            sb.append("; ");
+        }
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Removes all cached query shapes.
+     */
+    public synchronized void clear() {
+        plans.clear();
+    }
+
+    /**
+     * Returns the number of PathQueries that have been converted using a cached Query.
+     *
+     * @return a long
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of PathQueries that have been converted by MainHelper because no
+     * PathQuery of the same shape was in the cache.
+     *
+     * @return a long
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of PathQueries that have been converted by MainHelper because queries of
+     * their shape cannot be cached.
+     *
+     * @return a long
+     */
+    public synchronized long getUncacheable() {
+        return uncacheable;
+    }
+
+    /**
+     * Returns the number of query shapes in the cache.
+     *
+     * @return an int
+     */
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses + uncacheable;
+        return "QueryPlanCache: " + plans.size() + " shapes, " + hits + " hits, " + misses
+            + " misses, " + uncacheable + " uncacheable" + (total == 0 ? ""
+                    : " (" + (hits * 100 / total) + "% hit rate)");
+    }
+
+    /**
+     * A compiled query shape. If template is null, queries of this shape cannot be cached.
+     */
+    private static class Plan
+    {
+        private Query template = null;
+        private Map<String, QuerySelectable> pathToQueryNode = null;
+        private final Map<String, Constraint> slots = new LinkedHashMap<String, Constraint>();
+        private final Map<String, Class<?>> slotTypes = new HashMap<String, Class<?>>();
+    }
+}
@@ -63,6 +63,7 @@ public class WebResultsExecutor extends QueryExecutor
         this.im = im;
         bagManager = im.getBagManager();
         this.summaryBatchSize = Constants.BATCH_SIZE;
+        this.queryPlanCache = im.getQueryPlanCache();
     }
 
     /**
@@ -162,8 +163,7 @@ public class WebResultsExecutor extends QueryExecutor
 
         Map<String, InterMineBag> allBags = bagManager.getBags(profile);
 
-        Query q = MainHelper.makeQuery(pathQuery, allBags, pathToQueryNode, bagQueryRunner,
-                pathToBagQueryResult);
+        Query q = compileQuery(pathQuery, allBags, pathToQueryNode, pathToBagQueryResult);
         return q;
     }
 
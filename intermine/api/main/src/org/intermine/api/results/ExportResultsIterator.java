@@ -22,6 +22,7 @@ import org.intermine.api.query.QueryExecutor;
 import org.intermine.model.FastPathObject;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.intermine.StreamingResults;
 import org.intermine.objectstore.query.PathExpressionField;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryCollectionPathExpression;
@@ -42,7 +43,7 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
 {
     private static final Logger LOG = Logger.getLogger(ExportResultsIterator.class);
 
-    private Iterator<List> osIter;
+    private Iterator<? extends List<?>> osIter;
     protected Iterator<List<ResultElement>> subIter;
     // This object contains a description of the collections in the input.
     private List columns;
@@ -50,6 +51,7 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     private final Query query;
     private int columnCount;
     protected final Results results;
+    private final StreamingResults stream;
     private boolean isGoingFaster = false;
     protected final PathQuery originatingQuery;
 
@@ -66,6 +68,29 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     public ExportResultsIterator(PathQuery pathQuery, Query q, Results results,
             Map<String, QuerySelectable> pathToQueryNode) throws ObjectStoreException {
         this.results = results;
+        this.stream = null;
+        this.originatingQuery = pathQuery;
+        this.query = q;
+        init(pathQuery, pathToQueryNode);
+    }
+
+    /**
+     * Constructor for ExportResultsIterator that reads the rows from streaming results rather
+     * than from a Results object. The goFaster methods have no effect if the rows are read through
+     * a cursor, as the query is then only run once, and close() should be called if the iterator
+     * is not read to the end.
+     *
+     * @param pathQuery a PathQuery to run
+     * @param q the ObjectStore query the PathQuery corresponds to
+     * @param stream the streaming results created when executing the query
+     * @param pathToQueryNode a map from path in pathQuery to QuerySelectable in the generated
+     * ObjectStore query
+     * @throws ObjectStoreException if something goes wrong executing the query
+     */
+    public ExportResultsIterator(PathQuery pathQuery, Query q, StreamingResults stream,
+            Map<String, QuerySelectable> pathToQueryNode) throws ObjectStoreException {
+        this.results = null;
+        this.stream = stream;
         this.originatingQuery = pathQuery;
         this.query = q;
         init(pathQuery, pathToQueryNode);
@@ -80,8 +105,12 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
     }
 
     private void init(PathQuery pq, Map<String, QuerySelectable> pathToQueryNode) {
-        osIter = ((List) results).iterator();
-      
+        if (stream != null) {
+            osIter = stream;
+        } else {
+            osIter = ((List) results).iterator();
+        }
+
         List<List<ResultElement>> empty = Collections.emptyList();
         subIter = empty.iterator();
         for (String pathString : pq.getView()) {
@@ -135,9 +164,10 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
      * @throws RuntimeException if something goes wrong
      */
     public void goFaster()  {
+        Results batched = getBatchedResults();
         try {
-            if ((!results.isSingleBatch()) && (!isGoingFaster)) {
-                ((ObjectStoreInterMineImpl) results.getObjectStore()).goFaster(results.getQuery());
+            if ((batched != null) && (!batched.isSingleBatch()) && (!isGoingFaster)) {
+                ((ObjectStoreInterMineImpl) batched.getObjectStore()).goFaster(batched.getQuery());
                 isGoingFaster = true;
             }
         } catch (ObjectStoreException ex) {
@@ -151,9 +181,10 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
      * @throws RuntimeException if something goes wrong
      */
     public void releaseGoFaster() {
+        Results batched = getBatchedResults();
         try {
             if (isGoingFaster) {
-                ((ObjectStoreInterMineImpl) results.getObjectStore()).releaseGoFaster(results
+                ((ObjectStoreInterMineImpl) batched.getObjectStore()).releaseGoFaster(batched
                         .getQuery());
             }
         } catch (ObjectStoreException ex) {
@@ -161,6 +192,20 @@ public class ExportResultsIterator implements Iterator<List<ResultElement>>
         }
     }
 
+    private Results getBatchedResults() {
+        return (stream == null) ? results : stream.getResults();
+    }
+
+    /**
+     * Releases the database cursor behind this iterator, if it reads from streaming results that
+     * have not been read to the end. Does nothing otherwise.
+     */
+    public void close() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
     /** Analyses the select list to predict what the structure of the results will be. It produces
      *  a list with a disjoint type of element.
      *  
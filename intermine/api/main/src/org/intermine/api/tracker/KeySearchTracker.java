@@ -24,10 +24,15 @@ import org.intermine.api.tracker.track.KeySearchTrack;
 import org.intermine.api.tracker.track.Track;
 import org.intermine.api.tracker.util.TrackerUtil;
 
+/**
+ * Class for tracking the keyword searches. The number of searches for each keyword is kept in
+ * memory as well as in the database, so it can be returned without querying the database.
+ */
 public class KeySearchTracker extends TrackerAbstract
 {
     private static final Logger LOG = Logger.getLogger(KeySearchTracker.class);
     private static KeySearchTracker searchTracker = null;
+    private Map<String, Integer> keywordSearches = new HashMap<String, Integer>();
 
     /**
         * Build a search tracker
@@ -53,6 +58,7 @@ public class KeySearchTracker extends TrackerAbstract
             } catch (Exception e) {
                 LOG.error("Error creating the table associated to the ListTracker" + e);
             }
+            searchTracker.loadKeywordSearches(con);
         } else {
             searchTracker.setTrackQueue(trackQueue);
         }
@@ -77,7 +83,12 @@ public class KeySearchTracker extends TrackerAbstract
         KeySearchTrack searchTrack = new KeySearchTrack(keyword, userName, sessionIdentifier,
                                                        new Timestamp(System.currentTimeMillis()));
         if (searchTrack  != null) {
-            searchTracker.storeTrack(searchTrack);
+            if (searchTracker.storeTrack(searchTrack)) {
+                synchronized (keywordSearches) {
+                    Integer count = keywordSearches.get(keyword);
+                    keywordSearches.put(keyword, (count == null) ? 1 : count.intValue() + 1);
+                }
+            }
         } else {
             LOG.warn("Keyword search not tracked. Check if the KeySearchTrack has been configured");
         }
@@ -85,29 +96,37 @@ public class KeySearchTracker extends TrackerAbstract
 
     /**
      * Return the number of search for each keyword
-     * @param con the connection
      * @return map with key the keyword and the number of searches for that keyword
      */
-    protected Map<String, Integer> getKeywordSearches(Connection con) {
+    protected Map<String, Integer> getKeywordSearches() {
+        synchronized (keywordSearches) {
+            return new HashMap<String, Integer>(keywordSearches);
+        }
+    }
+
+    /**
+     * Load the number of searches for each keyword from the database
+     * @param con the connection
+     */
+    private void loadKeywordSearches(Connection con) {
         ResultSet rs = null;
         Statement stm = null;
-        Map<String, Integer> keywordSearches = new HashMap<String, Integer>();
         try {
             stm = con.createStatement();
             String sql = "SELECT keyword, COUNT(keyword) as searchnumbers "
                         + "FROM searchtrack "
                         + "GROUP BY keyword";
             rs = stm.executeQuery(sql);
-            while (rs.next()) {
-                keywordSearches.put(rs.getString(1), rs.getInt(2));
+            synchronized (keywordSearches) {
+                while (rs.next()) {
+                    keywordSearches.put(rs.getString(1), rs.getInt(2));
+                }
             }
-            return keywordSearches;
         } catch (SQLException sqle) {
-            LOG.error("Error in getKeywordSearches method: ", sqle);
+            LOG.error("Error loading the keyword searches: ", sqle);
         } finally {
             releaseResources(rs, stm);
         }
-        return null;
     }
 
 }
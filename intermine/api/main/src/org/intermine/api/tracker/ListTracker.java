@@ -15,7 +15,10 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 import org.apache.log4j.Logger;
@@ -26,10 +29,17 @@ import org.intermine.api.tracker.util.ListBuildMode;
 import org.intermine.api.tracker.util.ListTrackerEvent;
 import org.intermine.api.tracker.util.TrackerUtil;
 
+/**
+ * Class for tracking the creation and execution of lists. The number of creations and executions
+ * for each type of list is kept in memory as well as in the database, so it can be returned
+ * without querying the database.
+ */
 public class ListTracker extends TrackerAbstract
 {
     private static final Logger LOG = Logger.getLogger(ListTracker.class);
     private static ListTracker listTracker = null;
+    private Map<ListTrackerEvent, Map<String, Integer>> listCounts =
+        new EnumMap<ListTrackerEvent, Map<String, Integer>>(ListTrackerEvent.class);
 
     /**
      * Build a list tracker
@@ -52,6 +62,7 @@ public class ListTracker extends TrackerAbstract
             } catch (Exception e) {
                 LOG.error("Error creating the table associated to the ListTracker" + e);
             }
+            listTracker.loadListCounts(con);
         } else {
             listTracker.setTrackQueue(trackQueue);
         }
@@ -84,7 +95,9 @@ public class ListTracker extends TrackerAbstract
                                            userName, sessionIdentifier,
                                            new Timestamp(System.currentTimeMillis()));
         if (listTracker  != null) {
-            listTracker.storeTrack(listTrack);
+            if (listTracker.storeTrack(listTrack)) {
+                addListCount(event, type, 1);
+            }
         } else {
             LOG.warn("List not tracked. Check if the ListTracker has been configured");
         }
@@ -117,6 +130,55 @@ public class ListTracker extends TrackerAbstract
         return null;
     }
 
+    /**
+     * Return the number of lists created or executed for each type of list
+     * @param event the type of event (creation or execution)
+     * @return map with key the type of list and value the number of events
+     */
+    protected Map<String, Integer> getListCounts(ListTrackerEvent event) {
+        synchronized (listCounts) {
+            Map<String, Integer> counts = listCounts.get(event);
+            return (counts == null) ? new HashMap<String, Integer>()
+                                    : new HashMap<String, Integer>(counts);
+        }
+    }
+
+    private void addListCount(ListTrackerEvent event, String type, int count) {
+        if (event == null) {
+            return;
+        }
+        synchronized (listCounts) {
+            Map<String, Integer> counts = listCounts.get(event);
+            if (counts == null) {
+                counts = new HashMap<String, Integer>();
+                listCounts.put(event, counts);
+            }
+            Integer previous = counts.get(type);
+            counts.put(type, (previous == null) ? count : previous.intValue() + count);
+        }
+    }
+
+    /**
+     * Load the number of lists created and executed for each type of list from the database
+     * @param con the connection
+     */
+    private void loadListCounts(Connection con) {
+        ResultSet rs = null;
+        Statement stm = null;
+        try {
+            stm = con.createStatement();
+            String sql = "SELECT type, event, COUNT(*) FROM listtrack GROUP BY type, event";
+            rs = stm.executeQuery(sql);
+            while (rs.next()) {
+                addListCount(getListEvent(rs.getString(2)), rs.getString(1), rs.getInt(3));
+            }
+        } catch (SQLException sqle) {
+            LOG.error("Error loading the list counts: ", sqle);
+        } finally {
+            releaseResources(rs, stm);
+        }
+    }
+
     private ListBuildMode getBuildMode(String buildMode) {
         if ("QUERY".equals(buildMode)) {
             return ListBuildMode.QUERY;
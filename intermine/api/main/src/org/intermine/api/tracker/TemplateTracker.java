@@ -113,8 +113,9 @@ public class TemplateTracker extends TrackerAbstract
         TemplateTrack templateTrack = new TemplateTrack(templateName,
                                       userName, sessionIdentifier, new Timestamp(System.currentTimeMillis()));
         if (templateTracker  != null) {
-            templateTracker.storeTrack(templateTrack);
-            templatesExecutionCache.addExecution(templateTrack);
+            if (templateTracker.storeTrack(templateTrack)) {
+                templatesExecutionCache.addExecution(templateTrack);
+            }
         } else {
             LOG.warn("Template not tracked. Check if the TemplateTracker has been configured");
         }
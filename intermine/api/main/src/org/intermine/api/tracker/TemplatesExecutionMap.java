@@ -10,7 +10,9 @@ package org.intermine.api.tracker;
  *
  */
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.intermine.api.tracker.track.TemplateTrack;
 import org.intermine.api.template.ApiTemplate;
@@ -19,19 +21,23 @@ import org.intermine.api.template.TemplateManager;
 /**
  * Class for saving the template executions into the memory. The template executions are saved into
  * an Map containing as a value an hashmap having as a key the user's name (or the session
- * identifier) and as a value the number of executions for that user's name (or session identifier)
+ * identifier) and as a value the number of executions for that user's name (or session identifier).
+ * The sums of logarithms used to rank the templates are kept between calls, and only the sums
+ * of the templates executed since the last call are worked out again.
  * @author dbutano
  */
 public class TemplatesExecutionMap
 {
     protected Map<String, Map<String, Integer>> templateExecutions =
                                               new HashMap<String, Map<String, Integer>>();
+    protected Map<String, Double> logarithmSums = new HashMap<String, Double>();
+    protected Set<String> changedTemplates = new HashSet<String>();
 
     /**
      * Add a new template track into the map
      * @param templateTrack the template track to add
      */
-    public void addExecution(TemplateTrack templateTrack) {
+    public synchronized void addExecution(TemplateTrack templateTrack) {
         String executionKey = (templateTrack.getUserName() != null
                               && !"".equals(templateTrack.getUserName()))
                               ? templateTrack.getUserName()
@@ -51,6 +57,7 @@ public class TemplatesExecutionMap
                 execution.put(executionKey, execution.get(executionKey).intValue() + 1);
             }
         }
+        changedTemplates.add(templateName);
     }
 
     /**
@@ -61,21 +68,17 @@ public class TemplatesExecutionMap
      * @param templateManager the template manager used to retrieve the global templates
      * @return map having as key the template's name and as value the logarithm sum
      */
-    public Map<String, Double> getLogarithmMap(String executionKey,
+    public synchronized Map<String, Double> getLogarithmMap(String executionKey,
                                                TemplateManager templateManager) {
         Map<String, Double> logarithmMap = new HashMap<String, Double>();
         if (executionKey == null) {
             if (templateManager != null) {
                 Map<String, ApiTemplate> publicTemplates =
                     templateManager.getValidGlobalTemplates();
-                for (String templateName : templateExecutions.keySet()) {
-                    if (publicTemplates.containsKey(templateName)) {
-                        Map<String, Integer> execution = templateExecutions.get(templateName);
-                        double accessLn = 0;
-                        for (String key : execution.keySet()) {
-                            accessLn = accessLn + Math.log(execution.get(key) + 1);
-                        }
-                        logarithmMap.put(templateName, accessLn);
+                updateLogarithmSums();
+                for (Map.Entry<String, Double> entry : logarithmSums.entrySet()) {
+                    if (publicTemplates.containsKey(entry.getKey())) {
+                        logarithmMap.put(entry.getKey(), entry.getValue());
                     }
                 }
             }
@@ -90,4 +93,16 @@ public class TemplatesExecutionMap
         }
         return logarithmMap;
     }
+
+    private void updateLogarithmSums() {
+        for (String templateName : changedTemplates) {
+            Map<String, Integer> execution = templateExecutions.get(templateName);
+            double accessLn = 0;
+            for (String key : execution.keySet()) {
+                accessLn = accessLn + Math.log(execution.get(key) + 1);
+            }
+            logarithmSums.put(templateName, accessLn);
+        }
+        changedTemplates.clear();
+    }
 }
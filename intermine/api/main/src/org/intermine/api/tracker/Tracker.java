@@ -29,8 +29,9 @@ public interface Tracker
     /**
      * Save into the table a Track
      * @param track the object saved into the database representing the user activity
+     * @return true if the track has been queued to be saved
      */
-    void storeTrack(Track track);
+    boolean storeTrack(Track track);
 
     /**
      * Return the tracker's name
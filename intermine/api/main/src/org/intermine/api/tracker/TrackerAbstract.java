@@ -14,6 +14,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.intermine.api.tracker.track.Track;
@@ -27,9 +28,11 @@ import org.intermine.sql.DatabaseUtil;
 public abstract class TrackerAbstract implements Tracker
 {
     private static final Logger LOG = Logger.getLogger(TrackerAbstract.class);
+    private static final int DROPPED_LOG_INTERVAL = 1000;
     protected Queue<Track> trackQueue = null;
     protected String trackTableName;
     protected TrackerLogger trackerLogger = null;
+    protected AtomicInteger droppedTracks = new AtomicInteger();
 
     /**
      * Construct a Tracker setting the tracks queue and the table name
@@ -70,16 +73,21 @@ public abstract class TrackerAbstract implements Tracker
     }
 
     /**
-     * Save into the table the track object representing the user activity
+     * Save into the table the track object representing the user activity. The track is added to
+     * the queue without waiting, and is dropped if the queue is full.
      * @param track the object saved into the database
+     * @return true if the track has been queued, false if it is not valid or has been dropped
      */
-    public void storeTrack(Track track) {
+    public boolean storeTrack(Track track) {
         if (trackTableName != null) {
             if (track.validate()) {
-                try {
-                    trackQueue.add(track);
-                } catch (IllegalStateException ise) {
-                    LOG.error("Problem adding the track to the queue", ise);
+                if (trackQueue.offer(track)) {
+                    return true;
+                }
+                int dropped = droppedTracks.incrementAndGet();
+                if (dropped % DROPPED_LOG_INTERVAL == 1) {
+                    LOG.warn("The track queue is full, " + dropped + " tracks for "
+                             + trackTableName + " dropped so far");
                 }
             } else {
                 LOG.error("Failed to write to track table: input non valid");
@@ -87,6 +95,15 @@ public abstract class TrackerAbstract implements Tracker
         } else {
             LOG.error("The trackTableName is null, set it");
         }
+        return false;
+    }
+
+    /**
+     * Return the number of tracks dropped because the queue was full
+     * @return the number of tracks dropped
+     */
+    public int getDroppedTracks() {
+        return droppedTracks.get();
     }
 
     /**
@@ -12,10 +12,10 @@ package org.intermine.api.tracker;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.log4j.Logger;
 import org.intermine.api.profile.Profile;
@@ -31,11 +31,16 @@ import org.intermine.api.template.TemplateManager;
 
 /**
  * Intermediate class which decouples the tracker components from the code that uses them.
+ * The trackers put the tracks in a bounded queue, which a TrackerLogger thread stores into the
+ * database in batches. If the database can't keep up and the queue fills, further tracks are
+ * dropped rather than holding up the requests that made them.
  * @author dbutano
  *
  */
 public class TrackerDelegate
 {
+    /** The maximum number of tracks waiting to be stored */
+    public static final int QUEUE_CAPACITY = 10000;
     private static final Logger LOG = Logger.getLogger(TrackerDelegate.class);
     protected Map<String, Tracker> trackers = new HashMap<String, Tracker>();
     protected ObjectStoreWriter osw;
@@ -48,7 +53,7 @@ public class TrackerDelegate
      * @param osw the object store witer used to retrieve the connections
      */
     public TrackerDelegate(String[] trackerClassNames, ObjectStoreWriter osw) {
-        Queue<Track> trackQueue = new LinkedList<Track>();
+        BlockingQueue<Track> trackQueue = new ArrayBlockingQueue<Track>(QUEUE_CAPACITY);
         this.osw = osw;
         try {
             connection = getConnection();
@@ -224,6 +229,19 @@ public class TrackerDelegate
         return null;
     }
 
+    /**
+     * Return the number of lists created or executed for each type of list
+     * @param event the type of event (creation or execution)
+     * @return map with key the type of list and value the number of events
+     */
+    public Map<String, Integer> getListCounts(ListTrackerEvent event) {
+        Tracker lt = getTracker(TrackerUtil.LIST_TRACKER);
+        if (lt != null) {
+            return ((ListTracker) lt).getListCounts(event);
+        }
+        return null;
+    }
+
     /**
      * Store into the database the login event
      * @param username the name of the user logged
@@ -276,15 +294,7 @@ public class TrackerDelegate
     public Map<String, Integer> getKeywordSearches() {
         Tracker st = getTracker(TrackerUtil.SEARCH_TRACKER);
         if (st != null) {
-            Connection connection = null;
-            try {
-                connection = getConnection();
-                return ((KeySearchTracker) st).getKeywordSearches(connection);
-            } catch (SQLException sqle) {
-                LOG.error("Problems retrieving conn for getKeywordSearches ", sqle);
-            } finally {
-                releaseConnection(connection);
-            }
+            return ((KeySearchTracker) st).getKeywordSearches();
         }
         return null;
     }
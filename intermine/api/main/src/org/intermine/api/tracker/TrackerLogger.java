@@ -10,44 +10,137 @@ package org.intermine.api.tracker;
  *
  */
 import java.sql.Connection;
-import java.util.Queue;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.log4j.Logger;
 import org.intermine.api.tracker.track.Track;
 
 /**
  * Runnable object providing insertion into the database. TrackerLogger is created
- * for a specific connection and table.
+ * for a specific connection and takes the tracks from a queue shared with the trackers. It waits
+ * for a track to arrive, then takes all the tracks waiting in the queue, up to BATCH_SIZE, and
+ * stores the tracks for each table with one multi-row INSERT statement.
  * @author dbutano
  *
  */
 public class TrackerLogger implements Runnable
 {
+    /** The maximum number of tracks written in one go */
+    public static final int BATCH_SIZE = 500;
     private static final Logger LOG = Logger.getLogger(TrackerLogger.class);
     private Connection connection;
-    private Queue<Track> trackQueue;
+    private BlockingQueue<Track> trackQueue;
 
     /**
-     * Construct a TrackerLogger for a specific connection and table
+     * Construct a TrackerLogger for a specific connection and queue
      * @param connection the connection to the database
+     * @param trackQueue the queue where the trackers put the tracks
      */
-    public TrackerLogger(Connection connection, Queue<Track> trackQueue) {
+    public TrackerLogger(Connection connection, BlockingQueue<Track> trackQueue) {
         this.connection = connection;
         this.trackQueue = trackQueue;
     }
 
+    /**
+     * Store the tracks as they arrive, until the thread is interrupted. The tracks still in the
+     * queue when the thread is interrupted are stored before returning.
+     */
     public void run() {
+        List<Track> batch = new ArrayList<Track>();
         for (;;) {
-            Track track = trackQueue.poll();
-            if (track != null) {
+            try {
+                batch.add(trackQueue.take());
+            } catch (InterruptedException ie) {
+                while (trackQueue.drainTo(batch, BATCH_SIZE) > 0) {
+                    storeTracks(batch);
+                    batch.clear();
+                }
+                return;
+            }
+            trackQueue.drainTo(batch, BATCH_SIZE - 1);
+            storeTracks(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Store a list of tracks, with one statement for each table
+     * @param tracks the tracks to store
+     */
+    protected void storeTracks(List<Track> tracks) {
+        Map<String, List<Track>> tracksByTable = new LinkedHashMap<String, List<Track>>();
+        for (Track track : tracks) {
+            List<Track> tableTracks = tracksByTable.get(track.getTableName());
+            if (tableTracks == null) {
+                tableTracks = new ArrayList<Track>();
+                tracksByTable.put(track.getTableName(), tableTracks);
+            }
+            tableTracks.add(track);
+        }
+        for (Map.Entry<String, List<Track>> entry : tracksByTable.entrySet()) {
+            storeTracks(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void storeTracks(String tableName, List<Track> tracks) {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (Track track : tracks) {
+            rows.add(track.getFormattedTrack());
+        }
+        StringBuffer sql = new StringBuffer("INSERT INTO " + tableName + " VALUES ");
+        for (int row = 0; row < rows.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int index = 0; index < rows.get(row).length; index++) {
+                sql.append(index == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+        }
+        PreparedStatement stm = null;
+        try {
+            stm = connection.prepareStatement(sql.toString());
+            int parameter = 1;
+            for (Object[] values : rows) {
+                for (Object value : values) {
+                    setParameter(stm, parameter++, value);
+                }
+            }
+            stm.executeUpdate();
+        } catch (SQLException sqe) {
+            // store the tracks one at a time, so that one bad track doesn't lose the others
+            LOG.error("Problem storing " + tracks.size() + " tracks into " + tableName, sqe);
+            for (Track track : tracks) {
                 track.store(connection);
-            } else {
+            }
+        } finally {
+            if (stm != null) {
                 try {
-                    Thread.sleep(3000);
-                } catch (InterruptedException ie) {
-                    return;
+                    stm.close();
+                } catch (SQLException e) {
+                    LOG.error("Problem closing  resources in TrackerLogger", e);
                 }
             }
         }
     }
+
+    private static void setParameter(PreparedStatement stm, int parameter, Object value)
+        throws SQLException {
+        if (value == null) {
+            // TrackAbstract.store() writes nulls as the string 'null', so tracks are stored the
+            // same way whichever path they take, and the XML export still finds a value
+            stm.setString(parameter, "null");
+        } else if (value instanceof Integer) {
+            stm.setInt(parameter, ((Integer) value).intValue());
+        } else if (value instanceof Timestamp) {
+            stm.setTimestamp(parameter, (Timestamp) value);
+        } else {
+            stm.setString(parameter, value.toString());
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package org.intermine.api.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.intermine.api.bag.BagQueryResult;
+import org.intermine.api.profile.InterMineBag;
+import org.intermine.metadata.Model;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QuerySelectable;
+import org.intermine.pathquery.Constraints;
+import org.intermine.pathquery.OrderDirection;
+import org.intermine.pathquery.OuterJoinStatus;
+import org.intermine.pathquery.PathQuery;
+
+/**
+ * Tests for QueryPlanCache.
+ */
+public class QueryPlanCacheTest extends TestCase
+{
+    private Model model;
+    private QueryPlanCache cache;
+
+    public QueryPlanCacheTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        model = Model.getInstanceByName("testmodel");
+        cache = new QueryPlanCache();
+    }
+
+    private PathQuery makeEmployeeQuery(String department, String age, String... names) {
+        PathQuery pq = new PathQuery(model);
+        pq.addViews("Employee.name", "Employee.department.name");
+        pq.addOrderBy("Employee.age", OrderDirection.DESC);
+        pq.addConstraint(Constraints.eq("Employee.department.name", department), "A");
+        pq.addConstraint(Constraints.greaterThan("Employee.age", age), "B");
+        pq.addConstraint(Constraints.oneOfValues("Employee.name", Arrays.asList(names)), "C");
+        pq.setConstraintLogic("A and (B or C)");
+        return pq;
+    }
+
+    private void assertSameAsMainHelper(PathQuery pq) throws Exception {
+        Map<String, QuerySelectable> expectedNodes = new HashMap<String, QuerySelectable>();
+        Query expected = MainHelper.makeQuery(pq, new HashMap<String, InterMineBag>(),
+                expectedNodes, null, new HashMap<String, BagQueryResult>());
+        Map<String, QuerySelectable> nodes = new HashMap<String, QuerySelectable>();
+        Query q = cache.makeQuery(pq, new HashMap<String, InterMineBag>(), nodes, null,
+                new HashMap<String, BagQueryResult>());
+        assertEquals(expected.toString(), q.toString());
+        assertEquals(expectedNodes.keySet(), nodes.keySet());
+        for (String path : pq.getView()) {
+            assertTrue(path, q.getSelect().contains(nodes.get(path))
+                    || q.getSelect().contains(nodes.get(path.substring(0,
+                                path.lastIndexOf('.')))));
+        }
+    }
+
+    public void testReuse() throws Exception {
+        assertSameAsMainHelper(makeEmployeeQuery("DepartmentA1", "30", "EmployeeA1"));
+        assertEquals(1, cache.getMisses());
+        assertSameAsMainHelper(makeEmployeeQuery("Department*", "45", "EmployeeB1",
+                    "EmployeeB2"));
+        assertSameAsMainHelper(makeEmployeeQuery("DepartmentA1", "30", "EmployeeA1"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+
+        // a different operation is a different shape
+        PathQuery pq = makeEmployeeQuery("DepartmentA1", "30", "EmployeeA1");
+        pq.replaceConstraint(pq.getConstraintForCode("B"), Constraints.lessThan("Employee.age",
+                    "30"));
+        assertSameAsMainHelper(pq);
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testDate() throws Exception {
+        PathQuery pq = new PathQuery(model);
+        pq.addViews("EmploymentPeriod.startDate");
+        pq.addConstraint(Constraints.eq("EmploymentPeriod.startDate", "2008-01-02"));
+        assertSameAsMainHelper(pq);
+        pq = new PathQuery(model);
+        pq.addViews("EmploymentPeriod.startDate");
+        pq.addConstraint(Constraints.eq("EmploymentPeriod.startDate", "2009-03-04"));
+        assertSameAsMainHelper(pq);
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testOuterJoin() throws Exception {
+        for (String name : Arrays.asList("DepartmentA1", "DepartmentB1")) {
+            PathQuery pq = new PathQuery(model);
+            pq.addViews("Employee.name", "Employee.department.name");
+            pq.setOuterJoinStatus("Employee.department", OuterJoinStatus.OUTER);
+            pq.addConstraint(Constraints.eq("Employee.department.name", name));
+            assertSameAsMainHelper(pq);
+        }
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getUncacheable());
+    }
+
+    public void testInvalid() throws Exception {
+        PathQuery pq = new PathQuery(model);
+        pq.addViews("Employee.name");
+        pq.addConstraint(Constraints.eq("Employee.age", "thirty"));
+        try {
+            cache.makeQuery(pq, new HashMap<String, InterMineBag>(), null, null, null);
+            fail("Expected ObjectStoreException");
+        } catch (ObjectStoreException e) {
+            // expected
+        }
+    }
+}
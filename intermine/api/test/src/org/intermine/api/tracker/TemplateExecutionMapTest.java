@@ -163,6 +163,12 @@ public class TemplateExecutionMapTest extends TestCase
         assertEquals(Math.log(2),
                     templateExecutionsMap.getLogarithmMap(null, templateManager).get("template2"));
 
+        // executions added after a call are counted in the next one
+        templateExecutionsMap.addExecution(new TemplateTrack("template2", "userName2",
+                                                             "sessionId3"));
+        assertEquals(Math.log(3),
+                    templateExecutionsMap.getLogarithmMap(null, templateManager).get("template2"));
+
         removeProfile();
     }
 }
@@ -14,11 +14,19 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
+import org.intermine.api.profile.Profile;
+import org.intermine.api.tracker.track.KeySearchTrack;
 import org.intermine.api.tracker.track.LoginTrack;
 import org.intermine.api.tracker.track.Track;
+import org.intermine.api.tracker.util.ListBuildMode;
+import org.intermine.api.tracker.util.ListTrackerEvent;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
 import org.intermine.objectstore.intermine.ObjectStoreWriterInterMineImpl;
@@ -28,7 +36,7 @@ import junit.framework.TestCase;
 public class TrackerLoggerTest extends TestCase {
     ObjectStoreWriter uosw;
     Connection con;
-    Queue<Track> trackQueue;
+    BlockingQueue<Track> trackQueue;
     TrackerLogger trackerLogger = null;
     private int count = 100;
 
@@ -38,9 +46,11 @@ public class TrackerLoggerTest extends TestCase {
         if (uosw instanceof ObjectStoreWriterInterMineImpl) {
             con = ((ObjectStoreWriterInterMineImpl) uosw).getConnection();
         }
-        trackQueue = new LinkedList<Track>();
-        //create the table if doesn't exist
+        trackQueue = new LinkedBlockingQueue<Track>();
+        //create the tables if they don't exist
         LoginTracker.getInstance(con, trackQueue);
+        KeySearchTracker.getInstance(con, trackQueue);
+        ListTracker.getInstance(con, trackQueue);
     }
 
     protected void tearDown() throws Exception {
@@ -55,25 +65,125 @@ public class TrackerLoggerTest extends TestCase {
                           new Timestamp(System.currentTimeMillis())));
         }
         trackerLogger = new TrackerLogger(con, trackQueue);
-        new Thread(trackerLogger).start();
-        synchronized (trackQueue) {
-            while (!trackQueue.isEmpty()) {
-                Thread.sleep(100);
-            }
+        Thread loggerThread = new Thread(trackerLogger);
+        loggerThread.start();
+        // the logger stores what is left in the queue when it is interrupted, and then stops
+        loggerThread.interrupt();
+        loggerThread.join();
+        assertTrue(trackQueue.isEmpty());
+        assertEquals(count, countRows("SELECT COUNT(*) FROM logintrack"));
+    }
+
+    public void testBadTrackInBatch() throws SQLException {
+        trackerLogger = new TrackerLogger(con, trackQueue);
+        List<Track> tracks = new ArrayList<Track>();
+        for (int index = 0; index < 10; index++) {
+            tracks.add(new LoginTrack("user" + index, new Timestamp(System.currentTimeMillis())));
         }
-        String sql = "SELECT COUNT(*) FROM logintrack";
+        // a track with too many values makes the multi-row INSERT fail
+        tracks.add(5, new LoginTrack("baduser", new Timestamp(System.currentTimeMillis())) {
+            @Override
+            public Object[] getFormattedTrack() {
+                return new Object[] {"baduser", getTimestamp(), "extra"};
+            }
+        });
+        trackerLogger.storeTracks(tracks);
+        // the others are then stored one at a time
+        assertEquals(10, countRows("SELECT COUNT(*) FROM logintrack"));
+        assertEquals(0, countRows("SELECT COUNT(*) FROM logintrack WHERE username = 'baduser'"));
+    }
+
+    public void testListCounts() throws SQLException {
+        ListTracker listTracker = ListTracker.getInstance(con, trackQueue);
+        Integer created = listTracker.getListCounts(ListTrackerEvent.CREATION)
+            .get("trackerLoggerTestType");
+        int previous = (created == null) ? 0 : created.intValue();
+        Profile profile = new Profile(null, "user", null, null, null, null, null, true, false);
+        listTracker.trackList("trackerLoggerTestType", 5, ListBuildMode.QUERY,
+                ListTrackerEvent.CREATION, profile, "session");
+        listTracker.trackList("trackerLoggerTestType", 7, ListBuildMode.IDENTIFIERS,
+                ListTrackerEvent.CREATION, profile, "session");
+        listTracker.trackList("trackerLoggerTestType", 5, ListBuildMode.QUERY,
+                ListTrackerEvent.EXECUTION, profile, "session");
+
+        // one for each event, whatever the number of objects in the list
+        Map<String, Integer> creations = listTracker.getListCounts(ListTrackerEvent.CREATION);
+        assertEquals(new Integer(previous + 2), creations.get("trackerLoggerTestType"));
+        assertEquals(new Integer(1), listTracker.getListCounts(ListTrackerEvent.EXECUTION)
+                .get("trackerLoggerTestType"));
+        // the counts returned are a copy
+        creations.clear();
+        assertEquals(new Integer(previous + 2), listTracker.getListCounts(
+                    ListTrackerEvent.CREATION).get("trackerLoggerTestType"));
+
+        // and the tracks themselves are queued for the database
+        List<Track> tracks = new ArrayList<Track>();
+        trackQueue.drainTo(tracks);
+        assertEquals(3, tracks.size());
+        new TrackerLogger(con, trackQueue).storeTracks(tracks);
+        assertEquals(3, countRows("SELECT COUNT(*) FROM listtrack"
+                    + " WHERE type = 'trackerLoggerTestType'"));
+    }
+
+    public void testNullValue() throws SQLException {
+        KeySearchTracker.getInstance(con, trackQueue);
+        trackerLogger = new TrackerLogger(con, trackQueue);
+        List<Track> tracks = new ArrayList<Track>();
+        tracks.add(new KeySearchTrack("trackerLoggerTest", "", null,
+                new Timestamp(System.currentTimeMillis())));
+        trackerLogger.storeTracks(tracks);
+        // stored the same way as by TrackAbstract.store()
+        String sql = "SELECT sessionidentifier FROM searchtrack"
+            + " WHERE keyword = 'trackerLoggerTest'";
         Statement stm = con.createStatement();
         ResultSet rs = stm.executeQuery(sql);
-        rs.next();
-        assertEquals(count, rs.getInt(1));
+        assertTrue(rs.next());
+        assertEquals("null", rs.getString(1));
         rs.close();
         stm.close();
     }
 
+    public void testQueueFull() throws SQLException {
+        BlockingQueue<Track> fullQueue = new ArrayBlockingQueue<Track>(1);
+        fullQueue.add(new LoginTrack("user", new Timestamp(System.currentTimeMillis())));
+        LoginTracker loginTracker = LoginTracker.getInstance(con, fullQueue);
+        int dropped = loginTracker.getDroppedTracks();
+        assertFalse(loginTracker.storeTrack(new LoginTrack("user",
+                new Timestamp(System.currentTimeMillis()))));
+        assertEquals(dropped + 1, loginTracker.getDroppedTracks());
+
+        // a dropped search is not counted
+        KeySearchTracker searchTracker = KeySearchTracker.getInstance(con, fullQueue);
+        Profile profile = new Profile(null, "user", null, null, null, null, null, true, false);
+        searchTracker.trackSearch("trackerLoggerTestQueue", profile, "session");
+        assertNull(searchTracker.getKeywordSearches().get("trackerLoggerTestQueue"));
+        fullQueue.clear();
+        searchTracker.trackSearch("trackerLoggerTestQueue", profile, "session");
+        assertEquals(new Integer(1),
+                searchTracker.getKeywordSearches().get("trackerLoggerTestQueue"));
+        searchTracker.trackSearch("trackerLoggerTestQueue", profile, "session");
+        assertEquals(new Integer(1),
+                searchTracker.getKeywordSearches().get("trackerLoggerTestQueue"));
+        KeySearchTracker.getInstance(con, trackQueue);
+        LoginTracker.getInstance(con, trackQueue);
+    }
+
     private void removeTracks() throws SQLException {
         String sql = "DELETE FROM logintrack";
         Statement stm = con.createStatement();
         stm.executeUpdate(sql);
+        stm.executeUpdate("DELETE FROM searchtrack WHERE keyword LIKE 'trackerLoggerTest%'");
+        stm.executeUpdate("DELETE FROM listtrack WHERE type LIKE 'trackerLoggerTest%'");
+        stm.close();
+    }
+
+    private int countRows(String sql) throws SQLException {
+        Statement stm = con.createStatement();
+        ResultSet rs = stm.executeQuery(sql);
+        rs.next();
+        int retval = rs.getInt(1);
+        rs.close();
         stm.close();
+        return retval;
     }
 }
@@ -0,0 +1,93 @@
+package org.intermine.api.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.intermine.api.bag.BagQueryResult;
+import org.intermine.api.profile.InterMineBag;
+import org.intermine.benchmark.TestModelData;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QuerySelectable;
+import org.intermine.pathquery.PathQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks making an ObjectStore query from a PathQuery, both from scratch with MainHelper and
+ * by rebinding the values of a shape already held in a QueryPlanCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MainHelperBenchmark
+{
+    /** The name of the query, one of TestModelData.QUERY_NAMES */
+    @Param({"simple", "join", "logic", "outer"})
+    public String queryName;
+
+    private PathQuery pathQuery;
+    private QueryPlanCache cache;
+
+    /**
+     * Makes the PathQuery, and puts its shape in the cache.
+     *
+     * @throws ObjectStoreException if the query cannot be made
+     */
+    @Setup
+    public void setUp() throws ObjectStoreException {
+        pathQuery = TestModelData.pathQuery(queryName);
+        cache = new QueryPlanCache();
+        cache.makeQuery(pathQuery, new HashMap<String, InterMineBag>(),
+                new HashMap<String, QuerySelectable>(), null,
+                new HashMap<String, BagQueryResult>());
+    }
+
+    /**
+     * Makes the query with MainHelper.
+     *
+     * @return the query
+     * @throws ObjectStoreException if the query cannot be made
+     */
+    @Benchmark
+    public Query makeQuery() throws ObjectStoreException {
+        return MainHelper.makeQuery(pathQuery, new HashMap<String, InterMineBag>(),
+                new HashMap<String, QuerySelectable>(), null,
+                new HashMap<String, BagQueryResult>());
+    }
+
+    /**
+     * Makes the query with the QueryPlanCache.
+     *
+     * @return the query
+     * @throws ObjectStoreException if the query cannot be made
+     */
+    @Benchmark
+    public Query makeCachedQuery() throws ObjectStoreException {
+        return cache.makeQuery(pathQuery, new HashMap<String, InterMineBag>(),
+                new HashMap<String, QuerySelectable>(), null,
+                new HashMap<String, BagQueryResult>());
+    }
+}
@@ -0,0 +1,211 @@
+package org.intermine.benchmark;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Compares two sets of benchmark results written by JMH in JSON format, usually those of two
+ * releases, and reports every benchmark whose score has become worse by more than a threshold.
+ */
+public final class BenchmarkComparison
+{
+    private BenchmarkComparison() {
+        // don't instantiate
+    }
+
+    /**
+     * Reads a JMH JSON results file.
+     *
+     * @param reader the contents of the file
+     * @return a Map from benchmark name and parameters to the result
+     * @throws JSONException if the file is not a JMH results file
+     */
+    public static Map<String, Result> read(Reader reader) throws JSONException {
+        Map<String, Result> retval = new LinkedHashMap<String, Result>();
+        JSONArray results = new JSONArray(new JSONTokener(reader));
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            StringBuilder key = new StringBuilder(result.getString("benchmark"));
+            JSONObject params = result.optJSONObject("params");
+            if (params != null) {
+                Map<String, String> sorted = new TreeMap<String, String>();
+                Iterator<?> names = params.keys();
+                while (names.hasNext()) {
+                    String name = (String) names.next();
+                    sorted.put(name, params.getString(name));
+                }
+                key.append(sorted);
+            }
+            JSONObject metric = result.getJSONObject("primaryMetric");
+            retval.put(key.toString(), new Result(result.getString("mode"),
+                        metric.getDouble("score"), metric.optDouble("scoreError", 0.0),
+                        metric.getString("scoreUnit")));
+        }
+        return retval;
+    }
+
+    /**
+     * Works out how much worse a result has become. Throughput results are better when higher,
+     * and all the others when lower. Differences within the error of the two results are
+     * ignored.
+     *
+     * @param baseline the earlier result
+     * @param current the later result
+     * @return the fraction by which the result has become worse, which is negative if it has
+     * improved, or zero if the difference is within the error or the results cannot be compared
+     */
+    public static double regression(Result baseline, Result current) {
+        if (!baseline.getMode().equals(current.getMode())
+                || !baseline.getUnit().equals(current.getUnit())
+                || (baseline.getScore() <= 0.0)) {
+            return 0.0;
+        }
+        double difference = current.getScore() - baseline.getScore();
+        if (Math.abs(difference) <= baseline.getError() + current.getError()) {
+            return 0.0;
+        }
+        double change = difference / baseline.getScore();
+        return "thrpt".equals(baseline.getMode()) ? -change : change;
+    }
+
+    /**
+     * Compares two JMH results files, printing a line for each benchmark in the later file.
+     *
+     * @param args the baseline file, the current file, and optionally the fraction by which a
+     * benchmark may become worse before it counts as a regression (default 0.1)
+     * @throws IOException if a file cannot be read
+     * @throws JSONException if a file is not a JMH results file
+     */
+    public static void main(String[] args) throws IOException, JSONException {
+        if ((args.length < 2) || (args.length > 3)) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json>"
+                    + " [threshold]");
+            System.exit(2);
+        }
+        double threshold = (args.length == 3) ? Double.parseDouble(args[2]) : 0.1;
+        Map<String, Result> baseline = readFile(args[0]);
+        Map<String, Result> current = readFile(args[1]);
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null) {
+                System.out.println("NEW        " + entry.getKey() + ": " + after);
+            } else {
+                double change = regression(before, after);
+                String status = "same      ";
+                if (change > threshold) {
+                    status = "REGRESSION";
+                    regressions++;
+                } else if (change < -threshold) {
+                    status = "improved  ";
+                }
+                System.out.println(status + " " + entry.getKey() + ": " + before + " -> " + after
+                        + String.format(" (%+.1f%%)", new Double(change * 100.0)));
+            }
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println("MISSING    " + key);
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmarks are more than " + (threshold * 100.0)
+                    + "% worse than in " + args[0]);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> readFile(String fileName)
+        throws IOException, JSONException {
+        Reader reader = new FileReader(fileName);
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The primary result of one benchmark.
+     */
+    public static class Result
+    {
+        private final String mode;
+        private final double score;
+        private final double error;
+        private final String unit;
+
+        /**
+         * Constructor.
+         *
+         * @param mode the JMH mode, eg. thrpt or avgt
+         * @param score the score
+         * @param error the error of the score, or NaN if unknown
+         * @param unit the unit of the score
+         */
+        public Result(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0.0 : error;
+            this.unit = unit;
+        }
+
+        /**
+         * @return the JMH mode
+         */
+        public String getMode() {
+            return mode;
+        }
+
+        /**
+         * @return the score
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * @return the error of the score
+         */
+        public double getError() {
+            return error;
+        }
+
+        /**
+         * @return the unit of the score
+         */
+        public String getUnit() {
+            return unit;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return String.format("%.3f +/- %.3f %s", new Double(score), new Double(error),
+                    unit);
+        }
+    }
+}
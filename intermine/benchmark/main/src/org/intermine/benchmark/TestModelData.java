@@ -0,0 +1,122 @@
+package org.intermine.benchmark;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.intermine.metadata.Model;
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.pathquery.Constraints;
+import org.intermine.pathquery.OrderDirection;
+import org.intermine.pathquery.OuterJoinStatus;
+import org.intermine.pathquery.PathQuery;
+import org.intermine.util.DynamicUtil;
+
+/**
+ * Data over the testmodel that the benchmarks share, so that they measure the same shapes of
+ * query and object. Everything is generated from a fixed seed, so that results from different
+ * releases are comparable.
+ */
+public final class TestModelData
+{
+    /** The names of the queries returned by pathQuery() */
+    public static final String[] QUERY_NAMES = new String[] {"simple", "join", "logic",
+        "outer"};
+
+    private TestModelData() {
+        // don't instantiate
+    }
+
+    /**
+     * Returns the testmodel.
+     *
+     * @return a Model
+     */
+    public static Model getModel() {
+        return Model.getInstanceByName("testmodel");
+    }
+
+    /**
+     * Returns one of a few PathQueries of the kind the webapp and web services run, from a
+     * single class up to several joins with constraint logic and an outer join.
+     *
+     * @param name one of QUERY_NAMES
+     * @return a new PathQuery
+     */
+    public static PathQuery pathQuery(String name) {
+        PathQuery pq = new PathQuery(getModel());
+        if ("simple".equals(name)) {
+            pq.addViews("Employee.name", "Employee.age");
+            pq.addConstraint(Constraints.eq("Employee.name", "EmployeeA1"));
+        } else if ("join".equals(name)) {
+            pq.addViews("Employee.name", "Employee.department.name",
+                    "Employee.department.company.name");
+            pq.addConstraint(Constraints.eq("Employee.department.company.name", "CompanyA"));
+            pq.addOrderBy("Employee.name", OrderDirection.ASC);
+        } else if ("logic".equals(name)) {
+            pq.addViews("Employee.name", "Employee.age", "Employee.department.name");
+            pq.addConstraint(Constraints.eq("Employee.department.name", "Department*"), "A");
+            pq.addConstraint(Constraints.greaterThan("Employee.age", "30"), "B");
+            pq.addConstraint(Constraints.oneOfValues("Employee.name",
+                        Arrays.asList("EmployeeA1", "EmployeeB1", "EmployeeB2")), "C");
+            pq.setConstraintLogic("A and (B or C)");
+            pq.addOrderBy("Employee.age", OrderDirection.DESC);
+        } else if ("outer".equals(name)) {
+            pq.addViews("Company.name", "Company.departments.name",
+                    "Company.departments.employees.name");
+            pq.setOuterJoinStatus("Company.departments", OuterJoinStatus.OUTER);
+            pq.addConstraint(Constraints.eq("Company.name", "CompanyA"));
+        } else {
+            throw new IllegalArgumentException("Unknown query " + name);
+        }
+        return pq;
+    }
+
+    /**
+     * Returns employees with departments and companies, filled in with random values.
+     *
+     * @param count the number of employees
+     * @return a List of Employees, with ids from 1
+     */
+    public static List<Employee> employees(int count) {
+        Random random = new Random(42);
+        List<Employee> retval = new ArrayList<Employee>();
+        Company company = (Company) DynamicUtil.createObject(Collections.singleton(
+                    Company.class));
+        company.setId(new Integer(count + 1));
+        company.setName("CompanyA");
+        company.setVatNumber(1234);
+        Department department = null;
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 0) {
+                department = new Department();
+                department.setId(new Integer(count + 2 + i));
+                department.setName("Department" + i);
+                department.setCompany(company);
+            }
+            Employee employee = new Employee();
+            employee.setId(new Integer(i + 1));
+            employee.setName("Employee " + Long.toString(random.nextLong(), 36));
+            employee.setAge(18 + random.nextInt(50));
+            employee.setFullTime(random.nextBoolean());
+            employee.setEnd(random.nextBoolean() ? null : Integer.toString(random.nextInt(100)));
+            employee.setDepartment(department);
+            retval.add(employee);
+        }
+        return retval;
+    }
+}
@@ -0,0 +1,121 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.intermine.benchmark.TestModelData;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.model.testmodel.Employee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks rendering and parsing the OBJECT column, in both NotXml and the binary format, for
+ * a batch of employees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ObjectFormatBenchmark
+{
+    private static final int BATCH_SIZE = 100;
+
+    private ObjectStoreInterMineImpl os;
+    private BinaryObjectFormat binaryFormat;
+    private List<Employee> employees;
+    private List<String> notXml;
+    private List<byte[]> binary;
+
+    /**
+     * Creates an ObjectStore without a database, and renders the employees in each format.
+     */
+    @Setup
+    public void setUp() {
+        DatabaseSchema schema = new DatabaseSchema(TestModelData.getModel(),
+                Collections.<ClassDescriptor>emptyList(), false, Collections.<String>emptySet(),
+                1, false, true);
+        os = new ObjectStoreInterMineImpl(null, schema);
+        binaryFormat = schema.getBinaryObjectFormat();
+        employees = TestModelData.employees(BATCH_SIZE);
+        notXml = new ArrayList<String>();
+        binary = new ArrayList<byte[]>();
+        for (Employee employee : employees) {
+            notXml.add(NotXmlRenderer.render(employee).toString());
+            binary.add(binaryFormat.render(employee));
+        }
+    }
+
+    /**
+     * Renders the employees as NotXml.
+     *
+     * @param bh a Blackhole
+     */
+    @Benchmark
+    public void renderNotXml(Blackhole bh) {
+        for (Employee employee : employees) {
+            bh.consume(NotXmlRenderer.render(employee).toString());
+        }
+    }
+
+    /**
+     * Parses the employees from NotXml.
+     *
+     * @param bh a Blackhole
+     * @throws ClassNotFoundException never
+     */
+    @Benchmark
+    public void parseNotXml(Blackhole bh) throws ClassNotFoundException {
+        for (String column : notXml) {
+            bh.consume(NotXmlParser.parse(column, os));
+        }
+    }
+
+    /**
+     * Renders the employees in the binary format.
+     *
+     * @param bh a Blackhole
+     */
+    @Benchmark
+    public void renderBinary(Blackhole bh) {
+        for (Employee employee : employees) {
+            bh.consume(binaryFormat.render(employee));
+        }
+    }
+
+    /**
+     * Parses the employees from the binary format.
+     *
+     * @param bh a Blackhole
+     * @throws ClassNotFoundException never
+     */
+    @Benchmark
+    public void parseBinary(Blackhole bh) throws ClassNotFoundException {
+        for (byte[] column : binary) {
+            bh.consume(binaryFormat.parse(column, os));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.intermine.benchmark.TestModelData;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QuerySelectable;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.sql.DatabaseUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks converting a batch of SQL results into objects and values, using a ResultSet that
+ * holds the rows in memory so that only the conversion is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResultsConverterBenchmark
+{
+    /** The format of the OBJECT column, notxml or binary */
+    @Param({"notxml", "binary"})
+    public String format;
+
+    /** The number of rows in the batch */
+    @Param({"1000"})
+    public int rows;
+
+    private ObjectStoreInterMineImpl os;
+    private Query q;
+    private List<Map<String, Object>> data;
+
+    /**
+     * Makes a query for employees with two of their fields, and the rows that the database would
+     * return for it.
+     */
+    @Setup
+    public void setUp() {
+        boolean binary = "binary".equals(format);
+        DatabaseSchema schema = new DatabaseSchema(TestModelData.getModel(),
+                Collections.<ClassDescriptor>emptyList(), false, Collections.<String>emptySet(),
+                1, false, binary);
+        os = new ObjectStoreInterMineImpl(null, schema);
+        q = new Query();
+        QueryClass qc = new QueryClass(Employee.class);
+        QueryField age = new QueryField(qc, "age");
+        QueryField name = new QueryField(qc, "name");
+        q.addFrom(qc);
+        q.addToSelect(qc);
+        q.addToSelect(age);
+        q.addToSelect(name);
+        String qcAlias = alias(qc);
+        data = new ArrayList<Map<String, Object>>();
+        for (Employee employee : TestModelData.employees(rows)) {
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put(qcAlias + "id", employee.getId());
+            row.put(qcAlias, binary ? schema.getBinaryObjectFormat().render(employee)
+                    : NotXmlRenderer.render(employee).toString());
+            row.put(alias(age), new Integer(employee.getAge()));
+            row.put(alias(name), employee.getName());
+            data.add(row);
+        }
+    }
+
+    private String alias(QuerySelectable node) {
+        return DatabaseUtil.generateSqlCompatibleName(q.getAliases().get(node));
+    }
+
+    /**
+     * Converts the rows, with none of the objects already in the cache.
+     *
+     * @return the converted rows
+     * @throws ObjectStoreException if the rows cannot be converted
+     */
+    @Benchmark
+    public List<ResultsRow<Object>> convert() throws ObjectStoreException {
+        os.flushObjectById();
+        return ResultsConverter.convert(resultSet(data), q, os, null,
+                Collections.<Object, Integer>emptyMap(), false, null, null, null);
+    }
+
+    /**
+     * Returns a ResultSet that holds the given rows in memory. Only the methods that
+     * ResultsConverter uses are implemented.
+     *
+     * @param data the rows, as Maps from column name to value
+     * @return a ResultSet
+     */
+    public static ResultSet resultSet(final List<Map<String, Object>> data) {
+        InvocationHandler handler = new InvocationHandler() {
+            private int row = -1;
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("next".equals(name)) {
+                    row++;
+                    return Boolean.valueOf(row < data.size());
+                } else if ("getObject".equals(name) && (args[0] instanceof String)) {
+                    return data.get(row).get(args[0]);
+                } else if ("getInt".equals(name) && (args[0] instanceof String)) {
+                    return data.get(row).get(args[0]);
+                } else if ("getString".equals(name) && (args[0] instanceof String)) {
+                    Object value = data.get(row).get(args[0]);
+                    return value == null ? null : value.toString();
+                } else if ("close".equals(name)) {
+                    return null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class[] {ResultSet.class}, handler);
+    }
+}
@@ -0,0 +1,95 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.intermine.api.bag.BagQueryResult;
+import org.intermine.api.profile.InterMineBag;
+import org.intermine.api.query.MainHelper;
+import org.intermine.benchmark.TestModelData;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QuerySelectable;
+import org.intermine.sql.ParameterisedSql;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks generating SQL for the queries that MainHelper makes from a few typical
+ * PathQueries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SqlGeneratorBenchmark
+{
+    /** The name of the query, one of TestModelData.QUERY_NAMES */
+    @Param({"simple", "join", "logic", "outer"})
+    public String queryName;
+
+    private DatabaseSchema schema;
+    private Query q;
+    private Map<Object, String> bagTableNames = new HashMap<Object, String>();
+
+    /**
+     * Makes the query.
+     *
+     * @throws ObjectStoreException if the query cannot be made
+     */
+    @Setup
+    public void setUp() throws ObjectStoreException {
+        schema = new DatabaseSchema(TestModelData.getModel(),
+                Collections.<ClassDescriptor>emptyList(), false, Collections.<String>emptySet(),
+                1, false);
+        q = MainHelper.makeQuery(TestModelData.pathQuery(queryName),
+                new HashMap<String, InterMineBag>(), new HashMap<String, QuerySelectable>(), null,
+                new HashMap<String, BagQueryResult>());
+    }
+
+    /**
+     * Generates SQL with the constants written inline.
+     *
+     * @return the SQL
+     * @throws ObjectStoreException if the SQL cannot be generated
+     */
+    @Benchmark
+    public String generate() throws ObjectStoreException {
+        return SqlGenerator.generate(q, 0, 1000, schema, null, bagTableNames);
+    }
+
+    /**
+     * Generates SQL with the constants as parameters.
+     *
+     * @return the SQL
+     * @throws ObjectStoreException if the SQL cannot be generated
+     */
+    @Benchmark
+    public ParameterisedSql generateParameterised() throws ObjectStoreException {
+        return SqlGenerator.generateParameterised(q, 0, 1000, schema, null, bagTableNames);
+    }
+}
@@ -0,0 +1,79 @@
+package org.intermine.pathquery;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.intermine.benchmark.TestModelData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks reading and writing the XML form of a PathQuery, as done for every query sent to
+ * the web services and every saved query and template loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathQueryBindingBenchmark
+{
+    /** The name of the query, one of TestModelData.QUERY_NAMES */
+    @Param({"simple", "join", "logic", "outer"})
+    public String queryName;
+
+    private PathQuery pathQuery;
+    private String xml;
+
+    /**
+     * Makes the query and its XML.
+     */
+    @Setup
+    public void setUp() {
+        pathQuery = TestModelData.pathQuery(queryName);
+        xml = PathQueryBinding.marshal(pathQuery, queryName, "testmodel",
+                PathQuery.USERPROFILE_VERSION);
+    }
+
+    /**
+     * Reads the query from XML.
+     *
+     * @return the query
+     */
+    @Benchmark
+    public PathQuery unmarshal() {
+        return PathQueryBinding.unmarshalPathQuery(new StringReader(xml),
+                PathQuery.USERPROFILE_VERSION);
+    }
+
+    /**
+     * Writes the query as XML.
+     *
+     * @return the XML
+     */
+    @Benchmark
+    public String marshal() {
+        return PathQueryBinding.marshal(pathQuery, queryName, "testmodel",
+                PathQuery.USERPROFILE_VERSION);
+    }
+}
@@ -0,0 +1,99 @@
+package org.intermine.sql.precompute;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.intermine.sql.query.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the query optimiser working out every way that a query over the testmodel tables
+ * can be rewritten to use a few precomputed tables. No database is needed, as the rewritten
+ * queries are only stored, not compared with EXPLAIN.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryOptimiserBenchmark
+{
+    private static final String QUERY = "SELECT a1_.id AS a1_id, a1_.name AS a1_name,"
+        + " a2_.name AS a2_name, a3_.name AS a3_name FROM Employee AS a1_, Department AS a2_,"
+        + " Company AS a3_ WHERE a1_.departmentId = a2_.id AND a2_.companyId = a3_.id"
+        + " AND a3_.name = 'CompanyA' AND a1_.age > 30 ORDER BY a1_.id";
+    private static final String[] PRECOMPUTED = new String[] {
+        "SELECT a1_.id AS a1_id, a1_.name AS a1_name, a1_.age AS a1_age,"
+            + " a1_.departmentId AS a1_departmentid, a2_.id AS a2_id, a2_.name AS a2_name,"
+            + " a2_.companyId AS a2_companyid FROM Employee AS a1_, Department AS a2_"
+            + " WHERE a1_.departmentId = a2_.id",
+        "SELECT a2_.id AS a2_id, a2_.name AS a2_name, a3_.id AS a3_id, a3_.name AS a3_name"
+            + " FROM Department AS a2_, Company AS a3_ WHERE a2_.companyId = a3_.id",
+        "SELECT a1_.id AS a1_id, a1_.name AS a1_name FROM Employee AS a1_ WHERE a1_.age > 30"};
+
+    private Set<PrecomputedTable> precomputedTables;
+
+    /**
+     * Makes the precomputed tables. They have no ORDER BY, so no connection is needed to look at
+     * the column types.
+     */
+    @Setup
+    public void setUp() {
+        precomputedTables = new LinkedHashSet<PrecomputedTable>();
+        for (int i = 0; i < PRECOMPUTED.length; i++) {
+            Query pq = new Query(PRECOMPUTED[i]);
+            precomputedTables.add(new PrecomputedTable(pq, PRECOMPUTED[i], "precomp" + i, null,
+                        null));
+        }
+    }
+
+    /**
+     * Parses the SQL of the query.
+     *
+     * @return the parsed query
+     */
+    @Benchmark
+    public Query parse() {
+        return new Query(QUERY);
+    }
+
+    /**
+     * Parses the SQL of the query, and finds every rewritten version of it.
+     *
+     * @return the rewritten queries
+     * @throws SQLException if the optimiser fails
+     */
+    @Benchmark
+    public Set<Query> optimise() throws SQLException {
+        Query q = new Query(QUERY);
+        BestQueryStorer bestQuery = new BestQueryStorer();
+        try {
+            QueryOptimiser.recursiveOptimiseCheckSubquery(precomputedTables, q, bestQuery);
+        } catch (BestQueryException e) {
+            // The storer never gives up
+        }
+        return bestQuery.getQueries();
+    }
+}
@@ -0,0 +1,116 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.intermine.benchmark.TestModelData;
+import org.intermine.model.testmodel.Employee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks getting and setting fields of testmodel objects by name, through the reflection in
+ * TypeUtil and through the generated FastPathObject methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypeUtilBenchmark
+{
+    private static final String[] FIELDS = new String[] {"name", "age", "fullTime", "end",
+        "department"};
+
+    private List<Employee> employees;
+
+    /**
+     * Makes the employees.
+     */
+    @Setup
+    public void setUp() {
+        employees = TestModelData.employees(100);
+    }
+
+    /**
+     * Gets every field of each employee with TypeUtil.
+     *
+     * @param bh a Blackhole
+     * @throws IllegalAccessException never
+     */
+    @Benchmark
+    public void getFieldValue(Blackhole bh) throws IllegalAccessException {
+        for (Employee employee : employees) {
+            for (String field : FIELDS) {
+                bh.consume(TypeUtil.getFieldValue(employee, field));
+            }
+        }
+    }
+
+    /**
+     * Gets every field of each employee with the FastPathObject method.
+     *
+     * @param bh a Blackhole
+     * @throws IllegalAccessException never
+     */
+    @Benchmark
+    public void getFieldValueFastPath(Blackhole bh) throws IllegalAccessException {
+        for (Employee employee : employees) {
+            for (String field : FIELDS) {
+                bh.consume(employee.getFieldValue(field));
+            }
+        }
+    }
+
+    /**
+     * Sets the name of each employee with TypeUtil.
+     */
+    @Benchmark
+    public void setFieldValue() {
+        for (Employee employee : employees) {
+            TypeUtil.setFieldValue(employee, "name", employee.getName());
+        }
+    }
+
+    /**
+     * Sets the name of each employee with the FastPathObject method.
+     */
+    @Benchmark
+    public void setFieldValueFastPath() {
+        for (Employee employee : employees) {
+            employee.setFieldValue("name", employee.getName());
+        }
+    }
+
+    /**
+     * Looks up the FieldInfo of every field.
+     *
+     * @param bh a Blackhole
+     */
+    @Benchmark
+    public void getFieldInfo(Blackhole bh) {
+        for (String field : FIELDS) {
+            bh.consume(TypeUtil.getFieldInfo(Employee.class, field));
+        }
+    }
+}
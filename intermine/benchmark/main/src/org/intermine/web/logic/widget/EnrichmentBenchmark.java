@@ -0,0 +1,135 @@
+package org.intermine.web.logic.widget;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.math3.distribution.HypergeometricDistribution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the p-values of an enrichment widget, with the EnrichmentEngine and with the
+ * commons-math distribution and ErrorCorrection maps that it replaced. The counts are those of a
+ * typical GO enrichment: a genome-sized population, a list of a few hundred genes, and terms
+ * that annotate anything from a handful of genes to a few percent of the genome.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EnrichmentBenchmark
+{
+    private static final int POPULATION_SIZE = 20000;
+    private static final int SAMPLE_SIZE = 500;
+    private static final double MAX_VALUE = 0.05;
+
+    /** The number of terms annotating the sample */
+    @Param({"100", "2000"})
+    public int terms;
+
+    /** The error correction */
+    @Param({"Benjamini Hochberg", "Holm-Bonferroni"})
+    public String errorCorrection;
+
+    private String[] attributes;
+    private int[] populationCounts;
+    private int[] sampleCounts;
+
+    /**
+     * Makes the counts for each term.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        attributes = new String[terms];
+        populationCounts = new int[terms];
+        sampleCounts = new int[terms];
+        for (int i = 0; i < terms; i++) {
+            attributes[i] = "GO:" + (1000000 + i);
+            populationCounts[i] = 1 + random.nextInt(random.nextBoolean() ? 50 : 600);
+            // mostly what chance would give, with some terms enriched
+            int expected = populationCounts[i] * SAMPLE_SIZE / POPULATION_SIZE;
+            sampleCounts[i] = Math.min(populationCounts[i],
+                    1 + expected + (random.nextInt(10) == 0 ? random.nextInt(20) : 0));
+        }
+    }
+
+    /**
+     * Calculates the reported p-values with EnrichmentEngine, as EnrichmentCalculation does.
+     *
+     * @return the reported p-values, smallest first
+     */
+    @Benchmark
+    public Map<String, BigDecimal> engine() {
+        double[] pValues = EnrichmentEngine.upperTail(POPULATION_SIZE, SAMPLE_SIZE,
+                populationCounts, sampleCounts);
+        double[] adjusted = EnrichmentEngine.adjustPValues(errorCorrection, pValues, MAX_VALUE,
+                terms);
+        int reported = 0;
+        for (int i = 0; i < adjusted.length; i++) {
+            if (!Double.isNaN(adjusted[i])) {
+                reported++;
+            }
+        }
+        String[] keys = new String[reported];
+        double[] values = new double[reported];
+        int j = 0;
+        for (int i = 0; i < adjusted.length; i++) {
+            if (!Double.isNaN(adjusted[i])) {
+                keys[j] = attributes[i];
+                values[j] = adjusted[i];
+                j++;
+            }
+        }
+        Map<String, BigDecimal> retval = new LinkedHashMap<String, BigDecimal>();
+        for (int index : EnrichmentEngine.sortedOrder(values)) {
+            retval.put(keys[index], new BigDecimal(values[index]));
+        }
+        return retval;
+    }
+
+    /**
+     * Calculates the reported p-values with a commons-math distribution per term and the
+     * ErrorCorrection maps, as EnrichmentCalculation used to.
+     *
+     * @return the reported p-values, smallest first
+     */
+    @Benchmark
+    public Map<String, BigDecimal> commonsMath() {
+        Map<String, BigDecimal> rawResults = new HashMap<String, BigDecimal>();
+        for (int i = 0; i < terms; i++) {
+            HypergeometricDistribution h = new HypergeometricDistribution(POPULATION_SIZE,
+                    populationCounts[i], SAMPLE_SIZE);
+            rawResults.put(attributes[i],
+                    new BigDecimal(h.upperCumulativeProbability(sampleCounts[i])));
+        }
+        Map<String, BigDecimal> correctedResults = ErrorCorrection.adjustPValues(errorCorrection,
+                rawResults, new Double(MAX_VALUE), terms);
+        return ErrorCorrection.sortMap(correctedResults);
+    }
+}
@@ -0,0 +1,120 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.intermine.api.results.ResultElement;
+import org.intermine.benchmark.TestModelData;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.webservice.server.core.ResultProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks writing rows of web service results, with an EncodingOutput and the RowEncoders
+ * and with a StreamedOutput and the Formatters that they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EncodingBenchmark
+{
+    /** The output format, tab, csv or json */
+    @Param({"tab", "csv", "json"})
+    public String format;
+
+    /** The number of rows written */
+    @Param({"1000"})
+    public int rows;
+
+    private List<List<ResultElement>> results;
+    private ResultProcessor processor;
+
+    /**
+     * Makes the rows.
+     */
+    @Setup
+    public void setUp() {
+        results = new ArrayList<List<ResultElement>>();
+        for (Employee employee : TestModelData.employees(rows)) {
+            List<ResultElement> row = new ArrayList<ResultElement>();
+            row.add(new ResultElement(employee.getName()));
+            row.add(new ResultElement(new Integer(employee.getAge())));
+            row.add(new ResultElement(Boolean.valueOf(employee.getFullTime())));
+            row.add(new ResultElement(employee.getEnd()));
+            results.add(row);
+        }
+        if ("json".equals(format)) {
+            processor = new JSONRowResultProcessor(null,
+                    JSONRowResultProcessor.Verbosity.MINIMAL);
+        } else {
+            processor = new ResultProcessor();
+        }
+    }
+
+    private Formatter makeFormatter() {
+        if ("tab".equals(format)) {
+            return new TabFormatter();
+        } else if ("csv".equals(format)) {
+            return new CSVFormatter();
+        }
+        return new JSONTableFormatter();
+    }
+
+    /**
+     * Writes the rows with an EncodingOutput.
+     *
+     * @return the number of rows written
+     */
+    @Benchmark
+    public int encoding() {
+        NullOutputStream os = new NullOutputStream();
+        Output output = new EncodingOutput(new PrintWriter(os), os, makeFormatter(), "\n");
+        processor.write(results.iterator(), output);
+        output.flush();
+        return output.getResultsCount();
+    }
+
+    /**
+     * Writes the rows with a StreamedOutput.
+     *
+     * @return the number of rows written
+     * @throws UnsupportedEncodingException never
+     */
+    @Benchmark
+    public int streamed() throws UnsupportedEncodingException {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new NullOutputStream(),
+                    "UTF-8"));
+        Output output = new StreamedOutput(writer, makeFormatter(), "\n");
+        processor.write(results.iterator(), output);
+        output.flush();
+        return output.getResultsCount();
+    }
+}
@@ -0,0 +1,441 @@
+package org.intermine.dataconversion;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+
+/**
+ * Reads Items from a file written by ItemLogWriter. Items are fully assembled, with their
+ * attributes, references and collections, as they are read. They can be read in the order they
+ * were written, with a Scanner, or looked up by identifier using the index at the end of the
+ * file.
+ *
+ * This class is thread-safe, and each Scanner has a stream of its own.
+ */
+public class ItemLogReader
+{
+    private static final Logger LOG = Logger.getLogger(ItemLogReader.class);
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final long indexOffset;
+    private final int itemCount;
+    private final long[] checkpoints;
+    private final Map<String, long[]> namespaceOffsets = new LinkedHashMap<String, long[]>();
+    private final Map<Integer, long[]> extras = new HashMap<Integer, long[]>();
+
+    /**
+     * Opens an item log and reads its index.
+     *
+     * @param file the file written by an ItemLogWriter
+     * @throws IOException if the file cannot be read, or is not a complete item log
+     */
+    public ItemLogReader(File file) throws IOException {
+        this.file = file;
+        raf = new RandomAccessFile(file, "r");
+        try {
+            if ((raf.length() < 20) || (raf.readInt() != ItemLogWriter.MAGIC)) {
+                throw new IOException(file + " is not an item log");
+            }
+            int version = raf.readInt();
+            if (version != ItemLogWriter.VERSION) {
+                throw new IOException("Item log " + file + " has unsupported version " + version);
+            }
+            raf.seek(raf.length() - 12);
+            indexOffset = raf.readLong();
+            if (raf.readInt() != ItemLogWriter.MAGIC) {
+                throw new IOException("Item log " + file + " has no index - the ItemLogWriter"
+                        + " that wrote it may not have been closed");
+            }
+            FileInputStream fis = new FileInputStream(file);
+            try {
+                fis.getChannel().position(indexOffset);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 65536));
+                itemCount = in.readInt();
+                checkpoints = new long[in.readInt()];
+                for (int i = 0; i < checkpoints.length; i++) {
+                    checkpoints[i] = in.readLong();
+                }
+                int namespaceCount = in.readInt();
+                for (int i = 0; i < namespaceCount; i++) {
+                    String namespace = readString(in);
+                    long[] offsets = new long[in.readInt()];
+                    for (int o = 0; o < offsets.length; o++) {
+                        offsets[o] = in.readLong();
+                    }
+                    namespaceOffsets.put(namespace, offsets);
+                }
+                int extraCount = in.readInt();
+                for (int i = 0; i < extraCount; i++) {
+                    Integer itemId = new Integer(in.readInt());
+                    long[] offsets = new long[in.readInt()];
+                    for (int o = 0; o < offsets.length; o++) {
+                        offsets[o] = in.readLong();
+                    }
+                    extras.put(itemId, offsets);
+                }
+            } finally {
+                fis.close();
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        LOG.info("Opened item log " + file + " containing " + itemCount + " items");
+    }
+
+    /**
+     * Returns the number of items in the log.
+     *
+     * @return an int
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns the position of the index in the file, which is where the last record ends.
+     *
+     * @return a position in the file
+     */
+    long getIndexOffset() {
+        return indexOffset;
+    }
+
+    /**
+     * Returns the position of every CHECKPOINT_INTERVALth item.
+     *
+     * @return an array of positions in the file
+     */
+    long[] getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Returns the position of each item, by namespace and then by identifier number, with -1
+     * for numbers that are not used.
+     *
+     * @return a Map from namespace to an array of positions in the file
+     */
+    Map<String, long[]> getNamespaceOffsets() {
+        return namespaceOffsets;
+    }
+
+    /**
+     * Returns the positions of the records that add to items written earlier, by item ID.
+     *
+     * @return a Map from item ID to an array of positions in the file
+     */
+    Map<Integer, long[]> getExtras() {
+        return extras;
+    }
+
+    /**
+     * Returns the highest number used in an identifier for each namespace in the log, in the
+     * order in which the namespaces were first written.
+     *
+     * @return a Map from namespace to highest identifier number
+     */
+    public Map<String, Integer> getHighestIdentifiers() {
+        Map<String, Integer> retval = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, long[]> entry : namespaceOffsets.entrySet()) {
+            retval.put(entry.getKey(), new Integer(entry.getValue().length - 1));
+        }
+        return Collections.unmodifiableMap(retval);
+    }
+
+    /**
+     * Returns the Item with the given identifier.
+     *
+     * @param identifier an item identifier
+     * @return an Item, or null if there is no item with that identifier in the log
+     * @throws IOException if the file cannot be read
+     */
+    public Item getItem(String identifier) throws IOException {
+        int index = (identifier == null ? -1 : identifier.indexOf('_'));
+        if (index == -1) {
+            return null;
+        }
+        long[] offsets = namespaceOffsets.get(identifier.substring(0, index));
+        if (offsets == null) {
+            return null;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(identifier.substring(index + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if ((number < 0) || (number >= offsets.length) || (offsets[number] == -1L)) {
+            return null;
+        }
+        byte[] record = readRecordAt(offsets[number]);
+        if (record[0] != ItemLogWriter.ITEM) {
+            throw new IOException("Item log " + file + " is corrupt - no item at position "
+                    + offsets[number]);
+        }
+        return readItem(record, 1, record.length - 1);
+    }
+
+    /**
+     * Returns a Scanner that reads the items in the log in the order they were written, starting
+     * from the first item.
+     *
+     * @return a Scanner
+     * @throws IOException if the file cannot be read
+     */
+    public Scanner scan() throws IOException {
+        return new Scanner(8);
+    }
+
+    /**
+     * Returns a Scanner that reads the items in the log in the order they were written, starting
+     * from the item at the given position in that order.
+     *
+     * @param start the number of items to skip
+     * @return a Scanner
+     * @throws IOException if the file cannot be read
+     */
+    public Scanner scan(int start) throws IOException {
+        int checkpoint = Math.min(start / ItemLogWriter.CHECKPOINT_INTERVAL,
+                checkpoints.length - 1);
+        if (checkpoint < 0) {
+            return new Scanner(8);
+        }
+        Scanner retval = new Scanner(checkpoints[checkpoint]);
+        for (int i = checkpoint * ItemLogWriter.CHECKPOINT_INTERVAL; i < start; i++) {
+            if (retval.skip() == -1L) {
+                break;
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns a Scanner that starts at a position previously returned by Scanner.getPosition().
+     *
+     * @param position a position in the file
+     * @return a Scanner
+     * @throws IOException if the file cannot be read
+     */
+    public Scanner scanFrom(long position) throws IOException {
+        return new Scanner(position);
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if an error occurs
+     */
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    /**
+     * Reads the record at the given position in the file.
+     *
+     * @return the record type, followed by the payload
+     */
+    private synchronized byte[] readRecordAt(long offset) throws IOException {
+        raf.seek(offset);
+        byte type = raf.readByte();
+        byte[] record = new byte[raf.readInt() + 1];
+        record[0] = type;
+        raf.readFully(record, 1, record.length - 1);
+        return record;
+    }
+
+    private Item readItem(byte[] payload, int start, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, start,
+                    length));
+        Item item = new Item();
+        item.setId(new Integer(in.readInt()));
+        item.setIdentifier(readString(in));
+        item.setClassName(readString(in));
+        item.setImplementations(readString(in));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            addAttribute(item, readString(in), readString(in));
+        }
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            addReference(item, readString(in), readString(in));
+        }
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            addCollection(item, readString(in), readString(in));
+        }
+        long[] extraOffsets = extras.get(item.getId());
+        if (extraOffsets != null) {
+            for (long offset : extraOffsets) {
+                byte[] record = readRecordAt(offset);
+                DataInputStream extra = new DataInputStream(new ByteArrayInputStream(record, 1,
+                            record.length - 1));
+                extra.readInt();
+                String name = readString(extra);
+                String value = readString(extra);
+                if (record[0] == ItemLogWriter.ATTRIBUTE) {
+                    addAttribute(item, name, value);
+                } else if (record[0] == ItemLogWriter.REFERENCE) {
+                    addReference(item, name, value);
+                } else if (record[0] == ItemLogWriter.COLLECTION) {
+                    addCollection(item, name, value);
+                } else {
+                    throw new IOException("Item log " + file + " is corrupt - unexpected record"
+                            + " type " + record[0] + " at position " + offset);
+                }
+            }
+        }
+        return item;
+    }
+
+    private static void addAttribute(Item item, String name, String value) {
+        Attribute a = new Attribute();
+        a.setName(name);
+        a.setValue(value);
+        a.setItem(item);
+        item.getAttributes().add(a);
+    }
+
+    private static void addReference(Item item, String name, String refId) {
+        Reference r = new Reference();
+        r.setName(name);
+        r.setRefId(refId);
+        r.setItem(item);
+        item.getReferences().add(r);
+    }
+
+    private static void addCollection(Item item, String name, String refIds) {
+        ReferenceList r = new ReferenceList();
+        r.setName(name);
+        r.setRefIds(refIds);
+        r.setItem(item);
+        item.getCollections().add(r);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Reads the items in the log in the order they were written. Records that add to an item
+     * written earlier are skipped, as they are merged into the item when it is read.
+     */
+    public class Scanner
+    {
+        private final DataInputStream in;
+        private final FileInputStream fis;
+        private long position;
+        private byte[] payload = new byte[0];
+        private int length = 0;
+
+        private Scanner(long position) throws IOException {
+            this.position = position;
+            fis = new FileInputStream(file);
+            fis.getChannel().position(position);
+            in = new DataInputStream(new BufferedInputStream(fis, 65536));
+        }
+
+        /**
+         * Returns the position in the file of the next record to be read.
+         *
+         * @return the position
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        /**
+         * Reads the payload of the next item record into the payload buffer.
+         *
+         * @return the position of the record, or -1 if there are no more items
+         */
+        private long readNext() throws IOException {
+            while (position < indexOffset) {
+                long recordOffset = position;
+                byte type = in.readByte();
+                length = in.readInt();
+                position += 5 + length;
+                if (type == ItemLogWriter.ITEM) {
+                    if (payload.length < length) {
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    }
+                    in.readFully(payload, 0, length);
+                    return recordOffset;
+                }
+                int skipped = 0;
+                while (skipped < length) {
+                    int s = in.skipBytes(length - skipped);
+                    if (s <= 0) {
+                        throw new EOFException("Item log " + file + " is truncated");
+                    }
+                    skipped += s;
+                }
+            }
+            return -1L;
+        }
+
+        /**
+         * Skips the next item.
+         *
+         * @return the position of the skipped item, or -1 if there are no more items
+         * @throws IOException if the file cannot be read
+         */
+        public long skip() throws IOException {
+            return readNext();
+        }
+
+        /**
+         * Returns the next item.
+         *
+         * @return an Item, or null if there are no more items
+         * @throws IOException if the file cannot be read
+         */
+        public Item next() throws IOException {
+            if (readNext() == -1L) {
+                return null;
+            }
+            return readItem(payload, 0, length);
+        }
+
+        /**
+         * Closes the stream.
+         *
+         * @throws IOException if an error occurs
+         */
+        public void close() throws IOException {
+            fis.close();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package org.intermine.dataconversion;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+import org.intermine.objectstore.ObjectStoreException;
+
+/**
+ * Stores Items by appending them to a binary file, which can be read back by ItemLogReader. This
+ * is an alternative to ObjectStoreItemWriter for sources that are too large to write to and read
+ * back from an items database efficiently.
+ *
+ * The file is a series of records, each a type byte and a payload length followed by the
+ * payload. Attributes, references and collections stored with an item are written in the same
+ * record as the item, and any stored afterwards for an item ID go in records of their own. When
+ * the writer is closed, an index of the position of every item, by identifier, is appended.
+ *
+ * A writer opened on an existing item log reads its index and removes it, so that the items of
+ * several converters can be written to one log. The combined index is written when the writer is
+ * closed.
+ *
+ * Item identifiers must be in the form that ItemToObjectTranslator expects, that is a namespace,
+ * an underscore and a number.
+ */
+public class ItemLogWriter implements ItemWriter
+{
+    private static final Logger LOG = Logger.getLogger(ItemLogWriter.class);
+
+    static final int MAGIC = 0x494d4c47;
+    static final int VERSION = 1;
+    static final byte ITEM = 1;
+    static final byte ATTRIBUTE = 2;
+    static final byte REFERENCE = 3;
+    static final byte COLLECTION = 4;
+    /** The number of items between each entry in the index of item positions in the file */
+    static final int CHECKPOINT_INTERVAL = 1024;
+
+    private final File file;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private long position = 0;
+    private int nextId = 1;
+    private int itemCount = 0;
+    private long[] checkpoints = new long[16];
+    private final Map<String, long[]> namespaceOffsets = new LinkedHashMap<String, long[]>();
+    private final Map<String, Integer> highest = new HashMap<String, Integer>();
+    private final Map<Integer, List<Long>> extras = new HashMap<Integer, List<Long>>();
+    private boolean closed = false;
+
+    /**
+     * Constructs the ItemWriter, creating the given file, or appending to it if it is an existing
+     * item log.
+     *
+     * @param file the file in which to store the Items
+     * @throws ObjectStoreException if the file cannot be created, or is not a complete item log
+     */
+    public ItemLogWriter(File file) throws ObjectStoreException {
+        this.file = file;
+        try {
+            if (file.length() > 0) {
+                readIndex();
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.setLength(position);
+                } finally {
+                    raf.close();
+                }
+                out = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(file, true), 65536));
+                LOG.info("Appending items to " + file + ", which already contains " + itemCount
+                        + " items");
+            } else {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                            65536));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                position = 8;
+                LOG.info("Writing items to " + file);
+            }
+        } catch (IOException e) {
+            throw new ObjectStoreException("Could not open item log " + file, e);
+        }
+    }
+
+    /**
+     * Reads the index of the existing item log, so that items can be appended to it. The new
+     * records are written over the old index, from the position it starts at.
+     */
+    private void readIndex() throws IOException {
+        ItemLogReader reader = new ItemLogReader(file);
+        try {
+            position = reader.getIndexOffset();
+            itemCount = reader.getItemCount();
+            // item IDs are given out in sequence from 1
+            nextId = itemCount + 1;
+            long[] oldCheckpoints = reader.getCheckpoints();
+            checkpoints = Arrays.copyOf(oldCheckpoints, Math.max(16,
+                        oldCheckpoints.length * 2));
+            for (Map.Entry<String, long[]> entry : reader.getNamespaceOffsets().entrySet()) {
+                long[] offsets = entry.getValue();
+                namespaceOffsets.put(entry.getKey(), Arrays.copyOf(offsets, offsets.length));
+                highest.put(entry.getKey(), new Integer(offsets.length - 1));
+            }
+            for (Map.Entry<Integer, long[]> entry : reader.getExtras().entrySet()) {
+                List<Long> offsets = new ArrayList<Long>();
+                for (long offset : entry.getValue()) {
+                    offsets.add(new Long(offset));
+                }
+                extras.put(entry.getKey(), offsets);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Integer store(Item item) throws ObjectStoreException {
+        if (StringUtils.isEmpty(item.getClassName())
+            && StringUtils.isEmpty(item.getImplementations())) {
+            throw new RuntimeException("className not set for item: " + item.getIdentifier());
+        }
+        String identifier = item.getIdentifier();
+        int index = (identifier == null ? -1 : identifier.indexOf('_'));
+        int number;
+        try {
+            number = Integer.parseInt(identifier.substring(index + 1));
+        } catch (RuntimeException e) {
+            number = -1;
+        }
+        if ((index < 0) || (number < 0)) {
+            throw new IllegalArgumentException("Cannot write item with identifier \"" + identifier
+                    + "\" to an item log - identifiers must be a namespace, an underscore, and"
+                    + " a number");
+        }
+        String namespace = identifier.substring(0, index);
+        long[] offsets = namespaceOffsets.get(namespace);
+        if ((offsets != null) && (number < offsets.length) && (offsets[number] != -1L)) {
+            throw new IllegalArgumentException("Item with identifier " + identifier
+                    + " has already been written to the item log");
+        }
+        Integer id = new Integer(nextId++);
+        item.setId(id);
+        try {
+            record.writeInt(id.intValue());
+            writeString(record, identifier);
+            writeString(record, item.getClassName());
+            writeString(record, item.getImplementations());
+            record.writeInt(item.getAttributes().size());
+            for (Attribute a : item.getAttributes()) {
+                writeString(record, a.getName());
+                writeString(record, a.getValue());
+            }
+            record.writeInt(item.getReferences().size());
+            for (Reference r : item.getReferences()) {
+                writeString(record, r.getName());
+                writeString(record, r.getRefId());
+            }
+            record.writeInt(item.getCollections().size());
+            for (ReferenceList r : item.getCollections()) {
+                writeString(record, r.getName());
+                writeString(record, r.getRefIds());
+            }
+            long offset = writeRecord(ITEM);
+            if (offsets == null) {
+                offsets = new long[Math.max(16, number + 1)];
+                Arrays.fill(offsets, -1L);
+                namespaceOffsets.put(namespace, offsets);
+            } else if (number >= offsets.length) {
+                int oldLength = offsets.length;
+                offsets = Arrays.copyOf(offsets, Math.max(oldLength * 2, number + 1));
+                Arrays.fill(offsets, oldLength, offsets.length, -1L);
+                namespaceOffsets.put(namespace, offsets);
+            }
+            offsets[number] = offset;
+            Integer oldHighest = highest.get(namespace);
+            if ((oldHighest == null) || (oldHighest.intValue() < number)) {
+                highest.put(namespace, new Integer(number));
+            }
+            if (itemCount % CHECKPOINT_INTERVAL == 0) {
+                int checkpoint = itemCount / CHECKPOINT_INTERVAL;
+                if (checkpoint >= checkpoints.length) {
+                    checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+                }
+                checkpoints[checkpoint] = offset;
+            }
+            itemCount++;
+        } catch (IOException e) {
+            throw new ObjectStoreException("Could not write item " + identifier + " to " + file,
+                    e);
+        }
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store(ReferenceList refList, Integer itemId) throws ObjectStoreException {
+        storeExtra(COLLECTION, itemId, refList.getName(), refList.getRefIds());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store(Reference ref, Integer itemId) throws ObjectStoreException {
+        storeExtra(REFERENCE, itemId, ref.getName(), ref.getRefId());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void store(Attribute att, Integer itemId) throws ObjectStoreException {
+        storeExtra(ATTRIBUTE, itemId, att.getName(), att.getValue());
+    }
+
+    private void storeExtra(byte type, Integer itemId, String name, String value)
+        throws ObjectStoreException {
+        if ((itemId == null) || (itemId.intValue() < 1) || (itemId.intValue() >= nextId)) {
+            throw new IllegalArgumentException("No item with ID " + itemId
+                    + " has been written to the item log");
+        }
+        try {
+            record.writeInt(itemId.intValue());
+            writeString(record, name);
+            writeString(record, value);
+            long offset = writeRecord(type);
+            List<Long> offsets = extras.get(itemId);
+            if (offsets == null) {
+                offsets = new ArrayList<Long>();
+                extras.put(itemId, offsets);
+            }
+            offsets.add(new Long(offset));
+        } catch (IOException e) {
+            throw new ObjectStoreException("Could not write " + name + " for item " + itemId
+                    + " to " + file, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void storeAll(Collection<Item> items) throws ObjectStoreException {
+        for (Item item : items) {
+            store(item);
+        }
+    }
+
+    /**
+     * Writes the index to the end of the file, and closes it. The file cannot be read until this
+     * has been done.
+     *
+     * {@inheritDoc}
+     */
+    public void close() throws ObjectStoreException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long indexOffset = position;
+            out.writeInt(itemCount);
+            int checkpointCount = (itemCount + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+            out.writeInt(checkpointCount);
+            for (int i = 0; i < checkpointCount; i++) {
+                out.writeLong(checkpoints[i]);
+            }
+            out.writeInt(namespaceOffsets.size());
+            for (Map.Entry<String, long[]> entry : namespaceOffsets.entrySet()) {
+                writeString(out, entry.getKey());
+                int length = highest.get(entry.getKey()).intValue() + 1;
+                out.writeInt(length);
+                long[] offsets = entry.getValue();
+                for (int i = 0; i < length; i++) {
+                    out.writeLong(offsets[i]);
+                }
+            }
+            out.writeInt(extras.size());
+            for (Map.Entry<Integer, List<Long>> entry : extras.entrySet()) {
+                out.writeInt(entry.getKey().intValue());
+                out.writeInt(entry.getValue().size());
+                for (Long offset : entry.getValue()) {
+                    out.writeLong(offset.longValue());
+                }
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.close();
+        } catch (IOException e) {
+            throw new ObjectStoreException("Could not write index of item log " + file, e);
+        }
+        LOG.info("Wrote " + itemCount + " items (" + position + " bytes) to " + file);
+    }
+
+    /**
+     * Writes the record that has been built up in the record buffer to the file.
+     *
+     * @return the position of the record in the file
+     */
+    private long writeRecord(byte type) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Item log " + file + " has been closed");
+        }
+        long offset = position;
+        record.flush();
+        out.writeByte(type);
+        out.writeInt(recordBytes.size());
+        recordBytes.writeTo(out);
+        position += 5 + recordBytes.size();
+        recordBytes.reset();
+        return offset;
+    }
+
+    /**
+     * Writes a String as a length in bytes followed by UTF-8, allowing for nulls and for strings
+     * longer than DataOutput.writeUTF() can handle.
+     */
+    static void writeString(DataOutputStream dos, String s) throws IOException {
+        if (s == null) {
+            dos.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,6 +32,7 @@ import org.intermine.model.fulldata.Reference;
 import org.intermine.model.fulldata.ReferenceList;
 import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.itemlog.ObjectStoreItemLogImpl;
 import org.intermine.objectstore.proxy.ProxyReference;
 import org.intermine.objectstore.query.BagConstraint;
 import org.intermine.objectstore.query.ClobAccess;
@@ -101,19 +103,26 @@ public class ItemToObjectTranslator extends Translator
         q.addToGroupBy(qe3);
         q.setDistinct(false);
         try {
-            if (os != null) {
+            Map<String, Integer> highestIds = new LinkedHashMap<String, Integer>();
+            if (os instanceof ObjectStoreItemLogImpl) {
+                // an item log has an index of the identifiers, and cannot run the query
+                highestIds.putAll(((ObjectStoreItemLogImpl) os).getReader()
+                        .getHighestIdentifiers());
+            } else if (os != null) {
                 Results res = os.execute(q, 1000, false, false, false);
-                int offset = 0;
                 @SuppressWarnings("unchecked") Collection<ResultsRow<Object>> tmpRes =
                     (Collection) res;
                 for (ResultsRow<Object> row : tmpRes) {
-                    String namespace = (String) row.get(0);
-                    idToNamespace.put(new Integer(offset), namespace);
-                    namespaceToId.put(namespace, new Integer(offset));
-                    int highest = ((Integer) row.get(1)).intValue();
-                    offset += highest + 1;
+                    highestIds.put((String) row.get(0), (Integer) row.get(1));
                 }
             }
+            int offset = 0;
+            for (Map.Entry<String, Integer> entry : highestIds.entrySet()) {
+                String namespace = entry.getKey();
+                idToNamespace.put(new Integer(offset), namespace);
+                namespaceToId.put(namespace, new Integer(offset));
+                offset += entry.getValue().intValue() + 1;
+            }
         } catch (Exception e) {
             throw new ObjectStoreException(e);
         }
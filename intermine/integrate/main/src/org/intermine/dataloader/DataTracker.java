@@ -18,12 +18,24 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.intermine.sql.Database;
 
@@ -41,6 +53,12 @@ public class DataTracker
 {
     private static final Logger LOG = Logger.getLogger(DataTracker.class);
 
+    /**
+     * The largest number of partitions chosen when the number is not specified.
+     */
+    public static final int MAX_DEFAULT_PARTITIONS = 16;
+    private static final int ENTRIES_PER_DEFAULT_PARTITION = 10000;
+
     /* We need a Map or two to store the entries. Each entry can be in several states:
      * 1. Recently-used and new - must be written to the database eventually.
      * 2. Recently-used and dirty - must be written back to the database eventually.
@@ -50,43 +68,69 @@ public class DataTracker
      * This class will store types 1, 2 and 3 in a LinkedHashMap, ordered by access, and type 4 in a
      * WeakHashMap or CacheMap, or may not even store them at all.
      *
-     * The LinkedHashMap has a threshold size. When it grows bigger than maxSize, a database write
-     * occurs, which stores commitSize least-recently-used entries in the database, which then
-     * become type 4.
+     * The entries are split by object id into several partitions, each with its own
+     * LinkedHashMap, write-back cache and lock, so that threads working on different objects do
+     * not contend. When a partition's LinkedHashMap grows bigger than its share of maxSize, a
+     * database write occurs, which stores its share of commitSize least-recently-used entries in
+     * the database, which then become type 4.
+     *
+     * Writes are pipelined: the CacheStorer thread encodes a batch for COPY while the writer
+     * thread is still sending the previous batch to the database. Entries stay in the write-back
+     * cache of their partition until the batch containing them has been committed.
      */
-    private int maxSize;
-    private int commitSize;
-    private LinkedHashMap<Integer, ObjectDescription> cache;
-    private HashMap<Integer, ObjectDescription> writeBack =
-        new HashMap<Integer, ObjectDescription>();
-    private HashMap<String, Source> nameToSource = new HashMap<String, Source>();
-    private HashMap<Source, String> sourceToName = new HashMap<Source, String>();
+    private List<Partition> partitions;
+    private Map<String, Source> nameToSource = new ConcurrentHashMap<String, Source>();
+    private Map<Source, String> sourceToName = new ConcurrentHashMap<Source, String>();
     private Connection conn;
     private Connection storeConn;
-    protected Exception broken = null;
+    protected volatile Exception broken = null;
     private CacheStorer cacheStorer;
-    private int version = 0;
+    private ExecutorService writer;
+    private Future<Integer> pendingWrite = null;
+    private final Object writeLock = new Object();
+    private AtomicInteger version = new AtomicInteger(0);
     // This reference is here so that the Database doesn't get garbage collected.
     private Database db;
 
-    private int ops = 0;
-    private int misses = 0;
-    private int batched = 0;
-    private long timeSpentReading = 0;
-    private long timeSpentPrefetching = 0;
+    private AtomicLong ops = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong batched = new AtomicLong();
+    private AtomicLong timeSpentReading = new AtomicLong();
+    private AtomicLong timeSpentPrefetching = new AtomicLong();
+    private AtomicLong spilledEntries = new AtomicLong();
+    private AtomicLong spilledRows = new AtomicLong();
+    private AtomicLong timeSpentWriting = new AtomicLong();
 
     /**
-     * Constructor for DataTracker.
+     * Constructor for DataTracker. The number of partitions is chosen from maxSize.
      *
      * @param db a Database to back the tracker
      * @param maxSize maximum number of cache entries
      * @param commitSize number of entries to write to the database at a time
      */
     public DataTracker(Database db, int maxSize, int commitSize) {
-        this.maxSize = maxSize;
-        this.commitSize = commitSize;
+        this(db, maxSize, commitSize, Math.max(1, Math.min(MAX_DEFAULT_PARTITIONS,
+                        maxSize / ENTRIES_PER_DEFAULT_PARTITION)));
+    }
+
+    /**
+     * Constructor for DataTracker.
+     *
+     * @param db a Database to back the tracker
+     * @param maxSize maximum number of cache entries
+     * @param commitSize number of entries to write to the database at a time
+     * @param partitionCount the number of partitions to split the entries into, by object id
+     */
+    public DataTracker(Database db, int maxSize, int commitSize, int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("partitionCount must be at least 1");
+        }
         this.db = db;
-        cache = new LinkedHashMap<Integer, ObjectDescription>(maxSize * 14 / 10, 0.75F, true);
+        partitions = new ArrayList<Partition>();
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new Partition(Math.max(1, maxSize / partitionCount),
+                        Math.max(1, commitSize / partitionCount)));
+        }
         try {
             conn = db.getConnection();
             conn.setAutoCommit(true);
@@ -104,6 +148,13 @@ public class DataTracker
             e2.initCause(e);
             throw e2;
         }
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread retval = new Thread(r, "DataTracker Writer");
+                retval.setDaemon(true);
+                return retval;
+            }
+        });
         cacheStorer = new CacheStorer();
         Thread cacheStorerThread = new Thread(cacheStorer, "DataTracker CacheStorer");
         cacheStorerThread.setDaemon(true);
@@ -134,6 +185,7 @@ public class DataTracker
      * @param ids a Set of Integers
      */
     public void prefetchIds(Set<Integer> ids) {
+        checkBroken();
         Connection prefetchConn = null;
         try {
             prefetchConn = db.getConnection();
@@ -141,20 +193,20 @@ public class DataTracker
             prefetchConn.createStatement().execute("SET enable_seqscan = off;");
             long startTime = System.currentTimeMillis();
             Set<Integer> toFetch = new HashSet<Integer>();
-            synchronized (this) {
-                if (broken != null) {
-                    IllegalArgumentException e = new IllegalArgumentException();
-                    e.initCause(broken);
-                    throw e;
-                }
-                for (Integer id : ids) {
-                    ObjectDescription desc = cache.get(id);
-                    if (desc == null) {
-                        desc = writeBack.get(id);
-                        cache.put(id, desc);
-                    }
-                    if (desc == null) {
-                        toFetch.add(id);
+            for (Map.Entry<Partition, List<Integer>> entry : groupByPartition(ids).entrySet()) {
+                Partition partition = entry.getKey();
+                synchronized (partition) {
+                    for (Integer id : entry.getValue()) {
+                        ObjectDescription desc = partition.cache.get(id);
+                        if (desc == null) {
+                            desc = partition.writeBack.get(id);
+                            if (desc != null) {
+                                partition.cache.put(id, desc);
+                            }
+                        }
+                        if (desc == null) {
+                            toFetch.add(id);
+                        }
                     }
                 }
             }
@@ -204,15 +256,27 @@ public class DataTracker
                     }
                 }
             }
-            synchronized (this) {
-                if (version <= highestVersionSeen) {
-                    version = highestVersionSeen + 1;
+            seenVersion(highestVersionSeen);
+            for (Map.Entry<Partition, List<Integer>> entry : groupByPartition(idsFetched.keySet())
+                    .entrySet()) {
+                Partition partition = entry.getKey();
+                boolean needPoke;
+                synchronized (partition) {
+                    for (Integer id : entry.getValue()) {
+                        // Another thread may have loaded or altered the entry in the meantime
+                        if ((partition.cache.get(id) == null)
+                                && (partition.writeBack.get(id) == null)) {
+                            partition.cache.put(id, idsFetched.get(id));
+                        }
+                    }
+                    needPoke = partition.isFull();
+                }
+                if (needPoke) {
+                    cacheStorer.poke();
                 }
-                cache.putAll(idsFetched);
-                maybePoke();
-                batched += idsFetched.size();
             }
-            timeSpentPrefetching += System.currentTimeMillis() - startTime;
+            batched.addAndGet(idsFetched.size());
+            timeSpentPrefetching.addAndGet(System.currentTimeMillis() - startTime);
         } catch (SQLException e) {
             broken = e;
             IllegalArgumentException e2 = new IllegalArgumentException();
@@ -236,49 +300,78 @@ public class DataTracker
      * @param field the name of the field
      * @return the Source
      */
-    public synchronized Source getSource(Integer id, String field) {
+    public Source getSource(Integer id, String field) {
         if (id == null) {
             throw new NullPointerException("id cannot be null");
         }
-        if (broken != null) {
-            IllegalArgumentException e = new IllegalArgumentException();
-            e.initCause(broken);
-            throw e;
+        checkBroken();
+        Partition partition = getPartition(id);
+        boolean needPoke;
+        Source retval;
+        synchronized (partition) {
+            ObjectDescription desc = getDesc(partition, id);
+            retval = desc.getSource(field);
+            needPoke = partition.isFull();
         }
-        ObjectDescription desc = getDesc(id, false);
-        return desc.getSource(field);
+        if (needPoke) {
+            cacheStorer.poke();
+        }
+        return retval;
     }
 
     /**
-     * Gets the object descriptor for a given object id
+     * Gets the object descriptor for a given object id. The caller must hold the lock on the
+     * partition.
+     *
+     * A description found in the write-back cache is copied before it is promoted back into the
+     * cache, whether or not the caller is going to modify it. The original may belong to a batch
+     * that is still being written, and that batch releases it from the write-back cache by
+     * identity, so it must never be shared with the cache.
      *
+     * @param partition the Partition that the id belongs to
      * @param id the ID
-     * @param forWrite true if the returned value is going to be modified
      * @return an ObjectDescriptor
      */
-    private ObjectDescription getDesc(Integer id, boolean forWrite) {
+    private ObjectDescription getDesc(Partition partition, Integer id) {
         long startTime = System.currentTimeMillis();
-        ObjectDescription desc = cache.get(id);
+        ObjectDescription desc = partition.cache.get(id);
         if (desc == null) {
-            desc = writeBack.get(id);
-            if (forWrite && (desc != null)) {
+            desc = partition.writeBack.get(id);
+            if (desc != null) {
                 desc = new ObjectDescription(desc);
+                partition.cache.put(id, desc);
             }
-            cache.put(id, desc);
         }
         if (desc == null) {
-            desc = new ObjectDescription();
-            try {
+            desc = fetchDesc(id);
+            partition.cache.put(id, desc);
+            misses.incrementAndGet();
+        }
+        timeSpentReading.addAndGet(System.currentTimeMillis() - startTime);
+        if (ops.incrementAndGet() % 1000000 == 0) {
+            LOG.info(getStatistics());
+        }
+        return desc;
+    }
+
+    /**
+     * Reads the object descriptor for a given object id from the backing database.
+     *
+     * @param id the ID
+     * @return an ObjectDescriptor
+     */
+    private ObjectDescription fetchDesc(Integer id) {
+        ObjectDescription desc = new ObjectDescription();
+        try {
+            int highestVersionSeen = Integer.MIN_VALUE;
+            synchronized (conn) {
                 long start = System.currentTimeMillis();
                 Statement s = conn.createStatement();
                 ResultSet r = s.executeQuery("select fieldname, sourcename, version from tracker"
                         + " where objectid = " + id + " ORDER BY version");
                 while (r.next()) {
                     desc.putClean(r.getString(1).intern(), stringToSource(r.getString(2)));
-                    int rowVersion = r.getInt(3);
-                    if (version <= rowVersion) {
-                        version = rowVersion + 1;
-                    }
+                    highestVersionSeen = Math.max(highestVersionSeen, r.getInt(3));
                 }
                 long now = System.currentTimeMillis();
                 //LOG.debug("Fetched entry from DB (time = " + (now - start) + " ms)");
@@ -287,21 +380,13 @@ public class DataTracker
                             + "- switching off sequential scans. You should analyse the database");
                     conn.createStatement().execute("SET enable_seqscan = off;");
                 }
-            } catch (SQLException e) {
-                broken = e;
-                IllegalArgumentException e2 = new IllegalArgumentException();
-                e2.initCause(broken);
-                throw e2;
             }
-            cache.put(id, desc);
-            maybePoke();
-            misses++;
-        }
-        timeSpentReading += System.currentTimeMillis() - startTime;
-        ops++;
-        if (ops % 1000000 == 0) {
-            LOG.info("Operations: " + ops + ", cache misses: " + misses + ", time spent reading: "
-                    + timeSpentReading);
+            seenVersion(highestVersionSeen);
+        } catch (SQLException e) {
+            broken = e;
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(broken);
+            throw e2;
         }
         return desc;
     }
@@ -313,7 +398,7 @@ public class DataTracker
      * @param field the name of the field
      * @param source the Source of the field
      */
-    public synchronized void setSource(Integer id, String field, Source source) {
+    public void setSource(Integer id, String field, Source source) {
         if (id == null) {
             throw new NullPointerException("id cannot be null");
         }
@@ -321,18 +406,22 @@ public class DataTracker
             throw new NullPointerException("Could not find given source (" + source
                     + ") in tracker. sourceToName = " + sourceToName);
         }
-        if (broken != null) {
-            IllegalArgumentException e = new IllegalArgumentException();
-            e.initCause(broken);
-            throw e;
+        checkBroken();
+        String fieldName = field.intern();
+        Partition partition = getPartition(id);
+        boolean needPoke;
+        synchronized (partition) {
+            ObjectDescription desc = getDesc(partition, id);
+            desc.put(fieldName, source);
+            // Lastly, we put the description into the cache, just in case we got it out of the
+            // write-back cache. This guarantees that we won't lose data by forgetting to write it
+            // to the database.
+            partition.cache.put(id, desc);
+            needPoke = partition.isFull();
+        }
+        if (needPoke) {
+            cacheStorer.poke();
         }
-        ObjectDescription desc = getDesc(id, true);
-        desc.put(field.intern(), source);
-        // Lastly, we put the description into the cache, just in case we got it out of the
-        // write-back cache. This guarantees that we won't lose data by forgetting to write it to
-        // the database.
-        cache.put(id, desc);
-        maybePoke();
     }
 
     /**
@@ -343,15 +432,17 @@ public class DataTracker
      *
      * @param id the ID of the object
      */
-    public synchronized void clearObj(Integer id) {
-        if (broken != null) {
-            IllegalArgumentException e = new IllegalArgumentException();
-            e.initCause(broken);
-            throw e;
+    public void clearObj(Integer id) {
+        checkBroken();
+        Partition partition = getPartition(id);
+        boolean needPoke;
+        synchronized (partition) {
+            partition.cache.put(id, new ObjectDescription());
+            needPoke = partition.isFull();
+        }
+        if (needPoke) {
+            cacheStorer.poke();
         }
-        ObjectDescription desc = new ObjectDescription();
-        cache.put(id, desc);
-        maybePoke();
     }
 
     /**
@@ -360,56 +451,50 @@ public class DataTracker
      * @return true if some action was performed
      */
     public boolean doWrite() {
-        if (broken != null) {
-            IllegalArgumentException e = new IllegalArgumentException();
-            e.initCause(broken);
-            throw e;
-        }
-        synchronized (writeBack) {
-            int cacheSize = cache.size();
-            Map<Integer, ObjectDescription> writeBatch = getWriteBatch();
-            if (writeBatch != null) {
-                LOG.info("Writing cache batch - batch size: " + writeBatch.size()
-                        + ", cache size: " + cacheSize + "->" + cache.size());
-                try {
-                    writeMap(writeBatch, false);
-                } catch (SQLException e) {
-                    broken = e;
-                    IllegalArgumentException e2 = new IllegalArgumentException();
-                    e2.initCause(broken);
-                    throw e2;
+        checkBroken();
+        boolean retval = false;
+        synchronized (writeLock) {
+            for (Partition partition : partitions) {
+                WriteBatch batch;
+                int cacheSize;
+                synchronized (partition) {
+                    cacheSize = partition.cache.size();
+                    Map<Integer, ObjectDescription> writeBatch = getWriteBatch(partition);
+                    batch = (writeBatch == null ? null : encode(partition, writeBatch, false));
+                    if (batch != null) {
+                        batch.written = writeBatch;
+                        LOG.debug("Writing cache batch - batch size: " + writeBatch.size()
+                                + ", partition size: " + cacheSize + "->"
+                                + partition.cache.size());
+                    }
+                }
+                if (batch != null) {
+                    submit(batch);
+                    retval = true;
                 }
-                clearWriteBack();
-                return true;
-            } else {
-                LOG.debug("Not writing cache batch - no dirty entries");
-                return false;
             }
         }
+        if (!retval) {
+            LOG.debug("Not writing cache batch - no dirty entries");
+        }
+        return retval;
     }
 
     /**
      * Flushes everything to the backing database.
      */
     public void flush() {
-        if (broken != null) {
-            IllegalArgumentException e = new IllegalArgumentException();
-            e.initCause(broken);
-            throw e;
-        }
-        LOG.info("Flushing cache - size: " + cache.size());
-        // Synchronise in this order to prevent deadlocks.
-        synchronized (writeBack) {
-            synchronized (this) {
-                try {
-                    writeMap(cache, true);
-                } catch (SQLException e) {
-                    broken = e;
-                    IllegalArgumentException e2 = new IllegalArgumentException();
-                    e2.initCause(broken);
-                    throw e2;
+        checkBroken();
+        LOG.info("Flushing cache - size: " + getSize());
+        synchronized (writeLock) {
+            for (Partition partition : partitions) {
+                WriteBatch batch;
+                synchronized (partition) {
+                    batch = encode(partition, partition.cache, true);
                 }
+                submit(batch);
             }
+            waitForPendingWrite();
         }
     }
 
@@ -418,12 +503,11 @@ public class DataTracker
      * can be performed on the tracker.
      */
     public void close() {
-        LOG.info("Closing DataTracker. Operations: " + ops + ", cache misses: " + misses
-                + ", time spent reading: " + timeSpentReading + ", prefetched: " + batched
-                + ", time spent prefetching: " + timeSpentPrefetching);
+        LOG.info("Closing DataTracker. " + getStatistics());
         cacheStorer.die();
         flush();
-        synchronized (this) {
+        writer.shutdown();
+        synchronized (writeLock) {
             try {
                 conn.close();
                 storeConn.close();
@@ -438,33 +522,34 @@ public class DataTracker
     }
 
     /**
-     * Returns a Map created from cache, containing the entries that should be flushed to the
-     * backing database. The entries are removed from the cache and put in a special write-back
-     * cache before this method terminates. Once you have finished storing the entries, you should
-     * call clearWriteBack() to clear this write-back cache.
+     * Returns a Map created from the cache of a partition, containing the entries that should be
+     * flushed to the backing database. The entries are removed from the cache and put in the
+     * partition's write-back cache before this method terminates. They are removed from the
+     * write-back cache by the writer thread once they have been committed.
      * This method will return null if it does not recommend flushing any entries to the backing
-     * database. The Map will probably only contain those entries that are dirty, however the method
-     * that uses this method should not rely on this fact, because such a method may be passed the
-     * cache instead in the instance of a flush().
+     * database. The caller must hold the lock on the partition.
      *
+     * @param partition the Partition
      * @return a Map from Integer to ObjectDescription
      */
-    private synchronized Map<Integer, ObjectDescription> getWriteBatch() {
-        if (cache.size() > maxSize) {
+    private Map<Integer, ObjectDescription> getWriteBatch(Partition partition) {
+        if (partition.isFull()) {
             Map<Integer, ObjectDescription> retval = new HashMap<Integer, ObjectDescription>();
             int count = 0;
-            Iterator<Map.Entry<Integer, ObjectDescription>> iter = cache.entrySet().iterator();
-            while ((count < commitSize) && iter.hasNext()) {
+            Iterator<Map.Entry<Integer, ObjectDescription>> iter = partition.cache.entrySet()
+                .iterator();
+            while ((count < partition.commitSize) && iter.hasNext()) {
                 Map.Entry<Integer, ObjectDescription> iterEntry = iter.next();
                 Integer id = iterEntry.getKey();
                 ObjectDescription desc = iterEntry.getValue();
                 if (desc.isDirty()) {
                     retval.put(id, desc);
-                    writeBack.put(id, desc);
+                    partition.writeBack.put(id, desc);
                 }
                 iter.remove();
                 count++;
             }
+            spilledEntries.addAndGet(count);
             return retval;
         } else {
             return null;
@@ -472,73 +557,28 @@ public class DataTracker
     }
 
     /**
-     * Clears the write-back cache. This should be called after the data has been committed to the
-     * database. Note that some of the entries may have been altered since they were put in the
-     * write-back cache. Data loss is avoided by the fact that such entries are placed back in the
-     * main cache.
-     */
-    private synchronized void clearWriteBack() {
-        writeBack.clear();
-    }
-
-    /**
-     * Writes the contents of the given Map to the backing database. Attempts to make use of all the
-     * SQL tricks to speed this operation up.
+     * Encodes the dirty entries in the given Map into a batch to be written to the backing
+     * database, using COPY if possible. The caller must hold the lock on the partition.
      *
+     * @param partition the Partition that the entries belong to
      * @param map a Map from Integer to ObjectDesciption
      * @param clean true if this method should call clean() on all the entries in the given Map, or
      * false if the given Map is going to be thrown away.
-     * @throws SQLException on any error with the backing database
+     * @return a WriteBatch
      */
-    private void writeMap(Map<Integer, ObjectDescription> map, boolean clean) throws SQLException {
-        long start = System.currentTimeMillis();
+    private WriteBatch encode(Partition partition, Map<Integer, ObjectDescription> map,
+            boolean clean) {
+        WriteBatch retval = new WriteBatch(partition, version.getAndIncrement());
         try {
-            org.postgresql.copy.CopyManager copyManager = null;
-            ByteArrayOutputStream baos = null;
-            DataOutputStream dos = null;
-            Statement s = null;
-            if (storeConn instanceof org.postgresql.PGConnection) {
-                copyManager = ((org.postgresql.PGConnection) storeConn).getCopyAPI();
-                baos = new ByteArrayOutputStream();
-                dos = new DataOutputStream(baos);
-                dos.writeBytes("PGCOPY\n");
-                dos.writeByte(255);
-                dos.writeBytes("\r\n");
-                dos.writeByte(0); // Signature done
-                dos.writeInt(0); // Flags - we aren't supplying OIDS
-                dos.writeInt(0); // Length of header extension
-            }
-            if (copyManager == null) {
-                s = storeConn.createStatement();
-                LOG.warn("Using slow portable writing method");
-            }
             for (Map.Entry<Integer, ObjectDescription> entry : map.entrySet()) {
-                Integer id = entry.getKey();
+                int id = entry.getKey().intValue();
                 ObjectDescription desc = entry.getValue();
                 if (desc.isDirty()) {
-                    Map<String, Source> orig = desc.getOrig();
-                    Map<String, Source> newData = desc.getNewData();
-                    for (Map.Entry<String, Source> fieldEntry : newData.entrySet()) {
-                        String field = fieldEntry.getKey();
-                        Source source = fieldEntry.getValue();
-                        if (!orig.containsKey(field) || (!orig.get(field).equals(source))) {
-                            // Insert required
-                            if (s == null) {
-                                dos.writeShort(4); // Number of fields
-                                dos.writeInt(4); // Length of an integer
-                                dos.writeInt(id.intValue()); // objectid
-                                dos.writeInt(field.length()); // Length of fieldname
-                                dos.writeBytes(field); // Field name
-                                String sourceName = sourceToString(source);
-                                dos.writeInt(sourceName.length()); // Length of source name
-                                dos.writeBytes(sourceName); // Source name
-                                dos.writeInt(4); // Length of an integer
-                                dos.writeInt(version); // version
-                            } else {
-                                s.addBatch("INSERT INTO tracker (objectid, fieldname, sourcename,"
-                                        + " version) VALUES (" + id + ", '" + field + "', '"
-                                        + sourceToString(source) + "', " + version + ")");
-                            }
+                    for (int i = 0; i < desc.getNewSize(); i++) {
+                        String field = desc.getNewField(i);
+                        Source source = desc.getNewSource(i);
+                        if (!source.equals(desc.getOrigSource(field))) {
+                            retval.add(id, field, sourceToString(source));
                         }
                     }
                     if (clean) {
@@ -546,39 +586,158 @@ public class DataTracker
                     }
                 }
             }
-            if (s == null) {
-                dos.writeShort(-1); // No more tuples
-                dos.flush();
-                copyManager.copyIn("COPY tracker FROM STDIN BINARY",
-                        new ByteArrayInputStream(baos.toByteArray()));
-            } else {
-                s.executeBatch();
-            }
-            version++;
-            storeConn.commit();
         } catch (IOException e) {
-            throw new SQLException(e.toString());
+            broken = e;
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(broken);
+            throw e2;
         }
-        long now = System.currentTimeMillis();
-        LOG.debug("Finished storing batch (time = " + (now - start) + " ms)");
+        return retval;
     }
 
     /**
-     * Pokes the CacheStorer thread if there are too many entries in the cache.
+     * Hands a batch to the writer thread, once the previous batch has been written. The caller
+     * must hold writeLock.
+     *
+     * @param batch the WriteBatch
      */
-    private void maybePoke() {
-        if (cache.size() > maxSize) {
-            cacheStorer.poke();
+    private void submit(WriteBatch batch) {
+        waitForPendingWrite();
+        pendingWrite = writer.submit(batch);
+    }
+
+    /**
+     * Waits for the writer thread to finish the batch it is working on. The caller must hold
+     * writeLock.
+     */
+    private void waitForPendingWrite() {
+        if (pendingWrite != null) {
+            try {
+                spilledRows.addAndGet(pendingWrite.get().intValue());
+            } catch (InterruptedException e) {
+                broken = e;
+            } catch (ExecutionException e) {
+                broken = (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+            pendingWrite = null;
+            checkBroken();
         }
     }
 
+    /**
+     * Records a version number read from the backing database, so that later writes supersede it.
+     *
+     * @param seen the version number, or Integer.MIN_VALUE if none were seen
+     */
+    private void seenVersion(int seen) {
+        int current = version.get();
+        while ((current <= seen) && (!version.compareAndSet(current, seen + 1))) {
+            current = version.get();
+        }
+    }
+
+    private Partition getPartition(Integer id) {
+        return partitions.get((id.intValue() & 0x7FFFFFFF) % partitions.size());
+    }
+
+    private Map<Partition, List<Integer>> groupByPartition(Set<Integer> ids) {
+        Map<Partition, List<Integer>> retval = new LinkedHashMap<Partition, List<Integer>>();
+        for (Integer id : ids) {
+            Partition partition = getPartition(id);
+            List<Integer> partitionIds = retval.get(partition);
+            if (partitionIds == null) {
+                partitionIds = new ArrayList<Integer>();
+                retval.put(partition, partitionIds);
+            }
+            partitionIds.add(id);
+        }
+        return retval;
+    }
+
+    private void checkBroken() {
+        if (broken != null) {
+            IllegalArgumentException e = new IllegalArgumentException();
+            e.initCause(broken);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of entries held in memory, not counting entries waiting to be written.
+     *
+     * @return an int
+     */
+    public int getSize() {
+        int retval = 0;
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                retval += partition.cache.size();
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the number of getSource and setSource operations performed.
+     *
+     * @return a long
+     */
+    public long getOperations() {
+        return ops.get();
+    }
+
+    /**
+     * Returns the number of operations that had to read from the backing database because the
+     * entry was neither in memory nor prefetched.
+     *
+     * @return a long
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries evicted from memory to make room for others.
+     *
+     * @return a long
+     */
+    public long getSpilledEntries() {
+        return spilledEntries.get();
+    }
+
+    /**
+     * Returns the number of rows written to the tracker table.
+     *
+     * @return a long
+     */
+    public long getSpilledRows() {
+        return spilledRows.get();
+    }
+
+    /**
+     * Returns a description of the counters of this tracker, suitable for logging.
+     *
+     * @return a String
+     */
+    public String getStatistics() {
+        long opCount = ops.get();
+        long missCount = misses.get();
+        return "Operations: " + opCount + ", cache misses: " + missCount + ", hit rate: "
+            + (opCount == 0 ? 100 : ((opCount - missCount) * 100) / opCount)
+            + "%, time spent reading: " + timeSpentReading.get() + ", prefetched: "
+            + batched.get() + ", time spent prefetching: " + timeSpentPrefetching.get()
+            + ", partitions: " + partitions.size() + ", spilled entries: "
+            + spilledEntries.get() + ", rows written: " + spilledRows.get()
+            + ", time spent writing: " + timeSpentWriting.get();
+    }
+
     /**
      * Converts a string sourcename to a Source.
      *
      * @param name a string source name
      * @return a Source
      */
-    public synchronized Source stringToSource(String name) {
+    public Source stringToSource(String name) {
         return stringToSource(name, null);
     }
 
@@ -589,16 +748,21 @@ public class DataTracker
      * @param type the source type
      * @return a Source
      */
-    public synchronized Source stringToSource(String name, String type) {
+    public Source stringToSource(String name, String type) {
         Source retval = nameToSource.get(name);
         if (retval == null) {
-            if (name.startsWith("skel_")) {
-                retval = new Source(name.substring(5), type, true);
-            } else {
-                retval = new Source(name, type, false);
+            synchronized (nameToSource) {
+                retval = nameToSource.get(name);
+                if (retval == null) {
+                    if (name.startsWith("skel_")) {
+                        retval = new Source(name.substring(5), type, true);
+                    } else {
+                        retval = new Source(name, type, false);
+                    }
+                    sourceToName.put(retval, name);
+                    nameToSource.put(name, retval);
+                }
             }
-            nameToSource.put(name, retval);
-            sourceToName.put(retval, name);
         }
         return retval;
     }
@@ -609,7 +773,7 @@ public class DataTracker
      * @param source a Source
      * @return the name
      */
-    public synchronized String sourceToString(Source source) {
+    public String sourceToString(Source source) {
         String retval = sourceToName.get(source);
         if (retval == null) {
             throw new NullPointerException("Could not find given source in tracker");
@@ -617,6 +781,117 @@ public class DataTracker
         return retval;
     }
 
+    /**
+     * A share of the tracker's entries, guarded by its own lock.
+     */
+    private static class Partition
+    {
+        final LinkedHashMap<Integer, ObjectDescription> cache;
+        final Map<Integer, ObjectDescription> writeBack =
+            new HashMap<Integer, ObjectDescription>();
+        final int maxSize;
+        final int commitSize;
+
+        Partition(int maxSize, int commitSize) {
+            this.maxSize = maxSize;
+            this.commitSize = commitSize;
+            cache = new LinkedHashMap<Integer, ObjectDescription>(maxSize * 14 / 10, 0.75F, true);
+        }
+
+        boolean isFull() {
+            return cache.size() > maxSize;
+        }
+    }
+
+    /**
+     * A batch of rows for the tracker table, encoded in the PostgreSQL binary COPY format, or as
+     * INSERT statements if the database does not support COPY. Running the batch writes it to the
+     * database on storeConn, commits, and then releases the entries from the partition's
+     * write-back cache.
+     */
+    private class WriteBatch implements Callable<Integer>
+    {
+        private Partition partition;
+        private int batchVersion;
+        private Map<Integer, ObjectDescription> written = Collections.emptyMap();
+        private ByteArrayOutputStream baos = null;
+        private DataOutputStream dos = null;
+        private List<String> inserts = null;
+        private int rows = 0;
+
+        WriteBatch(Partition partition, int batchVersion) {
+            this.partition = partition;
+            this.batchVersion = batchVersion;
+            if (storeConn instanceof org.postgresql.PGConnection) {
+                try {
+                    baos = new ByteArrayOutputStream();
+                    dos = new DataOutputStream(baos);
+                    dos.writeBytes("PGCOPY\n");
+                    dos.writeByte(255);
+                    dos.writeBytes("\r\n");
+                    dos.writeByte(0); // Signature done
+                    dos.writeInt(0); // Flags - we aren't supplying OIDS
+                    dos.writeInt(0); // Length of header extension
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            } else {
+                inserts = new ArrayList<String>();
+            }
+        }
+
+        void add(int id, String field, String sourceName) throws IOException {
+            if (dos != null) {
+                dos.writeShort(4); // Number of fields
+                dos.writeInt(4); // Length of an integer
+                dos.writeInt(id); // objectid
+                dos.writeInt(field.length()); // Length of fieldname
+                dos.writeBytes(field); // Field name
+                dos.writeInt(sourceName.length()); // Length of source name
+                dos.writeBytes(sourceName); // Source name
+                dos.writeInt(4); // Length of an integer
+                dos.writeInt(batchVersion); // version
+            } else {
+                inserts.add("INSERT INTO tracker (objectid, fieldname, sourcename,"
+                        + " version) VALUES (" + id + ", '" + field + "', '"
+                        + sourceName + "', " + batchVersion + ")");
+            }
+            rows++;
+        }
+
+        public Integer call() throws SQLException, IOException {
+            long start = System.currentTimeMillis();
+            if (dos != null) {
+                dos.writeShort(-1); // No more tuples
+                dos.flush();
+                ((org.postgresql.PGConnection) storeConn).getCopyAPI().copyIn(
+                        "COPY tracker FROM STDIN BINARY",
+                        new ByteArrayInputStream(baos.toByteArray()));
+            } else {
+                LOG.warn("Using slow portable writing method");
+                Statement s = storeConn.createStatement();
+                for (String insert : inserts) {
+                    s.addBatch(insert);
+                }
+                s.executeBatch();
+            }
+            storeConn.commit();
+            synchronized (partition) {
+                // A later batch may have spilled a newer description of the same object into
+                // writeBack before this one committed, so only release what this batch wrote
+                for (Map.Entry<Integer, ObjectDescription> entry : written.entrySet()) {
+                    if (partition.writeBack.get(entry.getKey()) == entry.getValue()) {
+                        partition.writeBack.remove(entry.getKey());
+                    }
+                }
+            }
+            long now = System.currentTimeMillis();
+            timeSpentWriting.addAndGet(now - start);
+            LOG.debug("Finished storing batch (time = " + (now - start) + " ms)");
+            return new Integer(rows);
+        }
+    }
+
     private class CacheStorer implements Runnable
     {
         private boolean needAction = false;
@@ -116,6 +116,7 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
                     + " datatracker commit size specified (check properties file)");
         }
         String trackerMissingClassesString = props.getProperty("datatrackerMissingClasses");
+        String trackerPartitionsString = props.getProperty("datatrackerPartitions");
 
         ObjectStoreWriter writer = ObjectStoreWriterFactory.getObjectStoreWriter(writerAlias);
         try {
@@ -132,10 +133,18 @@ public class IntegrationWriterDataTrackingImpl extends IntegrationWriterAbstract
                     trackerMissingClasses.add(c);
                 }
             }
-            Constructor<? extends DataTracker> con = trackerClass.getConstructor(
-                    new Class[] {Database.class, Integer.TYPE, Integer.TYPE});
-            DataTracker newDataTracker = con.newInstance(new Object[] {db,
-                new Integer(maxSize), new Integer(commitSize)});
+            DataTracker newDataTracker;
+            if (trackerPartitionsString == null) {
+                Constructor<? extends DataTracker> con = trackerClass.getConstructor(
+                        new Class[] {Database.class, Integer.TYPE, Integer.TYPE});
+                newDataTracker = con.newInstance(new Object[] {db, new Integer(maxSize),
+                    new Integer(commitSize)});
+            } else {
+                Constructor<? extends DataTracker> con = trackerClass.getConstructor(
+                        new Class[] {Database.class, Integer.TYPE, Integer.TYPE, Integer.TYPE});
+                newDataTracker = con.newInstance(new Object[] {db, new Integer(maxSize),
+                    new Integer(commitSize), Integer.valueOf(trackerPartitionsString)});
+            }
 
             Constructor<? extends IntegrationWriterDataTrackingImpl> con2 =
                 iwClass.getConstructor(new Class[] {ObjectStoreWriter.class, DataTracker.class,
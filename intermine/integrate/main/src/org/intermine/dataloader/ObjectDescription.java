@@ -10,20 +10,27 @@ package org.intermine.dataloader;
  *
  */
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Object class used by DataTracker for data tracking.
  *
+ * The fieldname-source mappings are held in small parallel arrays rather than HashMaps. Objects
+ * rarely have more than a few dozen fields, so a linear scan over (usually interned) field names
+ * is as fast as hashing, and the tracker can hold many more descriptions in the same heap.
+ *
  * @author Matthew Wakeling
  */
 public class ObjectDescription
 {
+    private static final String[] NO_FIELDS = new String[0];
+    private static final Source[] NO_SOURCES = new Source[0];
+
     private boolean dirty = false;
-    private Map<String, Source> orig = null;
-    private Map<String, Source> newData = null;
+    private String[] origFields = NO_FIELDS;
+    private Source[] origSources = NO_SOURCES;
+    private int origSize = 0;
+    private String[] newFields = null;
+    private Source[] newSources = null;
+    private int newSize = 0;
 
     /**
      * Constructs a new ObjectDescription.
@@ -39,11 +46,13 @@ public class ObjectDescription
      */
     public ObjectDescription(ObjectDescription desc) {
         dirty = desc.dirty;
-        if (desc.orig != null) {
-            orig = new HashMap<String, Source>(desc.orig);
-        }
-        if (desc.newData != null) {
-            newData = new HashMap<String, Source>(desc.newData);
+        origSize = desc.origSize;
+        origFields = copy(desc.origFields, origSize);
+        origSources = copy(desc.origSources, origSize);
+        if (desc.newFields != null) {
+            newSize = desc.newSize;
+            newFields = copy(desc.newFields, newSize);
+            newSources = copy(desc.newSources, newSize);
         }
     }
 
@@ -58,10 +67,18 @@ public class ObjectDescription
         if (dirty) {
             throw new IllegalStateException("Can't putClean() on a dirty ObjectDescription");
         }
-        if (orig == null) {
-            orig = new HashMap<String, Source>();
+        int index = indexOf(origFields, origSize, fieldName);
+        if (index == -1) {
+            if (origSize == origFields.length) {
+                origFields = grow(origFields, origSize);
+                origSources = grow(origSources, origSize);
+            }
+            origFields[origSize] = fieldName;
+            origSources[origSize] = source;
+            origSize++;
+        } else {
+            origSources[index] = source;
         }
-        orig.put(fieldName, source);
     }
 
     /**
@@ -74,9 +91,22 @@ public class ObjectDescription
     public void put(String fieldName, Source source) {
         if (!dirty) {
             dirty = true;
-            newData = new HashMap<String, Source>();
+            newFields = new String[4];
+            newSources = new Source[4];
+            newSize = 0;
+        }
+        int index = indexOf(newFields, newSize, fieldName);
+        if (index == -1) {
+            if (newSize == newFields.length) {
+                newFields = grow(newFields, newSize);
+                newSources = grow(newSources, newSize);
+            }
+            newFields[newSize] = fieldName;
+            newSources[newSize] = source;
+            newSize++;
+        } else {
+            newSources[index] = source;
         }
-        newData.put(fieldName, source);
     }
 
     /**
@@ -86,16 +116,13 @@ public class ObjectDescription
      * @return the Source, or null if it doesn't exist
      */
     public Source getSource(String fieldName) {
-        if (newData != null) {
-            Source retval = newData.get(fieldName);
-            if (retval != null) {
-                return retval;
+        if (newFields != null) {
+            int index = indexOf(newFields, newSize, fieldName);
+            if (index != -1) {
+                return newSources[index];
             }
         }
-        if (orig != null) {
-            return orig.get(fieldName);
-        }
-        return null;
+        return getOrigSource(fieldName);
     }
 
     /**
@@ -114,34 +141,91 @@ public class ObjectDescription
     public void clean() {
         if (dirty) {
             dirty = false;
-            if (orig == null) {
-                orig = new HashMap<String, Source>();
-            }
-            for (Map.Entry<String, Source> entry : newData.entrySet()) {
-                orig.put(entry.getKey(), entry.getValue());
+            for (int i = 0; i < newSize; i++) {
+                putClean(newFields[i], newSources[i]);
             }
-            newData = null;
+            newFields = null;
+            newSources = null;
+            newSize = 0;
         }
     }
 
     /**
-     * Returns the original data, as reflected in the backing database.
+     * Returns the Source for a field as reflected in the backing database.
      *
-     * @return a Map
+     * @param fieldName the fieldname to look up
+     * @return the Source, or null if there is none
      */
-    protected Map<String, Source> getOrig() {
-        if (orig == null) {
-            return Collections.emptyMap();
-        }
-        return orig;
+    protected Source getOrigSource(String fieldName) {
+        int index = indexOf(origFields, origSize, fieldName);
+        return index == -1 ? null : origSources[index];
     }
 
     /**
-     * Returns the new data, which needs to be written back into the backing database.
+     * Returns the number of fieldname-source mappings that need to be written back into the
+     * backing database.
      *
-     * @return a Map
+     * @return an int
      */
-    protected Map<String, Source> getNewData() {
-        return newData;
+    protected int getNewSize() {
+        return newSize;
+    }
+
+    /**
+     * Returns the fieldname of a mapping that needs to be written back.
+     *
+     * @param index an index less than getNewSize()
+     * @return the fieldname
+     */
+    protected String getNewField(int index) {
+        return newFields[index];
+    }
+
+    /**
+     * Returns the Source of a mapping that needs to be written back.
+     *
+     * @param index an index less than getNewSize()
+     * @return the Source
+     */
+    protected Source getNewSource(int index) {
+        return newSources[index];
+    }
+
+    private static int indexOf(String[] fields, int size, String fieldName) {
+        for (int i = 0; i < size; i++) {
+            if (fields[i] == fieldName) {
+                return i;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (fields[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String[] grow(String[] array, int size) {
+        String[] retval = new String[Math.max(4, size * 2)];
+        System.arraycopy(array, 0, retval, 0, size);
+        return retval;
+    }
+
+    private static Source[] grow(Source[] array, int size) {
+        Source[] retval = new Source[Math.max(4, size * 2)];
+        System.arraycopy(array, 0, retval, 0, size);
+        return retval;
+    }
+
+    private static String[] copy(String[] array, int size) {
+        String[] retval = new String[size];
+        System.arraycopy(array, 0, retval, 0, size);
+        return retval;
+    }
+
+    private static Source[] copy(Source[] array, int size) {
+        Source[] retval = new Source[size];
+        System.arraycopy(array, 0, retval, 0, size);
+        return retval;
     }
 }
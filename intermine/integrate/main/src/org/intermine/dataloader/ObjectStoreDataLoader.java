@@ -11,6 +11,7 @@ package org.intermine.dataloader;
  */
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
@@ -25,6 +26,7 @@ import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.SingletonResults;
 import org.intermine.util.DynamicUtil;
 import org.intermine.util.IntPresentSet;
+import org.intermine.util.ObjectPipe;
 import org.intermine.util.PropertiesUtil;
 
 /**
@@ -36,6 +38,8 @@ public class ObjectStoreDataLoader extends DataLoader
 {
     private static final Logger LOG = Logger.getLogger(ObjectStoreDataLoader.class);
     private static final int ITEM_READ_BATCH_SIZE = 5000;
+    private static final int REPORT_INTERVAL = 10000;
+    private static final int COMMIT_INTERVAL = 500000;
 
     /**
      * Construct an ObjectStoreDataLoader
@@ -66,6 +70,14 @@ public class ObjectStoreDataLoader extends DataLoader
      * same model as the destination IntegrationWriter.  If the class is InterMineObject then
      * all data will be loaded.
      *
+     * The load runs as a pipeline. A reader thread iterates the source, which translates the
+     * objects and fetches their equivalent objects in batches, while the calling thread merges
+     * and writes them in the order they were read. The merge/write stage stays on one thread
+     * because the IntegrationWriter works within a single transaction, and keeping it ordered
+     * means objects that share primary keys are merged exactly as they would be serially. The
+     * number of objects the reader may hold is set by the "dataLoader.readAhead" property, and
+     * the number of equivalent object fetching threads by "equivalentObjectFetcher.threads".
+     *
      * @param os the ObjectStore from which to read data
      * @param source the main Source
      * @param skelSource the skeleton Source
@@ -84,14 +96,16 @@ public class ObjectStoreDataLoader extends DataLoader
                 Properties props = PropertiesUtil.getPropertiesStartingWith(
                         "equivalentObjectFetcher");
                 if (!("false".equals(props.getProperty("equivalentObjectFetcher.useParallel")))) {
-                    LOG.info("Using ParallelBatchingFetcher - set the property "
-                            + "\"equivalentObjectFetcher.useParallel\" to false to use the standard"
-                            + " BatchingFetcher");
+                    int threads = getIntProperty(props, "equivalentObjectFetcher.threads",
+                            ParallelBatchingFetcher.DEFAULT_THREADS);
+                    LOG.info("Using ParallelBatchingFetcher with " + threads + " threads - set the"
+                            + " property \"equivalentObjectFetcher.useParallel\" to false to use"
+                            + " the standard BatchingFetcher");
                     ParallelBatchingFetcher eof =
                         new ParallelBatchingFetcher(((IntegrationWriterAbstractImpl)
                                 getIntegrationWriter()).getBaseEof(),
                             ((IntegrationWriterDataTrackingImpl) getIntegrationWriter())
-                            .getDataTracker(), source);
+                            .getDataTracker(), source, threads);
                     ((IntegrationWriterAbstractImpl) getIntegrationWriter()).setEof(eof);
                     os = eof.getNoseyObjectStore(os);
                 } else {
@@ -110,103 +124,102 @@ public class ObjectStoreDataLoader extends DataLoader
             Properties props = PropertiesUtil.getPropertiesStartingWith("dataLoader");
             boolean allowMultipleErrors = "true".equals(props.getProperty(
                             "dataLoader.allowMultipleErrors"));
-            long[] times = new long[20];
-            for (int i = 0; i < 20; i++) {
-                times[i] = -1;
-            }
+            int readAhead = getIntProperty(props, "dataLoader.readAhead", ITEM_READ_BATCH_SIZE);
             Query q = new Query();
             QueryClass qc = new QueryClass(queryClass);
             q.addFrom(qc);
             q.addToSelect(qc);
             q.setDistinct(false);
-            long opCount = 0;
-            long time = System.currentTimeMillis();
-            long startTime = time;
-            long timeSpentRead = 0;
-            long timeSpentWrite = 0;
+            long startTime = System.currentTimeMillis();
             long timeSpentCommit = 0;
-            long timeSpentLoop = 0;
+            StageStatistics readStats = new StageStatistics("Read", REPORT_INTERVAL);
+            StageStatistics writeStats = new StageStatistics("Merge/write", REPORT_INTERVAL);
             getIntegrationWriter().beginTransaction();
             SingletonResults res = os.executeSingleton(q, ITEM_READ_BATCH_SIZE, false, false, true);
-            long time4 = System.currentTimeMillis();
-            long time1, time2, time3;
             @SuppressWarnings({ "unchecked", "rawtypes" })
             Collection<FastPathObject> tmpRes = (Collection) res;
-            for (FastPathObject obj : tmpRes) {
-                time1 = System.currentTimeMillis();
-                timeSpentLoop += time1 - time4;
-                time2 = System.currentTimeMillis();
-                timeSpentRead += time2 - time1;
-                //if ("org.intermine.model.chado.feature".equals(obj.getClass().getName())) {
-                //    String objText = obj.toString();
-                //    int objTextLen = objText.length();
-                //    System//.out.println("Storing " + objText.substring(0, (objTextLen > 60 ? 60
-                //                    : objTextLen)));
-                //}
-                try {
-                    getIntegrationWriter().store(obj, source, skelSource);
-                } catch (RuntimeException e) {
-                    String identifier = null;
-                    if ((origOs instanceof ObjectStoreFastCollectionsForTranslatorImpl)
-                           && (obj instanceof InterMineObject)) {
-                        ItemToObjectTranslator trans = (ItemToObjectTranslator)
-                            ((ObjectStoreFastCollectionsForTranslatorImpl) origOs).getTranslator();
-                        identifier = trans.idToIdentifier(((InterMineObject) obj).getId());
-                    }
-                    LOG.error("Exception while dataloading" + (identifier == null ? ""
-                                : " item with identifier " + identifier), e);
-                    errorCount++;
-                    if (errorCount >= 100) {
-                        throw new RuntimeException("Too many data loading exceptions - to stop on"
-                                + " the first error, set the property"
-                                + " \"dataLoader.allowMultipleErrors\" to false", e);
+            Reader reader = null;
+            Iterator<FastPathObject> objects = tmpRes.iterator();
+            if (readAhead > 0) {
+                LOG.info("Reading up to " + readAhead + " objects ahead of the merge/write stage"
+                        + " - set the property \"dataLoader.readAhead\" to 0 to read and write"
+                        + " on one thread");
+                reader = new Reader(objects, readAhead, readStats);
+                Thread t = new Thread(reader, "ObjectStoreDataLoader Reader");
+                t.setDaemon(true);
+                t.start();
+                objects = reader.getPipe();
+            }
+            try {
+                long time1 = System.currentTimeMillis();
+                while (objects.hasNext()) {
+                    FastPathObject obj = objects.next();
+                    long time2 = System.currentTimeMillis();
+                    if (reader == null) {
+                        if (readStats.add(time2 - time1)) {
+                            LOG.info(readStats.report());
+                        }
+                    } else {
+                        writeStats.addBlocked(time2 - time1);
                     }
-                    if (!allowMultipleErrors) {
-                        throw new RuntimeException("Exception while dataloading - to allow multiple"
-                                + " errors, set the property \"dataLoader.allowMultipleErrors\" to"
-                                + " true\n" + (identifier == null ? ""
-                                    : "Problem while loading item identifier " + identifier
-                                    + " because\n") + e.getMessage(), e);
+                    try {
+                        getIntegrationWriter().store(obj, source, skelSource);
+                    } catch (RuntimeException e) {
+                        String identifier = null;
+                        if ((origOs instanceof ObjectStoreFastCollectionsForTranslatorImpl)
+                               && (obj instanceof InterMineObject)) {
+                            ItemToObjectTranslator trans = (ItemToObjectTranslator)
+                                ((ObjectStoreFastCollectionsForTranslatorImpl) origOs)
+                                .getTranslator();
+                            identifier = trans.idToIdentifier(((InterMineObject) obj).getId());
+                        }
+                        LOG.error("Exception while dataloading" + (identifier == null ? ""
+                                    : " item with identifier " + identifier), e);
+                        errorCount++;
+                        if (errorCount >= 100) {
+                            throw new RuntimeException("Too many data loading exceptions - to stop"
+                                    + " on the first error, set the property"
+                                    + " \"dataLoader.allowMultipleErrors\" to false", e);
+                        }
+                        if (!allowMultipleErrors) {
+                            throw new RuntimeException("Exception while dataloading - to allow"
+                                    + " multiple errors, set the property"
+                                    + " \"dataLoader.allowMultipleErrors\" to true\n"
+                                    + (identifier == null ? ""
+                                        : "Problem while loading item identifier " + identifier
+                                        + " because\n") + e.getMessage(), e);
+                        }
                     }
-                }
-                time3 = System.currentTimeMillis();
-                timeSpentWrite += time3 - time2;
-                opCount++;
-                if (opCount % 10000 == 0) {
-                    long now = System.currentTimeMillis();
-                    if (times[(int) ((opCount / 10000) % 20)] == -1) {
-                        LOG.info("Dataloaded " + opCount + " objects - running at "
-                                + (600000000L / (now - time)) + " (avg "
-                                + ((60000L * opCount) / (now - startTime))
-                                + ") objects per minute -- now on "
-                                + DynamicUtil.getFriendlyName(obj.getClass()));
-                    } else {
-                        LOG.info("Dataloaded " + opCount + " objects - running at "
-                                + (600000000L / (now - time)) + " (200000 avg "
-                                + (12000000000L / (now - times[(int) ((opCount / 10000) % 20)]))
-                                + ") (avg = " + ((60000L * opCount) / (now - startTime))
-                                + ") objects per minute -- now on "
+                    long time3 = System.currentTimeMillis();
+                    if (writeStats.add(time3 - time2)) {
+                        LOG.info(writeStats.report() + " -- now on "
                                 + DynamicUtil.getFriendlyName(obj.getClass()));
+                        if (writeStats.getCount() % COMMIT_INTERVAL == 0) {
+                            getIntegrationWriter().batchCommitTransaction();
+                            timeSpentCommit += System.currentTimeMillis() - time3;
+                        }
                     }
-                    time = now;
-                    times[(int) ((opCount / 10000) % 20)] = now;
-                    if (opCount % 500000 == 0) {
-                        getIntegrationWriter().batchCommitTransaction();
-                    }
+                    time1 = System.currentTimeMillis();
+                }
+            } finally {
+                if (reader != null) {
+                    reader.cancel();
                 }
-                time4 = System.currentTimeMillis();
-                timeSpentCommit += time4 - time3;
             }
-            time3 = System.currentTimeMillis();
+            if (reader != null) {
+                reader.rethrow();
+            }
+            long time3 = System.currentTimeMillis();
             getIntegrationWriter().commitTransaction();
             getIntegrationWriter().close();
             long now = System.currentTimeMillis();
             timeSpentCommit += now - time3;
+            long opCount = writeStats.getCount();
             LOG.info("Finished dataloading " + opCount + " objects at " + ((60000L * opCount)
-                        / (now - startTime)) + " objects per minute (" + (now - startTime)
-                    + " ms total) for source " + source.getName());
-            LOG.info("Time spent: Reading: " + (timeSpentRead + timeSpentLoop) + ", Writing: "
-                    + timeSpentWrite + ", Committing: " + timeSpentCommit);
+                        / Math.max(1L, now - startTime)) + " objects per minute ("
+                    + (now - startTime) + " ms total) for source " + source.getName());
+            LOG.info("Time spent: " + readStats.getSummary() + "; " + writeStats.getSummary()
+                    + "; Committing: " + timeSpentCommit + " ms");
         } catch (RuntimeException e) {
             if (origOs instanceof ObjectStoreFastCollectionsForTranslatorImpl) {
                 IntPresentSet doneAlready = ((ObjectStoreFastCollectionsForTranslatorImpl) origOs)
@@ -229,4 +242,103 @@ public class ObjectStoreDataLoader extends DataLoader
                     + ".allowMultipleErrors\" to false");
         }
     }
+
+    private static int getIntProperty(Properties props, String name, int defaultValue) {
+        String value = props.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Property " + name + " must be an integer, but was "
+                    + value);
+        }
+    }
+
+    /**
+     * The read stage of the loader. Iterating the source Results is where items are translated
+     * into objects and where the equivalent objects for each batch are fetched, so running it on
+     * its own thread lets that work overlap with merging and writing. Objects are handed over in
+     * read order through a bounded ObjectPipe, so the merge/write stage sees exactly the order it
+     * would have seen on a single thread, and the reader blocks when it gets too far ahead.
+     */
+    protected static class Reader implements Runnable
+    {
+        private final Iterator<FastPathObject> source;
+        private final ObjectPipe<FastPathObject> pipe;
+        private final StageStatistics stats;
+        private volatile boolean cancelled = false;
+        private volatile Throwable failure = null;
+
+        /**
+         * Constructor.
+         *
+         * @param source an Iterator over the objects to load
+         * @param readAhead the maximum number of objects to hold for the next stage
+         * @param stats a StageStatistics to record progress in
+         */
+        public Reader(Iterator<FastPathObject> source, int readAhead, StageStatistics stats) {
+            this.source = source;
+            this.pipe = new ObjectPipe<FastPathObject>(readAhead);
+            this.stats = stats;
+        }
+
+        /**
+         * Returns the ObjectPipe from which the next stage should read objects.
+         *
+         * @return an ObjectPipe
+         */
+        public ObjectPipe<FastPathObject> getPipe() {
+            return pipe;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run() {
+            try {
+                long time1 = System.currentTimeMillis();
+                while ((!cancelled) && source.hasNext()) {
+                    FastPathObject obj = source.next();
+                    long time2 = System.currentTimeMillis();
+                    boolean report = stats.add(time2 - time1);
+                    pipe.put(obj);
+                    time1 = System.currentTimeMillis();
+                    stats.addBlocked(time1 - time2);
+                    if (report) {
+                        LOG.info(stats.report());
+                    }
+                }
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                pipe.finish();
+            }
+        }
+
+        /**
+         * Stops the reader, discarding any objects that have not yet been consumed. The reader
+         * may be blocked on a full pipe, so the pipe is drained until the reader has finished it.
+         */
+        public void cancel() {
+            cancelled = true;
+            while (pipe.hasNext()) {
+                pipe.next();
+            }
+        }
+
+        /**
+         * Throws any exception that stopped the reader early, on the calling thread.
+         */
+        public void rethrow() {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new RuntimeException("Exception while reading objects to load", failure);
+            }
+        }
+    }
 }
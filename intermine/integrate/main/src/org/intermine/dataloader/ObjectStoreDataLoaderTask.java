@@ -10,11 +10,20 @@ package org.intermine.dataloader;
  *
  */
 
+import java.io.File;
+
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
 
+import org.intermine.dataconversion.ItemLogReader;
+import org.intermine.dataconversion.ItemToObjectTranslator;
 import org.intermine.model.FastPathObject;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.ObjectStoreFactory;
+import org.intermine.objectstore.fastcollections.ObjectStoreFastCollectionsForTranslatorImpl;
+import org.intermine.objectstore.itemlog.ObjectStoreItemLogImpl;
+import org.intermine.objectstore.translating.ObjectStoreTranslatingImpl;
 
 /**
  * Uses an IntegrationWriter to load data from another ObjectStore.
@@ -31,6 +40,7 @@ public class ObjectStoreDataLoaderTask extends Task
     protected boolean ignoreDuplicates;
     protected String queryClass = null;
     protected String allSources;
+    protected String itemLog = null;
 
     /**
      * Set the IntegrationWriter.
@@ -96,6 +106,16 @@ public class ObjectStoreDataLoaderTask extends Task
         this.allSources = allSources;
     }
 
+    /**
+     * Set a file written by ItemLogWriter to load Items from. If this is set, the source
+     * ObjectStore is not used.
+     *
+     * @param itemLog the name of the file, or an empty string to load from the source
+     */
+    public void setItemLog(String itemLog) {
+        this.itemLog = itemLog;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -104,14 +124,25 @@ public class ObjectStoreDataLoaderTask extends Task
         if (integrationWriter == null) {
             throw new BuildException("integrationWriter attribute is not set");
         }
-        if (source == null) {
+        boolean useItemLog = (itemLog != null) && (!"".equals(itemLog));
+        if ((source == null) && (!useItemLog)) {
             throw new BuildException("source attribute is not set");
         }
 
+        ObjectStoreItemLogImpl items = null;
         try {
             IntegrationWriter iw = IntegrationWriterFactory.getIntegrationWriter(integrationWriter);
             PriorityConfig.verify(iw.getModel(), allSources);
             iw.setIgnoreDuplicates(ignoreDuplicates);
+            ObjectStore sourceOs;
+            if (useItemLog) {
+                items = new ObjectStoreItemLogImpl(new ItemLogReader(new File(itemLog)));
+                sourceOs = new ObjectStoreFastCollectionsForTranslatorImpl(
+                        new ObjectStoreTranslatingImpl(iw.getModel(), items,
+                            new ItemToObjectTranslator(iw.getModel(), items)));
+            } else {
+                sourceOs = ObjectStoreFactory.getObjectStore(source);
+            }
             if (queryClass != null) {
                 Class<?> tmpQueryClass = Class.forName(queryClass);
                 if (!FastPathObject.class.isAssignableFrom(tmpQueryClass)) {
@@ -120,17 +151,25 @@ public class ObjectStoreDataLoaderTask extends Task
                 }
                 @SuppressWarnings("unchecked") Class<? extends FastPathObject> tmp2QueryClass =
                     (Class) tmpQueryClass;
-                new ObjectStoreDataLoader(iw).process(ObjectStoreFactory.getObjectStore(source),
-                        iw.getMainSource(sourceName, sourceType), iw.getSkeletonSource(sourceName,
-                                sourceType), tmp2QueryClass);
+                new ObjectStoreDataLoader(iw).process(sourceOs, iw.getMainSource(sourceName,
+                            sourceType), iw.getSkeletonSource(sourceName, sourceType),
+                        tmp2QueryClass);
 
             } else {
-                new ObjectStoreDataLoader(iw).process(ObjectStoreFactory.getObjectStore(source),
+                new ObjectStoreDataLoader(iw).process(sourceOs,
                                                       iw.getMainSource(sourceName, sourceType),
                                                       iw.getSkeletonSource(sourceName, sourceType));
             }
         } catch (Exception e) {
             throw new BuildException(e);
+        } finally {
+            if (items != null) {
+                try {
+                    items.close();
+                } catch (ObjectStoreException e) {
+                    throw new BuildException(e);
+                }
+            }
         }
     }
 
@@ -37,6 +37,8 @@ import org.apache.log4j.Logger;
 public class ParallelBatchingFetcher extends BatchingFetcher
 {
     private static final Logger LOG = Logger.getLogger(ParallelBatchingFetcher.class);
+    /** The number of worker threads used if none is specified */
+    public static final int DEFAULT_THREADS = 10;
     private ObjectPipe<WorkUnit> jobs = new ObjectPipe<WorkUnit>();
 
     /**
@@ -48,8 +50,24 @@ public class ParallelBatchingFetcher extends BatchingFetcher
      */
     public ParallelBatchingFetcher(BaseEquivalentObjectFetcher fetcher, DataTracker dataTracker,
             Source source) {
+        this(fetcher, dataTracker, source, DEFAULT_THREADS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fetcher another EquivalentObjectFetcher
+     * @param dataTracker a DataTracker object to pass prefetch instructions to
+     * @param source the data Source that is being loaded
+     * @param threads the number of worker threads to fetch primary keys with
+     */
+    public ParallelBatchingFetcher(BaseEquivalentObjectFetcher fetcher, DataTracker dataTracker,
+            Source source, int threads) {
         super(fetcher, dataTracker, source);
-        for (int i = 0; i < 10; i++) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal value for threads: " + threads);
+        }
+        for (int i = 0; i < threads; i++) {
             Thread t = new Thread(new Worker(), "ParallelBatchingFetcher Worker " + (i + 1));
             t.start();
         }
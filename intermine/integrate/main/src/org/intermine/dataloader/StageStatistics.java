@@ -0,0 +1,150 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters for one stage of a data loading pipeline. A stage records how many objects
+ * it has handled, how long it spent working on them and how long it spent blocked waiting for a
+ * neighbouring stage. It also remembers when each of the last few reporting intervals ended, so
+ * that a rolling rate can be reported alongside the overall average.
+ */
+public class StageStatistics
+{
+    private static final int WINDOW = 20;
+
+    private final String name;
+    private final int interval;
+    private final long startTime;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong busyTime = new AtomicLong();
+    private final AtomicLong blockedTime = new AtomicLong();
+    private final long[] times = new long[WINDOW];
+    private long lastReport;
+    private long reports = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the stage, used in log messages
+     * @param interval the number of objects between reports
+     */
+    public StageStatistics(String name, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Illegal value for interval: " + interval);
+        }
+        this.name = name;
+        this.interval = interval;
+        startTime = System.currentTimeMillis();
+        lastReport = startTime;
+        for (int i = 0; i < WINDOW; i++) {
+            times[i] = -1;
+        }
+    }
+
+    /**
+     * Records that the stage has handled one more object.
+     *
+     * @param busy the number of milliseconds spent handling the object
+     * @return true if the stage has now reached a reporting interval
+     */
+    public boolean add(long busy) {
+        busyTime.addAndGet(busy);
+        return count.incrementAndGet() % interval == 0;
+    }
+
+    /**
+     * Records time that the stage spent waiting for a neighbouring stage.
+     *
+     * @param blocked a number of milliseconds
+     */
+    public void addBlocked(long blocked) {
+        blockedTime.addAndGet(blocked);
+    }
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return a String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of objects handled by the stage.
+     *
+     * @return a long
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the number of milliseconds the stage has spent working.
+     *
+     * @return a long
+     */
+    public long getBusyTime() {
+        return busyTime.get();
+    }
+
+    /**
+     * Returns the number of milliseconds the stage has spent blocked on a neighbouring stage.
+     *
+     * @return a long
+     */
+    public long getBlockedTime() {
+        return blockedTime.get();
+    }
+
+    /**
+     * Produces a progress report, and starts a new reporting interval. The report gives the rate
+     * over the last interval, over the last twenty intervals once they are available, and over
+     * the whole run, all in objects per minute.
+     *
+     * @return a String
+     */
+    public synchronized String report() {
+        long now = System.currentTimeMillis();
+        int slot = (int) (reports % WINDOW);
+        StringBuffer retval = new StringBuffer();
+        retval.append(name).append(" stage has handled ").append(count.get())
+            .append(" objects - running at ").append(rate(interval, now - lastReport));
+        if (times[slot] != -1) {
+            retval.append(" (").append(interval * WINDOW).append(" avg ")
+                .append(rate(interval * WINDOW, now - times[slot])).append(")");
+        }
+        retval.append(" (avg ").append(rate(count.get(), now - startTime))
+            .append(") objects per minute");
+        times[slot] = now;
+        lastReport = now;
+        reports++;
+        return retval.toString();
+    }
+
+    /**
+     * Produces a summary of the whole run of the stage.
+     *
+     * @return a String
+     */
+    public String getSummary() {
+        long elapsed = System.currentTimeMillis() - startTime;
+        return name + ": " + count.get() + " objects at " + rate(count.get(), elapsed)
+            + " objects per minute, busy " + busyTime.get() + " ms, blocked " + blockedTime.get()
+            + " ms";
+    }
+
+    private static long rate(long objects, long millis) {
+        return (60000L * objects) / Math.max(1L, millis);
+    }
+}
@@ -10,22 +10,48 @@ package org.intermine.dataloader;
  *
  */
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.log4j.Logger;
 import org.intermine.InterMineException;
+import org.intermine.metadata.Model;
 import org.intermine.model.FastPathObject;
 import org.intermine.model.InterMineObject;
 import org.intermine.objectstore.ObjectStoreException;
-import org.intermine.util.XmlBinding;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.util.DynamicUtil;
+import org.intermine.util.SAXParser;
+import org.intermine.xml.full.FullHandler;
+import org.intermine.xml.full.FullParser;
+import org.intermine.xml.full.Item;
+import org.intermine.xml.full.ItemHelper;
+import org.intermine.xml.full.Reference;
+import org.intermine.xml.full.ReferenceList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
  * Provides a method for unmarshalling XML given source into java
  * business objects then calls store on each.
  * store() is AbstractDataLoader.store().
  *
+ * The XML is read with SAX, and each object is stored as soon as every object it refers to,
+ * directly or through the primary keys of the objects it refers to, has been read. Objects are
+ * still stored in the order they appear in the file, so an object with a reference to an item
+ * further on holds back those after it until that item is read. Objects that have been stored are
+ * only remembered by id, so memory use depends on how far forward the references in the file
+ * reach rather than on the size of the file.
+ *
  * @author Richard Smith
  */
 
@@ -34,6 +60,11 @@ public class XmlDataLoader extends DataLoader
     private static final Logger LOG = Logger.getLogger(XmlDataLoader.class);
     private static int idCounter = 1;
 
+    /** The default maximum number of objects to hold back while waiting for references */
+    public static final int DEFAULT_MAX_PENDING_OBJECTS = 1000000;
+
+    private int maxPendingObjects = DEFAULT_MAX_PENDING_OBJECTS;
+
     /**
      * @see DataLoader#DataLoader(IntegrationWriter)
      *
@@ -43,6 +74,16 @@ public class XmlDataLoader extends DataLoader
         super(iw);
     }
 
+    /**
+     * Sets the maximum number of objects that may be held back waiting for an item referred to
+     * further on in the file. Loading fails if the limit is reached.
+     *
+     * @param maxPendingObjects the limit, or zero for no limit
+     */
+    public void setMaxPendingObjects(int maxPendingObjects) {
+        this.maxPendingObjects = maxPendingObjects;
+    }
+
     /**
      * Static method to unmarshall business objects from a given xml file and call
      * store on each.
@@ -54,68 +95,338 @@ public class XmlDataLoader extends DataLoader
      */
     public void processXml(InputStream is, Source source, Source skelSource)
         throws InterMineException {
+        LOG.info("Starting XmlDataLoader. Streaming XML file.");
+        StreamingHandler handler = new StreamingHandler(source, skelSource);
         try {
-            long[] times = new long[20];
+            getIntegrationWriter().beginTransaction();
+            SAXParser.parse(new InputSource(is), handler);
+            handler.finish();
+            getIntegrationWriter().commitTransaction();
+        } catch (ObjectStoreException e) {
+            throw new InterMineException("Problem with store method", e);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof ObjectStoreException) {
+                throw new InterMineException("Problem with store method", e.getCause());
+            }
+            throw new InterMineException("Error during unmarshalling", e);
+        } catch (SAXException e) {
+            throw new InterMineException("Error during unmarshalling", e);
+        } catch (IOException e) {
+            throw new InterMineException("Error during unmarshalling", e);
+        } catch (ParserConfigurationException e) {
+            throw new InterMineException("Error during unmarshalling", e);
+        }
+    }
+
+    /**
+     * Perform any necessary clean-up and close the integration writer
+     * @throws Exception if an error occurs
+     */
+    public void close() throws Exception {
+        getIntegrationWriter().close();
+    }
+
+    /**
+     * An object that has been read but not stored yet.
+     */
+    private static class PendingObject
+    {
+        private final FastPathObject obj;
+        private final String identifier;
+        private int missing = 0;
+        private List<PendingObject> refersTo = null;
+
+        PendingObject(FastPathObject obj, String identifier) {
+            this.obj = obj;
+            this.identifier = identifier;
+        }
+
+        void addRefersTo(PendingObject target) {
+            if (refersTo == null) {
+                refersTo = new ArrayList<PendingObject>();
+            }
+            refersTo.add(target);
+        }
+    }
+
+    /**
+     * A reference or collection of a pending object that refers to an item not read yet.
+     */
+    private static class Waiter
+    {
+        private final PendingObject from;
+        private final String fieldName;
+        private final boolean collection;
+
+        Waiter(PendingObject from, String fieldName, boolean collection) {
+            this.from = from;
+            this.fieldName = fieldName;
+            this.collection = collection;
+        }
+    }
+
+    /**
+     * Realises each Item as it is read, and stores the objects in file order once their
+     * references have been filled in.
+     */
+    private class StreamingHandler extends FullHandler
+    {
+        private final Model model;
+        private final Source source;
+        private final Source skelSource;
+        private final Map<String, Integer> storedIds = new HashMap<String, Integer>();
+        private final Map<String, PendingObject> pendingById
+            = new HashMap<String, PendingObject>();
+        private final Map<String, List<Waiter>> waiting = new HashMap<String, List<Waiter>>();
+        private final LinkedList<PendingObject> queue = new LinkedList<PendingObject>();
+        private PendingObject blocker = null;
+
+        private final long startTime = System.currentTimeMillis();
+        private long time = startTime;
+        private final long[] times = new long[20];
+        private long itemCount = 0;
+        private long opCount = 0;
+        private int maxQueued = 0;
+        private long maxHeapUsed = 0;
+
+        StreamingHandler(Source source, Source skelSource) {
+            this.model = getIntegrationWriter().getModel();
+            this.source = source;
+            this.skelSource = skelSource;
             for (int i = 0; i < 20; i++) {
                 times[i] = -1;
             }
-            long opCount = 0;
-            long time = (new Date()).getTime();
-            long startTime = time;
-            LOG.info("Starting XmlDataLoader. Loading XML file.");
-            XmlBinding binding = new XmlBinding(getIntegrationWriter().getObjectStore().getModel());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finishedItem(Item item) {
+            itemCount++;
+            PendingObject pending = realise(item);
+            queue.add(pending);
+            if (queue.size() > maxQueued) {
+                maxQueued = queue.size();
+            }
+            if (pending.identifier != null) {
+                List<Waiter> waiters = waiting.remove(pending.identifier);
+                if (waiters != null) {
+                    for (Waiter waiter : waiters) {
+                        setReference(waiter.from, waiter.fieldName, waiter.collection, pending);
+                    }
+                }
+            }
+            storeReadyObjects();
+            // Checked once the item just read has been used, as it may let the queue be stored
+            if ((maxPendingObjects > 0) && (queue.size() > maxPendingObjects)) {
+                throw new IllegalArgumentException("More than " + maxPendingObjects
+                        + " objects are waiting for items further on in the file to be read - "
+                        + "object with identifier " + queue.getFirst().identifier
+                        + " is waiting for " + (blocker == null ? "an item"
+                            : "the references of " + blocker.identifier)
+                        + ". Raise maxPendingObjects, or write referenced items first.");
+            }
+        }
 
-            List<FastPathObject> objects = binding.unmarshal(is);
-            LOG.info("Loaded XML file to list of " + objects.size() + " objects");
+        /**
+         * Stores all the remaining objects once the whole file has been read. References to items
+         * that were never read are left empty, with a warning.
+         *
+         * @throws ObjectStoreException if an error occurs storing
+         */
+        void finish() throws ObjectStoreException {
+            for (Map.Entry<String, List<Waiter>> entry : waiting.entrySet()) {
+                for (Waiter waiter : entry.getValue()) {
+                    LOG.warn("no item with identifier " + entry.getKey() + " for field "
+                            + waiter.fieldName + " in object: " + waiter.from.obj);
+                    waiter.from.missing--;
+                }
+            }
+            waiting.clear();
+            blocker = null;
+            while (!queue.isEmpty()) {
+                store(queue.removeFirst());
+            }
+            long now = System.currentTimeMillis();
+            LOG.info("Finished dataloading " + opCount + " objects at " + ((60000L * opCount)
+                        / Math.max(1, now - startTime)) + " objects per minute (" + (now
+                            - startTime) + " ms total) for source " + source.getName()
+                    + ". At most " + maxQueued + " objects were waiting for references, and at"
+                    + " most " + (maxHeapUsed / 1048576) + " MB of heap was in use.");
+        }
 
-            for (FastPathObject o : objects) {
-                if (o instanceof InterMineObject) {
-                    InterMineObject io = (InterMineObject) o;
-                    io.setId(new Integer(idCounter++));
+        private PendingObject realise(Item item) {
+            FastPathObject obj;
+            try {
+                obj = DynamicUtil.instantiateObject(
+                        ItemHelper.generateClassNames(item.getClassName(), model),
+                        ItemHelper.generateClassNames(item.getImplementations(), model));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Class not found for item "
+                        + item.getIdentifier(), e);
+            }
+            FullParser.populateAttributes(item, obj);
+            if (obj instanceof InterMineObject) {
+                ((InterMineObject) obj).setId(new Integer(idCounter++));
+            }
+            PendingObject pending = new PendingObject(obj, item.getIdentifier());
+            if (pending.identifier != null) {
+                pendingById.put(pending.identifier, pending);
+            }
+            for (Reference ref : item.getReferences()) {
+                Class<?> refClass;
+                try {
+                    refClass = obj.getFieldType(ref.getName());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Field " + ref.getName() + " not found in "
+                        + DynamicUtil.getFriendlyName(obj.getClass()));
+                }
+                if (!InterMineObject.class.isAssignableFrom(refClass)) {
+                    throw new IllegalArgumentException("Looking for a reference, but found a "
+                            + refClass.getName());
+                }
+                resolve(pending, ref.getName(), false, ref.getRefId());
+            }
+            for (ReferenceList refList : item.getCollections()) {
+                for (String refId : refList.getRefIds()) {
+                    resolve(pending, refList.getName(), true, refId);
                 }
             }
+            return pending;
+        }
 
-            getIntegrationWriter().beginTransaction();
-            for (FastPathObject o : objects) {
-                getIntegrationWriter().store(o, source, skelSource);
-                opCount++;
-                if (opCount % 1000 == 0) {
-                    long now = (new Date()).getTime();
-                    if (times[(int) ((opCount / 1000) % 20)] == -1) {
-                        LOG.info("Dataloaded " + opCount + " objects - running at "
-                                + (60000000 / (now - time)) + " (avg "
-                                + ((60000L * opCount) / (now - startTime))
-                                + ") objects per minute");
-                    } else {
-                        LOG.info("Dataloaded " + opCount + " objects - running at "
-                                + (60000000 / (now - time)) + " (20000 avg "
-                                + (1200000000 / (now - times[(int) ((opCount / 1000) % 20)]))
-                                + ") (avg = " + ((60000L * opCount) / (now - startTime))
-                                + ") objects per minute");
+        private void resolve(PendingObject from, String fieldName, boolean collection,
+                String refId) {
+            Integer storedId = storedIds.get(refId);
+            if (storedId != null) {
+                // The writer maps the id to the stored object without fetching it
+                setField(from.obj, fieldName, collection, new ProxyReference(
+                            getIntegrationWriter(), storedId, InterMineObject.class));
+                return;
+            }
+            PendingObject target = pendingById.get(refId);
+            if (target != null) {
+                setField(from.obj, fieldName, collection, target.obj);
+                from.addRefersTo(target);
+                return;
+            }
+            from.missing++;
+            List<Waiter> waiters = waiting.get(refId);
+            if (waiters == null) {
+                waiters = new ArrayList<Waiter>();
+                waiting.put(refId, waiters);
+            }
+            waiters.add(new Waiter(from, fieldName, collection));
+        }
+
+        private void setReference(PendingObject from, String fieldName, boolean collection,
+                PendingObject target) {
+            setField(from.obj, fieldName, collection, target.obj);
+            from.addRefersTo(target);
+            from.missing--;
+            if ((from.missing == 0) && (from == blocker)) {
+                blocker = null;
+            }
+        }
+
+        private void setField(FastPathObject obj, String fieldName, boolean collection,
+                Object value) {
+            if (collection) {
+                try {
+                    @SuppressWarnings("unchecked") Collection<Object> col
+                        = (Collection<Object>) obj.getFieldValue(fieldName);
+                    col.add(value);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalArgumentException("Cannot access collection " + fieldName
+                            + " in " + DynamicUtil.getFriendlyName(obj.getClass()), e);
+                }
+            } else {
+                obj.setFieldValue(fieldName, value);
+            }
+        }
+
+        /**
+         * Stores objects from the head of the queue for as long as they, and the unstored
+         * objects they refer to, have all their references filled in. The first object found
+         * waiting for an item is remembered, so the check is not repeated until that item has
+         * been read.
+         */
+        private void storeReadyObjects() {
+            while (!queue.isEmpty() && (blocker == null)) {
+                blocker = findBlocker(queue.getFirst());
+                if (blocker == null) {
+                    try {
+                        store(queue.removeFirst());
+                    } catch (ObjectStoreException e) {
+                        throw new RuntimeException(e);
                     }
-                    time = now;
-                    times[(int) ((opCount / 1000) % 20)] = now;
-                    if (opCount % 500000 == 0) {
-                        getIntegrationWriter().commitTransaction();
-                        getIntegrationWriter().beginTransaction();
+                }
+            }
+        }
+
+        private PendingObject findBlocker(PendingObject start) {
+            Map<PendingObject, Boolean> seen = new IdentityHashMap<PendingObject, Boolean>();
+            LinkedList<PendingObject> toVisit = new LinkedList<PendingObject>();
+            toVisit.add(start);
+            seen.put(start, Boolean.TRUE);
+            while (!toVisit.isEmpty()) {
+                PendingObject current = toVisit.removeFirst();
+                if (current.missing > 0) {
+                    return current;
+                }
+                if (current.refersTo != null) {
+                    for (PendingObject target : current.refersTo) {
+                        if (!seen.containsKey(target) && (target.identifier != null)
+                                && pendingById.containsKey(target.identifier)) {
+                            seen.put(target, Boolean.TRUE);
+                            toVisit.add(target);
+                        }
                     }
                 }
             }
-            getIntegrationWriter().commitTransaction();
-            long now = System.currentTimeMillis();
-            LOG.info("Finished dataloading " + opCount + " objects at " + ((60000L * opCount)
-                        / (now - startTime)) + " objects per minute (" + (now - startTime)
-                    + " ms total) for source " + source.getName());
-        } catch (ObjectStoreException e) {
-            throw new InterMineException("Problem with store method", e);
+            return null;
         }
-    }
 
-    /**
-     * Perform any necessary clean-up and close the integration writer
-     * @throws Exception if an error occurs
-     */
-    public void close() throws Exception {
-        getIntegrationWriter().close();
+        private void store(PendingObject pending) throws ObjectStoreException {
+            getIntegrationWriter().store(pending.obj, source, skelSource);
+            if (pending.identifier != null) {
+                pendingById.remove(pending.identifier);
+                if (pending.obj instanceof InterMineObject) {
+                    storedIds.put(pending.identifier, ((InterMineObject) pending.obj).getId());
+                }
+            }
+            // Objects that have been stored are only needed by id
+            pending.refersTo = null;
+            opCount++;
+            if (opCount % 1000 == 0) {
+                long now = System.currentTimeMillis();
+                Runtime runtime = Runtime.getRuntime();
+                long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+                if (heapUsed > maxHeapUsed) {
+                    maxHeapUsed = heapUsed;
+                }
+                if (times[(int) ((opCount / 1000) % 20)] == -1) {
+                    LOG.info("Dataloaded " + opCount + " objects - running at "
+                            + (60000000 / Math.max(1, now - time)) + " (avg "
+                            + ((60000L * opCount) / Math.max(1, now - startTime))
+                            + ") objects per minute, " + queue.size() + " waiting of "
+                            + itemCount + " read");
+                } else {
+                    LOG.info("Dataloaded " + opCount + " objects - running at "
+                            + (60000000 / Math.max(1, now - time)) + " (20000 avg "
+                            + (1200000000 / Math.max(1, now - times[(int) ((opCount / 1000)
+                                    % 20)])) + ") (avg = " + ((60000L * opCount)
+                                / Math.max(1, now - startTime)) + ") objects per minute, "
+                            + queue.size() + " waiting of " + itemCount + " read");
+                }
+                time = now;
+                times[(int) ((opCount / 1000) % 20)] = now;
+                if (opCount % 500000 == 0) {
+                    getIntegrationWriter().commitTransaction();
+                    getIntegrationWriter().beginTransaction();
+                }
+            }
+        }
     }
 }
@@ -40,6 +40,7 @@ public class XmlDataLoaderTask extends Task
     private String sourceType;
     protected boolean ignoreDuplicates = false;
     protected String file, xmlRes;
+    protected int maxPendingObjects = XmlDataLoader.DEFAULT_MAX_PENDING_OBJECTS;
 
     /**
      * Set the IntegrationWriter.
@@ -102,6 +103,14 @@ public class XmlDataLoaderTask extends Task
         LOG.info("Setting ignoreDuplicates to " + ignoreDuplicates);
     }
 
+    /**
+     * Set the maximum number of objects that may wait for items further on in the file.
+     * @param maxPendingObjects the limit, or zero for no limit
+     */
+    public void setMaxPendingObjects(int maxPendingObjects) {
+        this.maxPendingObjects = maxPendingObjects;
+    }
+
     /**
      * {@inheritDoc}
      * @throws BuildException
@@ -123,6 +132,7 @@ public class XmlDataLoaderTask extends Task
             IntegrationWriter iw = IntegrationWriterFactory.getIntegrationWriter(integrationWriter);
             iw.setIgnoreDuplicates(ignoreDuplicates);
             loader = new XmlDataLoader(iw);
+            loader.setMaxPendingObjects(maxPendingObjects);
             List<File> files = new ArrayList<File>();
 
             // read an InputStream from the classpath
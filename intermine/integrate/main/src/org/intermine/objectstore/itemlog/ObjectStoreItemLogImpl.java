@@ -0,0 +1,380 @@
+package org.intermine.objectstore.itemlog;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.intermine.dataconversion.ItemLogReader;
+import org.intermine.metadata.Model;
+import org.intermine.model.fulldata.Item;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.ObjectStoreAbstractImpl;
+import org.intermine.objectstore.query.BagConstraint;
+import org.intermine.objectstore.query.Constraint;
+import org.intermine.objectstore.query.ConstraintOp;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryValue;
+import org.intermine.objectstore.query.ResultsInfo;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.SimpleConstraint;
+
+/**
+ * A read-only ObjectStore of fulldata Items, backed by a file written by ItemLogWriter instead of
+ * an items database. It answers the queries that ItemToObjectTranslator produces, which are for
+ * all Items, optionally of one class name, or for Items with particular identifiers, so it can
+ * be used under an ObjectStoreTranslatingImpl to load a source without any SQL. Other queries
+ * throw an ObjectStoreException.
+ *
+ * Items are returned in the order they were written. Batches of a scan through the file are
+ * expected to be requested in order, so the position reached is kept for the next batch. A batch
+ * requested out of order is read from the nearest position in the index the log keeps of every
+ * 1024th Item, or for a scan of one class, of every 1024th Item of that class seen so far.
+ */
+public class ObjectStoreItemLogImpl extends ObjectStoreAbstractImpl
+{
+    private static final Logger LOG = Logger.getLogger(ObjectStoreItemLogImpl.class);
+    private static final int CHECKPOINT_INTERVAL = 1024;
+
+    private final ItemLogReader reader;
+    private final Map<String, List<Long>> checkpoints = new HashMap<String, List<Long>>();
+    private ItemLogReader.Scanner scanner = null;
+    private String scannerClassName = null;
+    private int scannerNext = -1;
+
+    /**
+     * Constructs an ObjectStore that reads from the given item log.
+     *
+     * @param reader an ItemLogReader
+     */
+    public ObjectStoreItemLogImpl(ItemLogReader reader) {
+        super(Model.getInstanceByName("fulldata"));
+        this.reader = reader;
+    }
+
+    /**
+     * Gets an ObjectStoreItemLogImpl for the given properties. The "file" property names the
+     * item log to read.
+     *
+     * @param osAlias the alias of this objectstore
+     * @param props the properties
+     * @return the ObjectStore
+     * @throws IllegalArgumentException if props are invalid
+     * @throws ObjectStoreException if the file cannot be read
+     */
+    public static ObjectStoreItemLogImpl getInstance(String osAlias, Properties props)
+        throws ObjectStoreException {
+        String fileName = props.getProperty("file");
+        if (fileName == null) {
+            throw new IllegalArgumentException("No 'file' property specified for item log"
+                    + " objectstore " + osAlias + " (check properties file)");
+        }
+        try {
+            return new ObjectStoreItemLogImpl(new ItemLogReader(new File(fileName)));
+        } catch (IOException e) {
+            throw new ObjectStoreException("Could not open item log " + fileName, e);
+        }
+    }
+
+    /**
+     * Returns the reader for the item log.
+     *
+     * @return an ItemLogReader
+     */
+    public ItemLogReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Closes the item log.
+     *
+     * @throws ObjectStoreException if an error occurs
+     */
+    public synchronized void close() throws ObjectStoreException {
+        try {
+            closeScanner();
+            reader.close();
+        } catch (IOException e) {
+            throw new ObjectStoreException("Error closing item log", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<ResultsRow<Object>> execute(Query q, int start, int limit, boolean optimise,
+            boolean explain, Map<Object, Integer> sequence) throws ObjectStoreException {
+        checkSequence(sequence, q, "Execute (START " + start + " LIMIT " + limit + ") ");
+        ItemFilter filter = new ItemFilter(q);
+        List<Item> items;
+        try {
+            if (filter.identifiers != null) {
+                items = filter.lookup();
+                items = items.subList(Math.min(start, items.size()),
+                        Math.min(start + limit, items.size()));
+            } else {
+                items = scan(filter.className, start, limit);
+            }
+        } catch (IOException e) {
+            throw new ObjectStoreException("Error reading item log for query " + q, e);
+        }
+        List<ResultsRow<Object>> retval = new ArrayList<ResultsRow<Object>>(items.size());
+        for (Item item : items) {
+            ResultsRow<Object> row = new ResultsRow<Object>();
+            row.add(item);
+            retval.add(row);
+        }
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ResultsInfo estimate(Query q) throws ObjectStoreException {
+        int rows = count(q, SEQUENCE_IGNORE);
+        return new ResultsInfo(0, 0, rows, rows, rows);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int count(Query q, Map<Object, Integer> sequence) throws ObjectStoreException {
+        checkSequence(sequence, q, "COUNT ");
+        ItemFilter filter = new ItemFilter(q);
+        try {
+            if (filter.identifiers != null) {
+                return filter.lookup().size();
+            } else if (filter.className == null) {
+                return reader.getItemCount();
+            }
+            int count = 0;
+            ItemLogReader.Scanner countScanner = reader.scan();
+            try {
+                Item item = countScanner.next();
+                while (item != null) {
+                    if (filter.className.equals(item.getClassName())) {
+                        count++;
+                    }
+                    item = countScanner.next();
+                }
+            } finally {
+                countScanner.close();
+            }
+            return count;
+        } catch (IOException e) {
+            throw new ObjectStoreException("Error reading item log for query " + q, e);
+        }
+    }
+
+    /**
+     * Reads a batch of the Items in the log in order, optionally only those with the given class
+     * name.
+     */
+    private synchronized List<Item> scan(String className, int start, int limit)
+        throws IOException {
+        String key = (className == null ? "" : className);
+        boolean continuing = (scanner != null) && (scannerNext == start)
+            && key.equals(scannerClassName);
+        List<Long> known = null;
+        if (className != null) {
+            known = checkpoints.get(className);
+            if (known == null) {
+                known = new ArrayList<Long>();
+                checkpoints.put(className, known);
+            }
+        }
+        if (!continuing) {
+            closeScanner();
+            if (className == null) {
+                // The log has its own index of positions for a scan of every Item
+                scanner = reader.scan(start);
+                scannerNext = start;
+            } else {
+                int checkpoint = Math.min(start / CHECKPOINT_INTERVAL, known.size() - 1);
+                if (checkpoint < 0) {
+                    scanner = reader.scan();
+                    scannerNext = 0;
+                } else {
+                    scanner = reader.scanFrom(known.get(checkpoint).longValue());
+                    scannerNext = checkpoint * CHECKPOINT_INTERVAL;
+                }
+                if (scannerNext < start) {
+                    LOG.info("Reading item log from item " + scannerNext + " of class "
+                            + className + " to reach item " + start);
+                }
+            }
+            scannerClassName = key;
+        }
+        List<Item> retval = new ArrayList<Item>();
+        while (retval.size() < limit) {
+            long position = scanner.getPosition();
+            Item item = scanner.next();
+            if (item == null) {
+                break;
+            }
+            if ((className == null) || className.equals(item.getClassName())) {
+                if ((known != null) && (scannerNext % CHECKPOINT_INTERVAL == 0)
+                        && (scannerNext / CHECKPOINT_INTERVAL == known.size())) {
+                    known.add(new Long(position));
+                }
+                if (scannerNext >= start) {
+                    retval.add(item);
+                }
+                scannerNext++;
+            }
+        }
+        return retval;
+    }
+
+    private void closeScanner() throws IOException {
+        if (scanner != null) {
+            scanner.close();
+            scanner = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isMultiConnection() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Object> getComponentsForQuery(Query q) {
+        return Collections.emptySet();
+    }
+
+    /**
+     * This method is not supported, as an item log is read-only.
+     *
+     * {@inheritDoc}
+     */
+    public Integer getSerial() throws ObjectStoreException {
+        throw new ObjectStoreException("getSerial is not supported by an item log");
+    }
+
+    /**
+     * The part of a query that this ObjectStore understands - a set of identifiers and a class
+     * name, either of which may be absent.
+     */
+    private class ItemFilter
+    {
+        private Collection<String> identifiers = null;
+        private String className = null;
+        private final Query q;
+        private final QueryClass qc;
+
+        ItemFilter(Query q) throws ObjectStoreException {
+            this.q = q;
+            if ((q.getSelect().size() != 1) || (q.getFrom().size() != 1)
+                    || (q.getSelect().get(0) != q.getFrom().iterator().next())
+                    || (!(q.getSelect().get(0) instanceof QueryClass))
+                    || (!Item.class.equals(((QueryClass) q.getSelect().get(0)).getType()))
+                    || (!q.getOrderBy().isEmpty()) || (!q.getGroupBy().isEmpty())) {
+                throw unsupported();
+            }
+            qc = (QueryClass) q.getSelect().get(0);
+            Constraint c = q.getConstraint();
+            if (c instanceof ConstraintSet) {
+                if (c.getOp() != ConstraintOp.AND) {
+                    throw unsupported();
+                }
+                for (Constraint sub : ((ConstraintSet) c).getConstraints()) {
+                    addConstraint(sub);
+                }
+            } else if (c != null) {
+                addConstraint(c);
+            }
+        }
+
+        private void addConstraint(Constraint c) throws ObjectStoreException {
+            if ((c instanceof BagConstraint) && (c.getOp() == ConstraintOp.IN)
+                    && isField(((BagConstraint) c).getQueryNode(), "identifier")) {
+                Collection<String> bag = new LinkedHashSet<String>();
+                for (Object identifier : ((BagConstraint) c).getBag()) {
+                    bag.add((String) identifier);
+                }
+                restrictIdentifiers(bag);
+            } else if ((c instanceof SimpleConstraint) && (c.getOp() == ConstraintOp.EQUALS)
+                    && (((SimpleConstraint) c).getArg2() instanceof QueryValue)) {
+                Object value = ((QueryValue) ((SimpleConstraint) c).getArg2()).getValue();
+                if (isField(((SimpleConstraint) c).getArg1(), "identifier")) {
+                    Collection<String> bag = new LinkedHashSet<String>();
+                    bag.add((String) value);
+                    restrictIdentifiers(bag);
+                } else if (isField(((SimpleConstraint) c).getArg1(), "className")
+                        && ((className == null) || className.equals(value))) {
+                    className = (String) value;
+                } else {
+                    throw unsupported();
+                }
+            } else {
+                throw unsupported();
+            }
+        }
+
+        private boolean isField(Object node, String fieldName) {
+            return (node instanceof QueryField) && (((QueryField) node).getFromElement() == qc)
+                && fieldName.equals(((QueryField) node).getFieldName());
+        }
+
+        private void restrictIdentifiers(Collection<String> bag) {
+            if (identifiers == null) {
+                identifiers = bag;
+            } else {
+                identifiers.retainAll(bag);
+            }
+        }
+
+        private ObjectStoreException unsupported() {
+            return new ObjectStoreException("Query cannot be run against an item log: " + q);
+        }
+
+        /**
+         * Fetches the Items with the identifiers, and class name if any, in the order they were
+         * written.
+         */
+        List<Item> lookup() throws IOException {
+            List<Item> retval = new ArrayList<Item>();
+            for (String identifier : identifiers) {
+                Item item = reader.getItem(identifier);
+                if ((item != null)
+                        && ((className == null) || className.equals(item.getClassName()))) {
+                    retval.add(item);
+                }
+            }
+            Collections.sort(retval, new Comparator<Item>() {
+                public int compare(Item a, Item b) {
+                    return a.getId().compareTo(b.getId());
+                }
+            });
+            return retval;
+        }
+    }
+}
@@ -11,6 +11,7 @@ package org.intermine.task;
  */
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -18,7 +19,13 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 
+import org.intermine.dataconversion.ItemLogWriter;
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.ObjectStoreWriter;
+import org.intermine.objectstore.ObjectStoreWriterFactory;
 import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
 
 /**
@@ -31,6 +38,7 @@ public class ConverterTask extends DynamicAttributeTask
     private String modelName = null;
     private String osName;
     private String excludeList;
+    private String itemLog = null;
 
     /**
      * Set the objectstore name
@@ -81,6 +89,52 @@ public class ConverterTask extends DynamicAttributeTask
         return osName;
     }
 
+    /**
+     * Set a file to write Items to instead of the objectstore named by osName. The file can be
+     * loaded by setting the same file as the itemLog of the data loading task.
+     * @param itemLog the name of the file, or an empty string to write to the objectstore
+     */
+    public void setItemLog(String itemLog) {
+        this.itemLog = itemLog;
+    }
+
+    /**
+     * Return the item log set by setItemLog().
+     * @return the name of the file, or null if Items are written to the objectstore
+     */
+    public String getItemLog() {
+        if ((itemLog == null) || "".equals(itemLog)) {
+            return null;
+        }
+        return itemLog;
+    }
+
+    /**
+     * Returns the ObjectStoreWriter to write Items to, or null if they are written to an item
+     * log instead.
+     * @return an ObjectStoreWriter, or null
+     * @throws ObjectStoreException if the ObjectStoreWriter cannot be created
+     */
+    protected ObjectStoreWriter getObjectStoreWriter() throws ObjectStoreException {
+        if (getItemLog() != null) {
+            return null;
+        }
+        return ObjectStoreWriterFactory.getObjectStoreWriter(getOsName());
+    }
+
+    /**
+     * Creates the ItemWriter for a converter to use.
+     * @param osw the ObjectStoreWriter returned by getObjectStoreWriter()
+     * @return an ItemLogWriter if osw is null, otherwise an ObjectStoreItemWriter
+     * @throws ObjectStoreException if the ItemWriter cannot be created
+     */
+    protected ItemWriter getItemWriter(ObjectStoreWriter osw) throws ObjectStoreException {
+        if (osw == null) {
+            return new ItemLogWriter(new File(getItemLog()));
+        }
+        return new ObjectStoreItemWriter(osw);
+    }
+
     /**
      * Runs various performance-enhancing SQL statements.
      *
@@ -21,10 +21,8 @@ import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.types.FileSet;
 import org.intermine.dataconversion.FileConverter;
 import org.intermine.dataconversion.ItemWriter;
-import org.intermine.dataconversion.ObjectStoreItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreWriter;
-import org.intermine.objectstore.ObjectStoreWriterFactory;
 
 /**
  * Initiates retrieval and conversion of data from a source file.
@@ -84,8 +82,8 @@ public class FileConverterTask extends ConverterTask
         ItemWriter writer = null;
         try {
             Model model = Model.getInstanceByName(getModelName());
-            osw = ObjectStoreWriterFactory.getObjectStoreWriter(getOsName());
-            writer = new ObjectStoreItemWriter(osw);
+            osw = getObjectStoreWriter();
+            writer = getItemWriter(osw);
 
             Class<?> c = Class.forName(clsName);
             if (!FileConverter.class.isAssignableFrom(c)) {
@@ -132,7 +130,7 @@ public class FileConverterTask extends ConverterTask
                 if (writer != null) {
                     writer.close();
                 }
-                if (writer != null) {
+                if (osw != null) {
                     osw.close();
                 }
             } catch (Exception e) {
@@ -140,10 +138,12 @@ public class FileConverterTask extends ConverterTask
             }
         }
 
-        try {
-            doSQL(osw.getObjectStore());
-        } catch (Exception e) {
-            throw new BuildException(e);
+        if (osw != null) {
+            try {
+                doSQL(osw.getObjectStore());
+            } catch (Exception e) {
+                throw new BuildException(e);
+            }
         }
     }
 
@@ -140,6 +140,48 @@ public final class FullParser
         return result;
     }
 
+    /**
+     * Set the attributes of a business object from an Item, except for id.
+     *
+     * @param item the Item to read field data from
+     * @param obj the object to populate
+     * @throws IllegalArgumentException if an attribute is not in the class of the object, or has
+     * no value
+     */
+    public static void populateAttributes(Item item, FastPathObject obj) {
+        for (Attribute attr : item.getAttributes()) {
+            String attrName = attr.getName();
+            if (!("id".equals(attrName))) {
+                Class<?> attrClass;
+                try {
+                    attrClass = obj.getFieldType(attrName);
+                    if (attrClass == null) {
+                        String message = "Class '" + attrClass + "' not found for "
+                            + DynamicUtil.getFriendlyName(obj.getClass());
+                        throw new IllegalArgumentException(message);
+                    }
+                } catch (IllegalArgumentException e) {
+                    String message = "Field " + attr.getName() + " not found in "
+                        + DynamicUtil.getFriendlyName(obj.getClass());
+                    throw new IllegalArgumentException(message);
+                }
+                if (ClobAccess.class.equals(attrClass)) {
+                    obj.setFieldValue(attr.getName(), new PendingClob(attr.getValue()));
+                } else {
+                    String value = attr.getValue();
+                    if (value != null) {
+                        obj.setFieldValue(attr.getName(), TypeUtil.stringToObject(attrClass,
+                                value));
+                    } else {
+                        String message = "Field '" + attr.getName() + "' has NULL value in "
+                            + DynamicUtil.getFriendlyName(obj.getClass());
+                        throw new IllegalArgumentException(message);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Fill in fields of an outline business object which is in the map under item.identifier
      * Note that this modifies the relevant object in the map
@@ -155,38 +197,7 @@ public final class FullParser
     protected static FastPathObject populateObject(Item item, Map<String, FastPathObject> objMap,
             boolean useIdentifier, boolean abortOnError, FastPathObject obj) {
         try {
-            // Set the data for every given attribute except id
-            for (Attribute attr : item.getAttributes()) {
-                String attrName = attr.getName();
-                if (!("id".equals(attrName))) {
-                    Class<?> attrClass;
-                    try {
-                        attrClass = obj.getFieldType(attrName);
-                        if (attrClass == null) {
-                            String message = "Class '" + attrClass + "' not found for "
-                                + DynamicUtil.getFriendlyName(obj.getClass());
-                            throw new IllegalArgumentException(message);
-                        }
-                    } catch (IllegalArgumentException e) {
-                        String message = "Field " + attr.getName() + " not found in "
-                            + DynamicUtil.getFriendlyName(obj.getClass());
-                        throw new IllegalArgumentException(message);
-                    }
-                    if (ClobAccess.class.equals(attrClass)) {
-                        obj.setFieldValue(attr.getName(), new PendingClob(attr.getValue()));
-                    } else {
-                        String value = attr.getValue();
-                        if (value != null) {
-                            obj.setFieldValue(attr.getName(), TypeUtil.stringToObject(attrClass,
-                                    value));
-                        } else {
-                            String message = "Field '" + attr.getName() + "' has NULL value in "
-                                + DynamicUtil.getFriendlyName(obj.getClass());
-                            throw new IllegalArgumentException(message);
-                        }
-                    }
-                }
-            }
+            populateAttributes(item, obj);
 
             if (useIdentifier) {
                 obj.setFieldValue("id", TypeUtil.stringToObject(Integer.class,
@@ -0,0 +1,269 @@
+package org.intermine.dataconversion;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.intermine.metadata.Model;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.itemlog.ObjectStoreItemLogImpl;
+import org.intermine.objectstore.query.BagConstraint;
+import org.intermine.objectstore.query.ConstraintOp;
+import org.intermine.objectstore.query.ConstraintSet;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.QueryClass;
+import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryValue;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.SimpleConstraint;
+import org.intermine.objectstore.query.SingletonResults;
+import org.intermine.objectstore.translating.ObjectStoreTranslatingImpl;
+import org.intermine.xml.full.ItemFactory;
+import org.intermine.xml.full.ItemHelper;
+
+public class ItemLogWriterTest extends TestCase
+{
+    private static final int EMPLOYEES = 3000;
+
+    private File file;
+
+    public ItemLogWriterTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        file = File.createTempFile("ItemLogWriterTest", ".items");
+        ItemLogWriter writer = new ItemLogWriter(file);
+        ItemFactory factory = new ItemFactory(Model.getInstanceByName("testmodel"));
+        org.intermine.xml.full.Item department = factory.makeItem("0_1", "Department", "");
+        List<String> employeeIds = new ArrayList<String>();
+        for (int i = 1; i <= EMPLOYEES; i++) {
+            employeeIds.add("1_" + i);
+        }
+        department.setCollection("employees", employeeIds);
+        Integer departmentId = writer.store(ItemHelper.convert(department));
+        for (int i = 1; i <= EMPLOYEES; i++) {
+            org.intermine.xml.full.Item employee = factory.makeItem("1_" + i, "Employee", "");
+            employee.setAttribute("name", "Employee" + i);
+            employee.setAttribute("age", "" + (20 + i % 40));
+            employee.setReference("department", "0_1");
+            writer.store(ItemHelper.convert(employee));
+        }
+        // stored after the item, as converters sometimes do
+        org.intermine.xml.full.Attribute extra = new org.intermine.xml.full.Attribute("name",
+                "Department1");
+        writer.store(ItemHelper.convert(extra), departmentId);
+        writer.close();
+    }
+
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testGetItem() throws Exception {
+        ItemLogReader reader = new ItemLogReader(file);
+        try {
+            assertEquals(EMPLOYEES + 1, reader.getItemCount());
+            Map<String, Integer> expectedHighest = new LinkedHashMap<String, Integer>();
+            expectedHighest.put("0", new Integer(1));
+            expectedHighest.put("1", new Integer(EMPLOYEES));
+            assertEquals(expectedHighest, reader.getHighestIdentifiers());
+
+            org.intermine.xml.full.Item employee = ItemHelper.convert(reader.getItem("1_17"));
+            assertEquals("Employee", employee.getClassName());
+            assertEquals("Employee17", employee.getAttribute("name").getValue());
+            assertEquals("0_1", employee.getReference("department").getRefId());
+
+            org.intermine.xml.full.Item department = ItemHelper.convert(reader.getItem("0_1"));
+            assertEquals("Department1", department.getAttribute("name").getValue());
+            assertEquals(EMPLOYEES, department.getCollection("employees").getRefIds().size());
+
+            assertNull(reader.getItem("1_" + (EMPLOYEES + 1)));
+            assertNull(reader.getItem("2_1"));
+            assertNull(reader.getItem("nonsense"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testScan() throws Exception {
+        ItemLogReader reader = new ItemLogReader(file);
+        try {
+            ItemLogReader.Scanner scanner = reader.scan();
+            assertEquals("0_1", scanner.next().getIdentifier());
+            for (int i = 1; i <= EMPLOYEES; i++) {
+                assertEquals("1_" + i, scanner.next().getIdentifier());
+            }
+            assertNull(scanner.next());
+            scanner.close();
+
+            scanner = reader.scan(2500);
+            assertEquals("1_2500", scanner.next().getIdentifier());
+            scanner.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testAppend() throws Exception {
+        ItemLogWriter writer = new ItemLogWriter(file);
+        ItemFactory factory = new ItemFactory(Model.getInstanceByName("testmodel"));
+        org.intermine.xml.full.Item department = factory.makeItem("0_2", "Department", "");
+        department.setAttribute("name", "Department2");
+        Integer departmentId = writer.store(ItemHelper.convert(department));
+        assertEquals(new Integer(EMPLOYEES + 2), departmentId);
+        org.intermine.xml.full.Item employee = factory.makeItem("1_" + (EMPLOYEES + 1),
+                "Employee", "");
+        employee.setReference("department", "0_2");
+        writer.store(ItemHelper.convert(employee));
+        // items written by the first writer can still be added to
+        writer.store(ItemHelper.convert(new org.intermine.xml.full.Attribute("end", "99")),
+                new Integer(2));
+        try {
+            writer.store(ItemHelper.convert(factory.makeItem("1_5", "Employee", "")));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        writer.close();
+
+        ItemLogReader reader = new ItemLogReader(file);
+        try {
+            assertEquals(EMPLOYEES + 3, reader.getItemCount());
+            Map<String, Integer> expectedHighest = new LinkedHashMap<String, Integer>();
+            expectedHighest.put("0", new Integer(2));
+            expectedHighest.put("1", new Integer(EMPLOYEES + 1));
+            assertEquals(expectedHighest, reader.getHighestIdentifiers());
+
+            org.intermine.xml.full.Item old = ItemHelper.convert(reader.getItem("0_1"));
+            assertEquals("Department1", old.getAttribute("name").getValue());
+            old = ItemHelper.convert(reader.getItem("1_1"));
+            assertEquals("99", old.getAttribute("end").getValue());
+            assertEquals("Department2", ItemHelper.convert(reader.getItem("0_2"))
+                    .getAttribute("name").getValue());
+            assertEquals("0_2", ItemHelper.convert(reader.getItem("1_" + (EMPLOYEES + 1)))
+                    .getReference("department").getRefId());
+
+            ItemLogReader.Scanner scanner = reader.scan(EMPLOYEES);
+            assertEquals("1_" + EMPLOYEES, scanner.next().getIdentifier());
+            assertEquals("0_2", scanner.next().getIdentifier());
+            assertEquals("1_" + (EMPLOYEES + 1), scanner.next().getIdentifier());
+            assertNull(scanner.next());
+            scanner.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testBadIdentifier() throws Exception {
+        ItemLogWriter writer = new ItemLogWriter(file);
+        try {
+            writer.store(ItemHelper.convert(new ItemFactory().makeItem("Employee1", "Employee",
+                            "")));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            writer.close();
+        }
+    }
+
+    public void testObjectStore() throws Exception {
+        ObjectStoreItemLogImpl items = new ObjectStoreItemLogImpl(new ItemLogReader(file));
+        try {
+            QueryClass qc = new QueryClass(Item.class);
+            Query q = new Query();
+            q.addFrom(qc);
+            q.addToSelect(qc);
+            q.setConstraint(new SimpleConstraint(new QueryField(qc, "className"),
+                        ConstraintOp.EQUALS, new QueryValue("Employee")));
+            assertEquals(EMPLOYEES, items.count(q, ObjectStore.SEQUENCE_IGNORE));
+            // batches out of order, as a prefetching Results might request them
+            assertEquals("1_2049", getIdentifiers(items.execute(q, 2048, 2, false, false,
+                            ObjectStore.SEQUENCE_IGNORE)).get(0));
+            assertEquals("1_11", getIdentifiers(items.execute(q, 10, 1, false, false,
+                            ObjectStore.SEQUENCE_IGNORE)).get(0));
+            assertEquals("1_2051", getIdentifiers(items.execute(q, 2050, 1, false, false,
+                            ObjectStore.SEQUENCE_IGNORE)).get(0));
+            assertEquals(Collections.emptyList(), items.execute(q, EMPLOYEES, 10, false, false,
+                        ObjectStore.SEQUENCE_IGNORE));
+
+            ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+            cs.addConstraint(new BagConstraint(new QueryField(qc, "identifier"), ConstraintOp.IN,
+                        Arrays.asList("1_5", "0_1", "1_3", "2_2")));
+            cs.addConstraint(q.getConstraint());
+            q.setConstraint(cs);
+            assertEquals(Arrays.asList("1_3", "1_5"), getIdentifiers(items.execute(q, 0, 10,
+                            false, false, ObjectStore.SEQUENCE_IGNORE)));
+
+            Query unsupported = new Query();
+            unsupported.addFrom(qc);
+            unsupported.addToSelect(new QueryField(qc, "identifier"));
+            try {
+                items.execute(unsupported, 0, 10, false, false, ObjectStore.SEQUENCE_IGNORE);
+                fail("Expected ObjectStoreException");
+            } catch (ObjectStoreException e) {
+                // expected
+            }
+        } finally {
+            items.close();
+        }
+    }
+
+    public void testTranslate() throws Exception {
+        Model model = Model.getInstanceByName("testmodel");
+        ObjectStoreItemLogImpl items = new ObjectStoreItemLogImpl(new ItemLogReader(file));
+        try {
+            ItemToObjectTranslator translator = new ItemToObjectTranslator(model, items);
+            ObjectStore os = new ObjectStoreTranslatingImpl(model, items, translator);
+            QueryClass qc = new QueryClass(Employee.class);
+            Query q = new Query();
+            q.addFrom(qc);
+            q.addToSelect(qc);
+            SingletonResults res = os.executeSingleton(q, 500, false, false, false);
+            int count = 0;
+            for (Object o : res) {
+                Employee employee = (Employee) o;
+                count++;
+                assertEquals("Employee" + count, employee.getName());
+                assertEquals(translator.identifierToId("1_" + count), employee.getId());
+            }
+            assertEquals(EMPLOYEES, count);
+
+            Department department = (Department) os.getObjectById(translator.identifierToId(
+                        "0_1"));
+            assertEquals("Department1", department.getName());
+            assertEquals(EMPLOYEES, department.getEmployees().size());
+        } finally {
+            items.close();
+        }
+    }
+
+    private static List<String> getIdentifiers(List<ResultsRow<Object>> rows) {
+        List<String> retval = new ArrayList<String>();
+        for (ResultsRow<Object> row : rows) {
+            retval.add(((Item) row.get(0)).getIdentifier());
+        }
+        return retval;
+    }
+}
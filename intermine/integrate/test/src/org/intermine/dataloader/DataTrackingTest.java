@@ -83,4 +83,55 @@ public class DataTrackingTest extends TestCase {
         dt2 = new DataTracker(DatabaseFactory.getDatabase("db.unittest"), 30, 10);
         assertEquals(source2.getName(), dt2.getSource(new Integer(14), "name").getName());
     }
+
+    public void testPartitioned() throws Exception {
+        DataTracker dt2 = new DataTracker(DatabaseFactory.getDatabase("db.unittest"), 40, 8, 4);
+        Source s1 = dt2.stringToSource("Source1");
+        Source s2 = dt2.stringToSource("Source2");
+        for (int i = 0; i < 200; i++) {
+            dt2.setSource(new Integer(i), "name", (i % 2 == 0 ? s1 : s2));
+        }
+        dt2.flush();
+        for (int i = 0; i < 200; i++) {
+            assertEquals((i % 2 == 0 ? "Source1" : "Source2"),
+                    dt2.getSource(new Integer(i), "name").getName());
+        }
+        assertEquals(400, dt2.getOperations());
+        assertEquals(200, dt2.getSpilledRows());
+        dt2.close();
+    }
+
+    // Reads and writes of objects whose descriptions are in a batch that is still being written
+    // must not change what that batch releases from the write-back cache.
+    public void testReadWriteDuringSpill() throws Exception {
+        DataTracker dt2 = new DataTracker(DatabaseFactory.getDatabase("db.unittest"), 4, 2, 1);
+        Source s1 = dt2.stringToSource("Source1");
+        Source s2 = dt2.stringToSource("Source2");
+        for (int round = 0; round < 20; round++) {
+            int base = round * 10;
+            for (int i = base; i < base + 5; i++) {
+                dt2.setSource(new Integer(i), "name", s1);
+            }
+            // Spills the two least recently used entries, base and base + 1
+            dt2.doWrite();
+            assertEquals("Source1", dt2.getSource(new Integer(base), "name").getName());
+            dt2.setSource(new Integer(base), "name", s2);
+            for (int i = base + 5; i < base + 10; i++) {
+                dt2.setSource(new Integer(i), "name", s1);
+                dt2.doWrite();
+                assertEquals("Source2", dt2.getSource(new Integer(base), "name").getName());
+                assertEquals("Source1", dt2.getSource(new Integer(base + 1), "name").getName());
+            }
+        }
+        dt2.close();
+        dt2 = new DataTracker(DatabaseFactory.getDatabase("db.unittest"), 4, 2, 1);
+        for (int round = 0; round < 20; round++) {
+            int base = round * 10;
+            assertEquals("Source2", dt2.getSource(new Integer(base), "name").getName());
+            for (int i = base + 1; i < base + 10; i++) {
+                assertEquals("Source1", dt2.getSource(new Integer(i), "name").getName());
+            }
+        }
+        dt2.close();
+    }
 }
@@ -0,0 +1,68 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+public class ObjectDescriptionTest extends TestCase
+{
+    private Source source1 = new Source("Source1");
+    private Source source2 = new Source("Source2");
+
+    public void testPutAndClean() throws Exception {
+        ObjectDescription desc = new ObjectDescription();
+        desc.putClean("name", source1);
+        desc.putClean("address", source1);
+        assertFalse(desc.isDirty());
+        assertSame(source1, desc.getSource("name"));
+        assertNull(desc.getSource("vatNumber"));
+
+        desc.put("name", source2);
+        assertTrue(desc.isDirty());
+        assertSame(source2, desc.getSource("name"));
+        assertSame(source1, desc.getOrigSource("name"));
+        assertEquals(1, desc.getNewSize());
+        try {
+            desc.putClean("vatNumber", source1);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+        }
+
+        desc.clean();
+        assertFalse(desc.isDirty());
+        assertSame(source2, desc.getOrigSource("name"));
+        assertSame(source1, desc.getSource("address"));
+        assertEquals(0, desc.getNewSize());
+    }
+
+    public void testCopy() throws Exception {
+        ObjectDescription desc = new ObjectDescription();
+        desc.putClean("name", source1);
+        desc.put("address", source2);
+        ObjectDescription copy = new ObjectDescription(desc);
+        copy.put("name", source2);
+        assertSame(source1, desc.getSource("name"));
+        assertSame(source2, copy.getSource("name"));
+        assertSame(source2, copy.getSource("address"));
+    }
+
+    public void testManyFields() throws Exception {
+        ObjectDescription desc = new ObjectDescription();
+        for (int i = 0; i < 50; i++) {
+            // Deliberately not interned
+            desc.put(new String("field" + i), (i % 2 == 0 ? source1 : source2));
+        }
+        for (int i = 0; i < 50; i++) {
+            assertSame((i % 2 == 0 ? source1 : source2), desc.getSource("field" + i));
+        }
+        assertEquals(50, desc.getNewSize());
+    }
+}
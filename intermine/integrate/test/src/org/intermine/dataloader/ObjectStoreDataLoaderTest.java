@@ -0,0 +1,107 @@
+package org.intermine.dataloader;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.intermine.model.FastPathObject;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.util.ObjectPipe;
+
+public class ObjectStoreDataLoaderTest extends TestCase
+{
+    private List<FastPathObject> createObjects(int count) {
+        List<FastPathObject> retval = new ArrayList<FastPathObject>();
+        for (int i = 0; i < count; i++) {
+            Employee e = new Employee();
+            e.setId(new Integer(i));
+            retval.add(e);
+        }
+        return retval;
+    }
+
+    public void testReaderPreservesOrder() throws Exception {
+        List<FastPathObject> objects = createObjects(1000);
+        StageStatistics stats = new StageStatistics("Read", 100);
+        ObjectStoreDataLoader.Reader reader = new ObjectStoreDataLoader.Reader(objects.iterator(),
+                10, stats);
+        new Thread(reader).start();
+        ObjectPipe<FastPathObject> pipe = reader.getPipe();
+        List<FastPathObject> got = new ArrayList<FastPathObject>();
+        while (pipe.hasNext()) {
+            got.add(pipe.next());
+        }
+        reader.rethrow();
+        assertEquals(objects, got);
+        assertEquals(1000, stats.getCount());
+    }
+
+    public void testReaderCancel() throws Exception {
+        StageStatistics stats = new StageStatistics("Read", 100);
+        ObjectStoreDataLoader.Reader reader = new ObjectStoreDataLoader.Reader(
+                createObjects(1000).iterator(), 10, stats);
+        new Thread(reader).start();
+        reader.getPipe().next();
+        reader.cancel();
+        assertFalse(reader.getPipe().hasNext());
+        assertTrue(stats.getCount() < 1000);
+    }
+
+    public void testReaderFailure() throws Exception {
+        final Iterator<FastPathObject> iter = createObjects(5).iterator();
+        Iterator<FastPathObject> failing = new Iterator<FastPathObject>() {
+            public boolean hasNext() {
+                return true;
+            }
+            public FastPathObject next() {
+                if (iter.hasNext()) {
+                    return iter.next();
+                }
+                throw new IllegalStateException("Translation failed");
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        ObjectStoreDataLoader.Reader reader = new ObjectStoreDataLoader.Reader(failing, 2,
+                new StageStatistics("Read", 100));
+        new Thread(reader).start();
+        int count = 0;
+        while (reader.getPipe().hasNext()) {
+            reader.getPipe().next();
+            count++;
+        }
+        assertEquals(5, count);
+        try {
+            reader.rethrow();
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Translation failed", e.getMessage());
+        }
+    }
+
+    public void testStageStatistics() throws Exception {
+        StageStatistics stats = new StageStatistics("Write", 3);
+        assertFalse(stats.add(5));
+        assertFalse(stats.add(5));
+        assertTrue(stats.add(5));
+        stats.addBlocked(7);
+        assertEquals(3, stats.getCount());
+        assertEquals(15, stats.getBusyTime());
+        assertEquals(7, stats.getBlockedTime());
+        assertTrue(stats.report().startsWith("Write stage has handled 3 objects"));
+        assertTrue(stats.getSummary().endsWith("busy 15 ms, blocked 7 ms"));
+    }
+}
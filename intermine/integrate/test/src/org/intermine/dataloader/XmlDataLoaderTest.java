@@ -11,6 +11,7 @@ package org.intermine.dataloader;
  */
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
@@ -18,18 +19,31 @@ import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 
+import org.intermine.InterMineException;
+import org.intermine.metadata.Model;
+import org.intermine.model.FastPathObject;
 import org.intermine.model.InterMineObject;
 import org.intermine.model.testmodel.Address;
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
 import org.intermine.model.testmodel.Manager;
+import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.ObjectStoreWriterFactory;
+import org.intermine.objectstore.dummy.ObjectStoreDummyImpl;
+import org.intermine.objectstore.dummy.ObjectStoreWriterDummyImpl;
+import org.intermine.objectstore.proxy.ProxyReference;
 import org.intermine.util.TypeUtil;
 import org.intermine.util.XmlBinding;
 
@@ -139,6 +153,188 @@ public class XmlDataLoaderTest extends TestCase
         toDelete.add(a2);
         toDelete.add(m2);
     }
+    // an object referring to an item further on is stored once that item has been read
+    public void testForwardReference() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        processXml(recorder, 0,
+                "<item id=\"0_1\" class=\"Employee\"><attribute name=\"name\" value=\"e1\"/>"
+                + "<reference name=\"department\" ref_id=\"0_3\"/></item>"
+                + "<item id=\"0_2\" class=\"Address\"><attribute name=\"address\" value=\"a1\"/>"
+                + "</item>"
+                + "<item id=\"0_3\" class=\"Department\"><attribute name=\"name\" value=\"d1\"/>"
+                + "</item>");
+
+        // objects are still stored in file order
+        assertEquals(Arrays.asList("e1", "a1", "d1"), recorder.names);
+        Employee e1 = (Employee) recorder.stored.get(0);
+        Department d1 = (Department) recorder.stored.get(2);
+        assertSame(d1, recorder.referencesAtStore.get("e1").get("department"));
+        assertSame(d1, e1.getDepartment());
+    }
+
+    // an object waits for the references of the unstored objects it refers to as well
+    public void testForwardReferenceThroughPendingObject() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        processXml(recorder, 0,
+                "<item id=\"0_1\" class=\"Employee\"><attribute name=\"name\" value=\"e1\"/>"
+                + "<reference name=\"department\" ref_id=\"0_2\"/></item>"
+                + "<item id=\"0_2\" class=\"Department\"><attribute name=\"name\" value=\"d1\"/>"
+                + "<reference name=\"company\" ref_id=\"0_4\"/></item>"
+                + "<item id=\"0_3\" class=\"Address\"><attribute name=\"address\" value=\"a1\"/>"
+                + "</item>"
+                + "<item id=\"0_4\" class=\"\" implements=\"Company\">"
+                + "<attribute name=\"name\" value=\"c1\"/></item>");
+
+        assertEquals(Arrays.asList("e1", "d1", "a1", "c1"), recorder.names);
+        Company c1 = (Company) recorder.stored.get(3);
+        assertSame(recorder.stored.get(1), recorder.referencesAtStore.get("e1").get("department"));
+        // e1 was not stored before the company of its department had been read
+        assertSame(c1, recorder.companyOfDepartmentAtStore.get("e1"));
+    }
+
+    // an item that has already been stored is referred to by id
+    public void testReferenceToStoredObject() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        processXml(recorder, 0,
+                "<item id=\"0_1\" class=\"Department\"><attribute name=\"name\" value=\"d1\"/>"
+                + "</item>"
+                + "<item id=\"0_2\" class=\"Employee\"><attribute name=\"name\" value=\"e1\"/>"
+                + "<reference name=\"department\" ref_id=\"0_1\"/></item>"
+                + "<item id=\"0_3\" class=\"\" implements=\"Company\">"
+                + "<attribute name=\"name\" value=\"c1\"/>"
+                + "<collection name=\"departments\"><reference ref_id=\"0_1\"/></collection></item>");
+
+        assertEquals(Arrays.asList("d1", "e1", "c1"), recorder.names);
+        Department d1 = (Department) recorder.stored.get(0);
+        Object ref = recorder.referencesAtStore.get("e1").get("department");
+        assertTrue("Expected a ProxyReference, was " + ref, ref instanceof ProxyReference);
+        assertEquals(d1.getId(), ((ProxyReference) ref).getId());
+        assertSame(recorder, ((ProxyReference) ref).getObjectStore());
+
+        Company c1 = (Company) recorder.stored.get(2);
+        assertEquals(1, c1.getDepartments().size());
+        Object member = c1.getDepartments().iterator().next();
+        assertTrue("Expected a ProxyReference, was " + member, member instanceof ProxyReference);
+        assertEquals(d1.getId(), ((ProxyReference) member).getId());
+    }
+
+    // references to items that are never read are left empty
+    public void testMissingReference() throws Exception {
+        RecordingWriter recorder = new RecordingWriter();
+        processXml(recorder, 0,
+                "<item id=\"0_1\" class=\"Employee\"><attribute name=\"name\" value=\"e1\"/>"
+                + "<reference name=\"department\" ref_id=\"0_9\"/></item>"
+                + "<item id=\"0_2\" class=\"Address\"><attribute name=\"address\" value=\"a1\"/>"
+                + "</item>");
+
+        assertEquals(Arrays.asList("e1", "a1"), recorder.names);
+        assertTrue(recorder.referencesAtStore.get("e1").containsKey("department"));
+        assertNull(recorder.referencesAtStore.get("e1").get("department"));
+    }
+
+    // loading fails when too many objects are held back waiting for an item
+    public void testMaxPendingObjects() throws Exception {
+        String xml = "<item id=\"0_1\" class=\"Employee\"><attribute name=\"name\" value=\"e1\"/>"
+            + "<reference name=\"department\" ref_id=\"0_9\"/></item>"
+            + "<item id=\"0_2\" class=\"Address\"><attribute name=\"address\" value=\"a1\"/>"
+            + "</item>"
+            + "<item id=\"0_3\" class=\"Address\"><attribute name=\"address\" value=\"a2\"/>"
+            + "</item>"
+            + "<item id=\"0_9\" class=\"Department\"><attribute name=\"name\" value=\"d1\"/>"
+            + "</item>";
+        RecordingWriter recorder = new RecordingWriter();
+        try {
+            processXml(recorder, 2, xml);
+            fail("Expected loading to fail");
+        } catch (InterMineException e) {
+            String message = e.getCause().getMessage();
+            assertTrue(message, message.startsWith("More than 2 objects are waiting"));
+            assertTrue(message, message.contains("object with identifier 0_1"));
+        }
+        assertTrue(recorder.names.isEmpty());
+
+        recorder = new RecordingWriter();
+        processXml(recorder, 3, xml);
+        assertEquals(Arrays.asList("e1", "a1", "a2", "d1"), recorder.names);
+
+        // zero means no limit
+        recorder = new RecordingWriter();
+        processXml(recorder, 0, xml);
+        assertEquals(4, recorder.names.size());
+    }
+
+    private void processXml(RecordingWriter recorder, int maxPendingObjects, String items)
+        throws Exception {
+        XmlDataLoader dl = new XmlDataLoader(recorder);
+        dl.setMaxPendingObjects(maxPendingObjects);
+        InputStream is = new ByteArrayInputStream(("<items>" + items + "</items>")
+                .getBytes("UTF-8"));
+        dl.processXml(is, new Source("testsource", "testsource"),
+                new Source("testsource", "testsource", true));
+        dl.close();
+    }
+
+    /**
+     * An IntegrationWriter that records the objects stored, and the references they had when
+     * they were stored.
+     */
+    private static class RecordingWriter extends ObjectStoreWriterDummyImpl
+        implements IntegrationWriter
+    {
+        List<FastPathObject> stored = new ArrayList<FastPathObject>();
+        List<String> names = new ArrayList<String>();
+        Map<String, Map<String, Object>> referencesAtStore
+            = new HashMap<String, Map<String, Object>>();
+        Map<String, Object> companyOfDepartmentAtStore = new HashMap<String, Object>();
+
+        RecordingWriter() {
+            super(createObjectStore());
+        }
+
+        private static ObjectStoreDummyImpl createObjectStore() {
+            ObjectStoreDummyImpl os = new ObjectStoreDummyImpl();
+            os.setModel(Model.getInstanceByName("testmodel"));
+            return os;
+        }
+
+        public void store(FastPathObject o, Source source, Source skelSource)
+            throws ObjectStoreException {
+            String name;
+            Map<String, Object> references = new HashMap<String, Object>();
+            try {
+                name = (String) o.getFieldValue((o instanceof Address) ? "address" : "name");
+                // getFieldProxy, as a ProxyReference cannot be fetched from this writer
+                if (o instanceof Employee) {
+                    Object department = o.getFieldProxy("department");
+                    references.put("department", department);
+                    if (department instanceof Department) {
+                        companyOfDepartmentAtStore.put(name,
+                                ((Department) department).getFieldProxy("company"));
+                    }
+                } else if (o instanceof Department) {
+                    references.put("company", o.getFieldProxy("company"));
+                }
+            } catch (IllegalAccessException e) {
+                throw new ObjectStoreException(e);
+            }
+            stored.add(o);
+            names.add(name);
+            referencesAtStore.put(name, references);
+        }
+
+        public Source getMainSource(String name, String type) {
+            return new Source(name, type);
+        }
+
+        public Source getSkeletonSource(String name, String type) {
+            return new Source(name, type, true);
+        }
+
+        public void setIgnoreDuplicates(boolean ignoreDuplicates) {
+            // not needed
+        }
+    }
+
     /*
     public void testStoreFromFile() throws Exception {
         XmlDataLoader dl = new XmlDataLoader(iw);
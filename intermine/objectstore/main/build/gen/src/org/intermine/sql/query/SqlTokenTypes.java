@@ -0,0 +1,115 @@
+// $ANTLR 2.7.6 (20060327): "intermine_sql.g" -> "SqlLexer.java"$
+
+package org.intermine.sql.query;
+
+public interface SqlTokenTypes {
+	int EOF = 1;
+	int NULL_TREE_LOOKAHEAD = 3;
+	int SQL_STATEMENT = 4;
+	int SELECT_LIST = 5;
+	int FROM_LIST = 6;
+	int WHERE_CLAUSE = 7;
+	int GROUP_CLAUSE = 8;
+	int HAVING_CLAUSE = 9;
+	int ORDER_CLAUSE = 10;
+	int LIMIT_CLAUSE = 11;
+	int SELECT_VALUE = 12;
+	int TABLE_ALIAS = 13;
+	int FIELD_ALIAS = 14;
+	int TABLE = 15;
+	int TABLE_NAME = 16;
+	int SUBQUERY = 17;
+	int CONSTANT = 18;
+	int FIELD = 19;
+	int FIELD_NAME = 20;
+	int SAFE_FUNCTION = 21;
+	int UNSAFE_FUNCTION = 22;
+	int CONSTRAINT = 23;
+	int NULL_CONSTRAINT = 24;
+	int NOT_CONSTRAINT = 25;
+	int AND_CONSTRAINT_SET = 26;
+	int OR_CONSTRAINT_SET = 27;
+	int SUBQUERY_CONSTRAINT = 28;
+	int INLIST_CONSTRAINT = 29;
+	int ORDER_DESC = 30;
+	int BIOSEG_CONSTRAINT = 31;
+	int LITERAL_explain = 32;
+	int LITERAL_distinct = 33;
+	int INTEGER = 34;
+	int ALIAS = 35;
+	int IDENTIFIER = 36;
+	int QUOTED_STRING = 37;
+	int ESCAPED_STRING = 38;
+	int FLOAT = 39;
+	int LITERAL_true = 40;
+	int LITERAL_false = 41;
+	int LITERAL_null = 42;
+	int TYPECAST = 43;
+	int LITERAL_boolean = 44;
+	int LITERAL_real = 45;
+	int LITERAL_double = 46;
+	int LITERAL_smallint = 47;
+	int LITERAL_integer = 48;
+	int LITERAL_bigint = 49;
+	int LITERAL_numeric = 50;
+	int LITERAL_text = 51;
+	int LITERAL_count = 52;
+	int LITERAL_max = 53;
+	int LITERAL_min = 54;
+	int LITERAL_sum = 55;
+	int LITERAL_avg = 56;
+	int LITERAL_lower = 57;
+	int LITERAL_upper = 58;
+	int LITERAL_greatest = 59;
+	int LITERAL_least = 60;
+	int LITERAL_strpos = 61;
+	int LITERAL_substr = 62;
+	int LITERAL_coalesce = 63;
+	int LITERAL_stddev = 64;
+	int PLUS = 65;
+	int PERCENT = 66;
+	int ASTERISK = 67;
+	int DIVIDE = 68;
+	int POWER = 69;
+	int MINUS = 70;
+	int NOT_EQ = 71;
+	int GE = 72;
+	int LE = 73;
+	int GT = 74;
+	int LITERAL_not = 75;
+	int LITERAL_like = 76;
+	int EQ = 77;
+	int LT = 78;
+	int GORNULL = 79;
+	int SEMI = 80;
+	int LITERAL_union = 81;
+	int LITERAL_select = 82;
+	int LITERAL_all = 83;
+	int COMMA = 84;
+	int LITERAL_from = 85;
+	int LITERAL_where = 86;
+	int LITERAL_group = 87;
+	int LITERAL_by = 88;
+	int LITERAL_having = 89;
+	int LITERAL_order = 90;
+	int LITERAL_limit = 91;
+	int LITERAL_offset = 92;
+	int LITERAL_as = 93;
+	int LITERAL_desc = 94;
+	int OPEN_PAREN = 95;
+	int CLOSE_PAREN = 96;
+	int DOT = 97;
+	int COLONTYPE = 98;
+	int LITERAL_precision = 99;
+	int LITERAL_or = 100;
+	int LITERAL_is = 101;
+	int LITERAL_bioseg_create = 102;
+	int OVERLAP = 103;
+	int INSIDE = 104;
+	int SURROUND = 105;
+	int LITERAL_and = 106;
+	int LITERAL_in = 107;
+	int AT_SIGN = 108;
+	int VERTBAR = 109;
+	int WS = 110;
+}
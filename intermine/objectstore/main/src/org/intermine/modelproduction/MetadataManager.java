@@ -84,6 +84,12 @@ public final class MetadataManager
      * The name of the key to use to store the search Directory.
      */
     public static final String SEARCH_INDEX_DIRECTORY = "search_directory";
+
+    /**
+     * The name of the key used to store the version of the search index, so that webapps can tell
+     * whether their cached copy of the index is up to date.
+     */
+    public static final String SEARCH_INDEX_VERSION = "search_version";
     /**
      * Name of the key under which to store the serialized version of the class descriptions
      */
@@ -113,6 +119,11 @@ public final class MetadataManager
      */
     public static final String NO_NOTXML = "noNotXml";
 
+    /**
+     * The name of the key used to store the binaryObjects string.
+     */
+    public static final String BINARY_OBJECTS = "binaryObjects";
+
     /**
      * The name of the key used to store the modMine MetaData cache
      */
@@ -14,6 +14,7 @@ package org.intermine.objectstore;
 //import java.io.StringWriter;
 import java.lang.ref.WeakReference;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,11 +29,13 @@ import org.intermine.metadata.Model;
 import org.intermine.model.InterMineObject;
 import org.intermine.objectstore.query.Clob;
 import org.intermine.objectstore.query.ObjectStoreBag;
+import org.intermine.objectstore.query.PrefetchManager;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryCreator;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.objectstore.query.SingletonResults;
+import org.intermine.util.BoundedCacheMap;
 import org.intermine.util.CacheMap;
 import org.intermine.util.PropertiesUtil;
 
@@ -53,7 +56,9 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
     protected int maxOffset = Integer.MAX_VALUE;
     protected int maxLimit = Integer.MAX_VALUE;
     protected long maxTime = Long.MAX_VALUE;
-    protected CacheMap<Integer, InterMineObject> cache;
+    protected int prefetchThreads = PrefetchManager.DEFAULT_THREADS;
+    protected int prefetchQueueSize = PrefetchManager.DEFAULT_QUEUE_SIZE;
+    protected Map<Integer, InterMineObject> cache;
 
     protected int getObjectOps = 0;
     protected int getObjectHits = 0;
@@ -90,10 +95,51 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
             maxTime = Long.parseLong((String) props.get("max-time"));
         }
 
+        int objectCacheSize = 0;
+        if (props.get("object-cache-size") != null) {
+            objectCacheSize = Integer.parseInt((String) props.get("object-cache-size"));
+        }
+
+        if (props.get("prefetch-threads") != null) {
+            prefetchThreads = Integer.parseInt((String) props.get("prefetch-threads"));
+        }
+
+        if (props.get("prefetch-queue-size") != null) {
+            prefetchQueueSize = Integer.parseInt((String) props.get("prefetch-queue-size"));
+        }
+
         LOG.info("Creating new " + getClass().getName() + " with sequence = " + sequenceNumber
                 + ", model = \"" + model.getName() + "\"");
-        cache = new CacheMap<Integer, InterMineObject>(getClass().getName() + " with sequence = "
-                + sequenceNumber + ", model = \"" + model.getName() + "\" getObjectById cache");
+        cache = createCache(getClass().getName() + " with sequence = " + sequenceNumber
+                + ", model = \"" + model.getName() + "\" getObjectById cache", objectCacheSize);
+    }
+
+    /**
+     * Creates a Map suitable for use as a cache, which is safe to use from multiple threads. If
+     * maxEntries is greater than zero, the cache is a BoundedCacheMap holding at most that many
+     * entries, otherwise it is a CacheMap holding its values with soft references.
+     *
+     * @param name the name of the cache, for log messages
+     * @param maxEntries the maximum number of entries, or zero for a soft reference cache
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return a Map
+     */
+    public static <K, V> Map<K, V> createCache(String name, int maxEntries) {
+        if (maxEntries > 0) {
+            return new BoundedCacheMap<K, V>(name, maxEntries);
+        }
+        return Collections.synchronizedMap(new CacheMap<K, V>(name));
+    }
+
+    /**
+     * Replaces the getObjectById cache with an empty cache of the given size.
+     *
+     * @param maxEntries the maximum number of entries, or zero for a soft reference cache
+     */
+    public void setObjectCacheSize(int maxEntries) {
+        cache = createCache(getClass().getName() + " with sequence = " + sequenceNumber
+                + ", model = \"" + model.getName() + "\" getObjectById cache", maxEntries);
     }
 
     /**
@@ -183,32 +229,26 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
         getObjectOps++;
         if (getObjectOps % 10000 == 0) {
             LOG.info("getObjectById called " + getObjectOps + " times. Cache hits: "
-                    + getObjectHits + ". Prefetches: " + getObjectPrefetches);
+                    + getObjectHits + ". Prefetches: " + getObjectPrefetches
+                    + (cache instanceof BoundedCacheMap<?, ?> ? ". Cache: "
+                        + ((BoundedCacheMap<?, ?>) cache).getStatistics() : ""));
         }
-        boolean contains = true;
-        InterMineObject cached = null;
-        synchronized (cache) {
-            cached = cache.get(id);
-            if (cached == null) {
-                contains = cache.containsKey(id);
-            }
-        }
-        if (contains) {
+        // The cache is thread-safe, so there is no need to lock it. Null values are cached for
+        // objects that do not exist, so we check containsKey() when get() returns null. If another
+        // thread slips in between the two, we just fetch the object from the database again.
+        InterMineObject cached = cache.get(id);
+        if ((cached != null) || cache.containsKey(id)) {
             getObjectHits++;
             return cached;
         }
         InterMineObject fromDb = internalGetObjectById(id, clazz);
-        synchronized (cache) {
-            cached = cache.get(id);
-            if (cached == null) {
-                contains = cache.containsKey(id);
-            }
-            if (contains) {
-                fromDb = cached;
-            } else {
-                cacheObjectById(id, fromDb);
-            }
+        // Prefer an object that another thread has cached in the meantime, so that callers see
+        // the same instance wherever possible.
+        cached = cache.get(id);
+        if (cached != null) {
+            return cached;
         }
+        cacheObjectById(id, fromDb);
         return fromDb;
     }
 
@@ -290,18 +330,14 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
      * {@inheritDoc}
      */
     public void invalidateObjectById(Integer id) {
-        synchronized (cache) {
-            cache.remove(id);
-        }
+        cache.remove(id);
     }
 
     /**
      * {@inheritDoc}
      */
     public Object cacheObjectById(Integer id, InterMineObject obj) {
-        synchronized (cache) {
-            cache.put(id, obj);
-        }
+        cache.put(id, obj);
         return obj;
     }
 
@@ -309,18 +345,14 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
      * {@inheritDoc}
      */
     public void flushObjectById() {
-        synchronized (cache) {
-            cache.clear();
-        }
+        cache.clear();
     }
 
     /**
      * {@inheritDoc}
      */
     public InterMineObject pilferObjectById(Integer id) {
-        synchronized (cache) {
-            return cache.get(id);
-        }
+        return cache.get(id);
     }
 
     /**
@@ -464,6 +496,46 @@ public abstract class ObjectStoreAbstractImpl implements ObjectStore
         return maxTime;
     }
 
+    /**
+     * Returns the maximum number of threads the PrefetchManager may use to prefetch batches of
+     * Results from this ObjectStore.
+     *
+     * @return an int, zero or less if prefetching is switched off
+     */
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    /**
+     * Sets the maximum number of prefetch threads for this ObjectStore. This only has an effect
+     * before the first prefetch request is made.
+     *
+     * @param prefetchThreads an int, zero or less to switch off prefetching
+     */
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+
+    /**
+     * Returns the maximum number of prefetch requests that may wait for a prefetch thread for
+     * this ObjectStore. Further requests are dropped.
+     *
+     * @return an int
+     */
+    public int getPrefetchQueueSize() {
+        return prefetchQueueSize;
+    }
+
+    /**
+     * Sets the maximum number of queued prefetch requests for this ObjectStore. This only has an
+     * effect before the first prefetch request is made.
+     *
+     * @param prefetchQueueSize an int
+     */
+    public void setPrefetchQueueSize(int prefetchQueueSize) {
+        this.prefetchQueueSize = prefetchQueueSize;
+    }
+
     /**
      * Creates a new empty ObjectStoreBag object that is valid for this ObjectStore.
      *
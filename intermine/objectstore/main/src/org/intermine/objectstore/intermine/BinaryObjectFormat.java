@@ -0,0 +1,506 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.FieldDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.metadata.ReferenceDescriptor;
+import org.intermine.model.FastPathObject;
+import org.intermine.model.InterMineObject;
+import org.intermine.objectstore.proxy.ProxyCollection;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.objectstore.query.ClobAccess;
+import org.intermine.util.DynamicUtil;
+import org.intermine.util.TypeUtil;
+
+/**
+ * A compact binary alternative to NotXml for the OBJECT column of database tables.
+ * <p>
+ * Instead of class and field names, an encoded object contains ordinals taken from the Model, so
+ * an encoded object is only meaningful alongside the Model stored in the same database. The
+ * layout is a format version byte, the number of classes followed by their ordinals, and then a
+ * sequence of (field ordinal + 1, value) pairs for each non-null attribute and reference. Integer
+ * values, IDs and lengths are written as varints, and strings are length-prefixed UTF-8. The
+ * type of each value is known from the field, so no type tags are written.
+ */
+public class BinaryObjectFormat
+{
+    /**
+     * The format version written as the first byte of every encoded object.
+     */
+    public static final byte VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int STRING = 0;
+    private static final int INTEGER = 1;
+    private static final int SHORT = 2;
+    private static final int LONG = 3;
+    private static final int BOOLEAN = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+    private static final int DATE = 7;
+    private static final int BIG_DECIMAL = 8;
+    private static final int CLOB = 9;
+    private static final int REFERENCE = 10;
+    private static final int COLLECTION = 11;
+    private static final int OTHER = 12;
+
+    private final Model model;
+    private final List<ClassDescriptor> classes;
+    private final Map<Class<?>, Integer> classOrdinals = new HashMap<Class<?>, Integer>();
+    private final Map<Class<?>, ClassLayout> layoutsByClass
+        = new ConcurrentHashMap<Class<?>, ClassLayout>();
+    private final Map<String, ClassLayout> layoutsByOrdinals
+        = new ConcurrentHashMap<String, ClassLayout>();
+
+    /**
+     * Creates a new BinaryObjectFormat for the given Model.
+     *
+     * @param model the Model that the ordinals are taken from
+     */
+    public BinaryObjectFormat(Model model) {
+        this.model = model;
+        classes = new ArrayList<ClassDescriptor>(model.getClassDescriptors());
+        Collections.sort(classes, new Comparator<ClassDescriptor>() {
+            public int compare(ClassDescriptor a, ClassDescriptor b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        for (int i = 0; i < classes.size(); i++) {
+            classOrdinals.put(classes.get(i).getType(), new Integer(i));
+        }
+    }
+
+    /**
+     * Returns true if the given value from an OBJECT column is in this binary format rather than
+     * NotXml.
+     *
+     * @param column the value fetched from the database
+     * @return a boolean
+     */
+    public static boolean isBinary(Object column) {
+        return column instanceof byte[];
+    }
+
+    /**
+     * Encodes the given object.
+     *
+     * @param obj the object to encode
+     * @return a byte array suitable for storing in the OBJECT column
+     * @throws IllegalArgumentException if the object is not of classes in the Model
+     */
+    public byte[] render(Object obj) {
+        ClassLayout layout = getLayout(obj.getClass());
+        Output out = new Output();
+        out.writeByte(VERSION);
+        out.writeVarInt(layout.classOrdinals.length);
+        for (int ordinal : layout.classOrdinals) {
+            out.writeVarInt(ordinal);
+        }
+        try {
+            for (int i = 0; i < layout.fields.length; i++) {
+                Field field = layout.fields[i];
+                if (field.kind == COLLECTION) {
+                    continue;
+                }
+                Object value = TypeUtil.getFieldProxy(obj, field.name);
+                if (value == null) {
+                    continue;
+                }
+                out.writeVarInt(i + 1);
+                switch (field.kind) {
+                    case STRING:
+                        out.writeString((String) value);
+                        break;
+                    case INTEGER:
+                        out.writeVarInt(zigZag(((Integer) value).intValue()));
+                        break;
+                    case SHORT:
+                        out.writeVarInt(zigZag(((Short) value).intValue()));
+                        break;
+                    case LONG:
+                        out.writeVarLong(zigZag(((Long) value).longValue()));
+                        break;
+                    case BOOLEAN:
+                        out.writeByte(((Boolean) value).booleanValue() ? 1 : 0);
+                        break;
+                    case FLOAT:
+                        out.writeFixed(Float.floatToIntBits(((Float) value).floatValue()), 4);
+                        break;
+                    case DOUBLE:
+                        out.writeFixed(Double.doubleToLongBits(((Double) value).doubleValue()),
+                                8);
+                        break;
+                    case DATE:
+                        out.writeVarLong(zigZag(((Date) value).getTime()));
+                        break;
+                    case CLOB:
+                        out.writeString(((ClobAccess) value).getDbDescription());
+                        break;
+                    case REFERENCE:
+                        out.writeVarInt(zigZag(((InterMineObject) value).getId().intValue()));
+                        break;
+                    default:
+                        out.writeString(value.toString());
+                }
+            }
+        } catch (IllegalAccessException e) {
+            IllegalArgumentException e2 = new IllegalArgumentException();
+            e2.initCause(e);
+            throw e2;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the given byte array into an object.
+     *
+     * @param data the contents of the OBJECT column
+     * @param os the ObjectStore from which to create lazy objects
+     * @return an InterMineObject
+     * @throws ClassNotFoundException if a class ordinal is not present in the Model
+     */
+    public InterMineObject parse(byte[] data, ObjectStoreInterMineImpl os)
+        throws ClassNotFoundException {
+        Input in = new Input(data);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown binary object format version " + version);
+        }
+        int classCount = in.readVarInt();
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < classCount; i++) {
+            if (i > 0) {
+                key.append(' ');
+            }
+            key.append(in.readVarInt());
+        }
+        ClassLayout layout = layoutsByOrdinals.get(key.toString());
+        if (layout == null) {
+            Set<Class<?>> objectClasses = new HashSet<Class<?>>();
+            for (String ordinal : key.toString().split(" ")) {
+                int classNo = Integer.parseInt(ordinal);
+                if (classNo >= classes.size()) {
+                    throw new ClassNotFoundException("Class ordinal " + classNo
+                            + " is not present in model " + model.getName());
+                }
+                objectClasses.add(classes.get(classNo).getType());
+            }
+            layout = getLayout(DynamicUtil.createObject(objectClasses).getClass());
+            layoutsByOrdinals.put(key.toString(), layout);
+        }
+        @SuppressWarnings("unchecked") InterMineObject retval = (InterMineObject) DynamicUtil
+            .createObject((Class<? extends FastPathObject>) layout.type);
+        boolean fetchFromInterMineObject = os.getSchema().isFetchFromInterMineObject();
+        while (in.hasMore()) {
+            Field field = layout.fields[in.readVarInt() - 1];
+            Object value;
+            switch (field.kind) {
+                case STRING:
+                    value = in.readString();
+                    break;
+                case INTEGER:
+                    value = Integer.valueOf(unZigZag(in.readVarInt()));
+                    break;
+                case SHORT:
+                    value = Short.valueOf((short) unZigZag(in.readVarInt()));
+                    break;
+                case LONG:
+                    value = Long.valueOf(unZigZag(in.readVarLong()));
+                    break;
+                case BOOLEAN:
+                    value = Boolean.valueOf(in.readByte() != 0);
+                    break;
+                case FLOAT:
+                    value = new Float(Float.intBitsToFloat((int) in.readFixed(4)));
+                    break;
+                case DOUBLE:
+                    value = new Double(Double.longBitsToDouble(in.readFixed(8)));
+                    break;
+                case DATE:
+                    value = new Date(unZigZag(in.readVarLong()));
+                    break;
+                case BIG_DECIMAL:
+                    value = new BigDecimal(in.readString());
+                    break;
+                case CLOB:
+                    value = ClobAccess.decodeDbDescription(os, in.readString());
+                    break;
+                case REFERENCE:
+                    value = new ProxyReference(os, Integer.valueOf(unZigZag(in.readVarInt())),
+                            fetchFromInterMineObject ? InterMineObject.class : field.referencedType);
+                    break;
+                default:
+                    value = TypeUtil.stringToObject(field.type, in.readString());
+            }
+            retval.setFieldValue(field.name, value);
+        }
+        for (Field field : layout.fields) {
+            if (field.kind == COLLECTION) {
+                retval.setFieldValue(field.name, new ProxyCollection<Object>(os, retval,
+                            field.name, field.referencedType));
+            }
+        }
+        return retval;
+    }
+
+    private ClassLayout getLayout(Class<?> type) {
+        ClassLayout layout = layoutsByClass.get(type);
+        if (layout == null) {
+            layout = new ClassLayout(type);
+            layoutsByClass.put(type, layout);
+        }
+        return layout;
+    }
+
+    private static int zigZag(int i) {
+        return (i << 1) ^ (i >> 31);
+    }
+
+    private static long zigZag(long l) {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    private static int unZigZag(int i) {
+        return (i >>> 1) ^ -(i & 1);
+    }
+
+    private static long unZigZag(long l) {
+        return (l >>> 1) ^ -(l & 1);
+    }
+
+    /**
+     * The ordinals and field kinds of one (possibly dynamic) object class.
+     */
+    private class ClassLayout
+    {
+        final Class<?> type;
+        final int[] classOrdinals;
+        final Field[] fields;
+
+        ClassLayout(Class<?> type) {
+            this.type = type;
+            List<Integer> ordinals = new ArrayList<Integer>();
+            for (Class<?> c : DynamicUtil.decomposeClass(type)) {
+                Integer ordinal = BinaryObjectFormat.this.classOrdinals.get(c);
+                if (ordinal == null) {
+                    throw new IllegalArgumentException("Class " + c.getName()
+                            + " is not in model " + model.getName());
+                }
+                ordinals.add(ordinal);
+            }
+            Collections.sort(ordinals);
+            classOrdinals = new int[ordinals.size()];
+            for (int i = 0; i < classOrdinals.length; i++) {
+                classOrdinals[i] = ordinals.get(i).intValue();
+            }
+            Map<String, TypeUtil.FieldInfo> infos = TypeUtil.getFieldInfos(type);
+            Map<String, FieldDescriptor> descriptors = model.getFieldDescriptorsForClass(type);
+            List<String> names = new ArrayList<String>(infos.keySet());
+            Collections.sort(names);
+            fields = new Field[names.size()];
+            for (int i = 0; i < fields.length; i++) {
+                String name = names.get(i);
+                fields[i] = new Field(name, infos.get(name).getType(), descriptors.get(name));
+            }
+        }
+    }
+
+    /**
+     * A field of a ClassLayout, with the kind of value that it holds.
+     */
+    private static class Field
+    {
+        final String name;
+        final Class<?> type;
+        final int kind;
+        final Class<? extends InterMineObject> referencedType;
+
+        @SuppressWarnings("unchecked")
+        Field(String name, Class<?> type, FieldDescriptor descriptor) {
+            this.name = name.intern();
+            this.type = type;
+            if ((descriptor != null) && descriptor.isCollection()) {
+                kind = COLLECTION;
+                referencedType = (Class) ((ReferenceDescriptor) descriptor)
+                    .getReferencedClassDescriptor().getType();
+            } else if ((descriptor != null) && descriptor.isReference()) {
+                kind = REFERENCE;
+                referencedType = (Class) ((ReferenceDescriptor) descriptor)
+                    .getReferencedClassDescriptor().getType();
+            } else {
+                referencedType = null;
+                if (String.class.equals(type)) {
+                    kind = STRING;
+                } else if (Integer.class.equals(type) || Integer.TYPE.equals(type)) {
+                    kind = INTEGER;
+                } else if (Short.class.equals(type) || Short.TYPE.equals(type)) {
+                    kind = SHORT;
+                } else if (Long.class.equals(type) || Long.TYPE.equals(type)) {
+                    kind = LONG;
+                } else if (Boolean.class.equals(type) || Boolean.TYPE.equals(type)) {
+                    kind = BOOLEAN;
+                } else if (Float.class.equals(type) || Float.TYPE.equals(type)) {
+                    kind = FLOAT;
+                } else if (Double.class.equals(type) || Double.TYPE.equals(type)) {
+                    kind = DOUBLE;
+                } else if (Date.class.equals(type)) {
+                    kind = DATE;
+                } else if (BigDecimal.class.equals(type)) {
+                    kind = BIG_DECIMAL;
+                } else if (ClobAccess.class.equals(type)) {
+                    kind = CLOB;
+                } else if (Collection.class.isAssignableFrom(type)) {
+                    kind = COLLECTION;
+                } else {
+                    kind = OTHER;
+                }
+            }
+        }
+    }
+
+    /**
+     * A growable byte buffer with varint support.
+     */
+    private static class Output
+    {
+        private byte[] buf = new byte[64];
+        private int count = 0;
+
+        private void ensure(int extra) {
+            if (count + extra > buf.length) {
+                byte[] newBuf = new byte[Math.max(buf.length * 2, count + extra)];
+                System.arraycopy(buf, 0, newBuf, 0, count);
+                buf = newBuf;
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        void writeVarInt(int i) {
+            ensure(5);
+            while ((i & ~0x7F) != 0) {
+                buf[count++] = (byte) ((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            buf[count++] = (byte) i;
+        }
+
+        void writeVarLong(long l) {
+            ensure(10);
+            while ((l & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((l & 0x7F) | 0x80);
+                l >>>= 7;
+            }
+            buf[count++] = (byte) l;
+        }
+
+        void writeFixed(long l, int bytes) {
+            ensure(bytes);
+            for (int i = 0; i < bytes; i++) {
+                buf[count++] = (byte) (l >>> (8 * i));
+            }
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(UTF8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            byte[] retval = new byte[count];
+            System.arraycopy(buf, 0, retval, 0, count);
+            return retval;
+        }
+    }
+
+    /**
+     * Reads values written by an Output.
+     */
+    private static class Input
+    {
+        private final byte[] buf;
+        private int pos = 0;
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        boolean hasMore() {
+            return pos < buf.length;
+        }
+
+        int readByte() {
+            return buf[pos++];
+        }
+
+        int readVarInt() {
+            int retval = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                retval |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return retval;
+        }
+
+        long readVarLong() {
+            long retval = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                retval |= ((long) (b & 0x7F)) << shift;
+                shift += 7;
+            } while (b < 0);
+            return retval;
+        }
+
+        long readFixed(int bytes) {
+            long retval = 0;
+            for (int i = 0; i < bytes; i++) {
+                retval |= ((long) (buf[pos++] & 0xFF)) << (8 * i);
+            }
+            return retval;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            String retval = new String(buf, pos, length, UTF8);
+            pos += length;
+            return retval;
+        }
+    }
+}
@@ -47,6 +47,8 @@ public class DatabaseSchema
     private boolean fetchFromInterMineObject;
     private int version;
     private boolean hasBioSeg;
+    private boolean binaryObjects;
+    private BinaryObjectFormat binaryObjectFormat;
 
     private Set<ClassDescriptor> truncatedSet;
     private Map<ClassDescriptor, Fields> tableMasterToFieldDescriptors
@@ -68,6 +70,25 @@ public class DatabaseSchema
      */
     public DatabaseSchema(Model model, List<ClassDescriptor> truncated, boolean noNotXml,
             Set<String> missingTables, int version, boolean hasBioSeg) {
+        this(model, truncated, noNotXml, missingTables, version, hasBioSeg, false);
+    }
+
+    /**
+     * Returns an instance of DatabaseSchema, for the given Model and and List of truncated classes.
+     *
+     * @param model a Model
+     * @param truncated a List of ClassDescriptors representing the truncated classes, in order of
+     * decreasing priority.
+     * @param noNotXml true if NotXML data should be omitted from every table except InterMineObject
+     * @param missingTables a Set of lowercase table names which are missing
+     * @param version the version number in the database
+     * @param hasBioSeg true if the database has the bioseg type installed
+     * @param binaryObjects true if the OBJECT column holds BinaryObjectFormat data instead of
+     * NotXml
+     * @throws IllegalArgumentException if the truncated class list does not make sense
+     */
+    public DatabaseSchema(Model model, List<ClassDescriptor> truncated, boolean noNotXml,
+            Set<String> missingTables, int version, boolean hasBioSeg, boolean binaryObjects) {
         this.model = model;
         this.truncated = truncated;
         this.missingTables = missingTables;
@@ -76,6 +97,8 @@ public class DatabaseSchema
         this.fetchFromInterMineObject = !missingTables.contains("intermineobject");
         this.version = version;
         this.hasBioSeg = hasBioSeg;
+        this.binaryObjects = binaryObjects;
+        this.binaryObjectFormat = new BinaryObjectFormat(model);
         for (int i = 0; i < truncated.size(); i++) {
             Class<?> cA = truncated.get(i).getType();
             for (int o = 0; o < i; o++) {
@@ -192,6 +215,26 @@ public class DatabaseSchema
         return hasBioSeg;
     }
 
+    /**
+     * Returns true if objects are written to the OBJECT column in the binary format rather than as
+     * NotXml.
+     *
+     * @return a boolean
+     */
+    public boolean isBinaryObjects() {
+        return binaryObjects;
+    }
+
+    /**
+     * Returns the BinaryObjectFormat for the model. This is available whatever the value of
+     * isBinaryObjects(), so that a database part-way through conversion can still be read.
+     *
+     * @return a BinaryObjectFormat
+     */
+    public BinaryObjectFormat getBinaryObjectFormat() {
+        return binaryObjectFormat;
+    }
+
     /**
      * Returns a Fields object of FieldDescriptors in the given table-mastering ClassDescriptor. It
      * is assumed that the ClassDescriptor passed in here is a ClassDescriptor that could be
@@ -35,6 +35,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
 
 import org.apache.log4j.Logger;
 import org.intermine.metadata.ClassDescriptor;
@@ -50,6 +51,7 @@ import org.intermine.objectstore.ObjectStoreQueryDurationException;
 import org.intermine.objectstore.ObjectStoreWriter;
 import org.intermine.objectstore.query.BagConstraint;
 import org.intermine.objectstore.query.Clob;
+import org.intermine.objectstore.query.ClobPageCache;
 import org.intermine.objectstore.query.Constraint;
 import org.intermine.objectstore.query.ConstraintHelper;
 import org.intermine.objectstore.query.ConstraintOp;
@@ -58,7 +60,10 @@ import org.intermine.objectstore.query.ConstraintTraverseAction;
 import org.intermine.objectstore.query.ConstraintWithBag;
 import org.intermine.objectstore.query.FromElement;
 import org.intermine.objectstore.query.MultipleInBagConstraint;
+import org.intermine.objectstore.query.ObjectStoreBag;
+import org.intermine.objectstore.query.ObjectStoreBagCombination;
 import org.intermine.objectstore.query.OrderDescending;
+import org.intermine.objectstore.query.PrefetchManager;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryClassBag;
@@ -77,9 +82,11 @@ import org.intermine.objectstore.query.SingletonResults;
 import org.intermine.sql.Database;
 import org.intermine.sql.DatabaseFactory;
 import org.intermine.sql.DatabaseUtil;
+import org.intermine.sql.ParameterisedSql;
 import org.intermine.sql.precompute.BestQuery;
 import org.intermine.sql.precompute.BestQueryExplainer;
 import org.intermine.sql.precompute.OptimiserCache;
+import org.intermine.sql.precompute.OptimiserCacheStore;
 import org.intermine.sql.precompute.PrecomputedTable;
 import org.intermine.sql.precompute.PrecomputedTableManager;
 import org.intermine.sql.precompute.QueryOptimiser;
@@ -89,6 +96,7 @@ import org.intermine.sql.query.PostgresExplainResult;
 import org.intermine.sql.writebatch.Batch;
 import org.intermine.sql.writebatch.BatchWriterPostgresCopyImpl;
 import org.intermine.util.CacheMap;
+import org.intermine.util.IntBitmap;
 import org.intermine.util.ShutdownHook;
 import org.intermine.util.Shutdownable;
 import org.intermine.util.TypeUtil;
@@ -132,6 +140,14 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     protected static final int SEQUENCE_MULTIPLE = 1000000;
     protected boolean logExplains = false;
     protected boolean disableResultsCache = false;
+    // Statements are only reused while a Connection is held, so this is off by default
+    protected boolean disablePreparedStatements = true;
+    protected boolean persistentOptimiserCache = false;
+    protected boolean asyncOptimise = false;
+    protected boolean packSequenceClobs = false;
+    protected Semaphore streamingPermits = new Semaphore(DEFAULT_MAX_STREAMING_CONNECTIONS);
+    protected int maxStreamingConnections = DEFAULT_MAX_STREAMING_CONNECTIONS;
+    protected long streamingIdleTimeout = DEFAULT_STREAMING_IDLE_TIMEOUT;
 
     // don't use a table to represent bags if the bag is smaller than this value
     protected int minBagTableSize = -1;
@@ -146,15 +162,23 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     protected Map<Query, Integer> goFasterCountMap = new IdentityHashMap<Query, Integer>();
     protected ReferenceQueue<String> bagTablesToRemove = new ReferenceQueue<String>();
     protected String description;
-    protected Map<String, Results> resultsCache = new CacheMap<String, Results>();
+    protected Map<String, Results> resultsCache = createCache("Results cache", 0);
     protected Map<String, SingletonResults> singletonResultsCache
-        = new CacheMap<String, SingletonResults>();
+        = createCache("SingletonResults cache", 0);
     protected Map<String, Map<Integer, ResultsBatches>> batchesCache
-        = new CacheMap<String, Map<Integer, ResultsBatches>>();
+        = createCache("ResultsBatches cache", 0);
+    protected Map<ObjectStoreBag, CachedBagBitmap> bagBitmapCache
+        = createCache("ObjectStoreBag bitmap cache", 0);
+    protected boolean bagBitmapTableExists = false;
 
     private static final String[] LOG_TABLE_COLUMNS = new String[] {"timestamp", "optimise",
         "estimated", "execute", "permitted", "convert", "iql", "sql"};
 
+    /** The default maximum number of connections that streaming cursors may hold open */
+    public static final int DEFAULT_MAX_STREAMING_CONNECTIONS = 4;
+    /** The default number of milliseconds after which an unused streaming cursor is closed */
+    public static final long DEFAULT_STREAMING_IDLE_TIMEOUT = 5 * 60 * 1000L;
+
     /**
      * The name of the SEQUENCE in the database to use when generating unique integers in
      * getUniqueInteger().
@@ -166,6 +190,10 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     public static final String BAGID_COLUMN = "bagid";
     /** The name of the value column in the osbag table. */
     public static final String BAGVAL_COLUMN = "value";
+    /** The name of the table that holds each ObjectStoreBag as a compressed bitmap. */
+    public static final String BITMAP_BAG_TABLE_NAME = "osbag_bitmap";
+    /** The name of the bitmap column in the osbag_bitmap table. */
+    public static final String BAGBITMAP_COLUMN = "bitmap";
     /** The name of the table that stores Clobs. */
     public static final String CLOB_TABLE_NAME = "clob";
     /** The name of the clobid column in the clob table. */
@@ -300,6 +328,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                     c.rollback();
                     c.setAutoCommit(true);
                 }
+                db.closePreparedStatements(c);
                 c.close();
             } catch (SQLException e) {
                 LOG.error("Could not release SQL connection " + c, e);
@@ -329,6 +358,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         String missingTablesString = props.getProperty("missingTables");
         String truncatedClassesString = props.getProperty("truncatedClasses");
         String noNotXmlString = props.getProperty("noNotXml");
+        String binaryObjectsString = props.getProperty("binaryObjects");
 
         // Non-format properties
         String logfile = props.getProperty("logfile");
@@ -339,6 +369,17 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         String logExplainsString = props.getProperty("logExplains");
         String logBeforeExecuteString = props.getProperty("logBeforeExecute");
         String disableResultsCacheString = props.getProperty("disableResultsCache");
+        String disablePreparedStatementsString = props.getProperty("disablePreparedStatements");
+        String persistentOptimiserCacheString = props.getProperty("persistentOptimiserCache");
+        String asyncOptimiseString = props.getProperty("asyncOptimise");
+        String packSequenceClobsString = props.getProperty("packSequenceClobs");
+        String clobCacheSizeString = props.getProperty("clobCacheSize");
+        String objectCacheSizeString = props.getProperty("objectCacheSize");
+        String resultsCacheSizeString = props.getProperty("resultsCacheSize");
+        String prefetchThreadsString = props.getProperty("prefetchThreads");
+        String prefetchQueueSizeString = props.getProperty("prefetchQueueSize");
+        String maxStreamingConnectionsString = props.getProperty("maxStreamingConnections");
+        String streamingIdleTimeoutString = props.getProperty("streamingIdleTimeout");
 
         synchronized (instances) {
             ObjectStoreInterMineImpl os = instances.get(osAlias);
@@ -392,6 +433,8 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                                 MetadataManager.MISSING_TABLES);
                         noNotXmlString = MetadataManager.retrieve(database,
                                 MetadataManager.NO_NOTXML);
+                        binaryObjectsString = MetadataManager.retrieve(database,
+                                MetadataManager.BINARY_OBJECTS);
                     } catch (SQLException e) {
                         throw new IllegalArgumentException("Couldn't retrieve embedded config "
                                 + "for ObjectStore " + osAlias);
@@ -423,6 +466,13 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                     throw new ObjectStoreException("Invalid value for property noNotXml: "
                             + noNotXmlString);
                 }
+                boolean binaryObjects = false;
+                if ("true".equals(binaryObjectsString)) {
+                    binaryObjects = true;
+                } else if ((binaryObjectsString != null) && (!"false".equals(binaryObjectsString))) {
+                    throw new ObjectStoreException("Invalid value for property binaryObjects: "
+                            + binaryObjectsString);
+                }
                 HashSet<String> missingTables = new HashSet<String>();
                 if (missingTablesString != null) {
                     String[] tables = missingTablesString.split(",");
@@ -450,7 +500,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                     }
                 }
                 DatabaseSchema schema = new DatabaseSchema(osModel, truncatedClasses, noNotXml,
-                        missingTables, formatVersion, hasBioSeg);
+                        missingTables, formatVersion, hasBioSeg, binaryObjects);
                 os = new ObjectStoreInterMineImpl(database, schema);
                 os.description = osAlias;
 
@@ -495,6 +545,70 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                 if ("true".equals(disableResultsCacheString)) {
                     os.setDisableResultsCache(true);
                 }
+                if ("false".equals(disablePreparedStatementsString)) {
+                    os.setDisablePreparedStatements(false);
+                }
+                if ("true".equals(persistentOptimiserCacheString)) {
+                    os.setPersistentOptimiserCache(true);
+                }
+                if ("true".equals(asyncOptimiseString)) {
+                    os.setAsyncOptimise(true);
+                }
+                if ("true".equals(packSequenceClobsString)) {
+                    os.setPackSequenceClobs(true);
+                }
+                if (clobCacheSizeString != null) {
+                    try {
+                        ClobPageCache.getInstance(os).setMaxPages(Integer.parseInt(
+                                    clobCacheSizeString));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Error setting clobCacheSize: " + e);
+                    }
+                }
+                if (objectCacheSizeString != null) {
+                    try {
+                        os.setObjectCacheSize(Integer.parseInt(objectCacheSizeString));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Error setting objectCacheSize: " + e);
+                    }
+                }
+                if (resultsCacheSizeString != null) {
+                    try {
+                        os.setResultsCacheSize(Integer.parseInt(resultsCacheSizeString));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Error setting resultsCacheSize: " + e);
+                    }
+                }
+                if (prefetchThreadsString != null) {
+                    try {
+                        os.setPrefetchThreads(Integer.parseInt(prefetchThreadsString));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Error setting prefetchThreads: " + e);
+                    }
+                }
+                if (prefetchQueueSizeString != null) {
+                    try {
+                        os.setPrefetchQueueSize(Integer.parseInt(prefetchQueueSizeString));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Error setting prefetchQueueSize: " + e);
+                    }
+                }
+                if (maxStreamingConnectionsString != null) {
+                    try {
+                        os.setMaxStreamingConnections(Integer.parseInt(
+                                    maxStreamingConnectionsString));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Error setting maxStreamingConnections: " + e);
+                    }
+                }
+                if (streamingIdleTimeoutString != null) {
+                    try {
+                        os.setStreamingIdleTimeout(1000L * Integer.parseInt(
+                                    streamingIdleTimeoutString));
+                    } catch (NumberFormatException e) {
+                        LOG.warn("Error setting streamingIdleTimeout: " + e);
+                    }
+                }
                 instances.put(osAlias, os);
             }
             return os;
@@ -643,6 +757,146 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         return disableResultsCache;
     }
 
+    /**
+     * Sets the disablePreparedStatements configuration option. If set, which is the default,
+     * queries are sent to the database with their values written inline, rather than as prepared
+     * statements. Prepared statements are closed when their Connection is released, so they only
+     * help where many queries are run on a Connection that is held for a long time.
+     *
+     * @param disablePreparedStatements a boolean
+     */
+    public void setDisablePreparedStatements(boolean disablePreparedStatements) {
+        this.disablePreparedStatements = disablePreparedStatements;
+    }
+
+    /**
+     * Gets the disablePreparedStatements configuration option.
+     *
+     * @return a boolean
+     */
+    public boolean getDisablePreparedStatements() {
+        return disablePreparedStatements;
+    }
+
+    /**
+     * Sets the persistentOptimiserCache configuration option. If set, the decisions of the query
+     * optimiser are kept in a table in the database, so they are shared with other processes and
+     * survive a restart, and the decisions already there are loaded now.
+     *
+     * @param persistentOptimiserCache a boolean
+     */
+    public void setPersistentOptimiserCache(boolean persistentOptimiserCache) {
+        this.persistentOptimiserCache = persistentOptimiserCache;
+        if (persistentOptimiserCache) {
+            try {
+                OptimiserCache.getInstance(db).setStore(new OptimiserCacheStore(db));
+            } catch (SQLException e) {
+                LOG.warn("Could not load optimiser decisions for " + db
+                        + " - they will not be kept in the database", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the persistentOptimiserCache configuration option.
+     *
+     * @return a boolean
+     */
+    public boolean getPersistentOptimiserCache() {
+        return persistentOptimiserCache;
+    }
+
+    /**
+     * Sets the asyncOptimise configuration option. If set, a query that the optimiser has not
+     * seen before is run as it stands, while it is optimised in the background for later
+     * executions.
+     *
+     * @param asyncOptimise a boolean
+     */
+    public void setAsyncOptimise(boolean asyncOptimise) {
+        this.asyncOptimise = asyncOptimise;
+    }
+
+    /**
+     * Gets the asyncOptimise configuration option.
+     *
+     * @return a boolean
+     */
+    public boolean getAsyncOptimise() {
+        return asyncOptimise;
+    }
+
+    /**
+     * Sets the packSequenceClobs configuration option. If set, pages of Clobs written by this
+     * ObjectStore that are nucleotide sequence are packed with two bits for each base. Packed
+     * pages are always readable, whatever this option is set to.
+     *
+     * @param packSequenceClobs a boolean
+     */
+    public void setPackSequenceClobs(boolean packSequenceClobs) {
+        this.packSequenceClobs = packSequenceClobs;
+    }
+
+    /**
+     * Gets the packSequenceClobs configuration option.
+     *
+     * @return a boolean
+     */
+    public boolean getPackSequenceClobs() {
+        return packSequenceClobs;
+    }
+
+    /**
+     * Replaces the Results caches with empty caches of the given size.
+     *
+     * @param maxEntries the maximum number of entries in each cache, or zero for soft reference
+     * caches
+     */
+    public void setResultsCacheSize(int maxEntries) {
+        resultsCache = createCache(description + " Results cache", maxEntries);
+        singletonResultsCache = createCache(description + " SingletonResults cache", maxEntries);
+        batchesCache = createCache(description + " ResultsBatches cache", maxEntries);
+    }
+
+    /**
+     * Sets the maximum number of connections that streaming cursors may hold open at once.
+     * Requests for streaming results beyond this fall back to batched Results.
+     *
+     * @param maxStreamingConnections a number of connections, zero to switch off streaming
+     */
+    public void setMaxStreamingConnections(int maxStreamingConnections) {
+        this.maxStreamingConnections = maxStreamingConnections;
+        streamingPermits = new Semaphore(Math.max(0, maxStreamingConnections));
+    }
+
+    /**
+     * Returns the maximum number of connections that streaming cursors may hold open at once.
+     *
+     * @return an int
+     */
+    public int getMaxStreamingConnections() {
+        return maxStreamingConnections;
+    }
+
+    /**
+     * Sets the time after which a streaming cursor from which no rows have been requested is
+     * closed and its connection returned.
+     *
+     * @param streamingIdleTimeout a number of milliseconds
+     */
+    public void setStreamingIdleTimeout(long streamingIdleTimeout) {
+        this.streamingIdleTimeout = streamingIdleTimeout;
+    }
+
+    /**
+     * Returns the time after which an unused streaming cursor is closed.
+     *
+     * @return a number of milliseconds
+     */
+    public long getStreamingIdleTimeout() {
+        return streamingIdleTimeout;
+    }
+
     /**
      * Allows the log table to be flushed, guaranteeing that all log entries are committed to the
      * database.
@@ -717,38 +971,98 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             boolean prefetch) {
         String cacheKey = "Batchsize: " + batchSize + ", optimise: " + optimise + ", explain: "
             + explain + ", prefetch: " + prefetch + ", query: " + q;
-        synchronized (resultsCache) {
-            Results retval = resultsCache.get(cacheKey);
-            if (retval != null) {
-                try {
-                    checkSequence(retval.getSequence(), null, null);
-                } catch (DataChangedException e) {
-                    retval = null;
-                }
+        // The caches are thread-safe, so only creating a new entry needs a lock
+        Results retval = resultsCache.get(cacheKey);
+        if (retval != null) {
+            try {
+                checkSequence(retval.getSequence(), null, null);
+            } catch (DataChangedException e) {
+                retval = null;
             }
-            if (retval == null) {
-                String batchesKey = q.toString();
-                synchronized (batchesCache) {
-                    Map<Integer, ResultsBatches> batches = batchesCache.get(batchesKey);
-                    if (batches == null) {
-                        batches = new CacheMap<Integer, ResultsBatches>();
-                        batchesCache.put(batchesKey, batches);
-                    }
-                    ResultsBatches batch = getResultsBatches(batches, batchSize);
-                    if (batch != null) {
-                        retval = new Results(batch, optimise, explain, prefetch);
-                    } else {
-                        retval = super.execute(q, batchSize, optimise, explain, prefetch);
-                        batches.put(new Integer(batchSize), retval.getResultsBatches());
-                    }
-                    resultsCache.put(cacheKey, retval);
+        }
+        if (retval == null) {
+            String batchesKey = q.toString();
+            synchronized (batchesCache) {
+                Map<Integer, ResultsBatches> batches = batchesCache.get(batchesKey);
+                if (batches == null) {
+                    batches = new CacheMap<Integer, ResultsBatches>();
+                    batchesCache.put(batchesKey, batches);
+                }
+                ResultsBatches batch = getResultsBatches(batches, batchSize);
+                if (batch != null) {
+                    retval = new Results(batch, optimise, explain, prefetch);
+                } else {
+                    retval = super.execute(q, batchSize, optimise, explain, prefetch);
+                    batches.put(new Integer(batchSize), retval.getResultsBatches());
                 }
-                //LOG.error("Results cache miss for " + q);
-            //} else {
-                //LOG.error("Results cache hit for " + q);
+                resultsCache.put(cacheKey, retval);
             }
-            return retval;
+            //LOG.error("Results cache miss for " + q);
+        //} else {
+            //LOG.error("Results cache hit for " + q);
         }
+        return retval;
+    }
+
+    /**
+     * Executes a query and returns an Iterator over all of its rows, as for
+     * executeStreaming(q, 0, Integer.MAX_VALUE, fetchSize, optimise).
+     *
+     * @param q the Query to execute
+     * @param fetchSize the number of rows to fetch at a time
+     * @param optimise whether to optimise the query
+     * @return a StreamingResults object
+     * @throws ObjectStoreException if the cursor cannot be opened
+     */
+    public StreamingResults executeStreaming(Query q, int fetchSize, boolean optimise)
+        throws ObjectStoreException {
+        return executeStreaming(q, 0, Integer.MAX_VALUE, fetchSize, optimise);
+    }
+
+    /**
+     * Executes a query and returns an Iterator over a range of its rows. If the range holds more
+     * rows than one batch, the Iterator reads them through a database cursor held on a dedicated
+     * connection, which suits exports of large results far better than the LIMIT/OFFSET batches of
+     * execute(). Rows before the start of the range are skipped by the database.
+     * <p>
+     * To find out whether the range is that large, the batch holding its first row is fetched as
+     * for execute(). Small results are then returned from that batch without opening a cursor, as
+     * are all results if the streaming connections are in use. The cursor is closed when the last
+     * row has been read, but callers that may stop early should call close() on the result.
+     *
+     * @param q the Query to execute
+     * @param start the index of the first row to return
+     * @param limit the maximum number of rows to return, or Integer.MAX_VALUE for all of them
+     * @param fetchSize the number of rows to fetch at a time
+     * @param optimise whether to optimise the query
+     * @return a StreamingResults object, which returns the row at start first
+     * @throws ObjectStoreException if the cursor cannot be opened
+     */
+    public StreamingResults executeStreaming(Query q, int start, int limit, int fetchSize,
+            boolean optimise) throws ObjectStoreException {
+        Results results = execute(q, fetchSize, optimise, false, true);
+        boolean clobQuery = (q.getSelect().size() == 1) && (q.getSelect().get(0) instanceof Clob);
+        if (clobQuery || (limit <= fetchSize)) {
+            return new StreamingResults(results, start);
+        }
+        try {
+            results.range(start, start);
+        } catch (IndexOutOfBoundsException e) {
+            // There are no rows in the range
+            return new StreamingResults(results, start);
+        }
+        // The maximum size is only known once a batch that is not full has been fetched
+        if ((long) results.getResultsBatches().getMaxSize() - start <= fetchSize) {
+            return new StreamingResults(results, start);
+        }
+        Semaphore permits = streamingPermits;
+        if (!permits.tryAcquire()) {
+            LOG.info("All " + maxStreamingConnections + " streaming connections are in use"
+                    + " - falling back to batches for query " + q);
+            return new StreamingResults(results, start);
+        }
+        return new StreamingResults(this, q, start, limit, fetchSize, optimise,
+                getSequence(getComponentsForQuery(q)), permits, streamingIdleTimeout);
     }
 
     /**
@@ -767,38 +1081,37 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             boolean explain, boolean prefetch) {
         String cacheKey = "Batchsize: " + batchSize + ", optimise: " + optimise + ", explain: "
             + explain + ", prefetch: " + prefetch + ", query: " + q;
-        synchronized (singletonResultsCache) {
-            SingletonResults retval = singletonResultsCache.get(cacheKey);
-            if (retval != null) {
-                try {
-                    checkSequence(retval.getSequence(), null, null);
-                } catch (DataChangedException e) {
-                    retval = null;
-                }
+        // The caches are thread-safe, so only creating a new entry needs a lock
+        SingletonResults retval = singletonResultsCache.get(cacheKey);
+        if (retval != null) {
+            try {
+                checkSequence(retval.getSequence(), null, null);
+            } catch (DataChangedException e) {
+                retval = null;
             }
-            if (retval == null) {
-                String batchesKey = q.toString();
-                synchronized (batchesCache) {
-                    Map<Integer, ResultsBatches> batches = batchesCache.get(batchesKey);
-                    if (batches == null) {
-                        batches = new CacheMap<Integer, ResultsBatches>();
-                        batchesCache.put(batchesKey, batches);
-                    }
-                    ResultsBatches batch = getResultsBatches(batches, batchSize);
-                    if (batch != null) {
-                        retval = new SingletonResults(batch, optimise, explain, prefetch);
-                    } else {
-                        retval = super.executeSingleton(q, batchSize, optimise, explain, prefetch);
-                        batches.put(new Integer(batchSize), retval.getResultsBatches());
-                    }
-                    singletonResultsCache.put(cacheKey, retval);
+        }
+        if (retval == null) {
+            String batchesKey = q.toString();
+            synchronized (batchesCache) {
+                Map<Integer, ResultsBatches> batches = batchesCache.get(batchesKey);
+                if (batches == null) {
+                    batches = new CacheMap<Integer, ResultsBatches>();
+                    batchesCache.put(batchesKey, batches);
+                }
+                ResultsBatches batch = getResultsBatches(batches, batchSize);
+                if (batch != null) {
+                    retval = new SingletonResults(batch, optimise, explain, prefetch);
+                } else {
+                    retval = super.executeSingleton(q, batchSize, optimise, explain, prefetch);
+                    batches.put(new Integer(batchSize), retval.getResultsBatches());
                 }
-                //LOG.error("Results cache miss for " + q);
-            //} else {
-                //LOG.error("Results cache hit for " + q);
+                singletonResultsCache.put(cacheKey, retval);
             }
-            return retval;
+            //LOG.error("Results cache miss for " + q);
+        //} else {
+            //LOG.error("Results cache hit for " + q);
         }
+        return retval;
     }
 
     private ResultsBatches getResultsBatches(Map<Integer, ResultsBatches> batches, int batchSize) {
@@ -885,6 +1198,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             throw new ObjectStoreException("This Thread is already registered with a request ID");
         }
         requestId.set(id);
+        PrefetchManager.registerRequestId(id);
     }
 
     /**
@@ -898,11 +1212,27 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             throw new ObjectStoreException("This Thread is not registered with ID " + id);
         }
         requestId.set(null);
+        PrefetchManager.deregisterRequestId();
     }
 
     private WeakHashMap<Object, Object> cancelRegistry = new WeakHashMap<Object, Object>();
     private static final String BLACKLISTED = "Blacklisted";
 
+    /**
+     * Returns the request ID of the current Thread. Prefetch threads do not have a registered
+     * request ID, so they use the PrefetchManager request they are servicing, which allows their
+     * Statements to be cancelled along with the request that caused the prefetch.
+     *
+     * @return a request ID, or null
+     */
+    private Object getCurrentRequestId() {
+        Object id = requestId.get();
+        if (id == null) {
+            id = PrefetchManager.getServicedRequest();
+        }
+        return id;
+    }
+
     /**
      * This method registers a Statement with the current Thread's request ID, or throws an
      * exception if that request is black-listed, or does nothing if no request ID is present
@@ -912,7 +1242,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
      * @throws ObjectStoreException if the request is black-listed
      */
     protected void registerStatement(Statement s) throws ObjectStoreException {
-        Object id = requestId.get();
+        Object id = getCurrentRequestId();
         if (id != null) {
             synchronized (cancelRegistry) {
                 Object statement = cancelRegistry.get(id);
@@ -930,11 +1260,24 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
 
     /**
      * This method cancels any Statement running in a given request ID, and blacklists that ID.
+     * Any prefetching being done on behalf of that request ID is also cancelled.
      *
      * @param id the request ID
      * @throws ObjectStoreException if the cancel fails
      */
     public void cancelRequest(Object id) throws ObjectStoreException {
+        for (Object prefetchId : PrefetchManager.cancelRequest(id)) {
+            synchronized (cancelRegistry) {
+                Object statement = cancelRegistry.get(prefetchId);
+                if (statement instanceof Statement) {
+                    try {
+                        ((Statement) statement).cancel();
+                    } catch (SQLException e) {
+                        LOG.warn("Could not cancel prefetch for request id " + id, e);
+                    }
+                }
+            }
+        }
         synchronized (cancelRegistry) {
             try {
                 Object statement = cancelRegistry.get(id);
@@ -956,7 +1299,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
      * @throws ObjectStoreException if this Thread does not have this Statement registered
      */
     protected void deregisterStatement(Statement s) throws ObjectStoreException {
-        Object id = requestId.get();
+        Object id = getCurrentRequestId();
         if (id != null) {
             synchronized (cancelRegistry) {
                 Object statement = cancelRegistry.get(id);
@@ -1122,8 +1465,15 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         }
         long preGenTime = System.currentTimeMillis();
         String sql;
+        ParameterisedSql parameterised = null;
         try {
-            sql = SqlGenerator.generate(q, start, limit, schema, db, bagConstraintTables);
+            if (disablePreparedStatements) {
+                sql = SqlGenerator.generate(q, start, limit, schema, db, bagConstraintTables);
+            } else {
+                parameterised = SqlGenerator.generateParameterised(q, start, limit, schema, db,
+                        bagConstraintTables);
+                sql = parameterised.getLiteralSql();
+            }
         } catch (CompletelyFalseException e) {
             return Collections.emptyList();
         }
@@ -1137,7 +1487,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                     goFasterTables = goFasterMap.get(q);
                     goFasterCache = goFasterCacheMap.get(q);
                 }
-                BestQuery bestQuery;
+                BestQuery bestQuery = null;
                 if (goFasterTables != null) {
                     bestQuery = QueryOptimiser.optimiseWith(sql, null, db, c,
                             QueryOptimiserContext.DEFAULT, goFasterTables, goFasterCache);
@@ -1145,13 +1495,17 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                         LOG.warn("Query with goFaster failed to optimise: original = "
                                 + sql + ", goFasterTables = " + goFasterTables);
                     }
+                } else if (asyncOptimise && (!explain)) {
+                    sql = QueryOptimiser.optimiseInBackground(sql, db);
                 } else {
                     bestQuery = QueryOptimiser.optimise(sql, null, db, c,
                             (explain ? limitedContext : QueryOptimiserContext.DEFAULT));
                 }
-                sql = bestQuery.getBestQueryString();
-                if (bestQuery instanceof BestQueryExplainer) {
-                    explainResult = ((BestQueryExplainer) bestQuery).getBestExplainResult();
+                if (bestQuery != null) {
+                    sql = bestQuery.getBestQueryString();
+                    if (bestQuery instanceof BestQueryExplainer) {
+                        explainResult = ((BestQueryExplainer) bestQuery).getBestExplainResult();
+                    }
                 }
             }
             long endOptimiseTime = System.currentTimeMillis();
@@ -1183,18 +1537,40 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
                         + "optimised sql: " + sql);
             }
             long preExecute = System.currentTimeMillis();
-            Statement s = c.createStatement();
+            PreparedStatement ps = null;
+            Statement s;
+            if ((parameterised != null) && sql.equals(generatedSql)) {
+                // Not rewritten by the optimiser, so the parameterised form can be used
+                ps = db.getPreparedStatement(c, parameterised.getSql());
+                parameterised.setParameters(ps);
+                s = ps;
+            } else {
+                s = c.createStatement();
+            }
             registerStatement(s);
             ResultSet sqlResults;
             try {
-                sqlResults = s.executeQuery(sql);
+                sqlResults = (ps == null ? s.executeQuery(sql) : ps.executeQuery());
+            } catch (SQLException e) {
+                if (ps != null) {
+                    ps.close();
+                }
+                throw e;
             } finally {
                 deregisterStatement(s);
             }
             long postExecute = System.currentTimeMillis();
             ExtraQueryTime extra = new ExtraQueryTime();
-            List<ResultsRow<Object>>  objResults = ResultsConverter.convert(sqlResults, q, this, c,
-                    sequence, optimise, extra, goFasterTables, goFasterCache);
+            List<ResultsRow<Object>>  objResults;
+            try {
+                objResults = ResultsConverter.convert(sqlResults, q, this, c, sequence, optimise,
+                        extra, goFasterTables, goFasterCache);
+            } finally {
+                if (ps != null) {
+                    sqlResults.close();
+                    db.releasePreparedStatement(c, parameterised.getSql(), ps);
+                }
+            }
             long postConvert = System.currentTimeMillis();
             long permittedTime = (objResults.size() * 2) + start + (150 * q.getFrom().size())
                     + (sql.length() / 20) - (q.getFrom().size() == 0 ? 0 : 100);
@@ -1655,6 +2031,136 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         }
     }
 
+    /**
+     * Returns the contents of an ObjectStoreBag as a compressed bitmap. Bitmaps are cached until
+     * the bag is altered through an ObjectStoreWriter. On a cache miss the bitmap is read from the
+     * osbag_bitmap table, which the ObjectStoreWriter keeps up to date when it commits a change to
+     * a bag, or failing that from the osbag_int table.
+     *
+     * @param osb an ObjectStoreBag
+     * @return a new IntBitmap, which the caller may modify
+     * @throws ObjectStoreException if the bag cannot be read
+     */
+    public IntBitmap getBagBitmap(ObjectStoreBag osb) throws ObjectStoreException {
+        Map<Object, Integer> sequence = getSequence(Collections.<Object>singleton(osb));
+        CachedBagBitmap cached = bagBitmapCache.get(osb);
+        if ((cached != null) && cached.sequence.equals(sequence)) {
+            return cached.bitmap.clone();
+        }
+        IntBitmap bitmap;
+        Connection c = null;
+        try {
+            c = getConnection();
+            bitmap = readBagBitmap(c, osb, true);
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not read the contents of bag "
+                    + osb.getBagId(), e);
+        } finally {
+            releaseConnection(c);
+        }
+        bagBitmapCache.put(osb, new CachedBagBitmap(sequence, bitmap));
+        return bitmap.clone();
+    }
+
+    /**
+     * Calculates the contents of an ObjectStoreBagCombination in memory, from the bitmaps of the
+     * bags in it. This gives the same result as selecting the combination in a Query.
+     *
+     * @param osbc an ObjectStoreBagCombination
+     * @return a new IntBitmap
+     * @throws ObjectStoreException if a bag cannot be read
+     */
+    public IntBitmap getBagBitmap(ObjectStoreBagCombination osbc) throws ObjectStoreException {
+        int op = osbc.getOp();
+        IntBitmap retval = null;
+        IntBitmap inAll = null;
+        for (QuerySelectable qs : osbc.getBags()) {
+            IntBitmap bitmap;
+            if (qs instanceof ObjectStoreBag) {
+                bitmap = getBagBitmap((ObjectStoreBag) qs);
+            } else {
+                bitmap = getBagBitmap((ObjectStoreBagCombination) qs);
+            }
+            if (retval == null) {
+                retval = bitmap;
+                if (op == ObjectStoreBagCombination.ALLBUTINTERSECT) {
+                    inAll = bitmap.clone();
+                }
+            } else if (op == ObjectStoreBagCombination.UNION) {
+                retval.or(bitmap);
+            } else if (op == ObjectStoreBagCombination.INTERSECT) {
+                retval.and(bitmap);
+            } else if (op == ObjectStoreBagCombination.EXCEPT) {
+                retval.andNot(bitmap);
+            } else {
+                retval.or(bitmap);
+                inAll.and(bitmap);
+            }
+        }
+        if (retval == null) {
+            return new IntBitmap();
+        }
+        if (inAll != null) {
+            retval.andNot(inAll);
+        }
+        return retval;
+    }
+
+    /**
+     * Reads the contents of an ObjectStoreBag from the database, bypassing the cache.
+     *
+     * @param c a Connection
+     * @param osb an ObjectStoreBag
+     * @param usePersisted true to use the osbag_bitmap table if it has a row for the bag, false to
+     * always read the osbag_int table
+     * @return a new IntBitmap
+     * @throws SQLException if an error occurs
+     */
+    protected IntBitmap readBagBitmap(Connection c, ObjectStoreBag osb,
+            boolean usePersisted) throws SQLException {
+        Statement s = c.createStatement();
+        try {
+            if (usePersisted && hasBagBitmapTable(c)) {
+                ResultSet r = s.executeQuery("SELECT " + BAGBITMAP_COLUMN + " FROM "
+                        + BITMAP_BAG_TABLE_NAME + " WHERE " + BAGID_COLUMN + " = "
+                        + osb.getBagId());
+                if (r.next()) {
+                    byte[] bytes = r.getBytes(1);
+                    // a null bitmap is a placeholder for a row being written
+                    if (bytes != null) {
+                        return IntBitmap.fromByteArray(bytes);
+                    }
+                }
+            }
+            IntBitmap retval = new IntBitmap();
+            ResultSet r = s.executeQuery("SELECT " + BAGVAL_COLUMN + " FROM "
+                    + INT_BAG_TABLE_NAME + " WHERE " + BAGID_COLUMN + " = " + osb.getBagId()
+                    + " ORDER BY " + BAGVAL_COLUMN);
+            while (r.next()) {
+                retval.add(r.getInt(1));
+            }
+            return retval;
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * Returns whether the osbag_bitmap table exists. Databases built before the table was added
+     * do not have it until an ObjectStoreWriter first alters a bag. Only a table that exists is
+     * remembered, so that the table is noticed once a writer has committed it.
+     *
+     * @param c a Connection
+     * @return a boolean
+     * @throws SQLException if an error occurs
+     */
+    protected synchronized boolean hasBagBitmapTable(Connection c) throws SQLException {
+        if (!bagBitmapTableExists) {
+            bagBitmapTableExists = DatabaseUtil.tableExists(c, BITMAP_BAG_TABLE_NAME);
+        }
+        return bagBitmapTableExists;
+    }
+
     /**
      * Internal method called by the ObjectStoreWriter, to notify the ObjectStore that some of the
      * data in the database has changed.
@@ -1668,6 +2174,8 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             for (Object o : tablesAltered) {
                 if (o instanceof String) {
                     tableNames.add((String) o);
+                } else if (o instanceof Clob) {
+                    ClobPageCache.invalidate(this, (Clob) o);
                 }
             }
             // We have just removed the ObjectStoreBags from the Set of altered things. This means
@@ -1734,7 +2242,7 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     protected InterMineObject internalGetObjectByIdWithConnection(Connection c,
             Integer id, Class<?> clazz) throws ObjectStoreException {
         String sql = SqlGenerator.generateQueryForId(id, clazz, schema);
-        String currentColumn = null;
+        Object currentColumn = null;
         try {
             //System//.out.println(getModel().getName() + ": Executing SQL: " + sql);
             //long time = (new Date()).getTime();
@@ -1752,12 +2260,12 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
             //            + (now - time) + "): " + sql);
             //}
             if (sqlResults.next()) {
-                currentColumn = sqlResults.getString("a1_");
+                currentColumn = sqlResults.getObject("a1_");
                 if (sqlResults.next()) {
                     throw new ObjectStoreException("More than one object in the database has this"
                             + " primary key");
                 }
-                InterMineObject retval = NotXmlParser.parse(currentColumn, this);
+                InterMineObject retval = parseObjectColumn(currentColumn);
                 //if (currentColumn.length() < CACHE_LARGEST_OBJECT) {
                 cacheObjectById(retval.getId(), retval);
                 //} else {
@@ -1776,6 +2284,21 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
         }
     }
 
+    /**
+     * Converts the contents of an OBJECT column into an object. The column may hold either NotXml
+     * or BinaryObjectFormat data, so that a database can be read while it is being converted.
+     *
+     * @param column the value fetched from the OBJECT column
+     * @return an InterMineObject
+     * @throws ClassNotFoundException if a class cannot be found
+     */
+    protected InterMineObject parseObjectColumn(Object column) throws ClassNotFoundException {
+        if (BinaryObjectFormat.isBinary(column)) {
+            return schema.getBinaryObjectFormat().parse((byte[]) column, this);
+        }
+        return NotXmlParser.parse((String) column, this);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -2335,4 +2858,24 @@ public class ObjectStoreInterMineImpl extends ObjectStoreAbstractImpl implements
     public String toString() {
         return description;
     }
+
+    /**
+     * A bag bitmap in the cache, with the sequence number of the bag when it was read.
+     */
+    protected static class CachedBagBitmap
+    {
+        private final Map<Object, Integer> sequence;
+        private final IntBitmap bitmap;
+
+        /**
+         * Constructor.
+         *
+         * @param sequence the sequence of the bag when it was read
+         * @param bitmap the contents of the bag
+         */
+        public CachedBagBitmap(Map<Object, Integer> sequence, IntBitmap bitmap) {
+            this.sequence = sequence;
+            this.bitmap = bitmap;
+        }
+    }
 }
@@ -15,10 +15,14 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.ref.WeakReference;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,8 +46,10 @@ import org.intermine.objectstore.query.Clob;
 import static org.intermine.objectstore.query.Clob.CLOB_PAGE_SIZE;
 
 import org.intermine.objectstore.query.ClobAccess;
+import org.intermine.objectstore.query.ClobPageCodec;
 import org.intermine.objectstore.query.Constraint;
 import org.intermine.objectstore.query.ObjectStoreBag;
+import org.intermine.objectstore.query.ObjectStoreBagCombination;
 import org.intermine.objectstore.query.PendingClob;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
@@ -61,9 +67,9 @@ import org.intermine.sql.writebatch.Batch;
 import org.intermine.sql.writebatch.BatchWriter;
 import org.intermine.sql.writebatch.BatchWriterPostgresCopyImpl;
 import org.intermine.util.DynamicUtil;
+import org.intermine.util.IntBitmap;
 import org.intermine.util.ShutdownHook;
 import org.intermine.util.Shutdownable;
-import org.intermine.util.StringConstructor;
 import org.intermine.util.TypeUtil;
 
 import org.apache.log4j.Logger;
@@ -569,7 +575,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
             boolean doDeletes = (o instanceof InterMineObject ? populateIds(c,
                         (InterMineObject) o) : false);
             writePendingClobs(c, o);
-            StringConstructor xml = null;
+            Object xml = null;
             String objectClass = null;
             Set<ClassDescriptor> classDescriptors = model.getClassDescriptorsForClass(o.getClass());
 
@@ -643,7 +649,9 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
                             value = objectClass;
                         } else if ("OBJECT".equals(tableInfo.colNames[colNo])) {
                             if (xml == null) {
-                                if (o instanceof InterMineObject) {
+                                if (schema.isBinaryObjects()) {
+                                    xml = schema.getBinaryObjectFormat().render(o);
+                                } else if (o instanceof InterMineObject) {
                                     xml = ((InterMineObject) o).getoBJECT();
                                 } else {
                                     xml = NotXmlRenderer.render(o);
@@ -1155,6 +1163,21 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
             throw new IllegalArgumentException("The type of the result colum (" + type.getName()
                     + ") is not an Integer or InterMineObject");
         }
+        QuerySelectable selected = select.get(0);
+        if (((selected instanceof ObjectStoreBag)
+                || (selected instanceof ObjectStoreBagCombination))
+                && query.getFrom().isEmpty() && (query.getConstraint() == null)) {
+            // Copying or combining bags is quicker with their bitmaps than with INSERT ... SELECT
+            IntBitmap contents;
+            if (selected instanceof ObjectStoreBag) {
+                contents = getBagBitmap((ObjectStoreBag) selected);
+            } else {
+                contents = getBagBitmap((ObjectStoreBagCombination) selected);
+            }
+            contents.andNot(getBagBitmap(osb));
+            addAllToBag(osb, contents);
+            return;
+        }
         try {
             Connection c = null;
             try {
@@ -1286,8 +1309,8 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
             int length = text.length();
             for (int i = 0; i < length; i += CLOB_PAGE_SIZE) {
                 batch.addRow(c, CLOB_TABLE_NAME, clobId, CLOB_COLUMNS, new Object[] {clobId,
-                    new Integer(i / CLOB_PAGE_SIZE), text.substring(i, Math.min(i + CLOB_PAGE_SIZE,
-                            length))});
+                    new Integer(i / CLOB_PAGE_SIZE), ClobPageCodec.encode(text.substring(i,
+                            Math.min(i + CLOB_PAGE_SIZE, length)), os.getPackSequenceClobs())});
             }
             tablesAltered.add(clob);
             tablesAltered.add(CLOB_TABLE_NAME);
@@ -1510,6 +1533,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
      */
     protected void commitTransactionWithConnection(Connection c) throws ObjectStoreException {
         try {
+            writeBagBitmaps(c);
             batch.flush(c);
             if (c.getAutoCommit()) {
                 throw new ObjectStoreException("commitTransaction called, but not in transaction");
@@ -1583,6 +1607,7 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
      */
     public void batchCommitTransactionWithConnection(Connection c) throws ObjectStoreException {
         try {
+            writeBagBitmaps(c);
             batch.batchCommit(c);
             os.databaseAltered(tablesAltered);
             tablesAltered.clear();
@@ -1591,6 +1616,122 @@ public class ObjectStoreWriterInterMineImpl extends ObjectStoreInterMineImpl
         }
     }
 
+    /**
+     * Updates the osbag_bitmap table for the bags altered in the current transaction, so that it
+     * is committed or rolled back along with the osbag_int table. The row for each bag is locked
+     * before the bag is read, so that two writers altering the same bag cannot leave a stale
+     * bitmap.
+     *
+     * @param c the Connection
+     * @throws SQLException if an error occurs
+     */
+    protected void writeBagBitmaps(Connection c) throws SQLException {
+        List<ObjectStoreBag> bags = new ArrayList<ObjectStoreBag>();
+        for (Object altered : tablesAltered) {
+            if (altered instanceof ObjectStoreBag) {
+                bags.add((ObjectStoreBag) altered);
+            }
+        }
+        if (bags.isEmpty()) {
+            return;
+        }
+        // Lock in a consistent order, to avoid deadlocks between writers
+        Collections.sort(bags, new Comparator<ObjectStoreBag>() {
+            public int compare(ObjectStoreBag a, ObjectStoreBag b) {
+                return a.getBagId() < b.getBagId() ? -1 : (a.getBagId() == b.getBagId() ? 0 : 1);
+            }
+        });
+        createBagBitmapRows(c, bags);
+        batch.flush(c, Collections.singleton(INT_BAG_TABLE_NAME));
+        PreparedStatement update = c.prepareStatement("UPDATE " + BITMAP_BAG_TABLE_NAME + " SET "
+                + BAGBITMAP_COLUMN + " = ? WHERE " + BAGID_COLUMN + " = ?");
+        Statement s = c.createStatement();
+        try {
+            for (ObjectStoreBag osb : bags) {
+                s.executeQuery("SELECT " + BAGID_COLUMN + " FROM " + BITMAP_BAG_TABLE_NAME
+                        + " WHERE " + BAGID_COLUMN + " = " + osb.getBagId() + " FOR UPDATE");
+                update.setBytes(1, readBagBitmap(c, osb, false).toByteArray());
+                update.setInt(2, osb.getBagId());
+                update.executeUpdate();
+            }
+        } finally {
+            s.close();
+            update.close();
+        }
+    }
+
+    /**
+     * Makes sure that the osbag_bitmap table has a row for each of the given bags, creating the
+     * table if necessary, so that the rows can be locked. This is done in the current
+     * transaction, so nothing is left behind if it is rolled back. If another writer creates the
+     * same table or row concurrently, the statement fails once that writer commits, and is rolled
+     * back to a savepoint so that the transaction can carry on and lock the other writer's row.
+     *
+     * @param c the Connection
+     * @param bags a Collection of ObjectStoreBags
+     * @throws SQLException if an error occurs
+     */
+    protected void createBagBitmapRows(Connection c, Collection<ObjectStoreBag> bags)
+        throws SQLException {
+        // Not hasBagBitmapTable(), which would remember a table this transaction may roll back
+        if (!DatabaseUtil.tableExists(c, BITMAP_BAG_TABLE_NAME)) {
+            executeUnlessConflict(c, "CREATE TABLE " + BITMAP_BAG_TABLE_NAME + " ("
+                    + BAGID_COLUMN + " integer, " + BAGBITMAP_COLUMN + " bytea); CREATE UNIQUE"
+                    + " INDEX " + BITMAP_BAG_TABLE_NAME + "_index ON " + BITMAP_BAG_TABLE_NAME
+                    + " (" + BAGID_COLUMN + ")");
+        }
+        for (ObjectStoreBag osb : bags) {
+            // New rows have a null bitmap, which readers ignore
+            executeUnlessConflict(c, "INSERT INTO " + BITMAP_BAG_TABLE_NAME + " ("
+                    + BAGID_COLUMN + ") SELECT " + osb.getBagId() + " WHERE NOT EXISTS (SELECT 1"
+                    + " FROM " + BITMAP_BAG_TABLE_NAME + " WHERE " + BAGID_COLUMN + " = "
+                    + osb.getBagId() + ")");
+        }
+    }
+
+    private void executeUnlessConflict(Connection c, String sql) throws SQLException {
+        Savepoint savepoint = c.getAutoCommit() ? null : c.setSavepoint();
+        Statement s = c.createStatement();
+        try {
+            s.execute(sql);
+            if (savepoint != null) {
+                c.releaseSavepoint(savepoint);
+            }
+        } catch (SQLException e) {
+            if (savepoint != null) {
+                c.rollback(savepoint);
+            }
+            LOG.info("Another writer got there first with \"" + sql + "\": " + e.getMessage());
+        } finally {
+            s.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Inside a transaction the bag is read from the database, to include changes that have not
+     * been committed yet. Otherwise the parent ObjectStore's cache is used.
+     */
+    @Override
+    public IntBitmap getBagBitmap(ObjectStoreBag osb) throws ObjectStoreException {
+        try {
+            Connection c = null;
+            try {
+                c = getConnection();
+                if (isInTransactionWithConnection(c)) {
+                    batch.flush(c, Collections.singleton(INT_BAG_TABLE_NAME));
+                    return readBagBitmap(c, osb, false);
+                }
+            } finally {
+                releaseConnection(c);
+            }
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not read the contents of bag "
+                    + osb.getBagId(), e);
+        }
+        return os.getBagBitmap(osb);
+    }
+
     /**
      * {@inheritDoc}
      * This method should never be called on an ObjectStoreWriter.
@@ -114,7 +114,7 @@ public final class ResultsConverter
                             obj = os.pilferObjectById(idField);
                         }
                         if (obj == null) {
-                            String objectField = null;
+                            Object objectField = null;
                             if (noObjectColumns.contains(node)) {
                                 if (obj == null) {
                                     obj = new ProxyReference(os, idField, InterMineObject.class);
@@ -129,10 +129,10 @@ public final class ResultsConverter
                                     }
                                 } else {
                                     try {
-                                        objectField = sqlResults.getString(alias);
+                                        objectField = sqlResults.getObject(alias);
                                         if (objectField != null) {
                                             currentColumn = objectField;
-                                            obj = NotXmlParser.parse(objectField, os);
+                                            obj = os.parseObjectColumn(objectField);
                                             //if (objectField.length() < ObjectStoreInterMineImpl
                                             //        .CACHE_LARGEST_OBJECT) {
                                             os.cacheObjectById(((InterMineObject) obj).getId(),
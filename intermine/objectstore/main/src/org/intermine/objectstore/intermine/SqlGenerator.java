@@ -93,6 +93,7 @@ import org.intermine.objectstore.query.WidthBucketFunction;
 import org.intermine.objectstore.query.iql.IqlQuery;
 import org.intermine.sql.Database;
 import org.intermine.sql.DatabaseUtil;
+import org.intermine.sql.ParameterisedSql;
 import org.intermine.util.AlwaysMap;
 import org.intermine.util.CombinedIterator;
 import org.intermine.util.DynamicUtil;
@@ -436,7 +437,51 @@ public final class SqlGenerator
     public static String generate(Query q, DatabaseSchema schema, Database db,
             Constraint offsetCon, int kind,
             Map<Object, String> bagTableNames) throws ObjectStoreException {
-        State state = new State();
+        return generate(new State(), q, schema, db, offsetCon, kind, bagTableNames);
+    }
+
+    /**
+     * Converts a Query object into an SQL query with constant values as placeholders. The values
+     * compared against in the constraints of the top level of the query, and the contents of
+     * small bags, become placeholders. Everything else, including the OFFSET and LIMIT clauses,
+     * is written as generate() would write it. To produce an SQL query that does not have OFFSET
+     * and LIMIT clauses, set start to 0, and limit to Integer.MAX_VALUE. If an offset registered
+     * with registerOffset() can be used for start, the query is returned as generate() would
+     * write it, with no placeholders, so that the offset constraint is not lost.
+     *
+     * @param q the Query to convert
+     * @param start the number of the first row for the query to return, numbered from zero
+     * @param limit the maximum number of rows for the query to return
+     * @param schema the DatabaseSchema in which to look up metadata
+     * @param db the Database that the ObjectStore uses
+     * @param bagTableNames a Map from BagConstraints to table names, where the table contains the
+     *        contents of the bag that are relevant for the BagConstraint
+     * @return a ParameterisedSql object, whose literal SQL is what generate() would return
+     * @throws ObjectStoreException if something goes wrong
+     */
+    public static ParameterisedSql generateParameterised(Query q, int start, int limit,
+            DatabaseSchema schema, Database db,
+            Map<Object, String> bagTableNames) throws ObjectStoreException {
+        synchronized (q) {
+            CacheEntry cacheEntry = getCacheForSchema(schema).get(q);
+            boolean offsetCached = (cacheEntry != null)
+                && (!cacheEntry.getCached().headMap(new Integer(start + 1)).isEmpty());
+            if (offsetCached
+                    || ((q.getSelect().size() == 1) && (q.getSelect().get(0) instanceof Clob))) {
+                return new ParameterisedSql(generate(q, start, limit, schema, db, bagTableNames),
+                        Collections.<Object>emptyList());
+            }
+            State state = new State();
+            state.setParameters(new ArrayList<Object>());
+            String sql = generate(state, q, schema, db, null, QUERY_NORMAL, bagTableNames);
+            return new ParameterisedSql(sql + ((limit == Integer.MAX_VALUE ? "" : " LIMIT " + limit)
+                        + (start == 0 ? "" : " OFFSET " + start)), state.getParameters());
+        }
+    }
+
+    private static String generate(State state, Query q, DatabaseSchema schema, Database db,
+            Constraint offsetCon, int kind,
+            Map<Object, String> bagTableNames) throws ObjectStoreException {
         List<QuerySelectable> selectList = q.getSelect();
         if ((selectList.size() == 1) && (selectList.get(0) instanceof ObjectStoreBag)) {
             // Special case - we are fetching the contents of an ObjectStoreBag.
@@ -1394,7 +1439,10 @@ public final class SqlGenerator
             SimpleConstraint c, Query q) throws ObjectStoreException {
         queryEvaluableToString(buffer, c.getArg1(), q, state);
         buffer.append(" " + c.getOp().toString());
-        if (c.getArg2() != null) {
+        if (c.getArg2() instanceof QueryValue) {
+            buffer.append(" ");
+            valueToString(buffer, ((QueryValue) c.getArg2()).getValue(), state);
+        } else if (c.getArg2() != null) {
             buffer.append(" ");
             queryEvaluableToString(buffer, c.getArg2(), q, state);
         }
@@ -1685,6 +1733,12 @@ public final class SqlGenerator
      */
     public static final int MAX_BAG_INLINE_SIZE = 2;
 
+    /**
+     * The maximum size a bag written inline can be for its values to be bound as parameters. Each
+     * bag size makes a different statement, so larger bags are written as literals.
+     */
+    public static final int MAX_BAG_PARAMETERS = 100;
+
     /**
      * Converts a BagConstraint object into a String suitable for putting on an SQL query.
      *
@@ -1795,7 +1849,11 @@ public final class SqlGenerator
                         }
                         needComma++;
 
-                        objectToString(buffer, orNext);
+                        if (filteredBag.size() <= MAX_BAG_PARAMETERS) {
+                            valueToString(buffer, orNext, state);
+                        } else {
+                            objectToString(buffer, orNext);
+                        }
                     }
                     buffer.append(")");
                     //if (limitRange) {
@@ -2060,6 +2118,32 @@ public final class SqlGenerator
         }
     }
 
+    /**
+     * Writes a constant value from a constraint. If the state is collecting parameters and the
+     * value can be bound, a parameter marker is written instead of the value.
+     *
+     * @param buffer a StringBuffer to add text to
+     * @param value the Object to write
+     * @param state the current SqlGenerator state
+     * @throws ObjectStoreException if something goes wrong
+     */
+    protected static void valueToString(StringBuffer buffer, Object value,
+            State state) throws ObjectStoreException {
+        List<Object> parameters = state.getParameters();
+        Object bound = value;
+        if (value instanceof InterMineObject) {
+            bound = ((InterMineObject) value).getId();
+        } else if (value instanceof Date) {
+            bound = new Long(((Date) value).getTime());
+        }
+        if ((parameters != null) && ParameterisedSql.canBind(bound)) {
+            buffer.append(ParameterisedSql.marker(parameters.size()));
+            parameters.add(bound);
+        } else {
+            objectToString(buffer, value);
+        }
+    }
+
     /**
      * Converts a QueryClass to a String.
      *
@@ -2613,6 +2697,9 @@ public final class SqlGenerator
         // bag that are relevant for the BagConstraint
         private Map<Object, String> bagTableNames = new HashMap<Object, String>();
 
+        // values written as parameter markers, or null to write all values inline
+        private List<Object> parameters = null;
+
         public State() {
             // empty
         }
@@ -2702,6 +2789,14 @@ public final class SqlGenerator
         public Database getDb() {
             return db;
         }
+
+        public void setParameters(List<Object> parameters) {
+            this.parameters = parameters;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
     }
 
     private static class CacheEntry
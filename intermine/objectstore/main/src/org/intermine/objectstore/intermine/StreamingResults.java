@@ -0,0 +1,384 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.sql.precompute.QueryOptimiser;
+import org.intermine.sql.precompute.QueryOptimiserContext;
+
+/**
+ * An Iterator over the results of a query that reads them through a database cursor, rather than
+ * running the query again with LIMIT and OFFSET for every batch as Results does. The query is
+ * planned and executed once, so exporting a large table costs no more per row at the end than at
+ * the start.
+ *
+ * The cursor holds a dedicated connection inside a transaction until the last row has been read,
+ * close() is called, or no row has been requested for the idle timeout. Fetches are registered
+ * with the request ID of the calling thread, so ObjectStoreInterMineImpl.cancelRequest() cancels
+ * them like any other query.
+ *
+ * When the results are small enough to be read from a single batch, or ObjectStoreInterMineImpl
+ * has no streaming connection to spare, an instance instead wraps an ordinary batched Results
+ * object, so callers do not need to handle the two cases separately.
+ */
+public class StreamingResults implements Iterator<ResultsRow<Object>>
+{
+    private static final Logger LOG = Logger.getLogger(StreamingResults.class);
+    private static final long REAP_INTERVAL = 30;
+    private static final AtomicInteger CURSOR_COUNT = new AtomicInteger();
+    private static final Set<StreamingResults> OPEN = Collections.synchronizedSet(
+            new HashSet<StreamingResults>());
+    private static ScheduledExecutorService reaper = null;
+
+    private final Results results;
+    private final Iterator<?> batched;
+    private final ObjectStoreInterMineImpl os;
+    private final Query q;
+    private final int start;
+    private final int limit;
+    private final int fetchSize;
+    private final boolean optimise;
+    private final Map<Object, Integer> sequence;
+    private final Semaphore permits;
+    private final long idleTimeout;
+    private final String cursorName;
+    private Connection c = null;
+    private List<ResultsRow<Object>> buffer = Collections.emptyList();
+    private int bufferPos = 0;
+    private boolean exhausted = false;
+    private boolean closed = false;
+    private String closeReason = null;
+    private volatile long lastAccess;
+    private volatile boolean fetching = false;
+
+    /**
+     * Creates an instance that reads from batched Results, for when a cursor is not worthwhile or
+     * no streaming connection is available.
+     *
+     * @param results a Results object
+     * @param start the index of the first row to return
+     */
+    StreamingResults(Results results, int start) {
+        this.results = results;
+        batched = results.iteratorFrom(start);
+        os = null;
+        q = null;
+        this.start = start;
+        limit = Integer.MAX_VALUE;
+        fetchSize = 0;
+        optimise = false;
+        sequence = null;
+        permits = null;
+        idleTimeout = 0;
+        cursorName = null;
+    }
+
+    /**
+     * Opens a cursor for a query. The caller must have acquired a permit from the semaphore,
+     * which is released when the cursor is closed, even if this constructor fails.
+     *
+     * @param os the ObjectStore
+     * @param q the Query
+     * @param start the index of the first row to return, skipped by the database with OFFSET
+     * @param limit the maximum number of rows to return, or Integer.MAX_VALUE for all of them
+     * @param fetchSize the number of rows to fetch from the cursor at a time
+     * @param optimise whether to optimise the query
+     * @param sequence an object representing the state of the database
+     * @param permits the semaphore limiting the number of streaming connections
+     * @param idleTimeout the number of milliseconds after which an unused cursor is closed
+     * @throws ObjectStoreException if the cursor cannot be opened
+     */
+    StreamingResults(ObjectStoreInterMineImpl os, Query q, int start, int limit, int fetchSize,
+            boolean optimise, Map<Object, Integer> sequence, Semaphore permits, long idleTimeout)
+        throws ObjectStoreException {
+        if (fetchSize < 1) {
+            permits.release();
+            throw new IllegalArgumentException("Illegal fetch size: " + fetchSize);
+        }
+        results = null;
+        batched = null;
+        this.os = os;
+        this.q = q;
+        this.start = start;
+        this.limit = limit;
+        this.fetchSize = fetchSize;
+        this.optimise = optimise;
+        this.sequence = sequence;
+        this.permits = permits;
+        this.idleTimeout = idleTimeout;
+        cursorName = "streaming_cursor_" + CURSOR_COUNT.incrementAndGet();
+        lastAccess = System.currentTimeMillis();
+        try {
+            open();
+        } catch (ObjectStoreException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void open() throws ObjectStoreException {
+        String sql;
+        try {
+            c = os.getConnection();
+            // bag tables are shared between connections, so they must exist outside the
+            // transaction that holds the cursor
+            if (os.getMinBagTableSize() != -1) {
+                os.createTempBagTables(c, q);
+                os.flushOldTempBagTables(c);
+            }
+            try {
+                sql = SqlGenerator.generate(q, start, limit, os.getSchema(),
+                        os.getDatabase(), os.bagConstraintTables);
+            } catch (CompletelyFalseException e) {
+                exhausted = true;
+                close();
+                return;
+            }
+            if (optimise && os.everOptimise()) {
+                sql = QueryOptimiser.optimise(sql, null, os.getDatabase(), c,
+                        QueryOptimiserContext.DEFAULT).getBestQueryString();
+            }
+            c.setAutoCommit(false);
+            Statement s = c.createStatement();
+            os.registerStatement(s);
+            try {
+                s.execute("DECLARE " + cursorName + " NO SCROLL CURSOR FOR " + sql);
+            } finally {
+                os.deregisterStatement(s);
+                s.close();
+            }
+        } catch (SQLException e) {
+            throw new ObjectStoreException("Could not open cursor for query \"" + q + "\"", e);
+        }
+        OPEN.add(this);
+        startReaper();
+        LOG.debug("Opened " + cursorName + " for query " + q);
+    }
+
+    private synchronized void fetch() throws ObjectStoreException {
+        if (closed) {
+            throw new ObjectStoreException("Streaming results for query \"" + q
+                    + "\" have been closed" + (closeReason == null ? "" : " - " + closeReason));
+        }
+        fetching = true;
+        try {
+            os.checkSequence(sequence, q, "Streaming (" + cursorName + ") ");
+            Statement s = c.createStatement();
+            try {
+                ResultSet sqlResults;
+                os.registerStatement(s);
+                try {
+                    sqlResults = s.executeQuery("FETCH FORWARD " + fetchSize + " FROM "
+                            + cursorName);
+                } finally {
+                    os.deregisterStatement(s);
+                }
+                buffer = ResultsConverter.convert(sqlResults, q, os, c, sequence, optimise,
+                        new ExtraQueryTime(), null, null);
+                bufferPos = 0;
+            } finally {
+                s.close();
+            }
+            if (buffer.size() < fetchSize) {
+                exhausted = true;
+                close();
+            }
+        } catch (SQLException e) {
+            close();
+            throw new ObjectStoreException("Problem fetching from " + cursorName
+                    + " for query \"" + q + "\"", e);
+        } catch (ObjectStoreException e) {
+            close();
+            throw e;
+        } finally {
+            fetching = false;
+        }
+    }
+
+    /**
+     * Returns whether this iterator reads through a cursor, rather than from batched Results.
+     *
+     * @return true if streaming
+     */
+    public boolean isStreaming() {
+        return batched == null;
+    }
+
+    /**
+     * Returns the batched Results that this iterator reads from, if it is not streaming.
+     *
+     * @return a Results object, or null if streaming
+     */
+    public Results getResults() {
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasNext() {
+        if (batched != null) {
+            return batched.hasNext();
+        }
+        lastAccess = System.currentTimeMillis();
+        if (bufferPos < buffer.size()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        try {
+            fetch();
+        } catch (ObjectStoreException e) {
+            throw new RuntimeException("ObjectStore error has occurred (in hasNext)", e);
+        }
+        return bufferPos < buffer.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public ResultsRow<Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (batched != null) {
+            return (ResultsRow<Object>) batched.next();
+        }
+        ResultsRow<Object> retval = buffer.get(bufferPos);
+        // let the converted rows be garbage collected as they are handed out
+        buffer.set(bufferPos, null);
+        bufferPos++;
+        return retval;
+    }
+
+    /**
+     * This method is not supported.
+     * {@inheritDoc}
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the cursor and returns its connection, if it is still open. Iterating past the rows
+     * already fetched afterwards will throw an exception.
+     */
+    public synchronized void close() {
+        if (closed || batched != null) {
+            return;
+        }
+        closed = true;
+        OPEN.remove(this);
+        try {
+            if (c != null) {
+                try {
+                    if (!c.getAutoCommit()) {
+                        // the cursor is read-only, so there is nothing to commit
+                        c.rollback();
+                        c.setAutoCommit(true);
+                    }
+                } catch (SQLException e) {
+                    LOG.warn("Could not close " + cursorName, e);
+                }
+                os.releaseConnection(c);
+                c = null;
+            }
+        } finally {
+            permits.release();
+        }
+        LOG.debug("Closed " + cursorName);
+    }
+
+    /**
+     * Closes the cursor if no row has been requested since the idle timeout before the given
+     * time. This is called by the reaper thread.
+     *
+     * @param now the current time in milliseconds
+     */
+    void closeIfIdle(long now) {
+        if (!fetching && (now - lastAccess > idleTimeout)) {
+            synchronized (this) {
+                // a fetch may have started and finished while we waited for the lock
+                if (!closed && (now - lastAccess > idleTimeout)) {
+                    LOG.warn("Closing " + cursorName + " after " + (now - lastAccess)
+                            + " ms idle, for query " + q);
+                    closeReason = "idle for more than " + idleTimeout + " ms";
+                    close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cursors that are currently open.
+     *
+     * @return an int
+     */
+    public static int getOpenCount() {
+        return OPEN.size();
+    }
+
+    private static synchronized void startReaper() {
+        if (reaper == null) {
+            reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "StreamingResults reaper");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            reaper.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    long now = System.currentTimeMillis();
+                    List<StreamingResults> open;
+                    synchronized (OPEN) {
+                        open = new ArrayList<StreamingResults>(OPEN);
+                    }
+                    for (StreamingResults results : open) {
+                        try {
+                            results.closeIfIdle(now);
+                        } catch (RuntimeException e) {
+                            LOG.error("Error closing idle cursor", e);
+                        }
+                    }
+                }
+            }, REAP_INTERVAL, REAP_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+}
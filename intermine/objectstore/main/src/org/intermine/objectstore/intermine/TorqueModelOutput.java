@@ -10,8 +10,10 @@ package org.intermine.objectstore.intermine;
  *
  */
 
+import static org.intermine.objectstore.intermine.ObjectStoreInterMineImpl.BAGBITMAP_COLUMN;
 import static org.intermine.objectstore.intermine.ObjectStoreInterMineImpl.BAGID_COLUMN;
 import static org.intermine.objectstore.intermine.ObjectStoreInterMineImpl.BAGVAL_COLUMN;
+import static org.intermine.objectstore.intermine.ObjectStoreInterMineImpl.BITMAP_BAG_TABLE_NAME;
 import static org.intermine.objectstore.intermine.ObjectStoreInterMineImpl.CLOBID_COLUMN;
 import static org.intermine.objectstore.intermine.ObjectStoreInterMineImpl.CLOBPAGE_COLUMN;
 import static org.intermine.objectstore.intermine.ObjectStoreInterMineImpl.CLOBVAL_COLUMN;
@@ -155,6 +157,16 @@ public class TorqueModelOutput
                     + ENDL)
             .append(INDENT + INDENT + "</index>" + ENDL)
             .append(INDENT + "</table>" + ENDL);
+        // Create the bag bitmap table
+        sb.append(INDENT + "<table name=\"" + BITMAP_BAG_TABLE_NAME + "\">" + ENDL)
+            .append(generateColumn(BAGID_COLUMN, "java.lang.Integer"))
+            .append(generateColumn(BAGBITMAP_COLUMN, "LONGVARBINARY"))
+            .append(INDENT + INDENT + "<unique name=\"" + BITMAP_BAG_TABLE_NAME + "_index\">"
+                    + ENDL)
+            .append(INDENT + INDENT + INDENT + "<unique-column name=\"" + BAGID_COLUMN + "\"/>"
+                    + ENDL)
+            .append(INDENT + INDENT + "</unique>" + ENDL)
+            .append(INDENT + "</table>" + ENDL);
         // Create the Clob table
         sb.append(INDENT + "<table name=\"" + CLOB_TABLE_NAME + "\">" + ENDL)
             .append(generateColumn(CLOBID_COLUMN, "java.lang.Integer"))
@@ -187,7 +199,8 @@ public class TorqueModelOutput
             sb.append(INDENT + "<table name=\"" + className + "\">" + ENDL);
             if ((!(schema.isMissingNotXml() || schema.isFlatMode(cld.getType())))
                     || InterMineObject.class.equals(cld.getType())) {
-                sb.append(generateColumn("OBJECT", "java.lang.String"));
+                sb.append(generateColumn("OBJECT", schema.isBinaryObjects()
+                            ? LONG_VAR_BINARY_TYPE : "java.lang.String"));
             }
             DatabaseSchema.Fields fields = schema.getTableFields(cld);
             for (AttributeDescriptor field : fields.getAttributes()) {
@@ -58,6 +58,7 @@ public class TorqueModelOutputTask extends Task
             String missingTablesString = props.getProperty("missingTables");
             String truncatedClassesString = props.getProperty("truncatedClasses");
             String noNotXmlString = props.getProperty("noNotXml");
+            String binaryObjectsString = props.getProperty("binaryObjects");
 
             Model osModel;
             String modelName = props.getProperty("model");
@@ -84,6 +85,13 @@ public class TorqueModelOutputTask extends Task
                 throw new ObjectStoreException("Invalid value for property noNotXml: "
                         + noNotXmlString);
             }
+            boolean binaryObjects = false;
+            if ("true".equals(binaryObjectsString)) {
+                binaryObjects = true;
+            } else if ((binaryObjectsString != null) && (!"false".equals(binaryObjectsString))) {
+                throw new ObjectStoreException("Invalid value for property binaryObjects: "
+                        + binaryObjectsString);
+            }
             HashSet<String> missingTables = new HashSet<String>();
             if (missingTablesString != null) {
                 String[] tables = missingTablesString.split(",");
@@ -93,7 +101,7 @@ public class TorqueModelOutputTask extends Task
             }
 
             schema = new DatabaseSchema(osModel, truncatedClasses, noNotXml, missingTables,
-                    FORMAT_VERSION, false);
+                    FORMAT_VERSION, false, binaryObjects);
         } catch (ClassCastException e) {
             throw new BuildException("Objectstore " + osName
                     + " is not an ObjectStoreInterMineImpl", e);
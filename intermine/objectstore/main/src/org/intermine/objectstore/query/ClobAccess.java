@@ -22,18 +22,25 @@ import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.proxy.Lazy;
 
 /**
- * Class used to read a Clob from the ObjectStore.
+ * Class used to read a Clob from the ObjectStore. Unless the ObjectStore is a writer, the pages
+ * of the Clob are read through the ClobPageCache of the ObjectStore, which is shared by all the
+ * ClobAccess objects and fetches runs of pages with one query.
  *
  * @author Matthew Wakeling
  */
 public class ClobAccess implements CharSequence, Lazy
 {
+    /** The most pages that are read at once when writing out a Clob */
+    protected static final int FETCH_PAGES = 100;
+
     protected ObjectStore os;
     protected SingletonResults results;
+    protected ClobPageCache pageCache;
     protected Clob clob;
     protected int offset;
     protected int length;
     protected boolean subSequence;
+    private volatile LastPage lastPage = null;
 
     /**
      * Protected constructor for use by PendingClob only.
@@ -58,17 +65,17 @@ public class ClobAccess implements CharSequence, Lazy
     /**
      * Construct a ClobAccess object representing a subsequence of an existing ClobAccess object.
      *
-     * @param results the SingletonResults object backing the object
-     * @param clob the Clob to access
+     * @param parent the initialised ClobAccess object
      * @param offset the offset
      * @param length the length
      */
-    private ClobAccess(SingletonResults results, Clob clob, int offset, int length) {
-        this.results = results;
-        this.clob = clob;
+    private ClobAccess(ClobAccess parent, int offset, int length) {
+        this.os = parent.os;
+        this.results = parent.results;
+        this.pageCache = parent.pageCache;
+        this.clob = parent.clob;
         this.offset = offset;
         this.length = length;
-        os = results.getObjectStore();
         subSequence = true;
     }
 
@@ -78,20 +85,60 @@ public class ClobAccess implements CharSequence, Lazy
      * the ObjectStoreWriter while it has exclusive use of the connection.
      */
     protected void init() {
-        if (results == null) {
-            Query q = new Query();
-            q.addToSelect(clob);
-            results = os.executeSingleton(q, 20, false, false, true);
-            int pageCount = results.size();
-            if (pageCount == 0) {
-                length = 0;
+        if ((results == null) && (pageCache == null)) {
+            if (ClobPageCache.isCached(os)) {
+                ClobPageCache cache = ClobPageCache.getInstance(os);
+                length = cache.getLength(os, clob);
+                pageCache = cache;
             } else {
-                String lastPage = (String) results.get(pageCount - 1);
-                length = CLOB_PAGE_SIZE * (pageCount - 1) + lastPage.length();
+                Query q = new Query();
+                q.addToSelect(clob);
+                results = os.executeSingleton(q, 20, false, false, true);
+                int pageCount = results.size();
+                if (pageCount == 0) {
+                    length = 0;
+                } else {
+                    String finalPage = ClobPageCodec.decode((String) results.get(pageCount - 1));
+                    length = CLOB_PAGE_SIZE * (pageCount - 1) + finalPage.length();
+                }
             }
         }
     }
 
+    /**
+     * Returns a page of the underlying clob. The last page read is kept by this object, so that
+     * reading the characters of a page one at a time is quick.
+     *
+     * @param page the page number
+     * @return the text of the page
+     */
+    protected String getPage(int page) {
+        LastPage last = lastPage;
+        if ((last == null) || (last.page != page)) {
+            last = new LastPage(page, getPages(page, page)[0]);
+            lastPage = last;
+        }
+        return last.text;
+    }
+
+    /**
+     * Returns a range of pages of the underlying clob, reading any that are not cached together.
+     *
+     * @param lowestPage the first page
+     * @param highestPage the last page, inclusive
+     * @return an array of the text of the pages
+     */
+    protected String[] getPages(int lowestPage, int highestPage) {
+        if (pageCache != null) {
+            return pageCache.getPages(os, clob, lowestPage, highestPage);
+        }
+        String[] retval = new String[highestPage - lowestPage + 1];
+        for (int page = lowestPage; page <= highestPage; page++) {
+            retval[page - lowestPage] = ClobPageCodec.decode((String) results.get(page));
+        }
+        return retval;
+    }
+
     /**
      * Return the Clob that this object is accessing.
      *
@@ -125,9 +172,8 @@ public class ClobAccess implements CharSequence, Lazy
         if (index >= length) {
             throw new IndexOutOfBoundsException("index is not less than length");
         }
-        int page = index / CLOB_PAGE_SIZE;
-        String pageText = (String) results.get(page);
-        return pageText.charAt(index - page * CLOB_PAGE_SIZE);
+        int page = (index + offset) / CLOB_PAGE_SIZE;
+        return getPage(page).charAt(index + offset - page * CLOB_PAGE_SIZE);
     }
 
     /**
@@ -164,7 +210,7 @@ public class ClobAccess implements CharSequence, Lazy
         if ((start == 0) && (end == length)) {
             return this;
         }
-        return new ClobAccess(results, clob, start + offset, end - start);
+        return new ClobAccess(this, start + offset, end - start);
     }
 
     /**
@@ -189,15 +235,9 @@ public class ClobAccess implements CharSequence, Lazy
         if (length > 0) {
             int lowestPage = offset / CLOB_PAGE_SIZE;
             int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
+            String[] pages = getPages(lowestPage, highestPage);
             for (int page = lowestPage; page <= highestPage; page++) {
-                String pageText = (String) results.get(page);
-                if (page == highestPage) {
-                    pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
-                }
-                if (page == lowestPage) {
-                    pageText = pageText.substring(offset - page * CLOB_PAGE_SIZE, pageText.length());
-                }
-                retval.append(pageText);
+                retval.append(trimPage(pages[page - lowestPage], page));
             }
         }
         return retval.toString();
@@ -211,20 +251,37 @@ public class ClobAccess implements CharSequence, Lazy
      */
     public void drainToPrintStream(PrintStream out) {
         init();
+        if (length == 0) {
+            return;
+        }
         int lowestPage = offset / CLOB_PAGE_SIZE;
         int highestPage = (offset + length - 1) / CLOB_PAGE_SIZE;
-        for (int page = lowestPage; page <= highestPage; page++) {
-            String pageText = (String) results.get(page);
-            if (page == highestPage) {
-                pageText = pageText.substring(0, offset + length - page * CLOB_PAGE_SIZE);
-            }
-            if (page == lowestPage) {
-                pageText = pageText.substring(offset - page * CLOB_PAGE_SIZE, pageText.length());
+        for (int from = lowestPage; from <= highestPage; from += FETCH_PAGES) {
+            int to = Math.min(highestPage, from + FETCH_PAGES - 1);
+            String[] pages = getPages(from, to);
+            for (int page = from; page <= to; page++) {
+                out.print(trimPage(pages[page - from], page));
             }
-            out.print(pageText);
         }
     }
 
+    /**
+     * Cuts a page of the underlying clob down to the part that is in this object.
+     *
+     * @param pageText the text of the page
+     * @param page the page number
+     * @return the part of the page that is within the offset and length of this object
+     */
+    protected String trimPage(String pageText, int page) {
+        int pageStart = page * CLOB_PAGE_SIZE;
+        int start = Math.max(0, offset - pageStart);
+        int end = Math.min(pageText.length(), offset + length - pageStart);
+        if ((start == 0) && (end == pageText.length())) {
+            return pageText;
+        }
+        return pageText.substring(start, end);
+    }
+
     /**
      * Returns a String that describes this object sufficiently for it to be recreated given an
      * ObjectStore. This format is stored in the database.
@@ -268,6 +325,16 @@ public class ClobAccess implements CharSequence, Lazy
         return results;
     }
 
+    /**
+     * Returns the (possibly uninitialised) page cache used internally by this object, for use by
+     * subclass constructors.
+     *
+     * @return a ClobPageCache, or null if this object reads pages through a SingletonResults
+     */
+    public ClobPageCache getPageCacheWithoutInit() {
+        return pageCache;
+    }
+
     /**
      * Returns true if this object is a subsequence of a main Clob.
      *
@@ -352,4 +419,19 @@ public class ClobAccess implements CharSequence, Lazy
          */
         public abstract ClobAccess invokeConstructor(ClobAccess clobAccess);
     }
+
+    /**
+     * The last page read, held with its number so that threads sharing a ClobAccess always see
+     * the two together.
+     */
+    private static final class LastPage
+    {
+        final int page;
+        final String text;
+
+        LastPage(int page, String text) {
+            this.page = page;
+            this.text = text;
+        }
+    }
 }
@@ -0,0 +1,252 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import static org.intermine.objectstore.query.Clob.CLOB_PAGE_SIZE;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.ObjectStoreWriter;
+
+/**
+ * A cache of the decoded pages of Clobs, shared by all the ClobAccess objects reading from one
+ * ObjectStore. Pages that are not in the cache are fetched with one query for each run of
+ * adjacent pages, and the least recently used pages are dropped when the cache is full. The
+ * ObjectStore invalidates the pages of a Clob when a writer changes it.
+ *
+ * ObjectStoreWriters do not use the cache, as they may see changes that have not been
+ * committed.
+ */
+public final class ClobPageCache
+{
+    /** The default maximum number of pages held, about 14MB of text */
+    public static final int DEFAULT_MAX_PAGES = 1000;
+    private static final int MAX_LENGTHS = 10000;
+
+    private static final Map<ObjectStore, ClobPageCache> INSTANCES =
+        new WeakHashMap<ObjectStore, ClobPageCache>();
+
+    private int maxPages = DEFAULT_MAX_PAGES;
+    private long generation = 0;
+    private final LinkedHashMap<Long, String> pages = new LinkedHashMap<Long, String>(16, 0.75F,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > maxPages;
+        }
+    };
+    private final LinkedHashMap<Integer, Integer> lengths = new LinkedHashMap<Integer, Integer>(
+            16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+            return size() > MAX_LENGTHS;
+        }
+    };
+
+    private ClobPageCache() {
+    }
+
+    /**
+     * Returns the cache for the given ObjectStore, creating it if necessary.
+     *
+     * @param os an ObjectStore
+     * @return a ClobPageCache
+     */
+    public static ClobPageCache getInstance(ObjectStore os) {
+        synchronized (INSTANCES) {
+            ClobPageCache retval = INSTANCES.get(os);
+            if (retval == null) {
+                retval = new ClobPageCache();
+                INSTANCES.put(os, retval);
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Returns true if ClobAccess objects reading from the given ObjectStore should use its cache.
+     *
+     * @param os an ObjectStore
+     * @return false if the ObjectStore is a writer or its cache has been turned off
+     */
+    public static boolean isCached(ObjectStore os) {
+        return !(os instanceof ObjectStoreWriter) && (getInstance(os).getMaxPages() > 0);
+    }
+
+    /**
+     * Drops the pages of a Clob from the cache of the given ObjectStore, if it has one.
+     *
+     * @param os an ObjectStore
+     * @param clob the Clob that has changed
+     */
+    public static void invalidate(ObjectStore os, Clob clob) {
+        ClobPageCache cache;
+        synchronized (INSTANCES) {
+            cache = INSTANCES.get(os);
+        }
+        if (cache != null) {
+            cache.invalidate(clob);
+        }
+    }
+
+    /**
+     * Sets the maximum number of pages held. Zero turns the cache off.
+     *
+     * @param maxPages the number of pages
+     */
+    public synchronized void setMaxPages(int maxPages) {
+        this.maxPages = maxPages;
+        Iterator<Long> iter = pages.keySet().iterator();
+        while ((pages.size() > maxPages) && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Returns the maximum number of pages held.
+     *
+     * @return the number of pages
+     */
+    public synchronized int getMaxPages() {
+        return maxPages;
+    }
+
+    /**
+     * Drops the pages and length of a Clob.
+     *
+     * @param clob the Clob
+     */
+    public synchronized void invalidate(Clob clob) {
+        generation++;
+        lengths.remove(new Integer(clob.getClobId()));
+        Iterator<Long> iter = pages.keySet().iterator();
+        while (iter.hasNext()) {
+            if ((int) (iter.next().longValue() >> 32) == clob.getClobId()) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the length of a Clob.
+     *
+     * @param os the ObjectStore that the Clob is stored in
+     * @param clob the Clob
+     * @return the number of characters in the Clob
+     */
+    public int getLength(ObjectStore os, Clob clob) {
+        Integer clobId = new Integer(clob.getClobId());
+        synchronized (this) {
+            Integer length = lengths.get(clobId);
+            if (length != null) {
+                return length.intValue();
+            }
+        }
+        long startGeneration = getGeneration();
+        Query q = new Query();
+        q.addToSelect(clob);
+        int pageCount;
+        try {
+            pageCount = os.count(q, ObjectStore.SEQUENCE_IGNORE);
+        } catch (ObjectStoreException e) {
+            throw new RuntimeException("Error counting pages of clob " + clobId, e);
+        }
+        int length = 0;
+        if (pageCount > 0) {
+            String lastPage = getPages(os, clob, pageCount - 1, pageCount - 1)[0];
+            length = CLOB_PAGE_SIZE * (pageCount - 1) + lastPage.length();
+        }
+        synchronized (this) {
+            if (generation == startGeneration) {
+                lengths.put(clobId, new Integer(length));
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns a range of pages of a Clob, fetching the pages that are not in the cache with one
+     * query for each run of adjacent pages.
+     *
+     * @param os the ObjectStore that the Clob is stored in
+     * @param clob the Clob
+     * @param lowestPage the first page
+     * @param highestPage the last page, inclusive
+     * @return an array of the decoded pages
+     */
+    public String[] getPages(ObjectStore os, Clob clob, int lowestPage, int highestPage) {
+        String[] retval = new String[highestPage - lowestPage + 1];
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+            for (int page = lowestPage; page <= highestPage; page++) {
+                retval[page - lowestPage] = pages.get(key(clob, page));
+            }
+        }
+        int page = lowestPage;
+        while (page <= highestPage) {
+            if (retval[page - lowestPage] != null) {
+                page++;
+                continue;
+            }
+            int runEnd = page;
+            while ((runEnd < highestPage) && (retval[runEnd + 1 - lowestPage] == null)) {
+                runEnd++;
+            }
+            fetch(os, clob, page, runEnd, retval, lowestPage);
+            synchronized (this) {
+                if (generation == startGeneration) {
+                    for (int i = page; i <= runEnd; i++) {
+                        pages.put(key(clob, i), retval[i - lowestPage]);
+                    }
+                }
+            }
+            page = runEnd + 1;
+        }
+        return retval;
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private static void fetch(ObjectStore os, Clob clob, int lowestPage, int highestPage,
+            String[] into, int offset) {
+        Query q = new Query();
+        q.addToSelect(clob);
+        List<ResultsRow<Object>> rows;
+        try {
+            rows = os.execute(q, lowestPage, highestPage - lowestPage + 1, false, false,
+                    ObjectStore.SEQUENCE_IGNORE);
+        } catch (ObjectStoreException e) {
+            throw new RuntimeException("Error reading pages " + lowestPage + " to " + highestPage
+                    + " of clob " + clob.getClobId(), e);
+        }
+        if (rows.size() != highestPage - lowestPage + 1) {
+            throw new IndexOutOfBoundsException("Clob " + clob.getClobId() + " has no page "
+                    + (lowestPage + rows.size()));
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            into[lowestPage + i - offset] = ClobPageCodec.decode((String) rows.get(i).get(0));
+        }
+    }
+
+    private static Long key(Clob clob, int page) {
+        return new Long((((long) clob.getClobId()) << 32) | page);
+    }
+}
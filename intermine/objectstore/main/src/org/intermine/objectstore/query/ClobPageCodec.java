@@ -0,0 +1,165 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import net.sourceforge.iharder.Base64;
+
+/**
+ * Encodes the pages of a Clob as they are stored in the database. A page of nucleotide sequence
+ * made only of the upper case letters A, C, G, T and N can be stored packed, with two bits for
+ * each base, a list of the runs of N, and the result in base 64 - about a third of the size of
+ * the text. Other pages are stored as they are. A stored page that starts with the marker
+ * character is packed or escaped, so pages written before packing was turned on can still be
+ * read.
+ */
+public final class ClobPageCodec
+{
+    private static final char MARKER = '\u0001';
+    private static final char PACKED = 'B';
+    private static final char ESCAPED = 'T';
+    private static final String BASES = "ACGT";
+
+    private ClobPageCodec() {
+    }
+
+    /**
+     * Encodes a page of text for storage.
+     *
+     * @param page the text of the page
+     * @param pack true to pack the page if it is nucleotide sequence
+     * @return the text to store
+     */
+    public static String encode(String page, boolean pack) {
+        if (pack && isPackable(page)) {
+            String packed = pack(page);
+            if (packed.length() < page.length()) {
+                return packed;
+            }
+        }
+        if ((page.length() > 0) && (page.charAt(0) == MARKER)) {
+            return "" + MARKER + ESCAPED + page;
+        }
+        return page;
+    }
+
+    /**
+     * Decodes a page of text read from the database.
+     *
+     * @param stored the stored text
+     * @return the text of the page
+     */
+    public static String decode(String stored) {
+        if ((stored.length() < 2) || (stored.charAt(0) != MARKER)) {
+            return stored;
+        }
+        if (stored.charAt(1) == ESCAPED) {
+            return stored.substring(2);
+        }
+        if (stored.charAt(1) == PACKED) {
+            return unpack(stored);
+        }
+        throw new IllegalArgumentException("Unknown clob page encoding " + stored.charAt(1));
+    }
+
+    private static boolean isPackable(String page) {
+        if (page.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < page.length(); i++) {
+            char c = page.charAt(i);
+            if ((c != 'N') && (BASES.indexOf(c) == -1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String pack(String page) {
+        int length = page.length();
+        byte[] bases = new byte[(length + 3) / 4];
+        ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        int runCount = 0;
+        try {
+            DataOutputStream runsOut = new DataOutputStream(runs);
+            int runStart = -1;
+            for (int i = 0; i < length; i++) {
+                char c = page.charAt(i);
+                if (c == 'N') {
+                    if (runStart == -1) {
+                        runStart = i;
+                    }
+                } else {
+                    if (runStart != -1) {
+                        runsOut.writeInt(runStart);
+                        runsOut.writeInt(i - runStart);
+                        runCount++;
+                        runStart = -1;
+                    }
+                    bases[i / 4] |= BASES.indexOf(c) << (6 - 2 * (i % 4));
+                }
+            }
+            if (runStart != -1) {
+                runsOut.writeInt(runStart);
+                runsOut.writeInt(length - runStart);
+                runCount++;
+            }
+            ByteArrayOutputStream packed = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(packed);
+            out.writeInt(length);
+            out.writeInt(runCount);
+            runs.writeTo(out);
+            out.write(bases);
+            out.flush();
+            return "" + MARKER + PACKED + Base64.encodeBytes(packed.toByteArray(),
+                    Base64.DONT_BREAK_LINES);
+        } catch (IOException e) {
+            // Cannot happen with a ByteArrayOutputStream
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String unpack(String stored) {
+        try {
+            byte[] encoded = stored.substring(2).getBytes("US-ASCII");
+            byte[] packed = Base64.decode(encoded, 0, encoded.length);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed));
+            int length = in.readInt();
+            int runCount = in.readInt();
+            int[] runs = new int[runCount * 2];
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = in.readInt();
+            }
+            byte[] bases = new byte[(length + 3) / 4];
+            in.readFully(bases);
+            char[] page = new char[length];
+            for (int i = 0; i < length; i++) {
+                page[i] = BASES.charAt((bases[i / 4] >> (6 - 2 * (i % 4))) & 3);
+            }
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int j = runs[i]; j < runs[i] + runs[i + 1]; j++) {
+                    page[j] = 'N';
+                }
+            }
+            return new String(page);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt packed clob page", e);
+        }
+    }
+}
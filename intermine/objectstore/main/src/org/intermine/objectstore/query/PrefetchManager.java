@@ -10,16 +10,34 @@ package org.intermine.objectstore.query;
  *
  */
 
-import org.apache.log4j.Logger;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreAbstractImpl;
 import org.intermine.objectstore.ObjectStoreException;
 
 /**
  * A manager for the prefetch mechanism for the Results object.
  *
+ * Speculative requests are handed to a bounded executor belonging to the ObjectStore of the
+ * request, so the number of threads (and therefore database connections) used for prefetching
+ * is limited per ObjectStore. Requests that arrive while the queue is full are dropped, as a
+ * foreground request will fetch the batch anyway if it is really needed.
+ *
  * @author Matthew Wakeling
  */
 public final class PrefetchManager
@@ -28,15 +46,26 @@ public final class PrefetchManager
     }
 
     private static final Logger LOG = Logger.getLogger(PrefetchManager.class);
-    /** Pending set of requests - always accessed inside a synchronise on sync. */
+    /** The default number of prefetch threads per ObjectStore */
+    public static final int DEFAULT_THREADS = 2;
+    /** The default number of speculative requests that may be queued per ObjectStore */
+    public static final int DEFAULT_QUEUE_SIZE = 20;
+    /** Pending set of requests, which have been queued on an executor but not yet started -
+     * always accessed inside a synchronise on sync. */
     protected static Set<Request> pending = new HashSet<Request>();
     /** Set of requests currently being serviced. This Set is not accessed inside a block
      * synchronised on any global object, so it must be able to handle concurrent access. */
     protected static Set<Request> serviced = Collections.synchronizedSet(new HashSet<Request>());
-    protected static int serviceThreads = 0;
+    /** Executors for speculative requests, one per ObjectStore - always accessed inside a
+     * synchronise on sync. */
+    private static Map<ObjectStore, ThreadPoolExecutor> executors
+        = new WeakHashMap<ObjectStore, ThreadPoolExecutor>();
     private static Object sync = new Object();
-
-    protected static final int LOADING = 3;
+    /** Request IDs that have been cancelled. */
+    private static Map<Object, Object> cancelled
+        = Collections.synchronizedMap(new WeakHashMap<Object, Object>());
+    private static ThreadLocal<Object> requestId = new ThreadLocal<Object>();
+    private static ThreadLocal<Request> servicing = new ThreadLocal<Request>();
 
     /*
      * This class provides methods for cancelling requests, so here is an explanation of how this
@@ -78,10 +107,94 @@ public final class PrefetchManager
      *      -> The thread that is doing the work may or may not be a prefetch thread. In either
      *         case, the waiting thread should be kicked out of the doRequest() method without
      *         jeopardising the thread that is performing the work.
+     *
+     * Every speculative Request remembers the request ID of the Thread that asked for it. When
+     * that ID is cancelled, queued speculative requests are removed from the executor queue, and
+     * the prefetch threads servicing any others are reported back to the ObjectStore, which
+     * cancels their Statements (scenario 3). Threads waiting inside doRequest() for another thread
+     * are woken, and throw an exception if their own request ID has been cancelled (scenario 4).
+     */
+
+    /**
+     * Registers the current Thread with a request ID, so that speculative requests made by this
+     * Thread can be cancelled along with it. This is called by ObjectStores that support request
+     * cancellation.
+     *
+     * @param id the request ID
      */
+    public static void registerRequestId(Object id) {
+        requestId.set(id);
+    }
+
+    /**
+     * Deregisters the current Thread from its request ID, and forgets whether that ID was
+     * cancelled.
+     */
+    public static void deregisterRequestId() {
+        Object id = requestId.get();
+        requestId.remove();
+        if (id != null) {
+            synchronized (sync) {
+                cancelled.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the request being serviced speculatively by the current Thread, or null if this is
+     * not a prefetch thread. ObjectStores use this as the request ID of prefetch threads.
+     *
+     * @return a request ID object, or null
+     */
+    public static Object getServicedRequest() {
+        return servicing.get();
+    }
+
+    /**
+     * Cancels all speculative requests made under the given request ID. Requests that have not
+     * started are removed from the queue. Requests that are being serviced by prefetch threads are
+     * returned, so that the caller can cancel the work being done for them.
+     *
+     * @param id the request ID
+     * @return a Collection of request ID objects registered by prefetch threads for that request
+     */
+    public static Collection<Object> cancelRequest(Object id) {
+        List<Object> retval = new ArrayList<Object>();
+        List<Request> toWake = new ArrayList<Request>();
+        synchronized (sync) {
+            cancelled.put(id, Boolean.TRUE);
+            Iterator<Request> iter = pending.iterator();
+            while (iter.hasNext()) {
+                Request request = iter.next();
+                if (id.equals(request.owner)) {
+                    iter.remove();
+                    ThreadPoolExecutor executor = executors.get(request.result.getObjectStore());
+                    if (executor != null) {
+                        executor.remove(request);
+                    }
+                    request.result.getPrefetchStatistics().requestCancelled();
+                }
+            }
+            synchronized (serviced) {
+                for (Request request : serviced) {
+                    if (request.speculative && id.equals(request.owner)) {
+                        retval.add(request);
+                    }
+                    toWake.add(request);
+                }
+            }
+        }
+        for (Request request : toWake) {
+            synchronized (request.result) {
+                request.result.notifyAll();
+            }
+        }
+        return retval;
+    }
 
     /**
-     * Adds a request to the Set of pending requests, and wakes up a Thread to handle it.
+     * Adds a request to the Set of pending requests, and queues it on the prefetch executor of the
+     * ObjectStore. If the queue is full, the request is dropped.
      *
      * @param result a ResultsBatches object that is making the request
      * @param batchNo the batch number to be fetched
@@ -90,44 +203,62 @@ public final class PrefetchManager
      */
     public static void addRequest(ResultsBatches result, int batchNo, boolean optimise,
             boolean explain) {
-        Request request = new Request(result, batchNo, optimise, explain);
+        Request request = new Request(result, batchNo, optimise, explain, requestId.get());
         synchronized (sync) {
             synchronized (result) {
                 // Synchronise on BOTH locks, so we can muck about with anything.
-                if (!result.batches.containsKey(new Integer(batchNo))) {
-                    // The request has not been done.
-                    if (!serviced.contains(request)) {
-                        // And it isn't currently being serviced.
-                        //if (!pending.contains(request)) {
-                        //    LOG.debug("addRequest - adding request:                          "
-                        //            + request);
-                        //}
-                        pending.add(request);
-                        if ((pending.size() + serviced.size()) > (serviceThreads * LOADING)) {
-                            // There are too many requests for the servicing threads.
-                            Thread newThread = new ServiceThread();
-                            newThread.setDaemon(true);
-                            newThread.setName("PrefetchManager ServiceThread");
-                            newThread.start();
-                            serviceThreads++;
-                            LOG.info("addRequest - creating new ServiceThread. We now have "
-                                    + serviceThreads);
-                        } else {
-                            // There may or may not be a service thread waiting. If not, a service
-                            // thread will soon finish a request.
-                            sync.notify();
-                        }
-                    //} else {
-                        //LOG.debug("addRequest - the request is currently being serviced: "
-                        //        + request);
+                if (!result.batches.containsKey(new Integer(batchNo))
+                        && (!serviced.contains(request)) && (!pending.contains(request))) {
+                    // The request has not been done, and it isn't being serviced or queued.
+                    ThreadPoolExecutor executor = getExecutor(result.getObjectStore());
+                    if (executor == null) {
+                        // Prefetching is switched off for this ObjectStore.
+                        return;
+                    }
+                    pending.add(request);
+                    try {
+                        executor.execute(request);
+                        result.getPrefetchStatistics().requestQueued();
+                    } catch (RejectedExecutionException e) {
+                        // The queue is full, so we have enough prefetching to be going on with.
+                        pending.remove(request);
+                        result.getPrefetchStatistics().requestRejected();
                     }
-                //} else {
-                    //LOG.debug("addRequest - the request has already been done:       " + request);
                 }
             }
         }
     }
 
+    /**
+     * Returns the prefetch executor for the given ObjectStore, creating it if necessary. Must be
+     * called inside a synchronise on sync.
+     *
+     * @param os an ObjectStore
+     * @return a ThreadPoolExecutor, or null if prefetching is switched off for the ObjectStore
+     */
+    private static ThreadPoolExecutor getExecutor(ObjectStore os) {
+        ThreadPoolExecutor executor = executors.get(os);
+        if ((executor == null) && (!executors.containsKey(os))) {
+            int threads = DEFAULT_THREADS;
+            int queueSize = DEFAULT_QUEUE_SIZE;
+            if (os instanceof ObjectStoreAbstractImpl) {
+                threads = ((ObjectStoreAbstractImpl) os).getPrefetchThreads();
+                queueSize = ((ObjectStoreAbstractImpl) os).getPrefetchQueueSize();
+            }
+            if ((threads > 0) && (queueSize > 0)) {
+                executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(queueSize), new ServiceThreadFactory());
+                executor.allowCoreThreadTimeOut(true);
+                LOG.info("Created prefetch executor with " + threads + " threads and a queue of "
+                        + queueSize + " for " + os);
+            } else {
+                LOG.info("Prefetching is switched off for " + os);
+            }
+            executors.put(os, executor);
+        }
+        return executor;
+    }
+
     /**
      * Returns when the given request is completed. If the given request is not already being
      * serviced, then this method will start servicing the request in the current thread.
@@ -142,7 +273,7 @@ public final class PrefetchManager
      */
     public static List<Object> doRequest(ResultsBatches result, int batchNo, boolean optimise,
             boolean explain) throws ObjectStoreException {
-        return doRequest(new Request(result, batchNo, optimise, explain));
+        return doRequest(new Request(result, batchNo, optimise, explain, requestId.get()));
     }
 
     /**
@@ -171,15 +302,22 @@ public final class PrefetchManager
                 if (retval != null) {
                     // The batch has already been fetched.
                     //LOG.debug("doRequest - the request has already been done:        " + request);
+                    request.result.getPrefetchStatistics().batchUsed(request.batchNo);
                     return retval;
                 }
                 if (pending.contains(request)) {
                     // The request is pending.
                     // If it is pending, then we wish it to be serviced by US. Therefore, we
-                    // need to move it to serviced state and do it.
+                    // need to move it to serviced state and do it. We also take it off the
+                    // executor queue, so foreground requests never wait behind prefetching.
                     // The request is not being serviced. We take over.
                     serviced.add(request);
                     pending.remove(request);
+                    ThreadPoolExecutor executor = executors.get(request.result.getObjectStore());
+                    if (executor != null) {
+                        executor.remove(request);
+                    }
+                    request.result.getPrefetchStatistics().requestStolen();
                     //LOG.debug("doRequest - the request was pending:                  " + request);
                 } else if (serviced.contains(request)) {
                     // The request is being serviced. We just need to wait.
@@ -212,11 +350,14 @@ public final class PrefetchManager
                 if (serviced.contains(request)) {
                     // Noone finished, so we can wait for that to happen.
                     //LOG.debug("doRequest - waiting for another thread to finish:     " + request);
+                    long startTime = System.currentTimeMillis();
                     try {
                         request.result.wait();
                     } catch (InterruptedException e) {
                         // Ignore interruption.
                     }
+                    request.result.getPrefetchStatistics().addWaitTime(System.currentTimeMillis()
+                            - startTime);
                 }
                 // At this point, either our wait was interrupted by notifyAll(), or someone has
                 // removed the request from serviced. Either way, we can't be absolutely sure that
@@ -231,6 +372,11 @@ public final class PrefetchManager
                 //     request from the serviced set, and notify other threads waiting for the
                 //     request. This allows threads waiting to do the operation themselves, and
                 //     therefore return back the correct exception.
+                // 4. Our own request ID has been cancelled, in which case we leave the other
+                //     thread to carry on and get out of here.
+            }
+            if ((request.owner != null) && cancelled.containsKey(request.owner)) {
+                throw new ObjectStoreException("Request id " + request.owner + " is cancelled");
             }
             retval = doRequest(request);
         } else {
@@ -263,65 +409,70 @@ public final class PrefetchManager
     }
 
     /**
-     * Returns a request for a thread to service.
+     * Takes a speculative request off the pending set, so that a prefetch thread can service it.
      *
-     * @return a request to service
+     * @param request the request that a prefetch thread has taken off the executor queue
+     * @return true if the request should be serviced, false if it has been taken over by another
+     * thread or cancelled, or the batch is already present
      */
-    protected static Request getRequest() {
-        Request retval;
+    protected static boolean startRequest(Request request) {
         synchronized (sync) {
-            while (pending.isEmpty()) {
-                // There are no requests to get - wait for a notify.
-                //LOG.debug("getRequest - waiting for a request");
-                try {
-                    sync.wait();
-                } catch (InterruptedException e) {
-                    // Ignore interruption.
+            synchronized (request.result) {
+                // Basically, we never check to see if the batch has already been fetched before
+                // checking to see if anyone is fetching it - we only put the request in serviced.
+                if (!pending.remove(request)) {
+                    return false;
                 }
+                request.result.getPrefetchStatistics().requestStarted();
+                if (request.result.batches.containsKey(new Integer(request.batchNo))) {
+                    return false;
+                }
+                request.speculative = true;
+                serviced.add(request);
+                return true;
             }
-            // Get a request from the pending set. We know there is something in there, because we
-            // just got false from pending.isEmpty, and we have the lock on sync, and nothing
-            // touches pending unless they have that lock.
-            retval = pending.iterator().next();
-            //LOG.debug("getRequest - got request:                             " + retval);
-            // Now we have a request, we could synchronise by its result - other things look
-            // for the request in serviced - namely:
-            // 1. addRequest doesn't add a request to pending if it already in serviced. However,
-            //     that doesn't matter, because it is already synchronised on sync. Otherwise, you
-            //     might have had the situation where a request appears in both pending and serviced
-            //     sets.
-            // 2. doRequest also moves items from pending to serviced, but that doesn't matter
-            //     because it is also synchronised on sync. Otherwise you could have two threads
-            //     servicing the same request, which could possibly leave other requests not being
-            //     serviced while a service thread sleeps.
-            // 3. doRequest decides whether to wait on whether there is a request in serviced, but
-            //     this also does not matter, as it can only be broken by a thread removing a
-            //     request from serviced outside a synchronised block.
-            // 4. reportDone removes an entry from serviced, which does not matter, because it will
-            //     only break something that is broken by things being removed from serviced outside
-            //     a sync lock.
-            // Basically, we never check to see if the batch has already been fetched before
-            // checking to see if anyone is fetching it - we only put the request in serviced.
-            // Therefore, we do not need to synchronise by request.result here.
-
-            serviced.add(retval);
-            pending.remove(retval);
         }
-        return retval;
     }
 
-    private static class Request
+    private static class Request implements Runnable
     {
         private ResultsBatches result;
         private int batchNo;
         private boolean optimise;
         private boolean explain;
+        private Object owner;
+        private boolean speculative = false;
 
-        public Request(ResultsBatches result, int batchNo, boolean optimise, boolean explain) {
+        public Request(ResultsBatches result, int batchNo, boolean optimise, boolean explain,
+                Object owner) {
             this.result = result;
             this.batchNo = batchNo;
             this.optimise = optimise;
             this.explain = explain;
+            this.owner = owner;
+        }
+
+        public void run() {
+            if (!PrefetchManager.startRequest(this)) {
+                return;
+            }
+            //LOG.debug("Request.run - servicing request                       " + this);
+            servicing.set(this);
+            try {
+                // Now, we can service this request in a normal manner, outside all locks.
+                result.fetchBatchFromObjectStore(batchNo, optimise, explain);
+                result.getPrefetchStatistics().prefetchCompleted(batchNo);
+            } catch (Exception e) {
+                LOG.warn("Request.run - Received exception                      " + this + " "
+                        + e);
+                // We don't care about any exception - a foreground request will fetch the batch
+                // again if it needs it, and get the exception itself.
+            } finally {
+                servicing.remove();
+                // And then report that it is finished, inside a lock, even if we did get an
+                // exception.
+                reportDone(this);
+            }
         }
 
         @Override
@@ -331,7 +482,8 @@ public final class PrefetchManager
 
         @Override
         public boolean equals(Object obj) {
-            return (result == ((Request) obj).result) && (((Request) obj).batchNo == batchNo);
+            return (obj instanceof Request) && (result == ((Request) obj).result)
+                && (((Request) obj).batchNo == batchNo);
         }
 
         @Override
@@ -340,41 +492,12 @@ public final class PrefetchManager
         }
     }
 
-    private static class ServiceThread extends Thread
+    private static class ServiceThreadFactory implements ThreadFactory
     {
-        @Override
-        public void run() {
-            try {
-                while (true) {
-                    Request request = PrefetchManager.getRequest();
-                    //LOG.debug("ServiceThread.run - servicing request                 " + request);
-                    try {
-                        // Now, we can service this request in a normal manner, outside all locks.
-                        @SuppressWarnings("unused")
-                        List<Object> batch = request.result.fetchBatchFromObjectStore(request
-                                .batchNo, request.optimise, request.explain);
-                    } catch (Exception e) {
-                        LOG.warn("ServiceThread.run - Received exception                " + request
-                                + " " + e);
-                        // We don't care about any exception - we NEED this thread to keep running.
-                        // Otherwise, things go pear-shaped.
-                    } finally {
-                        // And then report that it is finished, inside a lock, even if we did get an
-                        // exception.
-                        reportDone(request);
-                    }
-                }
-            } catch (Error e) {
-                LOG.error("Failure of PrefetchManager service thread with error", e);
-                throw e;
-            } finally {
-                // Like I said, we REALLY NEED to know if something has gone wrong here, as it is a
-                // BIG BAD BUG.
-                LOG.error("ServiceThread died unexpectedly. PrefetchManager may stop working");
-                // And decrement the count of available ServiceThreads.
-                PrefetchManager.serviceThreads--;
-            }
+        public Thread newThread(Runnable r) {
+            Thread newThread = new Thread(r, "PrefetchManager ServiceThread");
+            newThread.setDaemon(true);
+            return newThread;
         }
     }
 }
-
@@ -0,0 +1,183 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Counters describing how the PrefetchManager has treated the batches of a single ResultsBatches
+ * object. All methods are synchronised, so the counters are consistent with each other.
+ */
+public class PrefetchStatistics
+{
+    private int queued = 0;
+    private int rejected = 0;
+    private int cancelled = 0;
+    private int stolen = 0;
+    private int started = 0;
+    private int completed = 0;
+    private int used = 0;
+    private int waits = 0;
+    private long waitTime = 0;
+    private Set<Integer> unusedBatches = new HashSet<Integer>();
+
+    /**
+     * Records that a speculative request has been placed on the prefetch queue.
+     */
+    protected synchronized void requestQueued() {
+        queued++;
+    }
+
+    /**
+     * Records that a speculative request was dropped because the prefetch queue was full.
+     */
+    protected synchronized void requestRejected() {
+        rejected++;
+    }
+
+    /**
+     * Records that a queued speculative request was removed because its request ID was cancelled.
+     */
+    protected synchronized void requestCancelled() {
+        cancelled++;
+    }
+
+    /**
+     * Records that a queued speculative request was taken over by a foreground request.
+     */
+    protected synchronized void requestStolen() {
+        stolen++;
+    }
+
+    /**
+     * Records that a prefetch thread has taken a speculative request off the queue.
+     */
+    protected synchronized void requestStarted() {
+        started++;
+    }
+
+    /**
+     * Records that a prefetch thread has fetched a batch.
+     *
+     * @param batchNo the batch number
+     */
+    protected synchronized void prefetchCompleted(int batchNo) {
+        completed++;
+        unusedBatches.add(new Integer(batchNo));
+    }
+
+    /**
+     * Records that a batch has been handed to a foreground request.
+     *
+     * @param batchNo the batch number
+     */
+    protected synchronized void batchUsed(int batchNo) {
+        if (unusedBatches.remove(new Integer(batchNo))) {
+            used++;
+        }
+    }
+
+    /**
+     * Records time spent by a foreground request waiting for another thread to fetch a batch.
+     *
+     * @param millis the time waited, in milliseconds
+     */
+    protected synchronized void addWaitTime(long millis) {
+        waits++;
+        waitTime += millis;
+    }
+
+    /**
+     * Returns the number of speculative requests currently waiting on the prefetch queue.
+     *
+     * @return an int
+     */
+    public synchronized int getQueueDepth() {
+        return queued - cancelled - stolen - started;
+    }
+
+    /**
+     * Returns the number of speculative requests that were accepted onto the prefetch queue.
+     *
+     * @return an int
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Returns the number of speculative requests dropped because the prefetch queue was full.
+     *
+     * @return an int
+     */
+    public synchronized int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the number of queued speculative requests removed by cancellation.
+     *
+     * @return an int
+     */
+    public synchronized int getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the number of batches fetched by prefetch threads.
+     *
+     * @return an int
+     */
+    public synchronized int getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the number of prefetched batches that have not (yet) been used by any foreground
+     * request.
+     *
+     * @return an int
+     */
+    public synchronized int getWasted() {
+        return completed - used;
+    }
+
+    /**
+     * Returns the total time foreground requests spent waiting for other threads to fetch
+     * batches, in milliseconds.
+     *
+     * @return a long
+     */
+    public synchronized long getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Returns the number of times a foreground request had to wait for another thread.
+     *
+     * @return an int
+     */
+    public synchronized int getWaits() {
+        return waits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "queued: " + queued + ", queue depth: " + getQueueDepth()
+            + ", rejected: " + rejected + ", cancelled: " + cancelled + ", taken over: " + stolen
+            + ", completed: " + completed + ", wasted: " + (completed - used) + ", waits: "
+            + waits + " (" + waitTime + " ms)";
+    }
+}
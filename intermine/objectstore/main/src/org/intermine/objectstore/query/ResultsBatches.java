@@ -48,6 +48,8 @@ public class ResultsBatches
     protected Map<Integer, List<Object>> batches = Collections.synchronizedMap(
             new CacheMap<Integer, List<Object>>("Results batches"));
 
+    protected PrefetchStatistics prefetchStatistics = new PrefetchStatistics();
+
     /**
      * Construct a new ResultsBatches object. This is generally only called by the Results object.
      *
@@ -122,6 +124,15 @@ public class ResultsBatches
         }
     }
 
+    /**
+     * Returns the statistics of the PrefetchManager's handling of this object's batches.
+     *
+     * @return a PrefetchStatistics object
+     */
+    public PrefetchStatistics getPrefetchStatistics() {
+        return prefetchStatistics;
+    }
+
     /**
      * Gets a range of rows from within a batch
      *
@@ -162,6 +173,8 @@ public class ResultsBatches
         List<Object> retval = batches.get(new Integer(batchNo));
         if (retval == null) {
             retval = PrefetchManager.doRequest(this, batchNo, optimise, explain);
+        } else {
+            prefetchStatistics.batchUsed(batchNo);
         }
         return retval;
     }
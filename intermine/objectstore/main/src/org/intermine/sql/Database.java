@@ -15,11 +15,14 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -48,6 +51,8 @@ public class Database implements Shutdownable
     protected String driver;
     /** The number of worker threads to use for background SQL statements */
     protected int parallel = 4;
+    /** The number of prepared statements to keep open on each connection */
+    protected int statementCacheSize = 100;
 
     // Store all the properties this Database was configured with
     protected Properties settings;
@@ -388,6 +393,100 @@ public class Database implements Shutdownable
         return "" + settings + " " + driver + " " + platform;
     }
 
+    // Prepared statements kept open on each Connection, by SQL text
+    private Map<Connection, Map<String, PreparedStatement>> statementCaches
+        = new IdentityHashMap<Connection, Map<String, PreparedStatement>>();
+
+    /**
+     * Returns a PreparedStatement for the given SQL on the given Connection. Statements are kept
+     * open on the Connection until it is passed to closePreparedStatements(), so when the same
+     * SQL is run again on a Connection that is held for a long time, such as that of an
+     * ObjectStoreWriter, the same statement is used and the server can reuse its parse and plan.
+     * The statement must be given back with releasePreparedStatement() rather than closed, and
+     * only used while the Connection is held.
+     *
+     * @param c a Connection from this Database
+     * @param sql an SQL string, which may contain placeholders
+     * @return a PreparedStatement
+     * @throws SQLException if an error occurs
+     */
+    public PreparedStatement getPreparedStatement(Connection c, String sql) throws SQLException {
+        synchronized (statementCaches) {
+            Map<String, PreparedStatement> cache = statementCaches.get(c);
+            PreparedStatement retval = (cache == null ? null : cache.remove(sql));
+            if (retval != null) {
+                return retval;
+            }
+        }
+        return c.prepareStatement(sql);
+    }
+
+    /**
+     * Gives back a PreparedStatement obtained from getPreparedStatement(), before the Connection
+     * is released.
+     *
+     * @param c the Connection the statement was obtained for
+     * @param sql the SQL string the statement was obtained for
+     * @param ps the PreparedStatement
+     * @throws SQLException if an error occurs
+     */
+    public void releasePreparedStatement(Connection c, String sql,
+            PreparedStatement ps) throws SQLException {
+        if (statementCacheSize <= 0) {
+            ps.close();
+            return;
+        }
+        ps.clearParameters();
+        PreparedStatement replaced;
+        synchronized (statementCaches) {
+            Map<String, PreparedStatement> cache = statementCaches.get(c);
+            if (cache == null) {
+                cache = new LinkedHashMap<String, PreparedStatement>(16, 0.75F, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > statementCacheSize) {
+                            closeQuietly(eldest.getValue());
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+                statementCaches.put(c, cache);
+            }
+            replaced = cache.put(sql, ps);
+        }
+        if ((replaced != null) && (replaced != ps)) {
+            closeQuietly(replaced);
+        }
+    }
+
+    /**
+     * Closes the PreparedStatements kept open on a Connection by releasePreparedStatement(). This
+     * must be called before the Connection is closed or returned to the pool.
+     *
+     * @param c a Connection from this Database
+     */
+    public void closePreparedStatements(Connection c) {
+        Map<String, PreparedStatement> cache;
+        synchronized (statementCaches) {
+            cache = statementCaches.remove(c);
+        }
+        if (cache != null) {
+            for (PreparedStatement ps : cache.values()) {
+                closeQuietly(ps);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement s) {
+        try {
+            s.close();
+        } catch (SQLException e) {
+            LOG.warn("Could not close prepared statement", e);
+        }
+    }
+
     private Set<SqlJob> pending = new HashSet<SqlJob>();
     private Set<Waiter> waiters = new HashSet<Waiter>();
     private ArrayBlockingQueue<SqlJob> queue = new ArrayBlockingQueue<SqlJob>(30);
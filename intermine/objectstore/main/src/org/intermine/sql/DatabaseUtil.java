@@ -703,6 +703,13 @@ public final class DatabaseUtil
             return ((Boolean) o).booleanValue() ? "'true'" : "'false'";
         } else if (o instanceof Class<?>) {
             return objectToString(((Class<?>) o).getName());
+        } else if (o instanceof byte[]) {
+            StringBuilder sb = new StringBuilder("decode('");
+            for (byte b : (byte[]) o) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append("', 'hex')").toString();
         } else if (o == null) {
             return "NULL";
         } else {
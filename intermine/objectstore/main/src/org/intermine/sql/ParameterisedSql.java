@@ -0,0 +1,168 @@
+package org.intermine.sql;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An SQL query with its constant values held separately, as placeholders in the SQL text and a
+ * list of values to bind to them. Queries that differ only in their constants share the same
+ * SQL text, so the server can reuse one parse and plan for all of them.
+ *
+ * A generator writes each value as a numbered marker, see marker(int), in whatever order it
+ * builds the text. The markers are replaced by placeholders here, and the values put in the
+ * order the placeholders appear. The equivalent SQL with the values written inline is also
+ * produced, for logging, EXPLAIN and the query optimiser.
+ */
+public class ParameterisedSql
+{
+    /** The character that starts and ends a parameter marker */
+    public static final char MARKER = '\u0000';
+
+    private final String sql;
+    private final String literalSql;
+    private final List<Object> parameters;
+
+    /**
+     * Constructs a ParameterisedSql object from SQL text containing parameter markers.
+     *
+     * @param text the SQL text, with markers
+     * @param values the values that the markers refer to, by number
+     * @throws IllegalArgumentException if the text contains an invalid marker
+     */
+    public ParameterisedSql(String text, List<Object> values) {
+        StringBuilder sqlBuilder = new StringBuilder();
+        StringBuilder literalBuilder = new StringBuilder();
+        List<Object> ordered = new ArrayList<Object>();
+        int pos = 0;
+        int start = text.indexOf(MARKER);
+        while (start != -1) {
+            int end = text.indexOf(MARKER, start + 1);
+            if (end == -1) {
+                throw new IllegalArgumentException("Unterminated parameter marker in " + text);
+            }
+            Object value;
+            try {
+                value = values.get(Integer.parseInt(text.substring(start + 1, end)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid parameter marker in " + text, e);
+            }
+            sqlBuilder.append(text, pos, start).append('?');
+            literalBuilder.append(text, pos, start).append(DatabaseUtil.objectToString(value));
+            ordered.add(value);
+            pos = end + 1;
+            start = text.indexOf(MARKER, pos);
+        }
+        if (ordered.isEmpty()) {
+            sql = text;
+            literalSql = text;
+        } else {
+            sql = sqlBuilder.append(text, pos, text.length()).toString();
+            literalSql = literalBuilder.append(text, pos, text.length()).toString();
+        }
+        parameters = Collections.unmodifiableList(ordered);
+    }
+
+    /**
+     * Returns the marker that a generator should write for the value with the given number.
+     *
+     * @param index the number of the value in the list passed to the constructor
+     * @return a String
+     */
+    public static String marker(int index) {
+        return MARKER + Integer.toString(index) + MARKER;
+    }
+
+    /**
+     * Returns whether a value can be bound to a placeholder with the same meaning as when it is
+     * written inline. Other values should be written inline with DatabaseUtil.objectToString().
+     *
+     * @param value a value
+     * @return true if setParameters() can bind the value
+     */
+    public static boolean canBind(Object value) {
+        if (value instanceof String) {
+            // The server rejects these whichever way they are sent, but they must not be
+            // mistaken for markers
+            return ((String) value).indexOf(MARKER) == -1;
+        }
+        return (value instanceof Integer) || (value instanceof Long) || (value instanceof Short)
+            || (value instanceof Float) || (value instanceof Double)
+            || (value instanceof Boolean);
+    }
+
+    /**
+     * Returns the SQL text with placeholders.
+     *
+     * @return a String
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the equivalent SQL text with the values written inline.
+     *
+     * @return a String
+     */
+    public String getLiteralSql() {
+        return literalSql;
+    }
+
+    /**
+     * Returns the values to bind, in placeholder order.
+     *
+     * @return an unmodifiable List
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Binds the values to a PreparedStatement made from getSql().
+     *
+     * @param ps the PreparedStatement
+     * @throws SQLException if an error occurs
+     */
+    public void setParameters(PreparedStatement ps) throws SQLException {
+        int index = 1;
+        for (Object value : parameters) {
+            if (value instanceof String) {
+                ps.setString(index, (String) value);
+            } else if (value instanceof Integer) {
+                ps.setInt(index, ((Integer) value).intValue());
+            } else if (value instanceof Long) {
+                ps.setLong(index, ((Long) value).longValue());
+            } else if (value instanceof Short) {
+                ps.setShort(index, ((Short) value).shortValue());
+            } else if (value instanceof Float) {
+                ps.setFloat(index, ((Float) value).floatValue());
+            } else if (value instanceof Double) {
+                ps.setDouble(index, ((Double) value).doubleValue());
+            } else {
+                ps.setBoolean(index, ((Boolean) value).booleanValue());
+            }
+            index++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return literalSql;
+    }
+}
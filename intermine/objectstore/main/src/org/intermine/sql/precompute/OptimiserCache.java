@@ -10,6 +10,7 @@ package org.intermine.sql.precompute;
  *
  */
 
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -54,6 +55,8 @@ public class OptimiserCache
      */
     protected Map<String, Set<OptimiserCacheLine>> cacheLines;
 
+    private volatile OptimiserCacheStore store = null;
+
     /**
      * Constructor for this object.
      */
@@ -69,19 +72,35 @@ public class OptimiserCache
     }
 
     /**
-     * Adds a new OptimiserCacheLine object to the cache.
+     * Adds a new OptimiserCacheLine object to the cache, and to the persistent store if there is
+     * one.
      *
      * @param original the original SQL string (stripped of LIMIT and OFFSET)
      * @param optimised the optimised SQL string (stripped of LIMIT and OFFSET)
      * @param limit the limit that was used during the optimisation
      */
-    public synchronized void addCacheLine(String original, String optimised, int limit) {
+    public void addCacheLine(String original, String optimised, int limit) {
         if (original.toUpperCase().startsWith("EXPLAIN ")) {
             original = original.substring(8);
         }
         if (optimised.toUpperCase().startsWith("EXPLAIN ")) {
             optimised = optimised.substring(8);
         }
+        addLine(original, optimised, limit);
+        OptimiserCacheStore currentStore = store;
+        if (currentStore != null) {
+            currentStore.store(original, optimised, limit);
+        }
+    }
+
+    /**
+     * Adds a new OptimiserCacheLine object to the cache only.
+     *
+     * @param original the original SQL string (stripped of LIMIT, OFFSET and EXPLAIN)
+     * @param optimised the optimised SQL string (stripped of LIMIT, OFFSET and EXPLAIN)
+     * @param limit the limit that was used during the optimisation
+     */
+    protected synchronized void addLine(String original, String optimised, int limit) {
         Set<OptimiserCacheLine> lines = cacheLines.get(original);
         if (lines == null) {
             lines = new HashSet<OptimiserCacheLine>();
@@ -93,6 +112,22 @@ public class OptimiserCache
         lines.add(line);
     }
 
+    /**
+     * Loads the decisions held in a persistent store into this cache, and from then on adds new
+     * decisions to the store as well.
+     *
+     * Does nothing if this cache already has a store.
+     *
+     * @param store an OptimiserCacheStore
+     * @throws SQLException if the store cannot be loaded, in which case it is not used
+     */
+    public void setStore(OptimiserCacheStore store) throws SQLException {
+        if (this.store == null) {
+            store.load(this);
+            this.store = store;
+        }
+    }
+
     /**
      * Attempts to find a match in the cache for an original query.
      *
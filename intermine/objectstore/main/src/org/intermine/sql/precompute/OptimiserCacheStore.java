@@ -0,0 +1,138 @@
+package org.intermine.sql.precompute;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.log4j.Logger;
+import org.intermine.sql.Database;
+import org.intermine.sql.DatabaseUtil;
+
+/**
+ * Keeps the decisions of the query optimiser in a table in the database, so that they survive a
+ * restart and are shared by every process using the database. Each decision is stored against
+ * the version of the set of precomputed tables it was made with, see
+ * PrecomputedTableManager.getVersion(), and decisions made with any other set are discarded when
+ * the store is loaded.
+ */
+public class OptimiserCacheStore
+{
+    private static final Logger LOG = Logger.getLogger(OptimiserCacheStore.class);
+
+    /** The name of the table holding optimiser decisions */
+    public static final String TABLE_NAME = "optimiser_cache";
+    /** The maximum number of decisions loaded into an OptimiserCache */
+    public static final int MAX_LOAD = 100000;
+
+    private final Database database;
+
+    /**
+     * Constructs a store for the given database.
+     *
+     * @param database a Database
+     */
+    public OptimiserCacheStore(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Creates the table if it does not exist, removes decisions made with a different set of
+     * precomputed tables, and adds the rest to the given cache, newest first.
+     *
+     * @param cache the OptimiserCache to fill
+     * @return the number of decisions loaded
+     * @throws SQLException if an error occurs
+     */
+    public int load(OptimiserCache cache) throws SQLException {
+        long start = System.currentTimeMillis();
+        String version = PrecomputedTableManager.getInstance(database).getVersion();
+        Connection con = database.getConnection();
+        try {
+            con.setAutoCommit(true);
+            if (!DatabaseUtil.tableExists(con, TABLE_NAME)) {
+                Statement s = con.createStatement();
+                s.execute("CREATE TABLE " + TABLE_NAME + " (version text, original text,"
+                        + " optimised text, querylimit integer, created bigint)");
+                s.execute("CREATE UNIQUE INDEX " + TABLE_NAME + "_key ON " + TABLE_NAME
+                        + " (version, md5(original), querylimit)");
+                s.close();
+            }
+            PreparedStatement delete = con.prepareStatement("DELETE FROM " + TABLE_NAME
+                    + " WHERE version <> ?");
+            delete.setString(1, version);
+            int deleted = delete.executeUpdate();
+            delete.close();
+            PreparedStatement select = con.prepareStatement("SELECT original, optimised,"
+                    + " querylimit FROM " + TABLE_NAME + " WHERE version = ? ORDER BY created"
+                    + " DESC LIMIT " + MAX_LOAD);
+            select.setString(1, version);
+            ResultSet r = select.executeQuery();
+            int count = 0;
+            while (r.next()) {
+                cache.addLine(r.getString(1), r.getString(2), r.getInt(3));
+                count++;
+            }
+            select.close();
+            LOG.info("Loaded " + count + " optimiser decisions (and discarded " + deleted
+                    + " made with other precomputed tables) in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return count;
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Stores a decision of the optimiser. Errors are logged rather than thrown, as the decision
+     * is still held in memory. A decision that another process has already stored is ignored.
+     *
+     * @param original the original SQL string (stripped of LIMIT and OFFSET)
+     * @param optimised the optimised SQL string (stripped of LIMIT and OFFSET)
+     * @param limit the limit that was used during the optimisation
+     */
+    public void store(String original, String optimised, int limit) {
+        Connection con = null;
+        try {
+            String version = PrecomputedTableManager.getInstance(database).getVersion();
+            con = database.getConnection();
+            con.setAutoCommit(true);
+            PreparedStatement insert = con.prepareStatement("INSERT INTO " + TABLE_NAME
+                    + " (version, original, optimised, querylimit, created)"
+                    + " VALUES (?, ?, ?, ?, ?)");
+            insert.setString(1, version);
+            insert.setString(2, original);
+            insert.setString(3, optimised);
+            insert.setInt(4, limit);
+            insert.setLong(5, System.currentTimeMillis());
+            try {
+                insert.executeUpdate();
+            } catch (SQLException e) {
+                // Most likely stored by another process in the meantime
+                LOG.debug("Could not store optimiser decision for " + original, e);
+            }
+            insert.close();
+        } catch (SQLException e) {
+            LOG.warn("Could not store optimiser decision in " + TABLE_NAME, e);
+        } finally {
+            if (con != null) {
+                try {
+                    con.close();
+                } catch (SQLException e) {
+                    LOG.warn("Could not close connection", e);
+                }
+            }
+        }
+    }
+}
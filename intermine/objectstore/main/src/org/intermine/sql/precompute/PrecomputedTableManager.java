@@ -254,6 +254,35 @@ public class PrecomputedTableManager
         return precomputedTables;
     }
 
+    /**
+     * Returns a String that identifies the current set of precomputed tables. It changes whenever
+     * a table is added or removed, so decisions made by the optimiser can be stored against it.
+     *
+     * @return a String of 32 hex digits
+     */
+    public String getVersion() {
+        TreeSet<String> names = new TreeSet<String>();
+        for (PrecomputedTable pt : precomputedTables) {
+            names.add(pt.getName());
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        for (String name : names) {
+            md.update(name.getBytes());
+            md.update((byte) 0);
+        }
+        StringBuilder retval = new StringBuilder();
+        for (byte b : md.digest()) {
+            retval.append(Character.forDigit((b >> 4) & 0xF, 16))
+                .append(Character.forDigit(b & 0xF, 16));
+        }
+        return retval.toString();
+    }
+
     /**
      * Add a PrecomputedTable to the database.
      *
@@ -19,6 +19,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -26,6 +27,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.intermine.sql.Database;
@@ -68,6 +74,11 @@ public final class QueryOptimiser
     private static final String ALIAS_PREFIX = "P";
     private static int callCount = 0;
 
+    /** The number of queries that can wait to be optimised in the background */
+    public static final int BACKGROUND_QUEUE_SIZE = 100;
+    private static ThreadPoolExecutor backgroundExecutor = null;
+    private static Set<String> backgroundPending = new HashSet<String>();
+
     /**
      * Runs the optimiser through the query represented in the String, given the database. If
      * anything goes wrong, then the original String is returned.
@@ -274,6 +285,67 @@ public final class QueryOptimiser
         return new BestQueryFallback(originalQuery, query);
     }
 
+    /**
+     * Returns the optimised form of a query if the OptimiserCache already holds it. Otherwise the
+     * query is optimised in a background thread, so that later executions can use the result,
+     * and is returned unchanged so it can be run straight away.
+     *
+     * @param query the query String to optimise
+     * @param database the database to use to find precomputed tables
+     * @return a String representing the optimised query, or the query itself
+     * @throws SQLException if a database error occurs
+     */
+    public static String optimiseInBackground(final String query, final Database database)
+        throws SQLException {
+        PrecomputedTableManager ptm = PrecomputedTableManager.getInstance(database);
+        if (ptm.getPrecomputedTables().isEmpty()) {
+            return query;
+        }
+        LimitOffsetQuery limitOffsetQuery = new LimitOffsetQuery(query);
+        String cachedQuery = OptimiserCache.getInstance(database).lookup(
+                limitOffsetQuery.getQuery(), limitOffsetQuery.getLimit());
+        if (cachedQuery != null) {
+            return limitOffsetQuery.reconstruct(cachedQuery);
+        }
+        synchronized (backgroundPending) {
+            if (!backgroundPending.add(query)) {
+                return query;
+            }
+            if (backgroundExecutor == null) {
+                backgroundExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(BACKGROUND_QUEUE_SIZE),
+                        new ThreadFactory() {
+                            public Thread newThread(Runnable r) {
+                                Thread newThread = new Thread(r, "QueryOptimiser background");
+                                newThread.setDaemon(true);
+                                return newThread;
+                            }
+                        });
+                backgroundExecutor.allowCoreThreadTimeOut(true);
+            }
+            try {
+                backgroundExecutor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            optimise(query, null, database, null,
+                                    QueryOptimiserContext.DEFAULT);
+                        } catch (Exception e) {
+                            LOG.warn("Error optimising query in the background: " + query, e);
+                        } finally {
+                            synchronized (backgroundPending) {
+                                backgroundPending.remove(query);
+                            }
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Too many waiting - a later execution of the query will try again
+                backgroundPending.remove(query);
+            }
+        }
+        return query;
+    }
+
     /**
      * Remaps the aliases of any table that starts with the ALIAS_PREFIX, to avoid clashes with
      * future precomputed tables.
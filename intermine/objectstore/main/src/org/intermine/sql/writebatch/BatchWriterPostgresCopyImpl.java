@@ -134,6 +134,9 @@ public class BatchWriterPostgresCopyImpl extends BatchWriterPreparedStatementImp
             dos.writeLargeUTF((String) o);
         } else if (o instanceof StringConstructor) {
             dos.writeLargeUTF((StringConstructor) o);
+        } else if (o instanceof byte[]) {
+            dos.writeInt(((byte[]) o).length);
+            dos.write((byte[]) o);
         } else if (o instanceof BigDecimal) {
             BigInteger unscaledValue = ((BigDecimal) o).unscaledValue();
             int signum = ((BigDecimal) o).signum();
@@ -215,6 +215,8 @@ public class TableBatch implements Table
                 retval += ((String) array[i]).length() * 2 + 12;
             } else if (array[i] instanceof StringConstructor) {
                 retval += ((StringConstructor) array[i]).length() * 2 + 12;
+            } else if (array[i] instanceof byte[]) {
+                retval += ((byte[]) array[i]).length + 12;
             } else if ((array[i] instanceof Long) || (array[i] instanceof Double)) {
                 retval += 8;
             } else if (array[i] instanceof BigDecimal) {
@@ -0,0 +1,165 @@
+package org.intermine.task;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Task;
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.model.InterMineObject;
+import org.intermine.modelproduction.MetadataManager;
+import org.intermine.objectstore.ObjectStoreFactory;
+import org.intermine.objectstore.intermine.BinaryObjectFormat;
+import org.intermine.objectstore.intermine.DatabaseSchema;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.objectstore.intermine.NotXmlParser;
+import org.intermine.sql.Database;
+import org.intermine.sql.DatabaseUtil;
+
+/**
+ * Task to convert the OBJECT column of every table in an existing production database from NotXml
+ * to the binary object format, and record the change in the database metadata. The whole
+ * conversion runs in a single transaction, so an interrupted run leaves the database unchanged.
+ */
+public class ConvertObjectFormatTask extends Task
+{
+    private static final Logger LOG = Logger.getLogger(ConvertObjectFormatTask.class);
+    private static final String TEMP_COLUMN = "binaryobject";
+
+    private String osName;
+    private int batchSize = 1000;
+
+    /**
+     * Sets the alias of the ObjectStore to convert.
+     *
+     * @param osName the ObjectStore alias
+     */
+    public void setOsName(String osName) {
+        this.osName = osName;
+    }
+
+    /**
+     * Sets the number of rows to update in each JDBC batch.
+     *
+     * @param batchSize the batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute() {
+        if (osName == null) {
+            throw new BuildException("osName attribute is not set");
+        }
+        try {
+            ObjectStoreInterMineImpl os = (ObjectStoreInterMineImpl) ObjectStoreFactory
+                .getObjectStore(osName);
+            DatabaseSchema schema = os.getSchema();
+            if (schema.isBinaryObjects()) {
+                throw new BuildException("ObjectStore " + osName
+                        + " already uses the binary object format");
+            }
+            Database db = os.getDatabase();
+            BinaryObjectFormat format = schema.getBinaryObjectFormat();
+            Connection c = db.getConnection();
+            try {
+                c.setAutoCommit(false);
+                for (String table : getTablesWithObjectColumn(schema)) {
+                    convertTable(c, os, format, table);
+                }
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+                c.close();
+            }
+            MetadataManager.store(db, MetadataManager.BINARY_OBJECTS, "true");
+            LOG.info("Converted ObjectStore " + osName + " to the binary object format - set "
+                    + osName + ".binaryObjects=true before rebuilding the database");
+        } catch (BuildException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BuildException(e);
+        }
+    }
+
+    /**
+     * Returns the names of the tables that have an OBJECT column, using the same rule as
+     * TorqueModelOutput.
+     *
+     * @param schema the DatabaseSchema
+     * @return a Set of table names
+     */
+    protected static Set<String> getTablesWithObjectColumn(DatabaseSchema schema) {
+        Set<String> retval = new LinkedHashSet<String>();
+        for (ClassDescriptor cld : schema.getModel().getClassDescriptors()) {
+            if (schema.getTableMaster(cld) != cld) {
+                continue;
+            }
+            String tableName = DatabaseUtil.getTableName(cld);
+            if (!schema.getMissingTables().contains(tableName.toLowerCase())
+                    && ((!(schema.isMissingNotXml() || schema.isFlatMode(cld.getType())))
+                        || InterMineObject.class.equals(cld.getType()))) {
+                retval.add(tableName);
+            }
+        }
+        return retval;
+    }
+
+    private void convertTable(Connection c, ObjectStoreInterMineImpl os,
+            BinaryObjectFormat format, String table) throws SQLException, ClassNotFoundException {
+        long start = System.currentTimeMillis();
+        Statement s = c.createStatement();
+        s.execute("ALTER TABLE " + table + " ADD COLUMN " + TEMP_COLUMN + " bytea");
+        Statement select = c.createStatement();
+        select.setFetchSize(batchSize);
+        ResultSet r = select.executeQuery("SELECT id, OBJECT FROM " + table);
+        PreparedStatement update = c.prepareStatement("UPDATE " + table + " SET " + TEMP_COLUMN
+                + " = ? WHERE id = ?");
+        int rows = 0;
+        while (r.next()) {
+            String notXml = r.getString(2);
+            if (notXml != null) {
+                InterMineObject o = NotXmlParser.parse(notXml, os);
+                update.setBytes(1, format.render(o));
+                update.setInt(2, r.getInt(1));
+                update.addBatch();
+                rows++;
+                if (rows % batchSize == 0) {
+                    update.executeBatch();
+                }
+            }
+        }
+        update.executeBatch();
+        update.close();
+        r.close();
+        select.close();
+        s.execute("ALTER TABLE " + table + " DROP COLUMN OBJECT");
+        s.execute("ALTER TABLE " + table + " RENAME COLUMN " + TEMP_COLUMN + " TO OBJECT");
+        s.close();
+        LOG.info("Converted " + rows + " rows of table " + table + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,514 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * This is a Map implementation designed specifically for people intending to create a cache.
+ * Unlike the CacheMap, the values are held strongly, and the size of the map is limited by a
+ * maximum number of entries and optionally a maximum total weight, so the memory used by the
+ * cache is predictable and entries are not all lost at once when the garbage collector runs.
+ * <p>
+ * The map is split into independently locked segments by key hash, so it is safe to use from
+ * multiple threads without external synchronisation. Each segment follows the W-TinyLFU scheme:
+ * new entries go into a small LRU window, and entries leaving the window are only admitted to the
+ * main LRU area if they have been used more often than the entry they would evict. Frequencies
+ * are estimated with a small count-min sketch that is periodically halved, so entries that were
+ * popular a long time ago lose their advantage.
+ * <p>
+ * The entrySet() and values() methods of this class do not work, and keySet() returns a copy.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public class BoundedCacheMap<K, V> implements Map<K, V>
+{
+    private static final Logger LOG = Logger.getLogger(BoundedCacheMap.class);
+    private static final Object NULL_VALUE = new Object();
+    private static final int SEGMENTS = 16;
+
+    private final String name;
+    private final List<Segment> segments;
+    private final Weigher<? super K, ? super V> weigher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * Constructs a new, empty BoundedCacheMap holding at most the given number of entries.
+     *
+     * @param name the name of the map - printed out in log messages
+     * @param maxEntries the maximum number of entries
+     */
+    public BoundedCacheMap(String name, int maxEntries) {
+        this(name, maxEntries, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Constructs a new, empty BoundedCacheMap holding at most the given number of entries, and at
+     * most the given total weight of entries.
+     *
+     * @param name the name of the map - printed out in log messages
+     * @param maxEntries the maximum number of entries
+     * @param maxWeight the maximum total weight of all entries
+     * @param weigher a Weigher to calculate the weight of each entry, or null to give every entry
+     * a weight of one
+     */
+    public BoundedCacheMap(String name, int maxEntries, long maxWeight,
+            Weigher<? super K, ? super V> weigher) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be greater than zero for cache "
+                    + name);
+        }
+        this.name = name;
+        this.weigher = weigher;
+        int segmentCount = Math.min(SEGMENTS, Integer.highestOneBit(maxEntries));
+        segments = new ArrayList<Segment>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            // Share out the limits, giving any remainder to the first segments
+            int segmentEntries = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1
+                    : 0);
+            long segmentWeight = (maxWeight == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : Math.max(1L, maxWeight / segmentCount));
+            segments.add(new Segment(segmentEntries, segmentWeight));
+        }
+        LOG.info("Created cache " + name + " with maxEntries = " + maxEntries + ", maxWeight = "
+                + maxWeight + " in " + segmentCount + " segments");
+    }
+
+    private Segment segmentFor(Object key) {
+        return segments.get(spread(key) & (segments.size() - 1));
+    }
+
+    private static int spread(Object key) {
+        int h = (key == null ? 0 : key.hashCode());
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    private int weigh(K key, Object value) {
+        if (weigher == null) {
+            return 1;
+        }
+        @SuppressWarnings("unchecked") V v = (value == NULL_VALUE ? null : (V) value);
+        return Math.max(1, weigher.weigh(key, v));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object value = segmentFor(key).get(key);
+        if (value == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return (value == NULL_VALUE ? null : (V) value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsKey(Object key) {
+        return segmentFor(key).containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Object old = segmentFor(key).put(key, value == null ? NULL_VALUE : value);
+        return (old == NULL_VALUE ? null : (V) old);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void putAll(Map<? extends K, ? extends V> t) {
+        for (Map.Entry<? extends K, ? extends V> entry : t.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        Object old = segmentFor(key).remove(key);
+        return (old == NULL_VALUE ? null : (V) old);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        int retval = 0;
+        for (Segment segment : segments) {
+            retval += segment.size();
+        }
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns a copy of the set of keys currently in the map.
+     *
+     * @return a Set of keys
+     */
+    public Set<K> keySet() {
+        Set<K> retval = new HashSet<K>();
+        for (Segment segment : segments) {
+            segment.addKeysTo(retval);
+        }
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsValue(@SuppressWarnings("unused") Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<Map.Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<V> values() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the number of get() calls that found an entry.
+     *
+     * @return a long
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of get() calls that did not find an entry.
+     *
+     * @return a long
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries that have been evicted to make space for others.
+     *
+     * @return a long
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of new entries that were not admitted to the cache because they were
+     * less popular than the entries already in it.
+     *
+     * @return a long
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * Returns the total weight of all entries in the map.
+     *
+     * @return a long
+     */
+    public long getWeight() {
+        long retval = 0;
+        for (Segment segment : segments) {
+            retval += segment.getWeight();
+        }
+        return retval;
+    }
+
+    /**
+     * Returns a summary of the usage statistics of this map, suitable for a log message.
+     *
+     * @return a String
+     */
+    public String getStatistics() {
+        long h = hits.get();
+        long m = misses.get();
+        return name + ": size " + size() + ", weight " + getWeight() + ", hits " + h
+            + ", misses " + m + ", hit rate " + (h + m == 0 ? 0 : (100 * h) / (h + m))
+            + "%, evictions " + evictions.get() + ", rejections " + rejections.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getStatistics();
+    }
+
+    /**
+     * Interface for objects that calculate the weight of an entry in a BoundedCacheMap.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public static interface Weigher<K, V>
+    {
+        /**
+         * Returns the weight of an entry. This is called once when the entry is added, so the
+         * weight of an entry must not change while it is in the map.
+         *
+         * @param key the key
+         * @param value the value, which may be null
+         * @return the weight, which should be greater than zero
+         */
+        int weigh(K key, V value);
+    }
+
+    /**
+     * A value in a segment, with its weight.
+     */
+    private static final class Node
+    {
+        Object value;
+        int weight;
+
+        Node(Object value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * An independently locked part of the map.
+     */
+    private final class Segment
+    {
+        private final LinkedHashMap<K, Node> window = new LinkedHashMap<K, Node>(16, 0.75F, true);
+        private final LinkedHashMap<K, Node> main = new LinkedHashMap<K, Node>(16, 0.75F, true);
+        private final int maxWindow;
+        private final int maxMain;
+        private final long maxWeight;
+        private final FrequencySketch sketch;
+        private long weight = 0;
+
+        Segment(int maxEntries, long maxWeight) {
+            this.maxWindow = Math.max(1, maxEntries / 100);
+            this.maxMain = Math.max(0, maxEntries - maxWindow);
+            this.maxWeight = maxWeight;
+            this.sketch = new FrequencySketch(maxEntries);
+        }
+
+        synchronized Object get(Object key) {
+            sketch.increment(key);
+            Node node = window.get(key);
+            if (node == null) {
+                node = main.get(key);
+            }
+            return (node == null ? null : node.value);
+        }
+
+        synchronized boolean containsKey(Object key) {
+            return window.containsKey(key) || main.containsKey(key);
+        }
+
+        synchronized Object put(K key, Object value) {
+            Node node = new Node(value, weigh(key, value));
+            Node old = main.get(key);
+            if (old != null) {
+                main.put(key, node);
+            } else {
+                sketch.increment(key);
+                old = window.put(key, node);
+            }
+            weight += node.weight - (old == null ? 0 : old.weight);
+            if (old == null) {
+                evictFromWindow();
+            }
+            evictByWeight();
+            return (old == null ? null : old.value);
+        }
+
+        synchronized Object remove(Object key) {
+            Node old = window.remove(key);
+            if (old == null) {
+                old = main.remove(key);
+            }
+            if (old != null) {
+                weight -= old.weight;
+                return old.value;
+            }
+            return null;
+        }
+
+        synchronized int size() {
+            return window.size() + main.size();
+        }
+
+        synchronized long getWeight() {
+            return weight;
+        }
+
+        synchronized void clear() {
+            window.clear();
+            main.clear();
+            weight = 0;
+        }
+
+        synchronized void addKeysTo(Set<K> keys) {
+            keys.addAll(window.keySet());
+            keys.addAll(main.keySet());
+        }
+
+        /**
+         * Moves entries that have fallen off the end of the window into the main area, if they
+         * are popular enough to deserve it.
+         */
+        private void evictFromWindow() {
+            while (window.size() > maxWindow) {
+                Iterator<Map.Entry<K, Node>> candidateIter = window.entrySet().iterator();
+                Map.Entry<K, Node> candidate = candidateIter.next();
+                candidateIter.remove();
+                if (main.size() < maxMain) {
+                    main.put(candidate.getKey(), candidate.getValue());
+                } else if (maxMain == 0) {
+                    weight -= candidate.getValue().weight;
+                    evictions.incrementAndGet();
+                } else {
+                    Iterator<Map.Entry<K, Node>> victimIter = main.entrySet().iterator();
+                    Map.Entry<K, Node> victim = victimIter.next();
+                    if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim
+                                .getKey())) {
+                        victimIter.remove();
+                        weight -= victim.getValue().weight;
+                        main.put(candidate.getKey(), candidate.getValue());
+                        evictions.incrementAndGet();
+                    } else {
+                        weight -= candidate.getValue().weight;
+                        rejections.incrementAndGet();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes least recently used entries until the segment is within its weight limit.
+         */
+        private void evictByWeight() {
+            while ((weight > maxWeight) && ((!main.isEmpty()) || (window.size() > 1))) {
+                Iterator<Map.Entry<K, Node>> iter = (main.isEmpty() ? window : main).entrySet()
+                    .iterator();
+                weight -= iter.next().getValue().weight;
+                iter.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters, estimating how often each key has been used. All
+     * counters are halved once the number of increments reaches ten times the number of counters
+     * per row, so old popularity decays.
+     */
+    private static final class FrequencySketch
+    {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = new int[] {0x97cb3127, 0xc3a5c85c, 0x9ae16a3b,
+            0x2d358dcc};
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(int maxEntries) {
+            int width = Integer.highestOneBit(Math.max(16, Math.min(maxEntries, 1 << 24)) - 1)
+                << 1;
+            table = new byte[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        private int index(Object key, int row) {
+            int h = (key == null ? 0 : key.hashCode()) * SEEDS[row];
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        int frequency(Object key) {
+            int retval = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                retval = Math.min(retval, table[row][index(key, row)]);
+            }
+            return retval;
+        }
+
+        void increment(Object key) {
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int i = index(key, row);
+                if (table[row][i] < 15) {
+                    table[row][i]++;
+                    added = true;
+                }
+            }
+            if (added && (++additions >= sampleSize)) {
+                for (byte[] row : table) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = (byte) (row[i] >> 1);
+                    }
+                }
+                additions /= 2;
+            }
+        }
+    }
+}
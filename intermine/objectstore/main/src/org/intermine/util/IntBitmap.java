@@ -0,0 +1,721 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed set of ints, for holding the contents of an ObjectStoreBag. The ints are split
+ * into chunks by their top 16 bits. A chunk with few members is held as a sorted array of the
+ * bottom 16 bits of each member, and a chunk with more than 4096 members is held as a bitmap of
+ * 65536 bits, so that no chunk takes more than 8k however the ints are spread. A list of 20000
+ * object ids takes about 40k, rather than the megabyte or so of a HashSet of Integers.
+ *
+ * The set operations and(), or(), andNot() and xor() work a chunk at a time, in the same way as
+ * the methods on java.util.BitSet, and modify this set in place. Iteration is in ascending order.
+ * This class is not thread-safe.
+ */
+public class IntBitmap extends AbstractSet<Integer> implements Cloneable
+{
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int OR = 0;
+    private static final int AND = 1;
+    private static final int ANDNOT = 2;
+    private static final int XOR = 3;
+
+    // Chunk keys are the top 16 bits with the sign bit flipped, so that unsigned char order is
+    // the same as signed int order. Each container is a char[] or a long[WORDS].
+    private char[] keys;
+    private Object[] containers;
+    private int[] cards;
+    private int count = 0;
+    private int size = 0;
+
+    /**
+     * Constructor for this class. Creates an empty set.
+     */
+    public IntBitmap() {
+        keys = new char[4];
+        containers = new Object[4];
+        cards = new int[4];
+    }
+
+    /**
+     * Constructor for this class. Creates a set containing the given ints.
+     *
+     * @param values the ints, in any order and possibly with duplicates
+     */
+    public IntBitmap(int[] values) {
+        this();
+        for (int value : values) {
+            add(value);
+        }
+    }
+
+    private static char high(int i) {
+        return (char) ((i >>> 16) ^ 0x8000);
+    }
+
+    private static int value(char key, int low) {
+        return ((key ^ 0x8000) << 16) | low;
+    }
+
+    private int findKey(char key) {
+        if (count > 0 && keys[count - 1] == key) {
+            // ints are often added in ascending order
+            return count - 1;
+        }
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    private void insertContainer(int k, char key, Object container, int card) {
+        if (count == keys.length) {
+            int newLength = count * 2;
+            keys = Arrays.copyOf(keys, newLength);
+            containers = Arrays.copyOf(containers, newLength);
+            cards = Arrays.copyOf(cards, newLength);
+        }
+        System.arraycopy(keys, k, keys, k + 1, count - k);
+        System.arraycopy(containers, k, containers, k + 1, count - k);
+        System.arraycopy(cards, k, cards, k + 1, count - k);
+        keys[k] = key;
+        containers[k] = container;
+        cards[k] = card;
+        count++;
+    }
+
+    private void removeContainer(int k) {
+        System.arraycopy(keys, k + 1, keys, k, count - k - 1);
+        System.arraycopy(containers, k + 1, containers, k, count - k - 1);
+        System.arraycopy(cards, k + 1, cards, k, count - k - 1);
+        count--;
+        containers[count] = null;
+    }
+
+    /**
+     * Adds an int to the set.
+     *
+     * @param i the int
+     * @return true if the set did not already contain it
+     */
+    public boolean add(int i) {
+        char key = high(i);
+        char low = (char) i;
+        int k = findKey(key);
+        if (k < 0) {
+            k = -k - 1;
+            insertContainer(k, key, new char[4], 0);
+        }
+        Object c = containers[k];
+        int card = cards[k];
+        if (c instanceof long[]) {
+            long[] words = (long[]) c;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            words[low >>> 6] |= bit;
+        } else {
+            char[] array = (char[]) c;
+            int pos = Arrays.binarySearch(array, 0, card, low);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+            if (card == ARRAY_MAX) {
+                long[] words = toWords(array, card);
+                words[low >>> 6] |= 1L << low;
+                containers[k] = words;
+            } else {
+                if (card == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_MAX, card * 2));
+                    containers[k] = array;
+                }
+                System.arraycopy(array, pos, array, pos + 1, card - pos);
+                array[pos] = low;
+            }
+        }
+        cards[k]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an int from the set.
+     *
+     * @param i the int
+     * @return true if the set contained it
+     */
+    public boolean remove(int i) {
+        int k = findKey(high(i));
+        if (k < 0) {
+            return false;
+        }
+        char low = (char) i;
+        Object c = containers[k];
+        int card = cards[k];
+        if (c instanceof long[]) {
+            long[] words = (long[]) c;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            words[low >>> 6] &= ~bit;
+            if (card - 1 <= ARRAY_MAX) {
+                containers[k] = toChars(words, card - 1);
+            }
+        } else {
+            char[] array = (char[]) c;
+            int pos = Arrays.binarySearch(array, 0, card, low);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(array, pos + 1, array, pos, card - pos - 1);
+        }
+        cards[k]--;
+        size--;
+        if (cards[k] == 0) {
+            removeContainer(k);
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the set contains an int.
+     *
+     * @param i the int
+     * @return true if the set contains it
+     */
+    public boolean contains(int i) {
+        int k = findKey(high(i));
+        if (k < 0) {
+            return false;
+        }
+        char low = (char) i;
+        Object c = containers[k];
+        if (c instanceof long[]) {
+            return (((long[]) c)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) c, 0, cards[k], low) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(Integer i) {
+        return add(i.intValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object o) {
+        return (o instanceof Integer) && remove(((Integer) o).intValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object o) {
+        return (o instanceof Integer) && contains(((Integer) o).intValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addAll(Collection<? extends Integer> c) {
+        if (c instanceof IntBitmap) {
+            int oldSize = size;
+            or((IntBitmap) c);
+            return size != oldSize;
+        }
+        return super.addAll(c);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        int oldSize = size;
+        if (c instanceof IntBitmap) {
+            andNot((IntBitmap) c);
+        } else {
+            for (Object o : c) {
+                remove(o);
+            }
+        }
+        return size != oldSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        int oldSize = size;
+        if (c instanceof IntBitmap) {
+            and((IntBitmap) c);
+        } else {
+            IntBitmap other = new IntBitmap();
+            for (Object o : c) {
+                if (o instanceof Integer) {
+                    other.add(((Integer) o).intValue());
+                }
+            }
+            and(other);
+        }
+        return size != oldSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        keys = new char[4];
+        containers = new Object[4];
+        cards = new int[4];
+        count = 0;
+        size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds all the members of another set to this set.
+     *
+     * @param other an IntBitmap
+     */
+    public void or(IntBitmap other) {
+        combine(other, OR);
+    }
+
+    /**
+     * Removes from this set all the ints that are not members of another set.
+     *
+     * @param other an IntBitmap
+     */
+    public void and(IntBitmap other) {
+        combine(other, AND);
+    }
+
+    /**
+     * Removes from this set all the members of another set.
+     *
+     * @param other an IntBitmap
+     */
+    public void andNot(IntBitmap other) {
+        combine(other, ANDNOT);
+    }
+
+    /**
+     * Replaces this set with the ints that are members of exactly one of this set and another.
+     *
+     * @param other an IntBitmap
+     */
+    public void xor(IntBitmap other) {
+        combine(other, XOR);
+    }
+
+    private void combine(IntBitmap other, int op) {
+        int capacity = Math.max(4, (op == AND || op == ANDNOT) ? count : count + other.count);
+        char[] newKeys = new char[capacity];
+        Object[] newContainers = new Object[capacity];
+        int[] newCards = new int[capacity];
+        int newCount = 0;
+        int newSize = 0;
+        int i = 0;
+        int j = 0;
+        while (i < count || j < other.count) {
+            char key;
+            Object result = null;
+            int card = 0;
+            if (j >= other.count || (i < count && keys[i] < other.keys[j])) {
+                key = keys[i];
+                if (op != AND) {
+                    result = containers[i];
+                    card = cards[i];
+                }
+                i++;
+            } else if (i >= count || other.keys[j] < keys[i]) {
+                key = other.keys[j];
+                if (op == OR || op == XOR) {
+                    result = copy(other.containers[j], other.cards[j]);
+                    card = other.cards[j];
+                }
+                j++;
+            } else {
+                key = keys[i];
+                result = combine(containers[i], cards[i], other.containers[j], other.cards[j],
+                        op);
+                if (result != null) {
+                    card = cardinality(result);
+                }
+                i++;
+                j++;
+            }
+            if (result != null) {
+                newKeys[newCount] = key;
+                newContainers[newCount] = result;
+                newCards[newCount] = card;
+                newCount++;
+                newSize += card;
+            }
+        }
+        keys = newKeys;
+        containers = newContainers;
+        cards = newCards;
+        count = newCount;
+        size = newSize;
+    }
+
+    private static Object copy(Object c, int card) {
+        if (c instanceof long[]) {
+            return ((long[]) c).clone();
+        }
+        return Arrays.copyOf((char[]) c, card);
+    }
+
+    private static int cardinality(Object c) {
+        if (c instanceof long[]) {
+            int card = 0;
+            for (long word : (long[]) c) {
+                card += Long.bitCount(word);
+            }
+            return card;
+        }
+        return ((char[]) c).length;
+    }
+
+    /**
+     * Combines two containers with the same key. Returns a char[] of exactly the right length or
+     * a long[], or null if the result is empty. Neither container is modified.
+     */
+    private static Object combine(Object a, int aCard, Object b, int bCard, int op) {
+        if (a instanceof char[] && b instanceof char[]) {
+            return merge((char[]) a, aCard, (char[]) b, bCard, op);
+        } else if (a instanceof char[] && (op == AND || op == ANDNOT)) {
+            return filter((char[]) a, aCard, (long[]) b, op == AND);
+        } else if (b instanceof char[] && op == AND) {
+            return filter((char[]) b, bCard, (long[]) a, true);
+        }
+        long[] words = (a instanceof long[]) ? ((long[]) a).clone() : toWords((char[]) a, aCard);
+        long[] otherWords = (b instanceof long[]) ? (long[]) b : toWords((char[]) b, bCard);
+        int card = 0;
+        for (int w = 0; w < WORDS; w++) {
+            switch (op) {
+                case OR:
+                    words[w] |= otherWords[w];
+                    break;
+                case AND:
+                    words[w] &= otherWords[w];
+                    break;
+                case ANDNOT:
+                    words[w] &= ~otherWords[w];
+                    break;
+                default:
+                    words[w] ^= otherWords[w];
+            }
+            card += Long.bitCount(words[w]);
+        }
+        if (card == 0) {
+            return null;
+        }
+        return card > ARRAY_MAX ? words : toChars(words, card);
+    }
+
+    private static Object merge(char[] a, int aCard, char[] b, int bCard, int op) {
+        char[] result = new char[(op == AND || op == ANDNOT) ? aCard : aCard + bCard];
+        int card = 0;
+        int i = 0;
+        int j = 0;
+        while (i < aCard && j < bCard) {
+            if (a[i] < b[j]) {
+                if (op != AND) {
+                    result[card++] = a[i];
+                }
+                i++;
+            } else if (a[i] > b[j]) {
+                if (op == OR || op == XOR) {
+                    result[card++] = b[j];
+                }
+                j++;
+            } else {
+                if (op == OR || op == AND) {
+                    result[card++] = a[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        if (op != AND) {
+            while (i < aCard) {
+                result[card++] = a[i++];
+            }
+        }
+        if (op == OR || op == XOR) {
+            while (j < bCard) {
+                result[card++] = b[j++];
+            }
+        }
+        if (card == 0) {
+            return null;
+        }
+        return card > ARRAY_MAX ? toWords(result, card) : Arrays.copyOf(result, card);
+    }
+
+    private static Object filter(char[] a, int aCard, long[] words, boolean keepPresent) {
+        char[] result = new char[aCard];
+        int card = 0;
+        for (int i = 0; i < aCard; i++) {
+            char low = a[i];
+            if (((words[low >>> 6] & (1L << low)) != 0) == keepPresent) {
+                result[card++] = low;
+            }
+        }
+        return card == 0 ? null : Arrays.copyOf(result, card);
+    }
+
+    private static long[] toWords(char[] array, int card) {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < card; i++) {
+            words[array[i] >>> 6] |= 1L << array[i];
+        }
+        return words;
+    }
+
+    private static char[] toChars(long[] words, int card) {
+        char[] array = new char[card];
+        int pos = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                array[pos++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Returns the members of the set as an array, in ascending order.
+     *
+     * @return an array of ints
+     */
+    public int[] toIntArray() {
+        int[] retval = new int[size];
+        int pos = 0;
+        for (int k = 0; k < count; k++) {
+            Object c = containers[k];
+            if (c instanceof long[]) {
+                long[] words = (long[]) c;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        retval[pos++] = value(keys[k], (w << 6)
+                                + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] array = (char[]) c;
+                for (int i = 0; i < cards[k]; i++) {
+                    retval[pos++] = value(keys[k], array[i]);
+                }
+            }
+        }
+        return retval;
+    }
+
+    /**
+     * Returns an Iterator over the members of the set, in ascending order. The Iterator does not
+     * support remove(), and the set must not be modified while it is in use.
+     *
+     * @return an Iterator
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int k = 0;
+            private int pos = 0;
+            private int w = -1;
+            private long word = 0;
+
+            public boolean hasNext() {
+                while (k < count) {
+                    Object c = containers[k];
+                    if (c instanceof long[]) {
+                        if (word != 0) {
+                            return true;
+                        }
+                        while (++w < WORDS) {
+                            word = ((long[]) c)[w];
+                            if (word != 0) {
+                                return true;
+                            }
+                        }
+                    } else if (pos < cards[k]) {
+                        return true;
+                    }
+                    k++;
+                    pos = 0;
+                    w = -1;
+                    word = 0;
+                }
+                return false;
+            }
+
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object c = containers[k];
+                if (c instanceof long[]) {
+                    int low = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    return new Integer(value(keys[k], low));
+                }
+                return new Integer(value(keys[k], ((char[]) c)[pos++]));
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of this set, which can be modified independently.
+     *
+     * @return an IntBitmap
+     */
+    @Override
+    public IntBitmap clone() {
+        IntBitmap retval = new IntBitmap();
+        int capacity = Math.max(4, count);
+        retval.keys = Arrays.copyOf(keys, capacity);
+        retval.cards = Arrays.copyOf(cards, capacity);
+        retval.containers = new Object[capacity];
+        for (int k = 0; k < count; k++) {
+            retval.containers[k] = copy(containers[k], cards[k]);
+        }
+        retval.count = count;
+        retval.size = size;
+        return retval;
+    }
+
+    /**
+     * Returns the set in a compact binary form, which can be read by fromByteArray().
+     *
+     * @return an array of bytes
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(16 + size * 2);
+        DataOutputStream out = new DataOutputStream(baos);
+        try {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(count);
+            for (int k = 0; k < count; k++) {
+                out.writeChar(keys[k]);
+                out.writeInt(cards[k]);
+                Object c = containers[k];
+                if (c instanceof long[]) {
+                    for (long word : (long[]) c) {
+                        out.writeLong(word);
+                    }
+                } else {
+                    char[] array = (char[]) c;
+                    for (int i = 0; i < cards[k]; i++) {
+                        out.writeChar(array[i]);
+                    }
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException
+            throw new IllegalStateException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Reads a set from the binary form written by toByteArray().
+     *
+     * @param bytes an array of bytes
+     * @return a new IntBitmap
+     * @throws IllegalArgumentException if the bytes are not a valid IntBitmap
+     */
+    public static IntBitmap fromByteArray(byte[] bytes) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown IntBitmap format " + version);
+            }
+            int count = in.readInt();
+            IntBitmap retval = new IntBitmap();
+            int capacity = Math.max(4, count);
+            retval.keys = new char[capacity];
+            retval.containers = new Object[capacity];
+            retval.cards = new int[capacity];
+            for (int k = 0; k < count; k++) {
+                char key = in.readChar();
+                int card = in.readInt();
+                if (card < 1 || card > WORDS * 64 || (k > 0 && key <= retval.keys[k - 1])) {
+                    throw new IllegalArgumentException("Corrupt IntBitmap container " + k);
+                }
+                if (card > ARRAY_MAX) {
+                    long[] words = new long[WORDS];
+                    for (int w = 0; w < WORDS; w++) {
+                        words[w] = in.readLong();
+                    }
+                    retval.containers[k] = words;
+                } else {
+                    char[] array = new char[card];
+                    for (int i = 0; i < card; i++) {
+                        array[i] = in.readChar();
+                    }
+                    retval.containers[k] = array;
+                }
+                retval.keys[k] = key;
+                retval.cards[k] = card;
+                retval.size += card;
+            }
+            retval.count = count;
+            return retval;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated IntBitmap", e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.intermine.objectstore.intermine;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.intermine.metadata.ClassDescriptor;
+import org.intermine.metadata.Model;
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.model.testmodel.Types;
+import org.intermine.objectstore.proxy.ProxyCollection;
+import org.intermine.objectstore.proxy.ProxyReference;
+import org.intermine.util.DynamicUtil;
+
+public class BinaryObjectFormatTest extends TestCase
+{
+    private ObjectStoreInterMineImpl os;
+    private BinaryObjectFormat format;
+
+    public void setUp() throws Exception {
+        Model model = Model.getInstanceByName("testmodel");
+        DatabaseSchema schema = new DatabaseSchema(model, Collections.<ClassDescriptor>emptyList(),
+                false, Collections.<String>emptySet(), 1, false, true);
+        os = new ObjectStoreInterMineImpl(null, schema);
+        format = schema.getBinaryObjectFormat();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Employee e = new Employee();
+        Department d = new Department();
+        e.setId(new Integer(-1234));
+        e.setName("Flibble $_^ Wotsit \u00e9\u4e2d");
+        e.setAge(42);
+        d.setId(new Integer(5678));
+        e.setDepartment(d);
+
+        byte[] data = format.render(e);
+        assertTrue(BinaryObjectFormat.isBinary(data));
+        assertTrue(data.length < NotXmlRenderer.render(e).length());
+
+        Employee reparsed = (Employee) format.parse(data, os);
+        assertEquals(e.getId(), reparsed.getId());
+        assertEquals(e.getName(), reparsed.getName());
+        assertEquals(42, reparsed.getAge());
+        assertFalse(reparsed.getFullTime());
+        ProxyReference ref = (ProxyReference) reparsed.getFieldProxy("department");
+        assertEquals(new Integer(5678), ref.getId());
+        assertNull(reparsed.getFieldProxy("address"));
+    }
+
+    public void testTypes() throws Exception {
+        Types t = new Types();
+        t.setId(new Integer(1));
+        t.setBooleanType(true);
+        t.setFloatType(1.5F);
+        t.setDoubleType(-2.25);
+        t.setShortType((short) -7);
+        t.setIntType(Integer.MIN_VALUE);
+        t.setLongType(Long.MAX_VALUE);
+        t.setBooleanObjType(Boolean.FALSE);
+        t.setFloatObjType(new Float(Float.NaN));
+        t.setDoubleObjType(new Double(1e300));
+        t.setShortObjType(new Short(Short.MAX_VALUE));
+        t.setIntObjType(new Integer(300));
+        t.setLongObjType(new Long(-1L));
+        t.setBigDecimalObjType(new BigDecimal("12345678901234567890.0123"));
+        t.setDateObjType(new Date(-1000L));
+        t.setStringObjType("");
+
+        Types reparsed = (Types) format.parse(format.render(t), os);
+        assertEquals(t.getBooleanType(), reparsed.getBooleanType());
+        assertEquals(t.getFloatType(), reparsed.getFloatType(), 0.0F);
+        assertEquals(t.getDoubleType(), reparsed.getDoubleType(), 0.0);
+        assertEquals(t.getShortType(), reparsed.getShortType());
+        assertEquals(t.getIntType(), reparsed.getIntType());
+        assertEquals(t.getLongType(), reparsed.getLongType());
+        assertEquals(t.getBooleanObjType(), reparsed.getBooleanObjType());
+        assertEquals(t.getFloatObjType(), reparsed.getFloatObjType());
+        assertEquals(t.getDoubleObjType(), reparsed.getDoubleObjType());
+        assertEquals(t.getShortObjType(), reparsed.getShortObjType());
+        assertEquals(t.getIntObjType(), reparsed.getIntObjType());
+        assertEquals(t.getLongObjType(), reparsed.getLongObjType());
+        assertEquals(t.getBigDecimalObjType(), reparsed.getBigDecimalObjType());
+        assertEquals(t.getDateObjType(), reparsed.getDateObjType());
+        assertEquals(t.getStringObjType(), reparsed.getStringObjType());
+        assertNull(reparsed.getClobObjType());
+    }
+
+    public void testDynamic() throws Exception {
+        Company c = (Company) DynamicUtil.createObject(Collections.singleton(Company.class));
+        c.setId(new Integer(74350));
+        c.setName("CompanyC");
+        c.setVatNumber(100);
+        c.setFieldValue("address", new ProxyReference(os, new Integer(74328),
+                    org.intermine.model.testmodel.Address.class));
+
+        Company reparsed = (Company) format.parse(format.render(c), os);
+        assertEquals("CompanyC", reparsed.getName());
+        assertEquals(100, reparsed.getVatNumber());
+        assertEquals(new Integer(74350), reparsed.getId());
+        assertEquals(new Integer(74328),
+                ((ProxyReference) reparsed.getFieldProxy("address")).getId());
+        Collection<?> departments = (Collection<?>) reparsed.getFieldProxy("departments");
+        assertTrue(departments instanceof ProxyCollection);
+    }
+}
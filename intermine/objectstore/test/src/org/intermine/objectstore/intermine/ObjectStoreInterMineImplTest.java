@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -47,6 +48,7 @@ import org.intermine.objectstore.query.ConstraintOp;
 import org.intermine.objectstore.query.ConstraintSet;
 import org.intermine.objectstore.query.ContainsConstraint;
 import org.intermine.objectstore.query.ObjectStoreBag;
+import org.intermine.objectstore.query.ObjectStoreBagCombination;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryCloner;
@@ -805,6 +807,49 @@ public class ObjectStoreInterMineImplTest extends ObjectStoreAbstractImplTestCas
         assertEquals(Arrays.asList(new Object[] {((Employee) data.get("EmployeeA1")).getId(), ((Employee) data.get("EmployeeA2")).getId()}), r);
     }
 
+    public void testBagBitmap() throws Exception {
+        ObjectStoreInterMineImpl osii = (ObjectStoreInterMineImpl) os;
+        ObjectStoreWriterInterMineImpl writer = (ObjectStoreWriterInterMineImpl) storeDataWriter;
+        ObjectStoreBag osb1 = storeDataWriter.createObjectStoreBag();
+        ObjectStoreBag osb2 = storeDataWriter.createObjectStoreBag();
+        storeDataWriter.addAllToBag(osb1, Arrays.asList(new Integer(3), new Integer(20),
+                    new Integer(30)));
+        storeDataWriter.addAllToBag(osb2, Arrays.asList(new Integer(20), new Integer(40)));
+        assertEquals(new HashSet<Integer>(Arrays.asList(new Integer(3), new Integer(20),
+                        new Integer(30))), osii.getBagBitmap(osb1));
+
+        // The cached bitmap must follow changes made through the writer
+        storeDataWriter.removeFromBag(osb1, new Integer(3));
+        storeDataWriter.addToBag(osb1, new Integer(50));
+        assertEquals("[20, 30, 50]", osii.getBagBitmap(osb1).toString());
+
+        // Inside a transaction the writer sees its own changes, and other readers do not
+        storeDataWriter.beginTransaction();
+        storeDataWriter.addToBag(osb1, new Integer(60));
+        assertEquals("[20, 30, 50, 60]", writer.getBagBitmap(osb1).toString());
+        assertEquals("[20, 30, 50]", osii.getBagBitmap(osb1).toString());
+        storeDataWriter.abortTransaction();
+        assertEquals("[20, 30, 50]", osii.getBagBitmap(osb1).toString());
+
+        ObjectStoreBagCombination osbc = new ObjectStoreBagCombination(
+                ObjectStoreBagCombination.ALLBUTINTERSECT);
+        osbc.addBag(osb1);
+        osbc.addBag(osb2);
+        assertEquals("[30, 40, 50]", osii.getBagBitmap(osbc).toString());
+
+        // Combining bags in memory gives the same result as in SQL
+        ObjectStoreBag osb3 = storeDataWriter.createObjectStoreBag();
+        storeDataWriter.addToBag(osb3, new Integer(40));
+        Query q = new Query();
+        q.addToSelect(osbc);
+        storeDataWriter.addToBagFromQuery(osb3, q);
+        q = new Query();
+        q.addToSelect(osb3);
+        assertEquals(Arrays.asList(new Integer(30), new Integer(40), new Integer(50)),
+                os.executeSingleton(q));
+        assertEquals(3, osii.getBagBitmap(osb3).size());
+    }
+
     public void testClosedConnectionBug() throws Exception {
         Query pq = new Query();
         QueryClass qc = new QueryClass(Employee.class);
@@ -955,4 +1000,139 @@ public class ObjectStoreInterMineImplTest extends ObjectStoreAbstractImplTestCas
         Results r3 = os.execute(q, 102, false, false, false);
         assertTrue(r3.isSingleBatch());
     }
+
+    private Query streamingQuery() {
+        Query q = new Query();
+        QueryClass qc = new QueryClass(Employee.class);
+        q.addFrom(qc);
+        q.addToSelect(qc);
+        q.addToOrderBy(new QueryField(qc, "name"));
+        return q;
+    }
+
+    private static List<Object> readAll(Iterator<?> iter) {
+        List<Object> retval = new ArrayList<Object>();
+        while (iter.hasNext()) {
+            retval.add(iter.next());
+        }
+        return retval;
+    }
+
+    public void testStreaming() throws Exception {
+        ObjectStoreInterMineImpl osii = (ObjectStoreInterMineImpl) os;
+        List<Object> expected = new ArrayList<Object>(os.execute(streamingQuery()));
+        assertTrue(expected.size() > 6);
+        int openBefore = StreamingResults.getOpenCount();
+
+        StreamingResults all = osii.executeStreaming(streamingQuery(), 2, true);
+        assertTrue(all.isStreaming());
+        assertEquals(openBefore + 1, StreamingResults.getOpenCount());
+        assertEquals(expected, readAll(all));
+        // the cursor is closed once it has been read to the end
+        assertEquals(openBefore, StreamingResults.getOpenCount());
+
+        // rows before the start are skipped by the database
+        StreamingResults range = osii.executeStreaming(streamingQuery(), 3, 4, 2, true);
+        assertTrue(range.isStreaming());
+        assertEquals(expected.subList(3, 7), readAll(range));
+
+        StreamingResults rest = osii.executeStreaming(streamingQuery(), 3, Integer.MAX_VALUE, 2,
+                true);
+        assertEquals(expected.subList(3, expected.size()), readAll(rest));
+        assertEquals(openBefore, StreamingResults.getOpenCount());
+    }
+
+    public void testStreamingSmallResults() throws Exception {
+        ObjectStoreInterMineImpl osii = (ObjectStoreInterMineImpl) os;
+        List<Object> expected = new ArrayList<Object>(os.execute(streamingQuery()));
+
+        // all the rows fit in the first batch
+        StreamingResults all = osii.executeStreaming(streamingQuery(), 1000, true);
+        assertFalse(all.isStreaming());
+        assertEquals(expected, readAll(all));
+
+        // the range is no larger than a batch
+        StreamingResults range = osii.executeStreaming(streamingQuery(), 1, 2, 2, true);
+        assertFalse(range.isStreaming());
+        assertEquals(expected.subList(1, 3), readAll(range).subList(0, 2));
+
+        // only the end of the results is wanted, and the batch holding it is not full
+        int start = expected.size() - 1;
+        StreamingResults end = osii.executeStreaming(streamingQuery(), start, Integer.MAX_VALUE,
+                start, true);
+        assertFalse(end.isStreaming());
+        assertEquals(expected.subList(start, expected.size()), readAll(end));
+
+        StreamingResults none = osii.executeStreaming(streamingQuery(), expected.size() + 10,
+                Integer.MAX_VALUE, 2, true);
+        assertFalse(none.isStreaming());
+        assertFalse(none.hasNext());
+    }
+
+    public void testStreamingFallback() throws Exception {
+        ObjectStoreInterMineImpl osii = (ObjectStoreInterMineImpl) os;
+        List<Object> expected = new ArrayList<Object>(os.execute(streamingQuery()));
+        int max = osii.getMaxStreamingConnections();
+        osii.setMaxStreamingConnections(1);
+        try {
+            StreamingResults first = osii.executeStreaming(streamingQuery(), 2, true);
+            assertTrue(first.isStreaming());
+            first.next();
+            // no permit is left, so this reads from batches
+            StreamingResults second = osii.executeStreaming(streamingQuery(), 2, true);
+            assertFalse(second.isStreaming());
+            assertEquals(expected, readAll(second));
+            first.close();
+            // closing the first cursor released its permit
+            StreamingResults third = osii.executeStreaming(streamingQuery(), 2, true);
+            assertTrue(third.isStreaming());
+            assertEquals(expected, readAll(third));
+        } finally {
+            osii.setMaxStreamingConnections(max);
+        }
+    }
+
+    public void testStreamingIdleTimeout() throws Exception {
+        ObjectStoreInterMineImpl osii = (ObjectStoreInterMineImpl) os;
+        int openBefore = StreamingResults.getOpenCount();
+        StreamingResults stream = osii.executeStreaming(streamingQuery(), 2, true);
+        stream.next();
+        // not idle yet
+        stream.closeIfIdle(System.currentTimeMillis());
+        assertEquals(openBefore + 1, StreamingResults.getOpenCount());
+        stream.closeIfIdle(System.currentTimeMillis() + osii.getStreamingIdleTimeout() + 1000);
+        assertEquals(openBefore, StreamingResults.getOpenCount());
+        // the row already fetched can still be read, but not the rest
+        stream.next();
+        try {
+            stream.hasNext();
+            fail("Expected an exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause().getMessage().indexOf("idle") != -1);
+        }
+    }
+
+    public void testStreamingCancel() throws Exception {
+        ObjectStoreInterMineImpl osii = (ObjectStoreInterMineImpl) os;
+        int openBefore = StreamingResults.getOpenCount();
+        Object id = "testStreamingCancel";
+        osii.registerRequestId(id);
+        try {
+            StreamingResults stream = osii.executeStreaming(streamingQuery(), 2, true);
+            assertTrue(stream.isStreaming());
+            stream.next();
+            stream.next();
+            osii.cancelRequest(id);
+            try {
+                stream.hasNext();
+                fail("Expected an exception");
+            } catch (RuntimeException e) {
+                assertTrue(e.getCause().getMessage().indexOf("cancelled") != -1);
+            }
+            // a failed fetch closes the cursor
+            assertEquals(openBefore, StreamingResults.getOpenCount());
+        } finally {
+            osii.deregisterRequestId(id);
+        }
+    }
 }
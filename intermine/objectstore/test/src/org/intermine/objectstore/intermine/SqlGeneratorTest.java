@@ -51,6 +51,7 @@ import org.intermine.objectstore.query.QueryValue;
 import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.sql.Database;
 import org.intermine.sql.DatabaseFactory;
+import org.intermine.sql.ParameterisedSql;
 import org.intermine.sql.precompute.BestQueryStorer;
 import org.intermine.sql.precompute.PrecomputedTable;
 import org.intermine.sql.precompute.QueryOptimiser;
@@ -457,6 +458,9 @@ public class SqlGeneratorTest extends SetupDataTestCase
 
             String generated = SqlGenerator.generate(q, 0, Integer.MAX_VALUE, getSchema(), db,
                                                      bagTableNames);
+            // The parameterised SQL must be the same query once the values are filled in
+            assertEquals(generated, SqlGenerator.generateParameterised(q, 0, Integer.MAX_VALUE,
+                        getSchema(), db, bagTableNames).getLiteralSql());
             if (expected instanceof String) {
                 assertEquals("", results.get(type), generated);
             } else if (expected instanceof Collection) {
@@ -786,6 +790,14 @@ public class SqlGeneratorTest extends SetupDataTestCase
             + " (a1_.name > 'flibble' OR a1_.name IS NULL) ORDER BY a1_.name OFFSET 5";
         assertEquals(expected,
                      SqlGenerator.generate(q, 10, Integer.MAX_VALUE, schema, db, Collections.EMPTY_MAP));
+        // The parameterised SQL uses the registered offset too, with the values written inline
+        ParameterisedSql parameterised = SqlGenerator.generateParameterised(q, 10,
+                Integer.MAX_VALUE, schema, db, Collections.EMPTY_MAP);
+        assertEquals(expected, parameterised.getSql());
+        assertTrue(parameterised.getParameters().isEmpty());
+        assertEquals(SqlGenerator.generate(q, 0, Integer.MAX_VALUE, schema, db,
+                    Collections.EMPTY_MAP), SqlGenerator.generateParameterised(q, 0,
+                    Integer.MAX_VALUE, schema, db, Collections.EMPTY_MAP).getLiteralSql());
 
         q = new Query();
         qc = new QueryClass(Employee.class);
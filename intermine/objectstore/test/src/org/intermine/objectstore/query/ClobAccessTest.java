@@ -0,0 +1,124 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.intermine.objectstore.query.ClobPageCacheTest.ClobObjectStore;
+
+public class ClobAccessTest extends TestCase
+{
+    private static final int SIZE = Clob.CLOB_PAGE_SIZE;
+
+    private ClobObjectStore os;
+    private Clob clob;
+    private String text;
+
+    public ClobAccessTest(String arg1) {
+        super(arg1);
+    }
+
+    public void setUp() {
+        os = new ClobObjectStore();
+        clob = os.addClob(1, 3, 100);
+        StringBuilder all = new StringBuilder();
+        for (String page : os.clobs.get(new Integer(1))) {
+            all.append(page);
+        }
+        text = all.toString();
+    }
+
+    public void testToString() {
+        ClobAccess ca = new ClobAccess(os, clob);
+        assertEquals(text, ca.toString());
+        assertEquals(2 * SIZE + 100, ca.length());
+        // The length reads the last page, and the rest are read together
+        assertEquals(Arrays.asList("2,1", "0,2"), os.fetches);
+        assertNotNull(ca.getPageCacheWithoutInit());
+        assertNull(ca.getResultsWithoutInit());
+
+        ClobAccess sub = ca.subSequence(SIZE - 10, 2 * SIZE + 10);
+        assertEquals(text.substring(SIZE - 10, 2 * SIZE + 10), sub.toString());
+        assertEquals(text.substring(SIZE + 5, SIZE + 15),
+                sub.subSequence(15, 25).toString());
+        assertEquals("", ca.subSequence(5, 5).toString());
+        assertSame(ca, ca.subSequence(0, ca.length()));
+        assertEquals(Arrays.asList("2,1", "0,2"), os.fetches);
+    }
+
+    public void testCharAt() {
+        ClobAccess ca = new ClobAccess(os, clob);
+        ClobAccess sub = ca.subSequence(SIZE - 10, 2 * SIZE + 10);
+        for (int i = 0; i < sub.length(); i++) {
+            assertEquals(text.charAt(SIZE - 10 + i), sub.charAt(i));
+        }
+        ClobAccess subSub = sub.subSequence(5, 20);
+        for (int i = 0; i < subSub.length(); i++) {
+            assertEquals(text.charAt(SIZE - 5 + i), subSub.charAt(i));
+        }
+        try {
+            sub.charAt(sub.length());
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            sub.charAt(-1);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testDrainToPrintStream() {
+        ClobAccess ca = new ClobAccess(os, clob);
+        assertEquals(text, drain(ca));
+        assertEquals(text.substring(10, SIZE + 10), drain(ca.subSequence(10, SIZE + 10)));
+        assertEquals("", drain(ca.subSequence(10, 10)));
+    }
+
+    public void testDrainInChunks() {
+        int pageCount = 2 * ClobAccess.FETCH_PAGES + 10;
+        Clob big = os.addClob(2, pageCount, 50);
+        ClobAccess ca = new ClobAccess(os, big);
+        String drained = drain(ca);
+        assertEquals((pageCount - 1) * SIZE + 50, drained.length());
+        assertTrue(drained.startsWith("2:0 "));
+        assertEquals(SIZE * ClobAccess.FETCH_PAGES,
+                drained.indexOf("2:" + ClobAccess.FETCH_PAGES + " "));
+        assertEquals(Arrays.asList((pageCount - 1) + ",1", "0," + ClobAccess.FETCH_PAGES,
+                    ClobAccess.FETCH_PAGES + "," + ClobAccess.FETCH_PAGES,
+                    (2 * ClobAccess.FETCH_PAGES) + "," + 9), os.fetches);
+    }
+
+    public void testWithoutCache() {
+        ClobPageCache.getInstance(os).setMaxPages(0);
+        ClobAccess ca = new ClobAccess(os, clob);
+        assertEquals(text, ca.toString());
+        assertNull(ca.getPageCacheWithoutInit());
+        assertNotNull(ca.getResultsWithoutInit());
+        ClobAccess sub = ca.subSequence(SIZE - 10, 2 * SIZE + 10);
+        assertEquals(text.substring(SIZE - 10, 2 * SIZE + 10), drain(sub));
+        assertEquals(text.charAt(SIZE + 3), sub.charAt(13));
+    }
+
+    private static String drain(ClobAccess ca) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(baos);
+        ca.drainToPrintStream(out);
+        out.flush();
+        return baos.toString();
+    }
+}
@@ -0,0 +1,219 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.dummy.ObjectStoreDummyImpl;
+
+public class ClobPageCacheTest extends TestCase
+{
+    private ClobObjectStore os;
+    private ClobPageCache cache;
+    private Clob clob;
+
+    public ClobPageCacheTest(String arg1) {
+        super(arg1);
+    }
+
+    public void setUp() {
+        os = new ClobObjectStore();
+        cache = ClobPageCache.getInstance(os);
+        clob = os.addClob(1, 10, 100);
+    }
+
+    public void testGetInstance() {
+        assertSame(cache, ClobPageCache.getInstance(os));
+        assertNotSame(cache, ClobPageCache.getInstance(new ClobObjectStore()));
+        assertTrue(ClobPageCache.isCached(os));
+        cache.setMaxPages(0);
+        assertFalse(ClobPageCache.isCached(os));
+    }
+
+    public void testRunFetching() {
+        assertEquals(Arrays.asList("1:2", "1:3", "1:4"),
+                Arrays.asList(trim(cache.getPages(os, clob, 2, 4))));
+        assertEquals(Arrays.asList("2,3"), os.fetches);
+
+        // Only the pages either side of those already cached are fetched, one query for each run
+        os.fetches.clear();
+        assertEquals(8, cache.getPages(os, clob, 0, 7).length);
+        assertEquals(Arrays.asList("0,2", "5,3"), os.fetches);
+
+        os.fetches.clear();
+        assertEquals(Arrays.asList("1:0", "1:1", "1:2", "1:3", "1:4", "1:5", "1:6", "1:7"),
+                Arrays.asList(trim(cache.getPages(os, clob, 0, 7))));
+        assertTrue(os.fetches.isEmpty());
+    }
+
+    public void testGetLength() {
+        assertEquals(9 * Clob.CLOB_PAGE_SIZE + 100, cache.getLength(os, clob));
+        assertEquals(1, os.counts);
+        assertEquals(Arrays.asList("9,1"), os.fetches);
+        assertEquals(9 * Clob.CLOB_PAGE_SIZE + 100, cache.getLength(os, clob));
+        assertEquals(1, os.counts);
+        // The last page was cached while finding the length
+        os.fetches.clear();
+        cache.getPages(os, clob, 8, 9);
+        assertEquals(Arrays.asList("8,1"), os.fetches);
+
+        Clob empty = os.addClob(2, 0, 0);
+        assertEquals(0, cache.getLength(os, empty));
+    }
+
+    public void testMissingPage() {
+        try {
+            cache.getPages(os, clob, 8, 10);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("Clob 1 has no page 10", e.getMessage());
+        }
+    }
+
+    public void testEviction() {
+        cache.setMaxPages(3);
+        cache.getPages(os, clob, 0, 0);
+        cache.getPages(os, clob, 1, 1);
+        cache.getPages(os, clob, 2, 2);
+        // Using page 0 leaves page 1 as the least recently used
+        cache.getPages(os, clob, 0, 0);
+        cache.getPages(os, clob, 3, 3);
+        assertEquals(Arrays.asList("0,1", "1,1", "2,1", "3,1"), os.fetches);
+
+        os.fetches.clear();
+        cache.getPages(os, clob, 2, 3);
+        cache.getPages(os, clob, 0, 0);
+        assertTrue(os.fetches.isEmpty());
+        cache.getPages(os, clob, 1, 1);
+        assertEquals(Arrays.asList("1,1"), os.fetches);
+
+        // Shrinking the cache drops the least recently used pages straight away
+        cache.setMaxPages(1);
+        os.fetches.clear();
+        cache.getPages(os, clob, 1, 1);
+        assertTrue(os.fetches.isEmpty());
+        cache.getPages(os, clob, 0, 0);
+        assertEquals(Arrays.asList("0,1"), os.fetches);
+    }
+
+    public void testInvalidate() {
+        Clob other = os.addClob(2, 2, 100);
+        cache.getLength(os, clob);
+        cache.getPages(os, clob, 0, 9);
+        cache.getPages(os, other, 0, 1);
+
+        // As done by the ObjectStore when a writer replaces the clob
+        os.addClob(1, 2, 50);
+        ClobPageCache.invalidate(os, clob);
+        os.fetches.clear();
+        assertEquals(Clob.CLOB_PAGE_SIZE + 50, cache.getLength(os, clob));
+        assertEquals(2, os.counts);
+        assertEquals(Arrays.asList("1:0", "1:1"), Arrays.asList(trim(cache.getPages(os, clob,
+                            0, 1))));
+        assertEquals(Arrays.asList("1,1", "0,1"), os.fetches);
+        os.fetches.clear();
+        cache.getPages(os, other, 0, 1);
+        assertTrue(os.fetches.isEmpty());
+
+        // An ObjectStore without a cache has nothing to invalidate
+        ClobPageCache.invalidate(new ClobObjectStore(), clob);
+    }
+
+    public void testInvalidateDuringFetch() {
+        // The clob is replaced while its pages are being read, so what was read may be stale
+        os.invalidateDuringFetch = cache;
+        cache.getPages(os, clob, 0, 1);
+        cache.getPages(os, clob, 0, 1);
+        assertEquals(Arrays.asList("0,2", "0,2"), os.fetches);
+
+        os.fetches.clear();
+        cache.getLength(os, clob);
+        cache.getLength(os, clob);
+        assertEquals(2, os.counts);
+
+        os.invalidateDuringFetch = null;
+        os.fetches.clear();
+        cache.getPages(os, clob, 0, 1);
+        cache.getPages(os, clob, 0, 1);
+        assertEquals(Arrays.asList("0,2"), os.fetches);
+    }
+
+    private static String[] trim(String[] pages) {
+        String[] retval = new String[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            retval[i] = pages[i].substring(0, pages[i].indexOf(' '));
+        }
+        return retval;
+    }
+
+    /**
+     * An ObjectStore holding the pages of some clobs, which records the queries run against it.
+     * Each page starts with the clob id and page number.
+     */
+    static class ClobObjectStore extends ObjectStoreDummyImpl
+    {
+        Map<Integer, List<String>> clobs = new HashMap<Integer, List<String>>();
+        List<String> fetches = new ArrayList<String>();
+        int counts = 0;
+        ClobPageCache invalidateDuringFetch = null;
+
+        Clob addClob(int clobId, int pageCount, int lastPageLength) {
+            List<String> pages = new ArrayList<String>();
+            for (int i = 0; i < pageCount; i++) {
+                StringBuilder page = new StringBuilder(clobId + ":" + i + " ");
+                int length = (i == pageCount - 1) ? lastPageLength : Clob.CLOB_PAGE_SIZE;
+                while (page.length() < length) {
+                    page.append((char) ('a' + (page.length() % 26)));
+                }
+                pages.add(page.toString());
+            }
+            clobs.put(new Integer(clobId), pages);
+            return new Clob(clobId);
+        }
+
+        List<String> getPages(Query q) {
+            return clobs.get(new Integer(((Clob) q.getSelect().get(0)).getClobId()));
+        }
+
+        @Override
+        public List execute(Query q, int start, int limit, boolean optimise, boolean explain,
+                Map<Object, Integer> sequence) throws ObjectStoreException {
+            fetches.add(start + "," + limit);
+            if (invalidateDuringFetch != null) {
+                invalidateDuringFetch.invalidate((Clob) q.getSelect().get(0));
+            }
+            List<String> pages = getPages(q);
+            List<ResultsRow<Object>> retval = new ArrayList<ResultsRow<Object>>();
+            for (int i = start; (i < start + limit) && (i < pages.size()); i++) {
+                ResultsRow<Object> row = new ResultsRow<Object>();
+                row.add(ClobPageCodec.encode(pages.get(i), true));
+                retval.add(row);
+            }
+            return retval;
+        }
+
+        @Override
+        public int count(Query q, Map<Object, Integer> sequence) throws ObjectStoreException {
+            counts++;
+            if (invalidateDuringFetch != null) {
+                invalidateDuringFetch.invalidate((Clob) q.getSelect().get(0));
+            }
+            return getPages(q).size();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ClobPageCodecTest extends TestCase
+{
+    public ClobPageCodecTest(String arg1) {
+        super(arg1);
+    }
+
+    public void testPacked() {
+        String page = sequence(Clob.CLOB_PAGE_SIZE, "ACGT");
+        String stored = ClobPageCodec.encode(page, true);
+        assertTrue(stored.length() * 2 < page.length());
+        assertEquals(page, ClobPageCodec.decode(stored));
+    }
+
+    public void testPackedWithN() {
+        String page = "NNNN" + sequence(1001, "ACGT") + "NNNNNNNNNN" + sequence(37, "ACGT") + "N";
+        String stored = ClobPageCodec.encode(page, true);
+        assertTrue(stored.length() < page.length());
+        assertEquals(page, ClobPageCodec.decode(stored));
+    }
+
+    public void testNotPacked() {
+        String page = sequence(1000, "ACGT");
+        assertEquals(page, ClobPageCodec.encode(page, false));
+        String lower = sequence(1000, "acgt");
+        assertEquals(lower, ClobPageCodec.encode(lower, true));
+        String iupac = sequence(1000, "ACGTRYKM");
+        assertEquals(iupac, ClobPageCodec.encode(iupac, true));
+        // Too short to be worth packing
+        assertEquals("ACG", ClobPageCodec.encode("ACG", true));
+        assertEquals("", ClobPageCodec.encode("", true));
+        assertEquals("Some text", ClobPageCodec.decode("Some text"));
+    }
+
+    public void testEscaped() {
+        String page = "\u0001Bnot packed";
+        String stored = ClobPageCodec.encode(page, true);
+        assertFalse(page.equals(stored));
+        assertEquals(page, ClobPageCodec.decode(stored));
+    }
+
+    private static String sequence(int length, String alphabet) {
+        Random random = new Random(length);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package org.intermine.objectstore.query;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.intermine.model.testmodel.Department;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.dummy.ObjectStoreDummyImpl;
+
+public class PrefetchManagerTest extends TestCase
+{
+    private CountDownLatch release;
+    private ObjectStoreDummyImpl os;
+    private Query q;
+
+    public PrefetchManagerTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        release = new CountDownLatch(1);
+        os = new ObjectStoreDummyImpl() {
+            public List execute(Query q, int start, int limit, boolean optimise, boolean explain,
+                    Map<Object, Integer> sequence) throws ObjectStoreException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Carry on
+                }
+                return super.execute(q, start, limit, optimise, explain, sequence);
+            }
+        };
+        os.setResultsSize(100);
+        q = new Query();
+        q.addFrom(new QueryClass(Department.class));
+    }
+
+    public void tearDown() throws Exception {
+        release.countDown();
+    }
+
+    public void testPrefetchUsed() throws Exception {
+        release.countDown();
+        ResultsBatches rb = new ResultsBatches(q, os, ObjectStore.SEQUENCE_IGNORE);
+        rb.setBatchSize(10);
+        rb.prefetch(1, true, true);
+        assertEquals(10, rb.getBatch(1, true, true).size());
+        PrefetchStatistics stats = rb.getPrefetchStatistics();
+        assertEquals(1, stats.getQueued());
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(0, stats.getWasted());
+    }
+
+    public void testPrefetchSwitchedOff() throws Exception {
+        os.setPrefetchThreads(0);
+        ResultsBatches rb = new ResultsBatches(q, os, ObjectStore.SEQUENCE_IGNORE);
+        rb.setBatchSize(10);
+        rb.prefetch(1, true, true);
+        assertEquals(0, rb.getPrefetchStatistics().getQueued());
+    }
+
+    public void testQueueFull() throws Exception {
+        os.setPrefetchThreads(1);
+        os.setPrefetchQueueSize(1);
+        ResultsBatches rb = new ResultsBatches(q, os, ObjectStore.SEQUENCE_IGNORE);
+        rb.setBatchSize(10);
+        // The first request goes straight to the thread, the second waits in the queue.
+        for (int i = 0; i < 4; i++) {
+            rb.prefetch(i, true, true);
+        }
+        PrefetchStatistics stats = rb.getPrefetchStatistics();
+        assertEquals(2, stats.getQueued());
+        assertEquals(2, stats.getRejected());
+        release.countDown();
+        assertEquals(10, rb.getBatch(3, true, true).size());
+    }
+
+    public void testCancel() throws Exception {
+        os.setPrefetchThreads(1);
+        Object id = new Object();
+        ResultsBatches rb = new ResultsBatches(q, os, ObjectStore.SEQUENCE_IGNORE);
+        rb.setBatchSize(10);
+        PrefetchManager.registerRequestId(id);
+        try {
+            rb.prefetch(0, true, true);
+            rb.prefetch(1, true, true);
+        } finally {
+            PrefetchManager.deregisterRequestId();
+        }
+        PrefetchManager.cancelRequest(id);
+        // The second request is certainly still queued, the first may not have started yet
+        assertTrue(rb.getPrefetchStatistics().getCancelled() >= 1);
+    }
+}
@@ -0,0 +1,79 @@
+package org.intermine.sql;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ParameterisedSqlTest extends TestCase
+{
+    public ParameterisedSqlTest(String arg) {
+        super(arg);
+    }
+
+    public void testMarkers() throws Exception {
+        List<Object> values = new ArrayList<Object>();
+        values.add("Employee'A");
+        values.add(new Integer(30));
+        values.add(Boolean.TRUE);
+        // markers written out of order, as when clauses are built separately
+        ParameterisedSql sql = new ParameterisedSql("SELECT a1_.id FROM Employee AS a1_ WHERE "
+                + "a1_.age > " + ParameterisedSql.marker(1) + " AND a1_.name = "
+                + ParameterisedSql.marker(0) + " AND a1_.fullTime = "
+                + ParameterisedSql.marker(2) + " LIMIT 10", values);
+        assertEquals("SELECT a1_.id FROM Employee AS a1_ WHERE a1_.age > ? AND a1_.name = ? AND "
+                + "a1_.fullTime = ? LIMIT 10", sql.getSql());
+        assertEquals("SELECT a1_.id FROM Employee AS a1_ WHERE a1_.age > 30 AND a1_.name = "
+                + "'Employee''A' AND a1_.fullTime = 'true' LIMIT 10", sql.getLiteralSql());
+        assertEquals(Arrays.asList(new Integer(30), "Employee'A", Boolean.TRUE),
+                sql.getParameters());
+    }
+
+    public void testNoMarkers() throws Exception {
+        String text = "SELECT a1_.id FROM Employee AS a1_ WHERE a1_.age > 30";
+        ParameterisedSql sql = new ParameterisedSql(text, Collections.<Object>emptyList());
+        assertSame(text, sql.getSql());
+        assertSame(text, sql.getLiteralSql());
+        assertTrue(sql.getParameters().isEmpty());
+    }
+
+    public void testInvalidMarker() throws Exception {
+        try {
+            new ParameterisedSql("SELECT " + ParameterisedSql.marker(0),
+                    Collections.<Object>emptyList());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new ParameterisedSql("SELECT " + ParameterisedSql.MARKER + "0",
+                    Collections.<Object>singletonList("a"));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCanBind() throws Exception {
+        assertTrue(ParameterisedSql.canBind("a\\b"));
+        assertTrue(ParameterisedSql.canBind(new Long(5)));
+        assertTrue(ParameterisedSql.canBind(new Float(1.5F)));
+        assertFalse(ParameterisedSql.canBind("a" + ParameterisedSql.MARKER));
+        assertFalse(ParameterisedSql.canBind(null));
+        assertFalse(ParameterisedSql.canBind(String.class));
+        assertFalse(ParameterisedSql.canBind(new BigDecimal("1.5")));
+    }
+}
@@ -0,0 +1,133 @@
+package org.intermine.sql.precompute;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+import org.intermine.sql.Database;
+import org.intermine.sql.DatabaseFactory;
+import org.intermine.sql.DatabaseUtil;
+
+public class OptimiserCacheStoreTest extends TestCase
+{
+    private Database database;
+
+    public OptimiserCacheStoreTest(String arg1) {
+        super(arg1);
+    }
+
+    public void setUp() throws Exception {
+        database = DatabaseFactory.getDatabase("db.unittest");
+        dropTable();
+    }
+
+    public void tearDown() throws Exception {
+        dropTable();
+    }
+
+    private void dropTable() throws Exception {
+        Connection con = database.getConnection();
+        try {
+            con.setAutoCommit(true);
+            if (DatabaseUtil.tableExists(con, OptimiserCacheStore.TABLE_NAME)) {
+                Statement s = con.createStatement();
+                s.execute("DROP TABLE " + OptimiserCacheStore.TABLE_NAME);
+                s.close();
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    public void testLoadCreatesTable() throws Exception {
+        OptimiserCacheStore store = new OptimiserCacheStore(database);
+        assertEquals(0, store.load(new OptimiserCache()));
+        Connection con = database.getConnection();
+        try {
+            assertTrue(DatabaseUtil.tableExists(con, OptimiserCacheStore.TABLE_NAME));
+        } finally {
+            con.close();
+        }
+        // Loading again finds the existing table
+        assertEquals(0, store.load(new OptimiserCache()));
+    }
+
+    public void testWriteThrough() throws Exception {
+        OptimiserCache cache = new OptimiserCache();
+        cache.setStore(new OptimiserCacheStore(database));
+        cache.addCacheLine("EXPLAIN original1", "EXPLAIN optimised1_1", 1000);
+        cache.addCacheLine("original1", "optimised1_2", 16000);
+        cache.addCacheLine("original2", "optimised2", 1000);
+        assertEquals(3, countRows());
+
+        // A new cache, as in another process or after a restart, starts with the decisions
+        OptimiserCache loaded = new OptimiserCache();
+        OptimiserCacheStore store = new OptimiserCacheStore(database);
+        assertEquals(3, store.load(loaded));
+        assertEquals("optimised1_1", loaded.lookup("original1", 1000));
+        assertEquals("optimised1_2", loaded.lookup("original1", 16000));
+        assertEquals("optimised2", loaded.lookup("original2", 1000));
+        assertNull(loaded.lookup("original3", 1000));
+    }
+
+    public void testDuplicateIgnored() throws Exception {
+        OptimiserCacheStore store = new OptimiserCacheStore(database);
+        store.load(new OptimiserCache());
+        store.store("original1", "optimised1", 1000);
+        store.store("original1", "optimised1", 1000);
+        assertEquals(1, countRows());
+        // A different limit is a different decision
+        store.store("original1", "optimised1", 16000);
+        assertEquals(2, countRows());
+    }
+
+    public void testOtherVersionDiscarded() throws Exception {
+        OptimiserCacheStore store = new OptimiserCacheStore(database);
+        store.load(new OptimiserCache());
+        store.store("original1", "optimised1", 1000);
+        Connection con = database.getConnection();
+        try {
+            con.setAutoCommit(true);
+            Statement s = con.createStatement();
+            s.execute("INSERT INTO " + OptimiserCacheStore.TABLE_NAME + " (version, original,"
+                    + " optimised, querylimit, created) VALUES ('other', 'original2',"
+                    + " 'optimised2', 1000, 0)");
+            s.close();
+        } finally {
+            con.close();
+        }
+        assertEquals(2, countRows());
+        OptimiserCache cache = new OptimiserCache();
+        assertEquals(1, store.load(cache));
+        assertEquals("optimised1", cache.lookup("original1", 1000));
+        assertNull(cache.lookup("original2", 1000));
+        assertEquals(1, countRows());
+    }
+
+    private int countRows() throws Exception {
+        Connection con = database.getConnection();
+        try {
+            Statement s = con.createStatement();
+            ResultSet r = s.executeQuery("SELECT COUNT(*) FROM "
+                    + OptimiserCacheStore.TABLE_NAME);
+            r.next();
+            int retval = r.getInt(1);
+            s.close();
+            return retval;
+        } finally {
+            con.close();
+        }
+    }
+}
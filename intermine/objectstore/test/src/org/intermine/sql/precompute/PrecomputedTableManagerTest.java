@@ -147,14 +147,17 @@ public class PrecomputedTableManagerTest extends TestCase
             PrecomputedTableManager ptm = new PrecomputedTableManager(database);
             try {
                 createTable();
+                String version = ptm.getVersion();
                 ptm.add(pt1);
                 assertTrue(ptm.getPrecomputedTables().contains(pt1));
                 assertEquals(pt1, ptm.lookupSql("test", pt1.getOriginalSql()));
                 assertTrue(DatabaseUtil.tableExists(con, "precomp1"));
+                assertFalse(version.equals(ptm.getVersion()));
                 ptm.delete(pt1);
                 assertTrue(!(ptm.getPrecomputedTables().contains(pt1)));
                 assertNull(ptm.lookupSql("test", pt1.getOriginalSql()));
                 assertTrue(!(DatabaseUtil.tableExists(con, "precomp1")));
+                assertEquals(version, ptm.getVersion());
             } catch (SQLException e) {
                 throw (SQLException) Util.verboseException(e);
             } finally {
@@ -313,4 +313,24 @@ public class QueryOptimiserFunctionalTest extends DatabaseTestCase
         String sqlOpt2 = QueryOptimiser.optimise(sql1, getDatabase());
         assertEquals(sql1, sqlOpt2);
     }
+
+    public void testOptimiseInBackground() throws Throwable {
+        String sql1 = "SELECT table2.col1, table2.col2, table3.col1, table3.col2 FROM table2, table3 WHERE table2.col1 = table3.col1 ORDER BY table2.col1, table2.col2, table3.col1, table3.col2";
+        OptimiserCache.getInstance(getDatabase()).flush();
+        // The first execution runs unoptimised while the optimiser works in the background
+        assertEquals(sql1, QueryOptimiser.optimiseInBackground(sql1, getDatabase()));
+        LimitOffsetQuery loq = new LimitOffsetQuery(sql1);
+        for (int i = 0; (i < 1000) && (OptimiserCache.getInstance(getDatabase())
+                    .lookup(loq.getQuery(), loq.getLimit()) == null); i++) {
+            Thread.sleep(10);
+        }
+        String sqlOpt1 = QueryOptimiser.optimiseInBackground(sql1, getDatabase());
+        assertTrue(sqlOpt1, sqlOpt1.contains("FROM precomp_table2Table3onCol1 AS "));
+        assertEquals(QueryOptimiser.optimise(sql1, getDatabase()), sqlOpt1);
+        checkResultsForQueries(new Query(sql1), new Query(sqlOpt1));
+
+        // Without precomputed tables there is nothing to optimise
+        PrecomputedTableManager.getInstance(getDatabase()).dropEverything();
+        assertEquals(sql1, QueryOptimiser.optimiseInBackground(sql1, getDatabase()));
+    }
 }
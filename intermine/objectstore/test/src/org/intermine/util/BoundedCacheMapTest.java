@@ -0,0 +1,104 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+public class BoundedCacheMapTest extends TestCase
+{
+    public BoundedCacheMapTest(String arg1) {
+        super(arg1);
+    }
+
+    public void testBasics() throws Exception {
+        BoundedCacheMap<Integer, Integer> cm = new BoundedCacheMap<Integer, Integer>("test", 100);
+
+        cm.put(new Integer(5), new Integer(40));
+        cm.put(new Integer(763), new Integer(67));
+        cm.put(new Integer(2), null);
+
+        assertEquals(new Integer(40), cm.get(new Integer(5)));
+        assertEquals(new Integer(67), cm.get(new Integer(763)));
+        assertNull(cm.get(new Integer(2)));
+        assertTrue(cm.containsKey(new Integer(2)));
+        assertFalse(cm.containsKey(new Integer(3)));
+        assertEquals(3, cm.size());
+
+        assertNull(cm.remove(new Integer(3)));
+        assertEquals(new Integer(40), cm.remove(new Integer(5)));
+        assertNull(cm.get(new Integer(5)));
+        assertFalse(cm.containsKey(new Integer(5)));
+        assertEquals(2, cm.size());
+
+        assertEquals(new Integer(67), cm.put(new Integer(763), new Integer(68)));
+        assertEquals(new Integer(68), cm.get(new Integer(763)));
+        assertEquals(2, cm.size());
+
+        cm.clear();
+        assertTrue(cm.isEmpty());
+        assertEquals(0, cm.getWeight());
+    }
+
+    public void testEntryLimit() throws Exception {
+        BoundedCacheMap<Integer, String> cm = new BoundedCacheMap<Integer, String>("test", 1000);
+        for (int i = 0; i < 10000; i++) {
+            cm.put(new Integer(i), "" + i);
+        }
+        assertTrue("Size was " + cm.size(), cm.size() <= 1000);
+        assertEquals(cm.size(), cm.getWeight());
+        assertEquals(10000, cm.size() + cm.getEvictions() + cm.getRejections());
+    }
+
+    public void testFrequentEntriesSurvive() throws Exception {
+        BoundedCacheMap<Integer, String> cm = new BoundedCacheMap<Integer, String>("test", 1000);
+        for (int i = 0; i < 100; i++) {
+            cm.put(new Integer(i), "" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i++) {
+                cm.get(new Integer(i));
+            }
+        }
+        // A scan of entries that are only used once should not push out the popular ones, even
+        // though they are used too rarely to survive in a plain LRU cache
+        for (int i = 1000; i < 20000; i++) {
+            if (cm.get(new Integer(i)) == null) {
+                cm.put(new Integer(i), "" + i);
+            }
+            if (i % 20 == 0) {
+                cm.get(new Integer((i / 20) % 100));
+            }
+        }
+        int present = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cm.containsKey(new Integer(i))) {
+                present++;
+            }
+        }
+        assertTrue("Only " + present + " of the popular entries survived", present >= 90);
+        assertTrue(cm.getHits() >= 500);
+        assertTrue(cm.getMisses() >= 19000);
+    }
+
+    public void testWeightLimit() throws Exception {
+        BoundedCacheMap<Integer, String> cm = new BoundedCacheMap<Integer, String>("test", 1000,
+                1600, new BoundedCacheMap.Weigher<Integer, String>() {
+                    public int weigh(Integer key, String value) {
+                        return value.length();
+                    }
+                });
+        for (int i = 0; i < 1000; i++) {
+            cm.put(new Integer(i), "0123456789");
+        }
+        assertTrue("Weight was " + cm.getWeight(), cm.getWeight() <= 1600);
+        assertEquals(cm.size() * 10, cm.getWeight());
+    }
+}
@@ -0,0 +1,155 @@
+package org.intermine.util;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+public class IntBitmapTest extends TestCase
+{
+    public IntBitmapTest(String arg1) {
+        super(arg1);
+    }
+
+    public void testAddRemove() throws Exception {
+        IntBitmap set = new IntBitmap();
+
+        assertTrue(set.add(42));
+        assertTrue(set.add(28673452));
+        assertTrue(set.add(-5));
+        assertFalse(set.add(42));
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains(42));
+        assertTrue(set.contains(28673452));
+        assertTrue(set.contains(-5));
+        assertFalse(set.contains(63));
+        assertEquals("[-5, 42, 28673452]", set.toString());
+
+        assertTrue(set.remove(42));
+        assertFalse(set.remove(42));
+        assertEquals(2, set.size());
+        assertFalse(set.contains(42));
+        assertEquals("[-5, 28673452]", set.toString());
+        assertTrue(Arrays.equals(new int[] {-5, 28673452}, set.toIntArray()));
+    }
+
+    public void testExtremes() throws Exception {
+        IntBitmap set = new IntBitmap(new int[] {Integer.MAX_VALUE, 0, Integer.MIN_VALUE, -1, 65535,
+            65536});
+        assertEquals("[" + Integer.MIN_VALUE + ", -1, 0, 65535, 65536, " + Integer.MAX_VALUE + "]",
+                set.toString());
+    }
+
+    public void testDenseChunk() throws Exception {
+        IntBitmap set = new IntBitmap();
+        // enough in one chunk to switch to a bitmap, and back again
+        for (int i = 0; i < 10000; i++) {
+            set.add(i * 3);
+        }
+        assertEquals(10000, set.size());
+        assertTrue(set.contains(29997));
+        assertFalse(set.contains(29998));
+        for (int i = 0; i < 9000; i++) {
+            assertTrue(set.remove(i * 3));
+        }
+        assertEquals(1000, set.size());
+        assertFalse(set.contains(0));
+        assertTrue(set.contains(27000));
+        int expected = 27000;
+        for (Integer i : set) {
+            assertEquals(expected, i.intValue());
+            expected += 3;
+        }
+        assertEquals(30000, expected);
+    }
+
+    public void testOperations() throws Exception {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            TreeSet<Integer> a = new TreeSet<Integer>();
+            TreeSet<Integer> b = new TreeSet<Integer>();
+            // some rounds have sparse chunks, others dense ones
+            int range = (round % 2 == 0) ? 1000000 : 20000;
+            for (int i = 0; i < 8000; i++) {
+                a.add(new Integer(random.nextInt(range)));
+                b.add(new Integer(random.nextInt(range) - range / 4));
+            }
+            IntBitmap bitmapA = new IntBitmap();
+            bitmapA.addAll(a);
+            IntBitmap bitmapB = new IntBitmap();
+            bitmapB.addAll(b);
+
+            TreeSet<Integer> expected = new TreeSet<Integer>(a);
+            expected.addAll(b);
+            IntBitmap result = bitmapA.clone();
+            result.or(bitmapB);
+            assertEquals(expected, result);
+            assertEquals(expected.size(), result.size());
+
+            expected = new TreeSet<Integer>(a);
+            expected.retainAll(b);
+            result = bitmapA.clone();
+            result.and(bitmapB);
+            assertEquals(expected, result);
+            assertEquals(expected.size(), result.size());
+
+            expected = new TreeSet<Integer>(a);
+            expected.removeAll(b);
+            result = bitmapA.clone();
+            result.andNot(bitmapB);
+            assertEquals(expected, result);
+            assertEquals(expected.size(), result.size());
+
+            TreeSet<Integer> both = new TreeSet<Integer>(a);
+            both.retainAll(b);
+            expected = new TreeSet<Integer>(a);
+            expected.addAll(b);
+            expected.removeAll(both);
+            result = bitmapA.clone();
+            result.xor(bitmapB);
+            assertEquals(expected, result);
+            assertEquals(expected.size(), result.size());
+
+            // the originals are untouched
+            assertEquals(a, bitmapA);
+            assertEquals(b, bitmapB);
+
+            Iterator<Integer> expectedIter = expected.iterator();
+            for (int i : result.toIntArray()) {
+                assertEquals(expectedIter.next().intValue(), i);
+            }
+        }
+    }
+
+    public void testByteArray() throws Exception {
+        IntBitmap set = new IntBitmap();
+        for (int i = 0; i < 5000; i++) {
+            set.add(i * 2);
+        }
+        set.add(-100);
+        set.add(1 << 30);
+        IntBitmap copy = IntBitmap.fromByteArray(set.toByteArray());
+        assertEquals(set, copy);
+        assertEquals(5002, copy.size());
+        assertEquals(0, IntBitmap.fromByteArray(new IntBitmap().toByteArray()).size());
+        try {
+            IntBitmap.fromByteArray(new byte[] {1, 0, 0});
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
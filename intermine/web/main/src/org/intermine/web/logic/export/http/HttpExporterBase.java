@@ -47,6 +47,7 @@ public abstract class HttpExporterBase
 
         executor = im.getPathQueryExecutor(profile);
         executor.setBatchSize(BATCH_SIZE);
+        executor.setStreaming(true);
         return executor.execute(pathQuery);
     }
 }
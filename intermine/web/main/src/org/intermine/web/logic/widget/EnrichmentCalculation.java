@@ -12,10 +12,9 @@ package org.intermine.web.logic.widget;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import org.apache.commons.math3.distribution.HypergeometricDistribution;
-
 /**
  * Calculate enrichment of an attribute applied to members of a sample that is a subset of a larger
  * population.  The result is a p-value per attribute that represents the probability that the
@@ -23,7 +22,7 @@ import org.apache.commons.math3.distribution.HypergeometricDistribution;
  * occurrences in the population as a whole.  Thus a low p-value indicates that the attribute may
  * be characteristic of the items in the sample.
  *
- * Enrichment is implemented using a Hypergeometric test.
+ * Enrichment is implemented using a Hypergeometric test, see EnrichmentEngine.
  *
  * @author Julie Sullivan
  * @author Richard Smith
@@ -57,34 +56,72 @@ public final class EnrichmentCalculation
         Map<String, PopulationInfo> annotatedPopulationInfo =
             input.getAnnotatedCountsInPopulation();
 
-        Map<String, BigDecimal> rawResults = new HashMap<String, BigDecimal>();
+        int termCount = sampleCounts.size();
+        String[] attributes = new String[termCount];
+        int[] sampleHits = new int[termCount];
+        int[] populationHits = new int[termCount];
+        int i = 0;
         for (Map.Entry<String, Integer> entry : sampleCounts.entrySet()) {
-            String attribute = entry.getKey();
-
-            Integer sampleCount = entry.getValue();
-            PopulationInfo pi = annotatedPopulationInfo.get(attribute);
-            Integer populationCount = (pi != null) ? pi.getSize() : 0;
-
-            HypergeometricDistribution h =
-                new HypergeometricDistribution(populationSize, populationCount, sampleSize);
-            Double pValue = h.upperCumulativeProbability(sampleCount);
-            rawResults.put(attribute, new BigDecimal(pValue));
+            attributes[i] = entry.getKey();
+            sampleHits[i] = entry.getValue().intValue();
+            PopulationInfo pi = annotatedPopulationInfo.get(entry.getKey());
+            populationHits[i] = (pi != null) ? pi.getSize() : 0;
+            i++;
         }
 
-        Map<String, BigDecimal> correctedResults = ErrorCorrection.adjustPValues(errorCorrection,
-                rawResults, maxValue, input.getTestCount());
+        double[] pValues = EnrichmentEngine.upperTail(populationSize, sampleSize, populationHits,
+                sampleHits);
+        double[] adjusted = EnrichmentEngine.adjustPValues(errorCorrection, pValues,
+                maxValue.doubleValue(), input.getTestCount());
+
+        Map<String, BigDecimal> sortedCorrectedResults;
         if (extraCorrectionCoefficient && correctionCoefficient.isApplicable()) {
-            correctionCoefficient.apply(correctedResults, population, annotatedPopulationInfo, 
+            Map<String, BigDecimal> correctedResults = new HashMap<String, BigDecimal>();
+            for (i = 0; i < termCount; i++) {
+                if (!Double.isNaN(adjusted[i])) {
+                    correctedResults.put(attributes[i], new BigDecimal(adjusted[i]));
+                }
+            }
+            correctionCoefficient.apply(correctedResults, population, annotatedPopulationInfo,
                     maxValue);
+            sortedCorrectedResults = ErrorCorrection.sortMap(correctedResults);
+        } else {
+            sortedCorrectedResults = sortReported(attributes, adjusted);
         }
-        Map<String, BigDecimal> sortedCorrectedResults = ErrorCorrection.sortMap(correctedResults);
         // record the number of items in the sample that had any values for the attribute
-        int widgetTotal = rawResults.isEmpty() ? 0 : sampleSize;
+        int widgetTotal = termCount == 0 ? 0 : sampleSize;
 
         EnrichmentResults results = new EnrichmentResults(sortedCorrectedResults,
                 input.getAnnotatedCountsInSample(), input.getLabels(), widgetTotal);
 
         return results;
     }
-}
 
+    /**
+     * Builds a map from attribute to adjusted p-value, smallest first, leaving out the values that
+     * are not to be reported.
+     */
+    private static Map<String, BigDecimal> sortReported(String[] attributes, double[] adjusted) {
+        int reported = 0;
+        for (int i = 0; i < adjusted.length; i++) {
+            if (!Double.isNaN(adjusted[i])) {
+                reported++;
+            }
+        }
+        String[] keys = new String[reported];
+        double[] values = new double[reported];
+        int j = 0;
+        for (int i = 0; i < adjusted.length; i++) {
+            if (!Double.isNaN(adjusted[i])) {
+                keys[j] = attributes[i];
+                values[j] = adjusted[i];
+                j++;
+            }
+        }
+        Map<String, BigDecimal> retval = new LinkedHashMap<String, BigDecimal>();
+        for (int index : EnrichmentEngine.sortedOrder(values)) {
+            retval.put(keys[index], new BigDecimal(values[index]));
+        }
+        return retval;
+    }
+}
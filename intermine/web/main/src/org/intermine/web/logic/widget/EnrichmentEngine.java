@@ -0,0 +1,299 @@
+package org.intermine.web.logic.widget;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * Hypergeometric tests and multiple test corrections for the enrichment widgets, working on
+ * primitive arrays so that a request with tens of thousands of terms does not create a
+ * distribution object and several BigDecimals per term.
+ *
+ * The log-factorials needed for the probabilities are held in a single table that grows to the
+ * largest population seen and is then shared by all requests.
+ */
+public final class EnrichmentEngine
+{
+    private static final int INITIAL_TABLE_SIZE = 1024;
+    private static final double TAIL_PRECISION = 1e-17;
+
+    private static volatile double[] logFactorials = buildTable(INITIAL_TABLE_SIZE);
+
+    private EnrichmentEngine() {
+        // don't instantiate
+    }
+
+    /**
+     * Returns ln(n!), from the shared table.
+     *
+     * @param n a non-negative number
+     * @return the natural logarithm of n factorial
+     */
+    public static double logFactorial(int n) {
+        double[] table = logFactorials;
+        if (n >= table.length) {
+            table = ensureTable(n);
+        }
+        return table[n];
+    }
+
+    private static synchronized double[] ensureTable(int n) {
+        double[] table = logFactorials;
+        if (n >= table.length) {
+            int size = table.length;
+            while (size <= n) {
+                size *= 2;
+            }
+            double[] newTable = new double[size];
+            System.arraycopy(table, 0, newTable, 0, table.length);
+            for (int i = table.length; i < size; i++) {
+                newTable[i] = newTable[i - 1] + Math.log(i);
+            }
+            logFactorials = newTable;
+            table = newTable;
+        }
+        return table;
+    }
+
+    private static double[] buildTable(int size) {
+        double[] table = new double[size];
+        for (int i = 1; i < size; i++) {
+            table[i] = table[i - 1] + Math.log(i);
+        }
+        return table;
+    }
+
+    private static double logChoose(double[] table, int n, int k) {
+        return table[n] - table[k] - table[n - k];
+    }
+
+    /**
+     * Calculates the probability of seeing at least the given number of annotated items in the
+     * sample, that is P(X &gt;= sampleCount) for a hypergeometric distribution. This gives the same
+     * result as the upperCumulativeProbability() method of the commons-math
+     * HypergeometricDistribution.
+     *
+     * @param populationSize the number of items in the population
+     * @param populationCount the number of items in the population with the annotation
+     * @param sampleSize the number of items in the sample
+     * @param sampleCount the number of items in the sample with the annotation
+     * @return a p-value
+     */
+    public static double upperTail(int populationSize, int populationCount, int sampleSize,
+            int sampleCount) {
+        return upperTail(tableFor(populationSize), populationSize, populationCount, sampleSize,
+                sampleCount);
+    }
+
+    /**
+     * Calculates the upper tail probability for a batch of terms that share a population and a
+     * sample.
+     *
+     * @param populationSize the number of items in the population
+     * @param sampleSize the number of items in the sample
+     * @param populationCounts the number of items in the population with each annotation
+     * @param sampleCounts the number of items in the sample with each annotation
+     * @return an array of p-values, in the same order as the counts
+     */
+    public static double[] upperTail(int populationSize, int sampleSize, int[] populationCounts,
+            int[] sampleCounts) {
+        if (populationCounts.length != sampleCounts.length) {
+            throw new IllegalArgumentException("Got " + populationCounts.length
+                    + " population counts but " + sampleCounts.length + " sample counts");
+        }
+        double[] table = tableFor(populationSize);
+        double[] retval = new double[sampleCounts.length];
+        for (int i = 0; i < sampleCounts.length; i++) {
+            retval[i] = upperTail(table, populationSize, populationCounts[i], sampleSize,
+                    sampleCounts[i]);
+        }
+        return retval;
+    }
+
+    private static double[] tableFor(int populationSize) {
+        if (populationSize < 0) {
+            throw new IllegalArgumentException("Illegal population size: " + populationSize);
+        }
+        double[] table = logFactorials;
+        if (populationSize >= table.length) {
+            table = ensureTable(populationSize);
+        }
+        return table;
+    }
+
+    private static double upperTail(double[] table, int n, int k, int sampleSize, int x) {
+        if (k < 0 || k > n || sampleSize < 0 || sampleSize > n) {
+            throw new IllegalArgumentException("Illegal counts: population " + n + ", annotated "
+                    + k + ", sample " + sampleSize);
+        }
+        int lower = Math.max(0, sampleSize + k - n);
+        int upper = Math.min(k, sampleSize);
+        if (x <= lower) {
+            return 1.0;
+        }
+        if (x > upper) {
+            return 0.0;
+        }
+        int mode = (int) (((long) (sampleSize + 1) * (k + 1)) / (n + 2));
+        // Sum whichever tail moves away from the mode, so that the terms only ever shrink
+        if (x > mode) {
+            return tailSum(table, n, k, sampleSize, x, upper, 1);
+        }
+        return Math.max(0.0, 1.0 - tailSum(table, n, k, sampleSize, x - 1, lower, -1));
+    }
+
+    private static double tailSum(double[] table, int n, int k, int sampleSize, int from, int to,
+            int step) {
+        double logTotal = logChoose(table, n, sampleSize);
+        double term = Math.exp(logChoose(table, k, from)
+                + logChoose(table, n - k, sampleSize - from) - logTotal);
+        double sum = term;
+        int x = from;
+        while (x != to && term > sum * TAIL_PRECISION) {
+            // ratio between consecutive terms of the probability mass function
+            if (step > 0) {
+                term *= ((double) (k - x) * (sampleSize - x))
+                    / ((double) (x + 1) * (n - k - sampleSize + x + 1));
+            } else {
+                term *= ((double) x * (n - k - sampleSize + x))
+                    / ((double) (k - x + 1) * (sampleSize - x + 1));
+            }
+            sum += term;
+            x += step;
+        }
+        return Math.min(1.0, sum);
+    }
+
+    /**
+     * Returns the indexes of the values, in ascending order of value. Equal values stay in the
+     * order they were given.
+     *
+     * @param values an array of values
+     * @return an array of indexes into values
+     */
+    public static int[] sortedOrder(double[] values) {
+        int[] order = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int start = 0; start < order.length; start += 2 * width) {
+                int mid = Math.min(start + width, order.length);
+                int end = Math.min(start + 2 * width, order.length);
+                int left = start;
+                int right = mid;
+                for (int out = start; out < end; out++) {
+                    if (left < mid && (right >= end || values[order[left]]
+                                <= values[order[right]])) {
+                        buffer[out] = order[left++];
+                    } else {
+                        buffer[out] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Applies a multiple test correction to an array of p-values. The corrections and cut-offs
+     * are the same as those of ErrorCorrection.adjustPValues(), but values that are not to be
+     * reported are set to NaN rather than left out of a map.
+     *
+     * @param errorCorrection which error correction to use, or None
+     * @param pValues the raw p-values, which are not modified
+     * @param max maximum value to report
+     * @param testCount number of tests, eg. total number of go terms in database
+     * @return an array of adjusted p-values, in the same order as pValues
+     */
+    public static double[] adjustPValues(String errorCorrection, double[] pValues, double max,
+            int testCount) {
+        if ("Bonferroni".equals(errorCorrection)) {
+            return bonferroni(pValues, testCount, max);
+        } else if ("Benjamini Hochberg".equals(errorCorrection)) {
+            return benjaminiHochberg(pValues, testCount, max);
+        } else if ("Holm-Bonferroni".equals(errorCorrection)) {
+            return bonferroniHolm(pValues, testCount, max);
+        }
+        double[] retval = new double[pValues.length];
+        for (int i = 0; i < pValues.length; i++) {
+            retval[i] = pValues[i] <= max ? pValues[i] : Double.NaN;
+        }
+        return retval;
+    }
+
+    /**
+     * Bonferroni correction: adjusted p = p * number of tests, never over 1.
+     */
+    private static double[] bonferroni(double[] pValues, int testCount, double max) {
+        double[] retval = new double[pValues.length];
+        for (int i = 0; i < pValues.length; i++) {
+            double adjusted = Math.min(1.0, pValues[i] * testCount);
+            retval[i] = adjusted <= max ? adjusted : Double.NaN;
+        }
+        return retval;
+    }
+
+    /**
+     * Benjamini Hochberg correction: adjusted p = p * (number of tests / rank), never over 1,
+     * where equal p-values share a rank. Reporting stops at the first value over the maximum.
+     */
+    private static double[] benjaminiHochberg(double[] pValues, int testCount, double max) {
+        double[] retval = nans(pValues.length);
+        int[] order = sortedOrder(pValues);
+        int rank = 1;
+        for (int i = 0; i < order.length; i++) {
+            double p = pValues[order[i]];
+            if (i > 0 && p != pValues[order[i - 1]]) {
+                rank = i + 1;
+            }
+            double adjusted = Math.min(1.0, p * ((double) testCount / rank));
+            if (adjusted > max) {
+                break;
+            }
+            retval[order[i]] = adjusted;
+        }
+        return retval;
+    }
+
+    /**
+     * Holm-Bonferroni correction: adjusted p = p * (number of tests - rank), where the rank
+     * counts from zero and equal p-values share a rank. Reporting stops at the first value over
+     * the maximum.
+     */
+    private static double[] bonferroniHolm(double[] pValues, int testCount, double max) {
+        double[] retval = nans(pValues.length);
+        int[] order = sortedOrder(pValues);
+        int rank = 0;
+        for (int i = 0; i < order.length; i++) {
+            double p = pValues[order[i]];
+            if (i > 0 && p != pValues[order[i - 1]]) {
+                rank = i;
+            }
+            double adjusted = p * (testCount - rank);
+            if (adjusted > max) {
+                break;
+            }
+            retval[order[i]] = adjusted;
+        }
+        return retval;
+    }
+
+    private static double[] nans(int length) {
+        double[] retval = new double[length];
+        for (int i = 0; i < length; i++) {
+            retval[i] = Double.NaN;
+        }
+        return retval;
+    }
+}
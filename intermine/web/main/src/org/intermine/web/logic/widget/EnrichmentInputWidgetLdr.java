@@ -20,7 +20,6 @@ import org.intermine.objectstore.ObjectStore;
 import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
-import org.intermine.util.CacheMap;
 
 /**
  * Executes queries and summarises data for a specific EnrichmentWidgetLdr ready for calculation.
@@ -37,21 +36,10 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
     private Map<String, String> labels = null;
     private static final int BATCH_SIZE = 20000;
 
-    // population queries that don't involve bags can be cached between widget executions
-    private static CacheMap<String, PopulationInfo> populationCache = new CacheMap<String,
-        PopulationInfo>();
-    private static CacheMap<String, Map<String, PopulationInfo>> populationCountsCache =
-        new CacheMap<String, Map<String, PopulationInfo>>();
-
-    private static CacheMap<String, Map<String, Long>> annotatedGeneLengthAverageInPopulation =
-            new CacheMap<String, Map<String, Long>>();
-
-    // TODO population counts and sizes are no longer cached
-
-    // TODO make a static cache from populate query to size and populationCounts maps,
-    // this should only have a few entries per widget depending on the organism composition
-    // of bags and other parameters, e.g. GO namespace.  But log cache size for a bit to make
-    // sure.  This should be a CacheMap, old cache was just a standard Map.
+    // the population side only changes with a new release, so is cached between widget
+    // executions, keyed by everything the population query depends on
+    private final PopulationCountsCache populationCache;
+    private String populationKey = null;
 
     /**
      * Construct with an EnrichmentWidgetLdr that contains queries needed for specific widget tests.
@@ -62,15 +50,22 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
     public EnrichmentInputWidgetLdr(ObjectStore os, EnrichmentWidgetImplLdr ldr) {
         this.os = os;
         this.ldr = ldr;
+        this.populationCache = PopulationCountsCache.getInstance(os);
+    }
+
+    private String getPopulationKey() {
+        if (populationKey == null) {
+            populationKey = ldr.getPopulationCacheKey();
+        }
+        return populationKey;
     }
 
     @Override
     public Map<String, PopulationInfo> getAnnotatedCountsInPopulation() {
         if (populationCounts == null) {
-            Query query = ldr.getPopulationQuery(false);
-
-            populationCounts = populationCountsCache.get(query.toString());
+            populationCounts = populationCache.getCounts(getPopulationKey());
             if (populationCounts == null) {
+                Query query = ldr.getPopulationQuery(false);
                 populationCounts = new HashMap<String, PopulationInfo>();
 
                 Results results = os.execute(query, BATCH_SIZE, true, true, true);
@@ -94,7 +89,7 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
                     }
                     populationCounts.put(identifier, new PopulationInfo(count, geneLengthAverage));
                 }
-                populationCountsCache.put(query.toString(), populationCounts);
+                populationCache.putCounts(getPopulationKey(), populationCounts);
             }
         }
         return populationCounts;
@@ -138,9 +133,9 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
 
     @Override
     public PopulationInfo getPopulationInfo() {
-        Query q = ldr.getPopulationQuery(true);
-        PopulationInfo populationInfo = populationCache.get(q.toString());
+        PopulationInfo populationInfo = populationCache.getTotal(getPopulationKey());
         if (populationInfo == null) {
+            Query q = ldr.getPopulationQuery(true);
             int size = 0;
             Object extraAttribute = 0;
             Results res = os.execute(q);
@@ -152,7 +147,7 @@ public class EnrichmentInputWidgetLdr implements EnrichmentInput
                 }
             }
             populationInfo = new PopulationInfo(size, extraAttribute);
-            populationCache.put(q.toString(), populationInfo);
+            populationCache.putTotal(getPopulationKey(), populationInfo);
         }
         return populationInfo;
     }
@@ -9,8 +9,10 @@ package org.intermine.web.logic.widget;
  * information or http://www.gnu.org/copyleft/lesser.html.
  *
  */
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.intermine.api.profile.InterMineBag;
 import org.intermine.objectstore.ObjectStore;
@@ -28,6 +30,7 @@ import org.intermine.objectstore.query.QueryFunction;
 import org.intermine.objectstore.query.QueryObjectReference;
 import org.intermine.objectstore.query.QueryReference;
 import org.intermine.objectstore.query.QueryValue;
+import org.intermine.objectstore.query.ResultsRow;
 import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.pathquery.PathConstraint;
 import org.intermine.util.TypeUtil;
@@ -314,4 +317,62 @@ public class EnrichmentWidgetImplLdr extends WidgetLdr
     public Query getExportQuery(List<String> keys) {
         return getQuery("export", keys);
     }
+
+    /**
+     * Returns a key identifying the population this widget is calculated against, for use with
+     * the PopulationCountsCache.  The population depends on the widget, the filter, whether the
+     * correction coefficient is in use, the contents of the population bag if there is one, and
+     * the values that any [list] constraints take in the list being analysed.  The latter are
+     * fetched with a small query against the list, which is far cheaper than the population
+     * query itself.
+     *
+     * @return a String
+     */
+    public String getPopulationCacheKey() {
+        StringBuilder key = new StringBuilder();
+        key.append(config.getId()).append('\t').append(filter).append('\t')
+            .append(extraCorrectionCoefficient && correctionCoefficient != null
+                    && correctionCoefficient.isApplicable()).append('\t');
+        if (populationBag == null) {
+            key.append("all");
+        } else {
+            key.append(PopulationCountsCache.digest(populationBag.getContentsAsIds()));
+        }
+        List<Object> listValues = getListConstraintValues();
+        if (listValues != null) {
+            key.append('\t').append(PopulationCountsCache.digest(listValues));
+        }
+        return key.toString();
+    }
+
+    private List<Object> getListConstraintValues() {
+        // Keep a record of the query classes of its own, rather than replacing queryClassInQuery
+        Map<String, QueryClass> queryClasses = new HashMap<String, QueryClass>();
+        queryClasses.put(startClass.getType().getSimpleName(), startClass);
+        Query query = new Query();
+        ConstraintSet cs = new ConstraintSet(ConstraintOp.AND);
+        query.setConstraint(cs);
+        query.addFrom(startClass);
+        boolean hasListConstraint = false;
+        for (PathConstraint pc : config.getPathConstraints()) {
+            if (WidgetConfigUtil.isListConstraint(pc)) {
+                QueryField qf = createQueryFieldByPath(pc.getPath(), query, false,
+                        queryClasses);
+                query.addToSelect(qf);
+                query.addToOrderBy(qf);
+                hasListConstraint = true;
+            }
+        }
+        if (!hasListConstraint) {
+            return null;
+        }
+        cs.addConstraint(new BagConstraint(new QueryField(startClass, "id"), ConstraintOp.IN,
+                    bag.getOsb()));
+        query.setDistinct(true);
+        List<Object> retval = new ArrayList<Object>();
+        for (Object row : os.execute(query, 1000, true, false, true)) {
+            retval.add(((ResultsRow<?>) row).toString());
+        }
+        return retval;
+    }
 }
@@ -0,0 +1,200 @@
+package org.intermine.web.logic.widget;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.pathquery.PathConstraint;
+import org.intermine.util.BoundedCacheMap;
+import org.intermine.web.logic.config.WebConfig;
+import org.intermine.web.logic.widget.config.EnrichmentWidgetConfig;
+import org.intermine.web.logic.widget.config.WidgetConfig;
+import org.intermine.web.logic.widget.config.WidgetConfigUtil;
+
+/**
+ * Cache of the population side of enrichment widget calculations. The population counts only
+ * change with a new release, so they are held for as long as the production ObjectStore is in
+ * use, keyed by widget, filter, correction coefficient, the contents of any population bag and
+ * the values of any list constraints. Each widget request then only has to run the sample queries.
+ */
+public final class PopulationCountsCache
+{
+    private static final Logger LOG = Logger.getLogger(PopulationCountsCache.class);
+    private static final int MAX_ENTRIES = 1000;
+    private static final Map<ObjectStore, PopulationCountsCache> CACHES = Collections
+        .synchronizedMap(new WeakHashMap<ObjectStore, PopulationCountsCache>());
+
+    private final Map<String, Map<String, PopulationInfo>> counts =
+        new BoundedCacheMap<String, Map<String, PopulationInfo>>("enrichment population counts",
+                MAX_ENTRIES);
+    private final Map<String, PopulationInfo> totals =
+        new BoundedCacheMap<String, PopulationInfo>("enrichment population totals", MAX_ENTRIES);
+
+    private PopulationCountsCache() {
+        // use getInstance()
+    }
+
+    /**
+     * Returns the cache for the given production ObjectStore.
+     *
+     * @param os the ObjectStore that the widgets run against
+     * @return a PopulationCountsCache
+     */
+    public static PopulationCountsCache getInstance(ObjectStore os) {
+        synchronized (CACHES) {
+            PopulationCountsCache retval = CACHES.get(os);
+            if (retval == null) {
+                retval = new PopulationCountsCache();
+                CACHES.put(os, retval);
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Returns the annotation counts in the population for a key, or null if they are not cached.
+     *
+     * @param key a key from EnrichmentWidgetImplLdr.getPopulationCacheKey()
+     * @return a Map from annotation identifier to PopulationInfo
+     */
+    public Map<String, PopulationInfo> getCounts(String key) {
+        return counts.get(key);
+    }
+
+    /**
+     * Stores the annotation counts in the population for a key.
+     *
+     * @param key a key from EnrichmentWidgetImplLdr.getPopulationCacheKey()
+     * @param populationCounts a Map from annotation identifier to PopulationInfo
+     */
+    public void putCounts(String key, Map<String, PopulationInfo> populationCounts) {
+        counts.put(key, Collections.unmodifiableMap(populationCounts));
+    }
+
+    /**
+     * Returns the size of the annotated population for a key, or null if it is not cached.
+     *
+     * @param key a key from EnrichmentWidgetImplLdr.getPopulationCacheKey()
+     * @return a PopulationInfo
+     */
+    public PopulationInfo getTotal(String key) {
+        return totals.get(key);
+    }
+
+    /**
+     * Stores the size of the annotated population for a key.
+     *
+     * @param key a key from EnrichmentWidgetImplLdr.getPopulationCacheKey()
+     * @param populationInfo a PopulationInfo
+     */
+    public void putTotal(String key, PopulationInfo populationInfo) {
+        totals.put(key, populationInfo);
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public void clear() {
+        counts.clear();
+        totals.clear();
+    }
+
+    /**
+     * Computes the population counts for every enrichment widget that does not depend on the
+     * list being analysed, for each of its filter values, so that the first requests after
+     * startup do not have to wait for the population queries.
+     *
+     * @param os the production ObjectStore
+     * @param webConfig the WebConfig holding the widget configurations
+     */
+    public static void precompute(ObjectStore os, WebConfig webConfig) {
+        long start = System.currentTimeMillis();
+        int done = 0;
+        for (WidgetConfig config : webConfig.getWidgets().values()) {
+            if (!(config instanceof EnrichmentWidgetConfig) || dependsOnList(config)) {
+                continue;
+            }
+            List<String> filters = new ArrayList<String>();
+            if (config.getFilters() == null) {
+                filters.add(null);
+            } else {
+                for (String filter : config.getFilters().split(",")) {
+                    filters.add(filter.trim());
+                }
+            }
+            for (String filter : filters) {
+                try {
+                    EnrichmentWidgetImplLdr ldr = new EnrichmentWidgetImplLdr(null, null, os,
+                            (EnrichmentWidgetConfig) config, filter, false, null);
+                    EnrichmentInput input = new EnrichmentInputWidgetLdr(os, ldr);
+                    input.getAnnotatedCountsInPopulation();
+                    input.getPopulationInfo();
+                    done++;
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not precompute population for widget " + config.getId()
+                            + " with filter " + filter, e);
+                }
+            }
+        }
+        LOG.info("Precomputed " + done + " enrichment widget populations in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static boolean dependsOnList(WidgetConfig config) {
+        if (config.getFilters() != null && config.getFilters().contains("[list]")) {
+            return true;
+        }
+        for (PathConstraint pc : config.getPathConstraints()) {
+            if (WidgetConfigUtil.isListConstraint(pc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a digest of a collection of values, for use in cache keys. The values are sorted
+     * first, so that the order in which they were fetched does not matter.
+     *
+     * @param values a Collection of values
+     * @return a hex String
+     */
+    public static String digest(Collection<?> values) {
+        List<String> sorted = new ArrayList<String>();
+        for (Object value : values) {
+            sorted.add(String.valueOf(value));
+        }
+        Collections.sort(sorted);
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            for (String value : sorted) {
+                md.update(value.getBytes("UTF-8"));
+                md.update((byte) 0);
+            }
+            return sorted.size() + ":" + new String(Hex.encodeHex(md.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
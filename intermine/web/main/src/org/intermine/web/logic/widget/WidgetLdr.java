@@ -95,6 +95,20 @@ public class WidgetLdr
      * @return the queryField created
      */
     protected QueryField createQueryFieldByPath(String path, Query query, boolean addToSelect) {
+        return createQueryFieldByPath(path, query, addToSelect, queryClassInQuery);
+    }
+
+    /**
+     * Create a queryField starting from the path given in input, as above, recording the
+     * queryclass already in the query in the map given in input rather than in queryClassInQuery.
+     * @param path the path used to create the queryField. The path doesn't containt the startClass
+     * @param query the query to modify
+     * @param addToSelect if true add the queryFiled as select, group by and order by element
+     * @param queryClasses map containing queryclass already in the query
+     * @return the queryField created
+     */
+    protected QueryField createQueryFieldByPath(String path, Query query, boolean addToSelect,
+            Map<String, QueryClass> queryClasses) {
         QueryField queryField = null;
         String[] splittedPath = path.split("\\.");
         QueryClass qc = startClass;
@@ -112,7 +126,7 @@ public class WidgetLdr
                 }
             } else {
                 attributePath = createAttributePath(splittedPath, i);
-                qc = addReference(query, qc, attribute, attributePath);
+                qc = addReference(query, qc, attribute, attributePath, queryClasses);
             }
         }
         return queryField;
@@ -122,6 +136,15 @@ public class WidgetLdr
      * Add a contains constraint to Query (q) built with the query class and attribute given in iput
      */
     protected QueryClass addReference(Query query, QueryClass qc, String attribute, String attributePath) {
+        return addReference(query, qc, attribute, attributePath, queryClassInQuery);
+    }
+
+    /**
+     * Add a contains constraint to Query (q) built with the query class and attribute given in
+     * input, using the map given in input to find the queryclass already in the query
+     */
+    private QueryClass addReference(Query query, QueryClass qc, String attribute,
+            String attributePath, Map<String, QueryClass> queryClasses) {
         ConstraintSet cs = (ConstraintSet) query.getConstraint();
         QueryReference qr = null;
         String type = "";
@@ -158,13 +181,13 @@ public class WidgetLdr
                 qcTmp = new QueryClass(TypeUtil.getElementType(qc.getType(), attribute));
             }
         }
-        if (!queryClassInQuery.containsKey(attributePath)) {
+        if (!queryClasses.containsKey(attributePath)) {
             qc = qcTmp;
             query.addFrom(qc);
             cs.addConstraint(new ContainsConstraint(qr, ConstraintOp.CONTAINS, qc));
-            queryClassInQuery.put(attributePath, qc);
+            queryClasses.put(attributePath, qc);
         } else {
-            qc = queryClassInQuery.get(attributePath);
+            qc = queryClasses.get(attributePath);
         }
         return qc;
     }
@@ -12,15 +12,19 @@ package org.intermine.web.search;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -61,6 +65,7 @@ import org.apache.lucene.search.TermsFilter;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
 import org.intermine.api.InterMineAPI;
@@ -85,9 +90,12 @@ import org.intermine.objectstore.query.Query;
 import org.intermine.objectstore.query.QueryClass;
 import org.intermine.objectstore.query.QueryCollectionReference;
 import org.intermine.objectstore.query.QueryField;
+import org.intermine.objectstore.query.QueryFunction;
 import org.intermine.objectstore.query.QueryObjectReference;
+import org.intermine.objectstore.query.QueryValue;
 import org.intermine.objectstore.query.Results;
 import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.objectstore.query.SimpleConstraint;
 import org.intermine.pathquery.PathException;
 import org.intermine.sql.Database;
 import org.intermine.util.DynamicUtil;
@@ -361,6 +369,9 @@ class InterMineObjectFetcher extends Thread
     final Map<Class<?>, Vector<ClassAttributes>> decomposedClassesCache =
             new HashMap<Class<?>, Vector<ClassAttributes>>();
     private Map<String, String> attributePrefixes = null;
+    private Set<Class<? extends InterMineObject>> classes = null;
+    private Integer minId = null;
+    private Integer maxId = null;
 
     Field idField = null;
     Field categoryField = null;
@@ -407,6 +418,24 @@ class InterMineObjectFetcher extends Thread
         this.attributePrefixes = attributePrefixes;
     }
 
+    /**
+     * restrict this fetcher to a part of the objectstore, so that several fetchers can run in
+     * parallel or only changed classes are re-indexed
+     * @param classes
+     *            only fetch objects of these classes, or null for all classes that are not
+     *            ignored
+     * @param minId
+     *            lowest object id to fetch, or null for no lower bound
+     * @param maxId
+     *            object id to stop before, or null for no upper bound
+     */
+    public void setPartition(Set<Class<? extends InterMineObject>> classes, Integer minId,
+            Integer maxId) {
+        this.classes = classes;
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
     /**
      * get list of fields contained in the fetched documents
      * @return fields
@@ -439,7 +468,14 @@ class InterMineObjectFetcher extends Thread
                 q.addToSelect(qc);
 
                 QueryField qf = new QueryField(qc, "class");
-                q.setConstraint(new BagConstraint(qf, ConstraintOp.NOT_IN, ignoredClasses));
+                ConstraintSet constraints = new ConstraintSet(ConstraintOp.AND);
+                constraints.addConstraint(new BagConstraint(qf, ConstraintOp.NOT_IN,
+                        ignoredClasses));
+                if (classes != null) {
+                    constraints.addConstraint(new BagConstraint(qf, ConstraintOp.IN, classes));
+                }
+                addIdRange(constraints, qc);
+                q.setConstraint(constraints);
 
                 LOG.info("QUERY: " + q.toString());
 
@@ -456,8 +492,8 @@ class InterMineObjectFetcher extends Thread
                     ResultsRow<InterMineObject> row = it.next();
 
                     if (i % 10000 == 1) {
-                        LOG.info("IMOFetcher: fetched " + i + " of " + size + " in "
-                                + (System.currentTimeMillis() - time) + "ms total, "
+                        LOG.info("IMOFetcher " + getName() + ": fetched " + i + " of " + size
+                                + " in " + (System.currentTimeMillis() - time) + "ms total, "
                                 + (objectParseTime) + "ms spent on parsing");
                     }
 
@@ -840,6 +876,8 @@ class InterMineObjectFetcher extends Thread
                 QueryField topId = new QueryField(queryClass, "id");
                 q.addToSelect(topId);
                 q.addToOrderBy(topId); // important for optimization in run()
+                // only fetch references for the objects in this fetcher's partition
+                addIdRange(constraints, queryClass);
             } else {
                 String fieldName = fields.get(i - 1);
 
@@ -877,6 +915,18 @@ class InterMineObjectFetcher extends Thread
 
         return q;
     }
+
+    private void addIdRange(ConstraintSet constraints, QueryClass qc) {
+        QueryField id = new QueryField(qc, "id");
+        if (minId != null) {
+            constraints.addConstraint(new SimpleConstraint(id, ConstraintOp.GREATER_THAN_EQUALS,
+                    new QueryValue(minId)));
+        }
+        if (maxId != null) {
+            constraints.addConstraint(new SimpleConstraint(id, ConstraintOp.LESS_THAN,
+                    new QueryValue(maxId)));
+        }
+    }
 }
 
 /**
@@ -889,6 +939,10 @@ class InterMineObjectFetcher extends Thread
 public final class KeywordSearch
 {
     private static final String LUCENE_INDEX_DIR = "keyword_search_index";
+    private static final String INDEX_CONTAINER_FILE = "index.container";
+    private static final String INDEX_VERSION_FILE = "index.version";
+    private static final int DEFAULT_INDEX_THREADS = 4;
+    private static final int INDEXING_QUEUE_SIZE = 100000;
 
     /**
      * maximum number of hits returned
@@ -904,7 +958,6 @@ public final class KeywordSearch
 
     private static IndexReader reader = null;
     private static BoboIndexReader boboIndexReader = null;
-    private static ObjectPipe<Document> indexingQueue = new ObjectPipe<Document>(100000);
     private static LuceneIndexContainer index = null;
 
     private static Properties properties = null;
@@ -916,7 +969,9 @@ public final class KeywordSearch
     private static Vector<KeywordSearchFacetData> facets;
     private static boolean debugOutput;
     private static Map<String, String> attributePrefixes = null;
-    
+    private static int indexThreads = Math.min(DEFAULT_INDEX_THREADS,
+            Runtime.getRuntime().availableProcessors());
+
     private KeywordSearch() {
         //don't
     }
@@ -1036,6 +1091,13 @@ public final class KeywordSearch
                     } else if (key.startsWith("index.prefix")) {
                         String classAndAttribute = key.substring("index.prefix.".length());
                         addAttributePrefix(classAndAttribute, value);
+                    } else if ("index.threads".equals(key) && !StringUtils.isBlank(value)) {
+                        try {
+                            indexThreads = Math.max(1, Integer.parseInt(value));
+                        } catch (NumberFormatException e) {
+                            LOG.error("keyword_search.properties: index.threads should be a"
+                                    + " number, not '" + value + "'");
+                        }
                     } else if ("search.debug".equals(key) && !StringUtils.isBlank(value)) {
                         debugOutput =
                                 "1".equals(value) || "true".equals(value.toLowerCase())
@@ -1080,6 +1142,7 @@ public final class KeywordSearch
 
         LOG.info("Search - Debug mode: " + debugOutput);
         LOG.info("Indexing - Temp Dir: " + tempDirectory);
+        LOG.info("Indexing - Threads: " + indexThreads);
     }
 
     private static void addAttributePrefix(String classAndAttribute, String prefix) {
@@ -1101,11 +1164,25 @@ public final class KeywordSearch
      * @param path path to store the fsdirectory in
      */
     public static synchronized void initKeywordSearch(InterMineAPI im, String path) {
+        initKeywordSearch(im, path, null);
+    }
+
+    /**
+     * loads the lucene index, using the copy in the local cache directory for this release if
+     * there is one that is up to date with the database, and otherwise fetching it from the
+     * database into the cache first.  The cached index files are memory-mapped rather than read
+     * onto the heap.
+     * @param im API for accessing object store
+     * @param path path under which to keep the cache directory
+     * @param releaseVersion the release version of the webapp, used to name the cache directory
+     */
+    public static synchronized void initKeywordSearch(InterMineAPI im, String path,
+            String releaseVersion) {
         try {
 
             if (index == null) {
-                // try to load index from database first
-                loadIndexFromDatabase(im.getObjectStore(), path);
+                // try the local cache, then the database
+                loadIndexFromDatabase(im.getObjectStore(), path, releaseVersion);
 
                 if (index == null) {
                     LOG.error("lucene index missing!");
@@ -1152,6 +1229,35 @@ public final class KeywordSearch
         }
     }
 
+    /**
+     * closes the readers and forgets the index, so that the next call to initKeywordSearch loads
+     * it again and the next call to saveIndexToDatabase builds it again.
+     * @throws IOException if the index cannot be closed
+     */
+    static synchronized void close() throws IOException {
+        if (boboIndexReader != null) {
+            // also closes the reader it wraps
+            boboIndexReader.close();
+        } else if (reader != null) {
+            reader.close();
+        }
+        boboIndexReader = null;
+        reader = null;
+        if (index != null && index.getDirectory() != null) {
+            index.getDirectory().close();
+        }
+        index = null;
+    }
+
+    /**
+     * sets the number of id range partitions, each with its own thread, used when indexing,
+     * overriding index.threads from keyword_search.properties
+     * @param threads the number of indexing threads
+     */
+    static synchronized void setIndexThreads(int threads) {
+        indexThreads = Math.max(1, threads);
+    }
+
     private static void writeObjectToDB(ObjectStore os, String key, Object object)
         throws IOException, SQLException {
         LOG.info("Saving stream to database...");
@@ -1273,6 +1379,10 @@ public final class KeywordSearch
                 writeObjectToDB(os, MetadataManager.SEARCH_INDEX_DIRECTORY, index.getDirectory());
                 LOG.info("Successfully saved RAM directory to database.");
             }
+
+            // webapps compare this with their cached copy to see if it is out of date
+            MetadataManager.store(db, MetadataManager.SEARCH_INDEX_VERSION,
+                    String.valueOf(System.currentTimeMillis()));
         } catch (IOException e) {
             LOG.error(null, e);
             throw new RuntimeException("Index creation failed: ", e);
@@ -1282,6 +1392,70 @@ public final class KeywordSearch
         }
     }
 
+    /**
+     * re-indexes only the objects of the given classes (and their subclasses) in the index held
+     * in the database, and writes the updated index back.  If there is no suitable index in the
+     * database, the whole index is built instead.
+     *
+     * @param os intermine objectstore
+     * @param classKeys map of classname to key field descriptors (from InterMineAPI)
+     * @param classNames names of the classes whose data has changed
+     */
+    public static void updateIndexInDatabase(ObjectStore os,
+            Map<String, List<FieldDescriptor>> classKeys, Collection<String> classNames) {
+        parseProperties(os);
+        Set<Class<? extends InterMineObject>> classes =
+                new HashSet<Class<? extends InterMineObject>>();
+        for (String className : classNames) {
+            ClassDescriptor cld = os.getModel().getClassDescriptorByName(className);
+            if (cld == null) {
+                throw new IllegalArgumentException("Unknown class: " + className);
+            }
+            addCldToIgnored(classes, cld);
+        }
+        classes.removeAll(ignoredClasses);
+
+        try {
+            long time = System.currentTimeMillis();
+            Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+            index = readIndexContainer(db);
+            InputStream is = MetadataManager.readLargeBinary(db,
+                    MetadataManager.SEARCH_INDEX_DIRECTORY);
+            if (index == null || is == null || !"FSDirectory".equals(index.getDirectoryType())) {
+                LOG.warn("No FSDirectory search index in the database to update - rebuilding the"
+                        + " whole index");
+                index = null;
+                saveIndexToDatabase(os, classKeys);
+                return;
+            }
+            File tempFile = createTempDirectory();
+            unzipDirectory(is, tempFile);
+            index.setDirectory(FSDirectory.open(tempFile));
+
+            IndexWriter writer = new IndexWriter(index.getDirectory(), new WhitespaceAnalyzer(),
+                    false, IndexWriter.MaxFieldLength.UNLIMITED);
+            for (Class<? extends InterMineObject> cls : classes) {
+                String category = os.getModel().getClassDescriptorByName(cls.getName())
+                    .getUnqualifiedName();
+                LOG.info("Removing documents for class " + category + " from the index");
+                writer.deleteDocuments(new Term("Category", category));
+            }
+            int indexed = indexPartitions(os, classKeys, writer, classes);
+            LOG.info("Re-indexed " + indexed + " documents, optimizing index files...");
+            writer.optimize();
+            writer.close();
+            LOG.info("Updating the index for " + classNames + " took "
+                    + (System.currentTimeMillis() - time) + " ms");
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Index update failed: ", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Index update failed: ", e);
+        } catch (SQLException e) {
+            throw new RuntimeException("Index update failed: ", e);
+        }
+        saveIndexToDatabase(os, classKeys);
+    }
+
     /**
      * perform a keyword search over all document metadata fields with lucene
      * @param searchString
@@ -1596,165 +1770,218 @@ public final class KeywordSearch
         return sb.toString().trim();
     }
 
-    private static void loadIndexFromDatabase(ObjectStore os, String path) {
+    private static void loadIndexFromDatabase(ObjectStore os, String path,
+            String releaseVersion) {
         long time = System.currentTimeMillis();
-        LOG.info("Attempting to restore search index from database...");
-        if (os instanceof ObjectStoreInterMineImpl) {
-            Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
-            try {
-                InputStream is = MetadataManager.readLargeBinary(db, MetadataManager.SEARCH_INDEX);
+        if (!(os instanceof ObjectStoreInterMineImpl)) {
+            LOG.error("ObjectStore is of wrong type!");
+            return;
+        }
+        Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+        File cacheRoot = new File(path + File.separator + LUCENE_INDEX_DIR);
+        File cacheDirectory = new File(cacheRoot, getCacheName(releaseVersion));
+        LOG.info("Search index cache directory: " + cacheDirectory);
+        try {
+            String version = MetadataManager.retrieve(db, MetadataManager.SEARCH_INDEX_VERSION);
+            if (version != null && version.equals(readCachedVersion(cacheDirectory))) {
+                index = readCachedContainer(cacheDirectory);
+                if (index != null) {
+                    LOG.info("Using search index from cache, version " + version);
+                }
+            }
+
+            if (index == null) {
+                LOG.info("Attempting to restore search index from database...");
+                // make sure we start with a new cache, and don't leave old releases behind
+                deleteRecursively(cacheRoot);
+                cacheDirectory.mkdirs();
 
-                if (is != null) {
+                index = readIndexContainer(db);
+                if (index == null) {
+                    LOG.warn("No search index in the database");
+                    return;
+                }
+                LOG.info("Successfully restored search index information from database in "
+                        + (System.currentTimeMillis() - time) + " ms");
+                LOG.info("Index: " + index);
+
+                time = System.currentTimeMillis();
+                LOG.info("Attempting to restore search directory from database...");
+                InputStream is = MetadataManager.readLargeBinary(db,
+                        MetadataManager.SEARCH_INDEX_DIRECTORY);
+                if (is == null) {
+                    LOG.warn("Search directory missing from database!");
+                    index = null;
+                    return;
+                }
+                if ("FSDirectory".equals(index.getDirectoryType())) {
+                    unzipDirectory(is, cacheDirectory);
+                    writeCache(cacheDirectory, version);
+                    LOG.info("Successfully restored FS directory from database in "
+                            + (System.currentTimeMillis() - time) + " ms");
+                } else if ("RAMDirectory".equals(index.getDirectoryType())) {
                     GZIPInputStream gzipInput = new GZIPInputStream(is);
                     ObjectInputStream objectInput = new ObjectInputStream(gzipInput);
 
                     try {
                         Object object = objectInput.readObject();
 
-                        if (object instanceof LuceneIndexContainer) {
-                            index = (LuceneIndexContainer) object;
+                        if (object instanceof RAMDirectory) {
+                            index.setDirectory((RAMDirectory) object);
 
-                            LOG.info("Successfully restored search index information"
-                                    + " from database in " + (System.currentTimeMillis() - time)
-                                    + " ms");
-                            LOG.info("Index: " + index);
-                        } else {
-                            LOG.warn("Object from DB has wrong class:"
-                                    + object.getClass().getName());
+                            LOG.info("Successfully restored RAM directory from database in "
+                                    + (System.currentTimeMillis() - time) + " ms");
                         }
                     } finally {
                         objectInput.close();
                         gzipInput.close();
                     }
                 } else {
-                    LOG.warn("IS is null");
+                    LOG.warn("Unknown directory type specified: " + index.getDirectoryType());
                 }
+            }
 
-                if (index != null) {
-                    time = System.currentTimeMillis();
-                    LOG.info("Attempting to restore search directory from database...");
-                    is =
-                            MetadataManager.readLargeBinary(db,
-                                    MetadataManager.SEARCH_INDEX_DIRECTORY);
-
-                    if (is != null) {
-                        if ("FSDirectory".equals(index.getDirectoryType())) {
-                            final int bufferSize = 2048;
-                            File directoryPath = new File(path + File.separator + LUCENE_INDEX_DIR);
-                            LOG.info("Directory path: " + directoryPath);
-
-                            // make sure we start with a new index
-                            if (directoryPath.exists()) {
-                                String[] files = directoryPath.list();
-                                for (int i = 0; i < files.length; i++) {
-                                    LOG.info("Deleting old file: " + files[i]);
-                                    new File(directoryPath.getAbsolutePath() + File.separator
-                                            + files[i]).delete();
-                                }
-                            } else {
-                                directoryPath.mkdir();
-                            }
-
-                            ZipInputStream zis = new ZipInputStream(is);
-                            ZipEntry entry;
-                            while ((entry = zis.getNextEntry()) != null) {
-                                LOG.info("Extracting: " + entry.getName() + " (" + entry.getSize()
-                                        + " MB)");
-
-                                FileOutputStream fos =
-                                        new FileOutputStream(directoryPath.getAbsolutePath()
-                                                + File.separator + entry.getName());
-                                BufferedOutputStream bos =
-                                        new BufferedOutputStream(fos, bufferSize);
-
-                                int count;
-                                byte[] data = new byte[bufferSize];
-
-                                while ((count = zis.read(data, 0, bufferSize)) != -1) {
-                                    bos.write(data, 0, count);
-                                }
+            if ("FSDirectory".equals(index.getDirectoryType())) {
+                index.setDirectory(new MMapDirectory(cacheDirectory));
+            }
+            LOG.info("Directory: " + index.getDirectory());
+        } catch (ClassNotFoundException e) {
+            LOG.error("Could not load search index", e);
+            index = null;
+        } catch (SQLException e) {
+            LOG.error("Could not load search index", e);
+            index = null;
+        } catch (IOException e) {
+            LOG.error("Could not load search index", e);
+            index = null;
+        }
+    }
 
-                                bos.flush();
-                                bos.close();
-                            }
+    private static LuceneIndexContainer readIndexContainer(Database db)
+        throws SQLException, IOException, ClassNotFoundException {
+        InputStream is = MetadataManager.readLargeBinary(db, MetadataManager.SEARCH_INDEX);
+        if (is == null) {
+            return null;
+        }
+        ObjectInputStream objectInput = new ObjectInputStream(new GZIPInputStream(is));
+        try {
+            Object object = objectInput.readObject();
+            if (object instanceof LuceneIndexContainer) {
+                return (LuceneIndexContainer) object;
+            }
+            LOG.warn("Object from DB has wrong class:" + object.getClass().getName());
+            return null;
+        } finally {
+            objectInput.close();
+        }
+    }
 
-                            FSDirectory directory = FSDirectory.open(directoryPath);
-                            index.setDirectory(directory);
+    private static String getCacheName(String releaseVersion) {
+        if (StringUtils.isBlank(releaseVersion)) {
+            return "current";
+        }
+        return releaseVersion.trim().replaceAll("[^A-Za-z0-9._-]", "_");
+    }
 
-                            LOG.info("Successfully restored FS directory from database in "
-                                    + (System.currentTimeMillis() - time) + " ms");
-                            time = System.currentTimeMillis();
-                        } else if ("RAMDirectory".equals(index.getDirectoryType())) {
-                            GZIPInputStream gzipInput = new GZIPInputStream(is);
-                            ObjectInputStream objectInput = new ObjectInputStream(gzipInput);
+    private static String readCachedVersion(File cacheDirectory) throws IOException {
+        File versionFile = new File(cacheDirectory, INDEX_VERSION_FILE);
+        if (!versionFile.exists()) {
+            return null;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(versionFile));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
 
-                            try {
-                                Object object = objectInput.readObject();
+    private static LuceneIndexContainer readCachedContainer(File cacheDirectory)
+        throws IOException, ClassNotFoundException {
+        File containerFile = new File(cacheDirectory, INDEX_CONTAINER_FILE);
+        if (!containerFile.exists()) {
+            return null;
+        }
+        ObjectInputStream objectInput = new ObjectInputStream(new BufferedInputStream(
+                    new FileInputStream(containerFile)));
+        try {
+            return (LuceneIndexContainer) objectInput.readObject();
+        } finally {
+            objectInput.close();
+        }
+    }
 
-                                if (object instanceof FSDirectory) {
-                                    RAMDirectory directory = (RAMDirectory) object;
-                                    index.setDirectory(directory);
+    /**
+     * writes the index information into the cache directory, and then the version.  The version
+     * is written last, so that an interrupted download is never mistaken for a complete one.
+     */
+    private static void writeCache(File cacheDirectory, String version) throws IOException {
+        ObjectOutputStream objectOutput = new ObjectOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(new File(cacheDirectory, INDEX_CONTAINER_FILE))));
+        try {
+            objectOutput.writeObject(index);
+        } finally {
+            objectOutput.close();
+        }
+        if (version != null) {
+            FileWriter writer = new FileWriter(new File(cacheDirectory, INDEX_VERSION_FILE));
+            try {
+                writer.write(version);
+            } finally {
+                writer.close();
+            }
+        }
+    }
 
-                                    time = System.currentTimeMillis() - time;
-                                    LOG.info("Successfully restored RAM directory"
-                                            + " from database in " + time + " ms");
-                                }
-                            } finally {
-                                objectInput.close();
-                                gzipInput.close();
-                            }
-                        } else {
-                            LOG.warn("Unknown directory type specified: "
-                                    + index.getDirectoryType());
-                        }
+    private static void unzipDirectory(InputStream is, File directoryPath) throws IOException {
+        final int bufferSize = 2048;
+        ZipInputStream zis = new ZipInputStream(is);
+        try {
+            ZipEntry entry;
+            byte[] data = new byte[bufferSize];
+            while ((entry = zis.getNextEntry()) != null) {
+                LOG.info("Extracting: " + entry.getName() + " (" + entry.getSize() + " bytes)");
 
-                        LOG.info("Directory: " + index.getDirectory());
-                    } else {
-                        LOG.warn("index is null!");
+                BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(
+                            new File(directoryPath, entry.getName())), bufferSize);
+                try {
+                    int count;
+                    while ((count = zis.read(data, 0, bufferSize)) != -1) {
+                        bos.write(data, 0, count);
                     }
+                } finally {
+                    bos.close();
                 }
-            } catch (ClassNotFoundException e) {
-                LOG.error("Could not load search index", e);
-            } catch (SQLException e) {
-                LOG.error("Could not load search index", e);
-            } catch (IOException e) {
-                LOG.error("Could not load search index", e);
             }
-        } else {
-            LOG.error("ObjectStore is of wrong type!");
+        } finally {
+            zis.close();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                deleteRecursively(child);
+            }
+        }
+        if (file.exists()) {
+            LOG.info("Deleting old file: " + file);
+            file.delete();
         }
     }
 
     private static File createIndex(ObjectStore os, Map<String, List<FieldDescriptor>> classKeys)
         throws IOException {
         long time = System.currentTimeMillis();
-        File tempFile = null;
         LOG.info("Creating keyword search index...");
 
         parseProperties(os);
 
-        LOG.info("Starting fetcher thread...");
-        InterMineObjectFetcher fetchThread =
-                new InterMineObjectFetcher(os, classKeys, indexingQueue, ignoredClasses,
-                        ignoredFields, specialReferences, classBoost, facets, attributePrefixes);
-        fetchThread.start();
-
-        // index the docs queued by the fetchers
         LOG.info("Preparing indexer...");
         index = new LuceneIndexContainer();
-        try {
-            tempFile = makeTempFile(tempDirectory);
-        } catch (IOException e) {
-            String tmpDir = System.getProperty("java.io.tmpdir");
-            LOG.warn("Failed to create temp directory " + tempDirectory + " trying " + tmpDir
-                    + " instead", e);
-            try {
-                tempFile = makeTempFile(tmpDir);
-            } catch (IOException ee) {
-                LOG.warn("Failed to create temp directory in " + tmpDir, ee);
-                throw ee;
-            }
-        }
+        File tempFile = createTempDirectory();
+        index.setDirectory(FSDirectory.open(tempFile));
+        index.setDirectoryType("FSDirectory");
 
         LOG.info("Index directory: " + tempFile.getAbsolutePath());
 
@@ -1764,34 +1991,8 @@ public final class KeywordSearch
         writer.setMergeFactor(10); //10 default, higher values = more parts
         writer.setRAMBufferSizeMB(64); //flush to disk when docs take up X MB
 
-        int indexed = 0;
-
-        // loop and index while we still have fetchers running
-        LOG.info("Starting to index...");
-        while (indexingQueue.hasNext()) {
-            Document doc = indexingQueue.next();
+        int indexed = indexPartitions(os, classKeys, writer, null);
 
-            // nothing in the queue?
-            if (doc != null) {
-                try {
-                    writer.addDocument(doc);
-                    indexed++;
-                } catch (IOException e) {
-                    LOG.error("Failed to submit #" + doc.getFieldable("id") + " to the index",
-                            e);
-                }
-
-                if (indexed % 10000 == 1) {
-                    LOG.info("docs indexed=" + indexed + "; thread state="
-                            + fetchThread.getState() + "; docs/ms=" + indexed * 1.0F
-                            / (System.currentTimeMillis() - time) + "; memory="
-                            + Runtime.getRuntime().freeMemory() / 1024 + "k/"
-                            + Runtime.getRuntime().maxMemory() / 1024 + "k" + "; time="
-                            + (System.currentTimeMillis() - time) + "ms");
-                }
-            }
-        }
-        index.getFieldNames().addAll(fetchThread.getFieldNames());
         LOG.info("Indexing done, optimizing index files...");
         try {
             writer.optimize();
@@ -1808,6 +2009,120 @@ public final class KeywordSearch
         return tempFile;
     }
 
+    /**
+     * splits the objects to index into id ranges, indexes each range into its own segment
+     * directory on a separate thread, and then merges the segments into the given writer
+     * @return the number of documents indexed
+     */
+    private static int indexPartitions(ObjectStore os,
+            Map<String, List<FieldDescriptor>> classKeys, IndexWriter writer,
+            Set<Class<? extends InterMineObject>> classes) throws IOException {
+        long time = System.currentTimeMillis();
+        Integer[] bounds = getPartitionBounds(os, classes, indexThreads);
+        int partitions = bounds.length - 1;
+        LOG.info("Starting " + partitions + " fetcher and indexer threads...");
+        List<PartitionIndexer> indexers = new ArrayList<PartitionIndexer>();
+        for (int i = 0; i < partitions; i++) {
+            ObjectPipe<Document> indexingQueue =
+                new ObjectPipe<Document>(INDEXING_QUEUE_SIZE / partitions);
+            InterMineObjectFetcher fetcher =
+                new InterMineObjectFetcher(os, classKeys, indexingQueue, ignoredClasses,
+                        ignoredFields, specialReferences, classBoost, facets, attributePrefixes);
+            fetcher.setPartition(classes, bounds[i], bounds[i + 1]);
+            fetcher.setName("IMOFetcher " + (i + 1) + " of " + partitions);
+            LOG.info("Partition " + (i + 1) + ": ids from " + bounds[i] + " to " + bounds[i + 1]);
+            indexers.add(new PartitionIndexer(fetcher, indexingQueue, createTempDirectory()));
+        }
+        for (PartitionIndexer indexer : indexers) {
+            indexer.start();
+        }
+
+        int indexed = 0;
+        IOException failure = null;
+        Directory[] segments = new Directory[partitions];
+        for (int i = 0; i < partitions; i++) {
+            PartitionIndexer indexer = indexers.get(i);
+            try {
+                indexer.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted while indexing", e);
+            }
+            if (indexer.getFailure() != null) {
+                failure = indexer.getFailure();
+            }
+            indexed += indexer.getIndexed();
+            index.getFieldNames().addAll(indexer.getFieldNames());
+            segments[i] = FSDirectory.open(indexer.getDirectory());
+        }
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            LOG.info("Indexed " + indexed + " documents in " + partitions + " partitions in "
+                    + (System.currentTimeMillis() - time) + " ms, merging segments...");
+            writer.addIndexesNoOptimize(segments);
+        } finally {
+            for (int i = 0; i < partitions; i++) {
+                segments[i].close();
+                deleteRecursively(indexers.get(i).getDirectory());
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * works out object id boundaries that split the objects to index into roughly equal ranges.
+     * The first and last boundaries are null, meaning unbounded.
+     */
+    private static Integer[] getPartitionBounds(ObjectStore os,
+            Set<Class<? extends InterMineObject>> classes, int partitions) {
+        if (partitions > 1) {
+            Query q = new Query();
+            QueryClass qc = new QueryClass(InterMineObject.class);
+            q.addFrom(qc);
+            QueryField id = new QueryField(qc, "id");
+            q.addToSelect(new QueryFunction(id, QueryFunction.MIN));
+            q.addToSelect(new QueryFunction(id, QueryFunction.MAX));
+            if (classes != null) {
+                q.setConstraint(new BagConstraint(new QueryField(qc, "class"), ConstraintOp.IN,
+                            classes));
+            }
+            try {
+                List<ResultsRow<Object>> rows = os.execute(q, 0, 1, false, false,
+                        ObjectStore.SEQUENCE_IGNORE);
+                if (!rows.isEmpty() && rows.get(0).get(0) != null) {
+                    long min = ((Number) rows.get(0).get(0)).longValue();
+                    long max = ((Number) rows.get(0).get(1)).longValue();
+                    long step = (max - min) / partitions + 1;
+                    Integer[] bounds = new Integer[partitions + 1];
+                    for (int i = 1; i < partitions; i++) {
+                        bounds[i] = new Integer((int) (min + step * i));
+                    }
+                    return bounds;
+                }
+            } catch (ObjectStoreException e) {
+                LOG.warn("Could not find id range of objects to index - using one partition", e);
+            }
+        }
+        return new Integer[2];
+    }
+
+    private static File createTempDirectory() throws IOException {
+        try {
+            return makeTempFile(tempDirectory);
+        } catch (IOException e) {
+            String tmpDir = System.getProperty("java.io.tmpdir");
+            LOG.warn("Failed to create temp directory " + tempDirectory + " trying " + tmpDir
+                    + " instead", e);
+            try {
+                return makeTempFile(tmpDir);
+            } catch (IOException ee) {
+                LOG.warn("Failed to create temp directory in " + tmpDir, ee);
+                throw ee;
+            }
+        }
+    }
+
     private static File makeTempFile(String tempDir) throws IOException {
         LOG.info("Creating search index tmp dir: " + tempDir);
         File tempFile = File.createTempFile("search_index", "", new File(tempDir));
@@ -1815,9 +2130,6 @@ public final class KeywordSearch
             throw new IOException("Could not delete temp file");
         }
 
-        index.setDirectory(FSDirectory.open(tempFile));
-        index.setDirectoryType("FSDirectory");
-
         // make sure we start with a new index
         if (tempFile.exists()) {
             String[] files = tempFile.list();
@@ -1831,6 +2143,85 @@ public final class KeywordSearch
         return tempFile;
     }
 
+    /**
+     * thread that runs a fetcher for one partition of the objects, and indexes the documents it
+     * produces into a separate segment directory
+     */
+    private static class PartitionIndexer extends Thread
+    {
+        private final InterMineObjectFetcher fetcher;
+        private final ObjectPipe<Document> indexingQueue;
+        private final File directory;
+        private IOException failure = null;
+        private int indexed = 0;
+
+        PartitionIndexer(InterMineObjectFetcher fetcher, ObjectPipe<Document> indexingQueue,
+                File directory) {
+            super("Indexer for " + fetcher.getName());
+            this.fetcher = fetcher;
+            this.indexingQueue = indexingQueue;
+            this.directory = directory;
+        }
+
+        @Override
+        public void run() {
+            long time = System.currentTimeMillis();
+            fetcher.start();
+            try {
+                IndexWriter writer = new IndexWriter(FSDirectory.open(directory),
+                        new WhitespaceAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+                writer.setRAMBufferSizeMB(32);
+                while (indexingQueue.hasNext()) {
+                    Document doc = indexingQueue.next();
+
+                    // nothing in the queue?
+                    if (doc != null) {
+                        try {
+                            writer.addDocument(doc);
+                            indexed++;
+                        } catch (IOException e) {
+                            LOG.error("Failed to submit #" + doc.getFieldable("id")
+                                    + " to the index", e);
+                        }
+
+                        if (indexed % 10000 == 1) {
+                            LOG.info(getName() + ": docs indexed=" + indexed + "; thread state="
+                                    + fetcher.getState() + "; docs/ms=" + indexed * 1.0F
+                                    / (System.currentTimeMillis() - time) + "; memory="
+                                    + Runtime.getRuntime().freeMemory() / 1024 + "k/"
+                                    + Runtime.getRuntime().maxMemory() / 1024 + "k" + "; time="
+                                    + (System.currentTimeMillis() - time) + "ms");
+                        }
+                    }
+                }
+                writer.close();
+            } catch (IOException e) {
+                LOG.error("Failed to write index segment " + directory, e);
+                failure = e;
+                // let the fetcher finish rather than leaving it blocked on a full queue
+                while (indexingQueue.hasNext()) {
+                    indexingQueue.next();
+                }
+            }
+        }
+
+        File getDirectory() {
+            return directory;
+        }
+
+        IOException getFailure() {
+            return failure;
+        }
+
+        int getIndexed() {
+            return indexed;
+        }
+
+        Set<String> getFieldNames() {
+            return fetcher.getFieldNames();
+        }
+    }
+
     /**
      * recurse into class descriptor and add all subclasses to ignoredClasses
      * @param ignoredClasses
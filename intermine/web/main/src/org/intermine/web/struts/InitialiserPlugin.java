@@ -91,6 +91,8 @@ import org.intermine.web.logic.config.FieldConfig;
 import org.intermine.web.logic.config.FieldConfigHelper;
 import org.intermine.web.logic.config.WebConfig;
 import org.intermine.web.logic.session.SessionMethods;
+import org.intermine.web.logic.widget.PopulationCountsCache;
+import org.intermine.webservice.server.core.JobManager;
 import org.intermine.webservice.server.query.result.XMLValidator;
 import org.jfree.util.Log;
 
@@ -239,10 +241,34 @@ public class InitialiserPlugin implements PlugIn
                 }
 
                 doRegistration(webProperties);
+
+                if (webConfig != null) {
+                    precomputeEnrichmentPopulations(webProperties, webConfig);
+                }
             }
         }
     }
 
+    /**
+     * Fill the enrichment widget population cache in the background if the property
+     * widgets.enrichment.precompute is set, so that early widget requests only need to run
+     * their sample queries.
+     */
+    private void precomputeEnrichmentPopulations(Properties webProperties,
+            final WebConfig webConfig) {
+        if (!"true".equals(webProperties.getProperty("widgets.enrichment.precompute"))) {
+            return;
+        }
+        Thread precompute = new Thread("Enrichment population precompute") {
+            @Override
+            public void run() {
+                PopulationCountsCache.precompute(os, webConfig);
+            }
+        };
+        precompute.setDaemon(true);
+        precompute.start();
+    }
+
     private void initBlockingErrors(ServletContext servletContext) {
         blockingErrorKeys = new HashMap<String, String>();
         SessionMethods.setErrorOnInitialiser(servletContext, blockingErrorKeys);
@@ -770,6 +796,7 @@ public class InitialiserPlugin implements PlugIn
      * Destroy method called at Servlet destroy. Close connection pool
      */
     public void destroy() {
+        JobManager.shutdownInstance();
         if (profileManager != null) {
             ((ObjectStoreWriterInterMineImpl) profileManager.getProfileObjectStoreWriter())
                 .getDatabase().shutdown();
@@ -80,7 +80,8 @@ public class KeywordSearchResultsController extends TilesAction
             intialiseLogging(SessionMethods.getWebProperties(servletContext).getProperty(
                     "project.title", "unknown").toLowerCase());
         }
-        KeywordSearch.initKeywordSearch(im, contextPath);
+        KeywordSearch.initKeywordSearch(im, contextPath, SessionMethods.getWebProperties(
+                    servletContext).getProperty("project.releaseVersion"));
         Vector<KeywordSearchFacetData> facets = KeywordSearch.getFacets();
         int totalHits = 0;
 
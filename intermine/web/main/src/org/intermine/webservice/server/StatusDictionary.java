@@ -43,6 +43,10 @@ public abstract class StatusDictionary
                 ret = "OK"; break;
             case Output.NOT_ACCEPTABLE:
                 ret = "NOT ACCEPTABLE"; break;
+            case Output.SC_TOO_MANY_REQUESTS:
+                ret = "Too many requests."; break;
+            case Output.SC_SERVICE_UNAVAILABLE:
+                ret = "Service unavailable."; break;
             default:
                 ret = "Unknown Status";
         }
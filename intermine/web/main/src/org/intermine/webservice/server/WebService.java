@@ -17,10 +17,16 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.net.HttpURLConnection;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -44,14 +50,17 @@ import org.intermine.web.logic.export.Exporter;
 import org.intermine.web.logic.export.ResponseUtil;
 import org.intermine.web.logic.profile.LoginHandler;
 import org.intermine.webservice.server.core.ListManager;
+import org.intermine.webservice.server.core.RateLimiter;
 import org.intermine.webservice.server.exceptions.BadRequestException;
 import org.intermine.webservice.server.exceptions.InternalErrorException;
 import org.intermine.webservice.server.exceptions.MissingParameterException;
 import org.intermine.webservice.server.exceptions.NotAcceptableException;
+import org.intermine.webservice.server.exceptions.RateLimitException;
 import org.intermine.webservice.server.exceptions.ServiceException;
 import org.intermine.webservice.server.exceptions.ServiceForbiddenException;
 import org.intermine.webservice.server.exceptions.UnauthorizedException;
 import org.intermine.webservice.server.output.CSVFormatter;
+import org.intermine.webservice.server.output.EncodingOutput;
 import org.intermine.webservice.server.output.HTMLTableFormatter;
 import org.intermine.webservice.server.output.JSONCountFormatter;
 import org.intermine.webservice.server.output.JSONFormatter;
@@ -101,6 +110,7 @@ public abstract class WebService {
 
     private static final String COMPRESS = "compress";
     private static final String GZIP = "gzip";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
     private static final String ZIP = "zip";
 
     private static final Logger LOG = Logger.getLogger(WebService.class);
@@ -114,6 +124,13 @@ public abstract class WebService {
     private static final String WS_HEADERS_PREFIX = "ws.response.header";
     private static final String BOTS = "ws.robots";
     private static final String WEB_SERVICE_DISABLED_PROPERTY = "webservice.disabled";
+    private static final String RATE_LIMIT_PROPERTY = "webservice.ratelimit";
+    private static final String AUTHENTICATED_SUFFIX = ".authenticated";
+    private static final String TRUSTED_PROXIES_PROPERTY = "webservice.proxies";
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+    private static final int RATE_LIMIT_PERIOD = 60 * 60;
+    private static final ConcurrentMap<String, RateLimiter> RATE_LIMITERS =
+        new ConcurrentHashMap<String, RateLimiter>();
 
     /**
      * The servlet request.
@@ -343,6 +360,7 @@ public abstract class WebService {
                 initOutput();
                 checkEnabled();
                 authenticate();
+                checkRateLimit();
                 initialised = true;
                 postInit();
                 validateState();
@@ -487,6 +505,114 @@ public abstract class WebService {
         LoginHandler.setUpPermission(im, permission);
     }
 
+    /**
+     * Refuses the request if the client has used up its quota for this service. Quotas are
+     * requests per hour, read from the first of these properties that is set:
+     * <ul>
+     * <li><tt>webservice.ratelimit.ServiceName.authenticated</tt> and
+     *     <tt>webservice.ratelimit.authenticated</tt>, for authenticated users</li>
+     * <li><tt>webservice.ratelimit.ServiceName</tt></li>
+     * <li><tt>webservice.ratelimit</tt></li>
+     * </ul>
+     * where ServiceName is the simple class name of the service. Authenticated requests are
+     * counted per user, others per client address, as found by getClientAddress(). There is no
+     * limit if none of these are set.
+     */
+    private void checkRateLimit() {
+        String serviceName = getClass().getSimpleName();
+        boolean authenticated = isAuthenticated();
+        String limit = null;
+        if (authenticated) {
+            limit = webProperties.getProperty(RATE_LIMIT_PROPERTY + "." + serviceName
+                    + AUTHENTICATED_SUFFIX, webProperties.getProperty(RATE_LIMIT_PROPERTY
+                            + AUTHENTICATED_SUFFIX));
+        }
+        if (limit == null) {
+            limit = webProperties.getProperty(RATE_LIMIT_PROPERTY + "." + serviceName,
+                    webProperties.getProperty(RATE_LIMIT_PROPERTY));
+        }
+        if (StringUtils.isBlank(limit)) {
+            return;
+        }
+        String limiterName = serviceName + (authenticated ? AUTHENTICATED_SUFFIX : "");
+        RateLimiter limiter = RATE_LIMITERS.get(limiterName);
+        if (limiter == null) {
+            int maxRequests;
+            try {
+                maxRequests = Integer.parseInt(limit.trim());
+            } catch (NumberFormatException e) {
+                LOG.error("Configured rate limit for " + serviceName + " is not a valid integer: "
+                        + limit);
+                return;
+            }
+            RATE_LIMITERS.putIfAbsent(limiterName,
+                    new RateLimiter(limiterName, RATE_LIMIT_PERIOD, maxRequests));
+            limiter = RATE_LIMITERS.get(limiterName);
+        }
+        String client = authenticated ? getPermission().getProfile().getUsername()
+            : getClientAddress();
+        if (!limiter.tryAcquire(client)) {
+            throw new RateLimitException(client, limiter.getMaxRequests(), serviceName);
+        }
+    }
+
+    /**
+     * Returns the rate limiters of all web services, for monitoring.
+     *
+     * @return a collection of RateLimiters
+     */
+    public static Collection<RateLimiter> getRateLimiters() {
+        return Collections.unmodifiableCollection(RATE_LIMITERS.values());
+    }
+
+    /**
+     * Returns the address of the client. When the request comes through one of the proxies
+     * listed in the <tt>webservice.proxies</tt> property (a comma separated list of addresses),
+     * this is the address the proxies received the request from, as given by their
+     * X-Forwarded-For headers. Otherwise it is the address the request came from, as the header
+     * could be set by anyone.
+     *
+     * @return an IP address
+     */
+    protected String getClientAddress() {
+        String proxies = webProperties.getProperty(TRUSTED_PROXIES_PROPERTY);
+        if (StringUtils.isBlank(proxies)) {
+            return request.getRemoteAddr();
+        }
+        Set<String> trustedProxies = new HashSet<String>();
+        for (String proxy : proxies.split(",")) {
+            trustedProxies.add(proxy.trim());
+        }
+        return getClientAddress(request.getRemoteAddr(), request.getHeader(FORWARDED_FOR_HEADER),
+                trustedProxies);
+    }
+
+    /**
+     * Returns the address of the client, following the X-Forwarded-For header back through the
+     * trusted proxies. The header lists the addresses each proxy received the request from, so it
+     * is read from the end, and the first address that is not a trusted proxy is the client.
+     *
+     * @param remoteAddr the address the request came from
+     * @param forwardedFor the value of the X-Forwarded-For header, or null
+     * @param trustedProxies the addresses of the proxies in front of the webapp
+     * @return an IP address
+     */
+    protected static String getClientAddress(String remoteAddr, String forwardedFor,
+            Set<String> trustedProxies) {
+        String client = remoteAddr;
+        if ((forwardedFor != null) && trustedProxies.contains(client)) {
+            String[] hops = forwardedFor.split(",");
+            for (int i = hops.length - 1; (i >= 0) && trustedProxies.contains(client); i--) {
+                String hop = hops[i].trim();
+                if (hop.length() == 0) {
+                    break;
+                }
+                client = hop;
+            }
+        }
+        return client;
+    }
+
     private void sendError(Throwable t, HttpServletResponse response) {
 
         String msg = WebServiceConstants.SERVICE_FAILED_MSG;
@@ -665,6 +791,7 @@ public abstract class WebService {
     }
 
     private PrintWriter out = null;
+    private OutputStream os = null;
  
     /**
      * Get access to the underlying print-writer.
@@ -676,6 +803,17 @@ public abstract class WebService {
         return out;
     }
 
+    /**
+     * Get access to the (possibly compressed) stream the print-writer writes to, for outputs
+     * that encode their own text.
+     *
+     * Most services should not need this method.
+     * @return The raw output stream.
+     */
+    protected OutputStream getRawOutputStream() {
+        return os;
+    }
+
     private void initOutput() {
         final String separator;
         if (RequestUtil.isWindowsClient(request)) {
@@ -685,13 +823,12 @@ public abstract class WebService {
         }
         Format format = getFormat();
 
-        OutputStream os;
         try {
             // set reasonable buffer size
             response.setBufferSize(8 * 1024);
             os = response.getOutputStream();
             if (isGzip()) {
-                os = new GZIPOutputStream(os);
+                os = new GZIPOutputStream(os, GZIP_BUFFER_SIZE);
             } else if (isZip()) {
                 os = new ZipOutputStream(new BufferedOutputStream(os));
             }
@@ -711,7 +848,7 @@ public abstract class WebService {
             output = makeXMLOutput(out, separator);
             break;
         case TSV:
-            output = new StreamedOutput(out, new TabFormatter(
+            output = new EncodingOutput(out, os, new TabFormatter(
                     StringUtils.equals(getProperty("ws.tsv.quoted"), "true")),
                     separator);
             filename = "result.tsv";
@@ -720,7 +857,7 @@ public abstract class WebService {
             }
             break;
         case CSV:
-            output = new StreamedOutput(out, new CSVFormatter(), separator);
+            output = new EncodingOutput(out, os, new CSVFormatter(), separator);
             filename = "result.csv";
             if (isUncompressed()) {
                 ResponseUtil.setCSVHeader(response, filename);
@@ -744,7 +881,7 @@ public abstract class WebService {
             }
             break;
         case OBJECTS:
-            output = new StreamedOutput(out, new JSONObjectFormatter(),
+            output = new EncodingOutput(out, os, new JSONObjectFormatter(),
                     separator);
             filename = "result.json";
             if (isUncompressed()) {
@@ -760,7 +897,7 @@ public abstract class WebService {
             }
             break;
         case ROWS:
-            output = new StreamedOutput(out, new JSONRowFormatter(), separator);
+            output = new EncodingOutput(out, os, new JSONRowFormatter(), separator);
             if (isUncompressed()) {
                 ResponseUtil.setJSONHeader(response, "result.json", formatIsJSONP());
             }
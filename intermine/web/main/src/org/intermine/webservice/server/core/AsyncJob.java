@@ -0,0 +1,250 @@
+package org.intermine.webservice.server.core;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import org.apache.log4j.Logger;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+
+/**
+ * A piece of work that a web service runs in the background with a JobManager, so that the
+ * request that starts it can return at once with the job's id. The client then polls for the
+ * status of the job and fetches the result when it is done.
+ *
+ * While it runs, the job's thread is registered with the ObjectStore using the job as the request
+ * ID, so cancelling a running job cancels the query it is waiting for.
+ */
+public abstract class AsyncJob implements Runnable
+{
+    /** The states of a job */
+    public enum JobStatus {
+        /** Waiting for a thread */
+        PENDING,
+        /** Running */
+        RUNNING,
+        /** Finished, with a result */
+        SUCCESS,
+        /** Finished with an error */
+        ERROR,
+        /** Cancelled before it finished */
+        CANCELLED
+    };
+
+    private static final Logger LOG = Logger.getLogger(AsyncJob.class);
+
+    private final String owner;
+    private final ObjectStore os;
+    private final long submittedAt = System.currentTimeMillis();
+    private String uid;
+    private JobStatus status = JobStatus.PENDING;
+    private Exception error = null;
+    private long startedAt = 0;
+    private long finishedAt = 0;
+    private volatile int progress = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param owner the user name or address of the client that started the job, which the
+     * JobManager uses to limit the number of jobs each client may run at once
+     * @param os the ObjectStore that the job queries, so that it can be cancelled, or null
+     */
+    protected AsyncJob(String owner, ObjectStore os) {
+        this.owner = owner;
+        this.os = os;
+    }
+
+    /**
+     * Does the work of the job. This is called once, by a thread of the JobManager.
+     *
+     * @throws Exception if the job fails
+     */
+    protected abstract void execute() throws Exception;
+
+    /**
+     * Returns the size of the result of the job, once it has finished. The JobManager drops the
+     * oldest finished jobs when the total size of their results is too large. The unit is up to
+     * the job, but should be roughly proportional to the memory used by the result.
+     *
+     * @return the size of the result
+     */
+    public abstract long getResultSize();
+
+    /**
+     * Runs the job, unless it has been cancelled.
+     */
+    @Override
+    public final void run() {
+        synchronized (this) {
+            if (status != JobStatus.PENDING) {
+                return;
+            }
+            status = JobStatus.RUNNING;
+            startedAt = System.currentTimeMillis();
+        }
+        ObjectStoreInterMineImpl ios = (os instanceof ObjectStoreInterMineImpl)
+            ? (ObjectStoreInterMineImpl) os : null;
+        Exception failure = null;
+        try {
+            if (ios != null) {
+                ios.registerRequestId(this);
+            }
+            try {
+                execute();
+            } finally {
+                if (ios != null) {
+                    ios.deregisterRequestId(this);
+                }
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+        synchronized (this) {
+            finishedAt = System.currentTimeMillis();
+            if (status == JobStatus.CANCELLED) {
+                return;
+            }
+            if (failure == null) {
+                progress = 100;
+                status = JobStatus.SUCCESS;
+            } else {
+                LOG.warn("Job " + uid + " failed", failure);
+                error = failure;
+                status = JobStatus.ERROR;
+            }
+        }
+    }
+
+    /**
+     * Cancels the job. A job that is waiting will not be run, and a job that is running has its
+     * current query cancelled.
+     *
+     * @return true if the job had not finished
+     */
+    public boolean cancel() {
+        synchronized (this) {
+            if (isFinished()) {
+                return false;
+            }
+            boolean running = status == JobStatus.RUNNING;
+            status = JobStatus.CANCELLED;
+            if (!running) {
+                finishedAt = System.currentTimeMillis();
+                return true;
+            }
+        }
+        if (os instanceof ObjectStoreInterMineImpl) {
+            try {
+                ((ObjectStoreInterMineImpl) os).cancelRequest(this);
+            } catch (ObjectStoreException e) {
+                LOG.warn("Could not cancel the query of job " + uid, e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets how far through its work the job is.
+     *
+     * @param progress a percentage
+     */
+    protected void setProgress(int progress) {
+        this.progress = Math.max(0, Math.min(100, progress));
+    }
+
+    /**
+     * Returns how far through its work the job is.
+     *
+     * @return a percentage
+     */
+    public int getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return the id of the job, set when it is submitted to a JobManager
+     */
+    public synchronized String getUid() {
+        return uid;
+    }
+
+    /**
+     * Sets the id of the job.
+     *
+     * @param uid the id
+     */
+    synchronized void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    /**
+     * @return the user name or address of the client that started the job
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the status
+     */
+    public synchronized JobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the job has succeeded, failed or been cancelled
+     */
+    public synchronized boolean isFinished() {
+        return (status != JobStatus.PENDING) && (status != JobStatus.RUNNING);
+    }
+
+    /**
+     * @return true unless the job has failed
+     */
+    public synchronized boolean wasSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return the exception that the job failed with, or null
+     */
+    public synchronized Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return the time the job was submitted, in milliseconds
+     */
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    /**
+     * @return the time the job started running, or zero if it hasn't
+     */
+    public synchronized long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return the time the job finished, or zero if it hasn't
+     */
+    public synchronized long getFinishedAt() {
+        return finishedAt;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [uid=" + getUid() + ", owner=" + owner
+            + ", status=" + getStatus() + "]";
+    }
+}
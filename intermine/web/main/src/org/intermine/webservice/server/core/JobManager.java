@@ -0,0 +1,290 @@
+package org.intermine.webservice.server.core;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs AsyncJobs for web services on a fixed number of threads, and keeps them so that clients
+ * can ask for their status and results.
+ *
+ * <ul>
+ * <li>At most <tt>webservice.jobs.threads</tt> jobs run at once, and at most
+ *     <tt>webservice.jobs.queue</tt> wait for a thread. Jobs submitted beyond that are
+ *     refused.</li>
+ * <li>Each client may have at most <tt>webservice.jobs.per-user</tt> jobs waiting or
+ *     running.</li>
+ * <li>Finished jobs are dropped <tt>webservice.jobs.expiry</tt> seconds after they finish, and the
+ *     oldest finished jobs are dropped early when the total size of their results is over
+ *     <tt>webservice.jobs.max-result-size</tt>.</li>
+ * </ul>
+ */
+public class JobManager
+{
+    private static final Logger LOG = Logger.getLogger(JobManager.class);
+
+    /** The prefix of the properties that configure the job manager */
+    public static final String PROPERTY_PREFIX = "webservice.jobs.";
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE = 100;
+    private static final int DEFAULT_PER_USER = 4;
+    private static final int DEFAULT_EXPIRY = 3600;
+    private static final int DEFAULT_MAX_RESULT_SIZE = 1000000;
+
+    private static JobManager instance = null;
+
+    private final ThreadPoolExecutor executor;
+    private final int maxJobsPerUser;
+    private final long expiry;
+    private final long maxResultSize;
+    private final Map<String, AsyncJob> jobs = new ConcurrentHashMap<String, AsyncJob>();
+
+    /**
+     * Constructor.
+     *
+     * @param threads the number of jobs that may run at once
+     * @param queueSize the number of jobs that may wait for a thread
+     * @param maxJobsPerUser the number of jobs each client may have waiting or running
+     * @param expirySeconds how long finished jobs are kept
+     * @param maxResultSize the total size of the results of the finished jobs that are kept
+     */
+    public JobManager(int threads, int queueSize, int maxJobsPerUser, int expirySeconds,
+            long maxResultSize) {
+        this.maxJobsPerUser = maxJobsPerUser;
+        this.expiry = expirySeconds * 1000L;
+        this.maxResultSize = maxResultSize;
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "WebServiceJob-"
+                                + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the job manager of the webapp, configured from the given web properties when it is
+     * first used.
+     *
+     * @param webProperties the web properties
+     * @return the JobManager
+     */
+    public static synchronized JobManager getInstance(Properties webProperties) {
+        if (instance == null) {
+            instance = new JobManager(
+                    getIntProperty(webProperties, "threads", DEFAULT_THREADS),
+                    getIntProperty(webProperties, "queue", DEFAULT_QUEUE),
+                    getIntProperty(webProperties, "per-user", DEFAULT_PER_USER),
+                    getIntProperty(webProperties, "expiry", DEFAULT_EXPIRY),
+                    getIntProperty(webProperties, "max-result-size", DEFAULT_MAX_RESULT_SIZE));
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the job manager of the webapp, if it has been started, cancelling its jobs.
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    private static int getIntProperty(Properties webProperties, String name, int defaultValue) {
+        String value = (webProperties == null) ? null
+            : webProperties.getProperty(PROPERTY_PREFIX + name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOG.error("Property " + PROPERTY_PREFIX + name + " is not a valid integer: "
+                        + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Submits a job to be run, giving it an id.
+     *
+     * @param job the job
+     * @return the id of the job
+     * @throws TooManyJobsException if the client already has too many jobs
+     * @throws RejectedExecutionException if too many jobs are waiting to run
+     */
+    public String submit(final AsyncJob job) {
+        expireJobs();
+        synchronized (this) {
+            int active = 0;
+            for (AsyncJob other : jobs.values()) {
+                if (!other.isFinished() && job.getOwner().equals(other.getOwner())) {
+                    active++;
+                }
+            }
+            if (active >= maxJobsPerUser) {
+                throw new TooManyJobsException(job.getOwner() + " already has " + active
+                        + " jobs running");
+            }
+            String uid = generateUID();
+            while (jobs.containsKey(uid)) {
+                uid = generateUID();
+            }
+            job.setUid(uid);
+            jobs.put(uid, job);
+        }
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getUid());
+            throw new RejectedExecutionException("Too many jobs are waiting to run", e);
+        }
+        return job.getUid();
+    }
+
+    private static String generateUID() {
+        return String.format("%s-%s-%s-%s",
+            RandomStringUtils.randomAlphanumeric(4),
+            RandomStringUtils.randomAlphanumeric(4),
+            RandomStringUtils.randomAlphanumeric(4),
+            RandomStringUtils.randomAlphanumeric(4)).toLowerCase();
+    }
+
+    /**
+     * Returns a job.
+     *
+     * @param uid the id of the job
+     * @return the job, or null if there is no such job or it has expired
+     */
+    public AsyncJob getJob(String uid) {
+        expireJobs();
+        return (uid == null) ? null : jobs.get(uid);
+    }
+
+    /**
+     * Cancels a job if it hasn't finished, and forgets it.
+     *
+     * @param uid the id of the job
+     * @return the job, or null if there is no such job
+     */
+    public AsyncJob removeJob(String uid) {
+        AsyncJob job = (uid == null) ? null : jobs.remove(uid);
+        if (job != null) {
+            job.cancel();
+            executor.remove(job);
+        }
+        return job;
+    }
+
+    /**
+     * Drops the finished jobs that have expired, and the oldest finished jobs while the total
+     * size of the results kept is too large.
+     */
+    protected synchronized void expireJobs() {
+        long now = currentTimeMillis();
+        List<AsyncJob> finished = new ArrayList<AsyncJob>();
+        long totalSize = 0;
+        for (AsyncJob job : jobs.values()) {
+            if (job.isFinished()) {
+                if (job.getFinishedAt() + expiry <= now) {
+                    jobs.remove(job.getUid());
+                } else {
+                    finished.add(job);
+                    totalSize += job.getResultSize();
+                }
+            }
+        }
+        if (totalSize > maxResultSize) {
+            Collections.sort(finished, new Comparator<AsyncJob>() {
+                @Override
+                public int compare(AsyncJob a, AsyncJob b) {
+                    return Long.valueOf(a.getFinishedAt()).compareTo(b.getFinishedAt());
+                }
+            });
+            for (AsyncJob job : finished) {
+                if (totalSize <= maxResultSize) {
+                    break;
+                }
+                LOG.info("Dropping the result of " + job + " early, as " + totalSize
+                        + " is over the maximum result size");
+                jobs.remove(job.getUid());
+                totalSize -= job.getResultSize();
+            }
+        }
+    }
+
+    /**
+     * Returns the current time. Tests may override this.
+     *
+     * @return a number of milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of jobs kept, whether waiting, running or finished.
+     *
+     * @return a number of jobs
+     */
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Cancels all the jobs and stops the threads.
+     */
+    public void shutdown() {
+        for (AsyncJob job : jobs.values()) {
+            job.cancel();
+        }
+        jobs.clear();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Thrown when a job is refused because its owner already has too many jobs waiting or
+     * running, as opposed to too many jobs waiting to run in total.
+     */
+    public static class TooManyJobsException extends RejectedExecutionException
+    {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         *
+         * @param message the message
+         */
+        public TooManyJobsException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package org.intermine.webservice.server.core;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Limits the number of requests that each client may make in a period, using a sliding window
+ * counter. For each client only the number of requests in the current and the previous window are
+ * kept, and the number of requests in the last period is estimated by weighting the previous
+ * window by how much of it still falls inside the period. This needs constant memory per client
+ * however many requests it makes.
+ *
+ * Checks do not take any lock: the counts for a client are replaced with compare-and-set, and
+ * clients that have made no requests for two periods are dropped from time to time.
+ */
+public class RateLimiter
+{
+    private static final Logger LOG = Logger.getLogger(RateLimiter.class);
+
+    private final String name;
+    private final long periodLength;
+    private final int maxRequests;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<String, Window>();
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong lastExpiry;
+
+    /**
+     * Constructor.
+     *
+     * @param name a name for this limiter, used in log messages
+     * @param periodInSeconds the length of the period
+     * @param maxRequestsPerPeriod the number of requests each client may make in a period
+     */
+    public RateLimiter(String name, int periodInSeconds, int maxRequestsPerPeriod) {
+        if (periodInSeconds < 1) {
+            throw new IllegalArgumentException("Illegal period: " + periodInSeconds);
+        }
+        this.name = name;
+        this.periodLength = periodInSeconds * 1000L;
+        this.maxRequests = maxRequestsPerPeriod;
+        this.lastExpiry = new AtomicLong(currentTimeMillis());
+    }
+
+    /**
+     * Returns the current time. Tests may override this.
+     *
+     * @return a number of milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Records a request from a client if it is within the limit.
+     *
+     * @param id the client, for example an IP address or a user name
+     * @return true if the request is allowed, false if the client has reached its limit
+     */
+    public boolean tryAcquire(String id) {
+        long now = currentTimeMillis();
+        expireIdleClients(now);
+        while (true) {
+            Window current = windows.get(id);
+            Window rolled = current == null ? new Window(windowStart(now), 0, 0)
+                : current.roll(windowStart(now), periodLength);
+            if (rolled.estimate(now, periodLength) >= maxRequests) {
+                if (current != null && rolled != current) {
+                    windows.replace(id, current, rolled);
+                }
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (swap(id, current, rolled.increment())) {
+                allowed.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns whether a client is within its limit, without recording a request.
+     *
+     * @param id the client
+     * @return true if another request would be allowed
+     */
+    public boolean isWithinLimit(String id) {
+        long now = currentTimeMillis();
+        Window current = windows.get(id);
+        if (current == null) {
+            return maxRequests > 0;
+        }
+        return current.roll(windowStart(now), periodLength).estimate(now, periodLength)
+            < maxRequests;
+    }
+
+    /**
+     * Records a request from a client, whether or not it is within the limit.
+     *
+     * @param id the client
+     */
+    public void recordRequest(String id) {
+        long now = currentTimeMillis();
+        expireIdleClients(now);
+        while (true) {
+            Window current = windows.get(id);
+            Window rolled = current == null ? new Window(windowStart(now), 0, 0)
+                : current.roll(windowStart(now), periodLength);
+            if (swap(id, current, rolled.increment())) {
+                allowed.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private boolean swap(String id, Window current, Window next) {
+        if (current == null) {
+            return windows.putIfAbsent(id, next) == null;
+        }
+        return windows.replace(id, current, next);
+    }
+
+    private long windowStart(long now) {
+        return now - (now % periodLength);
+    }
+
+    /**
+     * Drops the clients that have made no requests in the last two periods, at most once a
+     * period. The counts for such a client would roll over to zero anyway.
+     */
+    private void expireIdleClients(long now) {
+        long last = lastExpiry.get();
+        if (now - last < periodLength || !lastExpiry.compareAndSet(last, now)) {
+            return;
+        }
+        long cutOff = windowStart(now) - periodLength;
+        int removed = 0;
+        for (Iterator<Map.Entry<String, Window>> iter = windows.entrySet().iterator();
+                iter.hasNext();) {
+            Map.Entry<String, Window> entry = iter.next();
+            if (entry.getValue().start < cutOff
+                    && windows.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        LOG.info(getSummary() + " (expired " + removed + " idle clients)");
+    }
+
+    /**
+     * Returns the name of this limiter.
+     *
+     * @return a String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of requests each client may make in a period.
+     *
+     * @return an int
+     */
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /**
+     * Returns the length of the period in seconds.
+     *
+     * @return an int
+     */
+    public int getPeriodInSeconds() {
+        return (int) (periodLength / 1000L);
+    }
+
+    /**
+     * Returns the number of requests that have been allowed.
+     *
+     * @return a long
+     */
+    public long getAllowedCount() {
+        return allowed.get();
+    }
+
+    /**
+     * Returns the number of requests that have been refused.
+     *
+     * @return a long
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of clients currently being tracked.
+     *
+     * @return an int
+     */
+    public int getClientCount() {
+        return windows.size();
+    }
+
+    /**
+     * Returns a one line description of the counters, for monitoring.
+     *
+     * @return a String
+     */
+    public String getSummary() {
+        return "Rate limiter " + name + " (" + maxRequests + " per " + getPeriodInSeconds()
+            + "s): " + allowed.get() + " allowed, " + rejected.get() + " rejected, "
+            + windows.size() + " clients";
+    }
+
+    /**
+     * The request counts of one client for the current and the previous window. Instances are
+     * never modified, so that they can be swapped in with compare-and-set.
+     */
+    private static final class Window
+    {
+        private final long start;
+        private final int previous;
+        private final int current;
+
+        Window(long start, int previous, int current) {
+            this.start = start;
+            this.previous = previous;
+            this.current = current;
+        }
+
+        Window roll(long newStart, long periodLength) {
+            if (newStart == start) {
+                return this;
+            } else if (newStart == start + periodLength) {
+                return new Window(newStart, current, 0);
+            }
+            return new Window(newStart, 0, 0);
+        }
+
+        Window increment() {
+            return new Window(start, previous, current + 1);
+        }
+
+        double estimate(long now, long periodLength) {
+            double remaining = (double) (periodLength - (now - start)) / periodLength;
+            return previous * remaining + current;
+        }
+    }
+}
@@ -17,7 +17,9 @@ import java.util.List;
 
 import org.intermine.api.results.ResultElement;
 import org.intermine.pathquery.ConstraintValueParser;
+import org.intermine.webservice.server.output.EncodingOutput;
 import org.intermine.webservice.server.output.Output;
+import org.intermine.webservice.server.output.RowEncoder;
 
 /**
  * Processor of Results object for easy accessing and parsing of results to list of strings.
@@ -47,6 +49,16 @@ public class ResultProcessor
      * @param output output
      */
     public void write(Iterator<List<ResultElement>> resultIt, Output output) {
+        if (output instanceof EncodingOutput) {
+            EncodingOutput encodingOutput = (EncodingOutput) output;
+            RowEncoder<List<ResultElement>> encoder = encodingOutput.getRowEncoder();
+            if (encoder != null) {
+                while (resultIt.hasNext()) {
+                    encodingOutput.addEncodedItem(resultIt.next(), encoder);
+                }
+                return;
+            }
+        }
         int writtenCount = 0;
         while (resultIt.hasNext())  {
             List<ResultElement> row = resultIt.next();
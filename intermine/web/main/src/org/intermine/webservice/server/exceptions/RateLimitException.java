@@ -31,4 +31,15 @@ public class RateLimitException extends ServiceForbiddenException {
     public RateLimitException(String remoteAddr, int limitPerHour) {
         super(String.format("Rate limit (%d per hour) exceeded for IP address %s", limitPerHour, remoteAddr));
     }
+
+    /**
+     * Constructor
+     * @param client The IP-Address or user name we are associating this rate limit with.
+     * @param limitPerHour The maximum number of requests that can be made in any 1 hour period.
+     * @param service The name of the service the limit applies to.
+     */
+    public RateLimitException(String client, int limitPerHour, String service) {
+        super(String.format("Rate limit (%d per hour) for %s exceeded by %s", limitPerHour,
+                service, client));
+    }
 }
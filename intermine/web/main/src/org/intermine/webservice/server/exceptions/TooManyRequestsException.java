@@ -0,0 +1,44 @@
+package org.intermine.webservice.server.exceptions;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import org.intermine.webservice.server.output.Output;
+
+/**
+ * The TooManyRequestsException is thrown by a service when the client has made too many
+ * requests, or has too many requests running, and should try again later.
+ */
+public class TooManyRequestsException extends ServiceException
+{
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message message
+     */
+    public TooManyRequestsException(String message) {
+        super(message);
+        initErrorCode();
+    }
+
+    /**
+     * @param message message
+     * @param cause cause
+     */
+    public TooManyRequestsException(String message, Throwable cause) {
+        super(message, cause);
+        initErrorCode();
+    }
+
+    private void initErrorCode() {
+        setHttpErrorCode(Output.SC_TOO_MANY_REQUESTS);
+    }
+}
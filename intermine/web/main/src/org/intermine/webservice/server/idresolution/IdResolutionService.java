@@ -5,12 +5,17 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.intermine.api.InterMineAPI;
 import org.intermine.api.bag.BagQueryRunner;
 import org.intermine.webservice.server.core.JSONService;
+import org.intermine.webservice.server.core.JobManager;
+import org.intermine.webservice.server.core.JobManager.TooManyJobsException;
 import org.intermine.webservice.server.exceptions.BadRequestException;
 import org.intermine.webservice.server.exceptions.InternalErrorException;
+import org.intermine.webservice.server.exceptions.ServiceUnavailableException;
+import org.intermine.webservice.server.exceptions.TooManyRequestsException;
 import org.intermine.webservice.server.output.JSONFormatter;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -39,12 +44,20 @@ public class IdResolutionService extends JSONService
         }
 
         final BagQueryRunner runner = im.getBagQueryRunner();
+        String owner = isAuthenticated() ? getPermission().getProfile().getUsername()
+            : getClientAddress();
 
-        Job job = new Job(runner, in);
-
-        addResultValue(job.getUid(), false);
+        Job job = new Job(runner, in, owner, im.getObjectStore());
+        String uid;
+        try {
+            uid = JobManager.getInstance(webProperties).submit(job);
+        } catch (TooManyJobsException e) {
+            throw new TooManyRequestsException("Could not start the job: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Could not start the job: " + e.getMessage());
+        }
 
-        new Thread(job).run(); // Run job in the background.
+        addResultValue(uid, false);
     }
 
     @Override
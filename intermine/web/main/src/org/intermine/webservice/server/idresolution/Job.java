@@ -1,176 +1,95 @@
 package org.intermine.webservice.server.idresolution;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.collections.MapUtils;
-import org.apache.commons.lang.RandomStringUtils;
 import org.intermine.api.bag.BagQueryResult;
 import org.intermine.api.bag.BagQueryRunner;
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.webservice.server.core.AsyncJob;
+import org.intermine.webservice.server.core.JobManager;
 import org.intermine.webservice.server.idresolution.IdResolutionService.Input;
 
-public class Job implements Runnable
+/**
+ * A job resolving a list of identifiers to objects, run in the background by the JobManager.
+ */
+public class Job extends AsyncJob
 {
-    public enum JobStatus {PENDING, RUNNING, SUCCESS, ERROR};
-
-    @SuppressWarnings("unchecked")
-    public static final Map<String, Job> JOBS = MapUtils.synchronizedMap(
-            new HashMap<String, Job>());
-
-    private final Input input;
+    private Input input;
     private final BagQueryRunner runner;
 
     private BagQueryResult result;
+    private long resultSize = 0;
 
-    private boolean isComplete = false;
-    private Exception error = null;
-    private final Long startedAt;
-    private JobStatus status = JobStatus.PENDING;
-    private final String uid = generateUID();
-
-    public Job(BagQueryRunner runner, Input in) {
+    /**
+     * Constructor.
+     * @param runner the bag query runner used to resolve the identifiers
+     * @param in the identifiers and options
+     * @param owner the user name or address of the client
+     * @param os the ObjectStore that the bag queries run against
+     */
+    public Job(BagQueryRunner runner, Input in, String owner, ObjectStore os) {
+        super(owner, os);
         this.input = in;
         this.runner = runner;
-        startedAt = System.currentTimeMillis();
-        JOBS.put(this.getUid(), this);
     }
-    
-    private static String generateUID() {
-        String uid = getPossibleUID();
-        while (!uidIsUnique(uid)) {
-            uid = getPossibleUID();
-        }
 
-        return uid;
-    }
-    
-    private static boolean uidIsUnique(String uid) {
-        if (uid == null) {
-            throw new IllegalArgumentException("uid may not be null");
-        }
-        if (JOBS.isEmpty()) {
-            return true;
-        }
-        if (JOBS.containsKey(uid)) {
-            return false;
-        }
-        return true;
-    }
-    
-    private static String getPossibleUID() {
-        return String.format("%s-%s-%s-%s",
-            RandomStringUtils.randomAlphanumeric(4),
-            RandomStringUtils.randomAlphanumeric(4),
-            RandomStringUtils.randomAlphanumeric(4),
-            RandomStringUtils.randomAlphanumeric(4)).toLowerCase(); 
-    }
-    
-    public static Job getJobById(String uid) {
-        if (JOBS.containsKey(uid)) {
-            return JOBS.get(uid);
-        }
-        else {
-            return null;
+    /**
+     * Return the job with the given id, if it is an id resolution job.
+     * @param manager the job manager
+     * @param uid the job id
+     * @return the job, or null
+     */
+    public static Job getJobById(JobManager manager, String uid) {
+        AsyncJob job = manager.getJob(uid);
+        if (job instanceof Job) {
+            return (Job) job;
         }
+        return null;
     }
 
     @Override
-    public void run() {
-        this.status = JobStatus.RUNNING;
-        try {
-            this.result = runner.search(
-                    input.getType(),
-                    input.getIds(),
-                    input.getExtraValue(),
-                    input.getWildCards(),
-                    input.getCaseSensitive());
-            this.status = JobStatus.SUCCESS;
-        } catch (Exception e) {
-            error = e;
-            this.status = JobStatus.ERROR;
+    protected void execute() throws Exception {
+        BagQueryResult bqr = runner.search(
+                input.getType(),
+                input.getIds(),
+                input.getExtraValue(),
+                input.getWildCards(),
+                input.getCaseSensitive());
+        long size = bqr.getMatches().size();
+        for (Map<String, Map<String, List>> issues : bqr.getIssues().values()) {
+            for (Map<String, List> identToObjects : issues.values()) {
+                for (List objects : identToObjects.values()) {
+                    size += objects.size();
+                }
+            }
+        }
+        synchronized (this) {
+            result = bqr;
+            resultSize = size;
+            // the input refers to the request that submitted the job, which needn't be kept
+            input = null;
         }
-    }
-    
-    public BagQueryResult getResult() {
-        return result;
-    }
-    
-    public boolean wasSuccessful() {
-        return error == null;
-    }
-    
-    public Exception getError() {
-        return error;
     }
 
-    /* (non-Javadoc)
-     * @see java.lang.Object#hashCode()
+    /**
+     * @return the result of the search, once the job has succeeded
      */
-    @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((input == null) ? 0 : input.hashCode());
-        result = prime * result + uid.hashCode();
-        result = prime * result
-                + ((startedAt == null) ? 0 : startedAt.hashCode());
-        
+    public synchronized BagQueryResult getResult() {
         return result;
     }
 
-    /* (non-Javadoc)
-     * @see java.lang.Object#equals(java.lang.Object)
+    /**
+     * The size of the result is the number of objects matched or reported as issues.
+     * {@inheritDoc}
      */
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (!(obj instanceof Job)) {
-            return false;
-        }
-        Job other = (Job) obj;
-        if (input == null) {
-            if (other.input != null) {
-                return false;
-            }
-        } else if (!input.equals(other.input)) {
-            return false;
-        }
-        if (startedAt == null) {
-            if (other.startedAt != null) {
-                return false;
-            }
-        } else if (!startedAt.equals(other.startedAt)) {
-            return false;
-        }
-        return true;
+    public synchronized long getResultSize() {
+        return resultSize;
     }
 
-    /* (non-Javadoc)
-     * @see java.lang.Object#toString()
-     */
     @Override
     public String toString() {
-        return "Job [input=" + input + ", isComplete=" + isComplete
-                + ", startedAt=" + startedAt + "]";
-    }
-
-    /**
-     * @return the uid
-     */
-    public String getUid() {
-        return uid;
+        return "Job [uid=" + getUid() + ", owner=" + getOwner() + ", status=" + getStatus() + "]";
     }
-
-    /**
-     * @return the status
-     */
-    public JobStatus getStatus() {
-        return status;
-    }
-
 }
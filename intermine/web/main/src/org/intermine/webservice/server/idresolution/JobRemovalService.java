@@ -3,6 +3,7 @@ package org.intermine.webservice.server.idresolution;
 import org.apache.commons.lang.StringUtils;
 import org.intermine.api.InterMineAPI;
 import org.intermine.webservice.server.core.JSONService;
+import org.intermine.webservice.server.core.JobManager;
 import org.intermine.webservice.server.exceptions.ResourceNotFoundException;
 
 public class JobRemovalService extends JSONService {
@@ -15,13 +16,15 @@ public class JobRemovalService extends JSONService {
     protected void execute() throws Exception {
         String uid = StringUtils.defaultString(request.getPathInfo(), "").replaceAll("^/", "");
 
-        Job job = Job.getJobById(uid);
+        JobManager manager = JobManager.getInstance(webProperties);
+        Job job = Job.getJobById(manager, uid);
 
         if (job == null) {
             throw new ResourceNotFoundException("Unknown id: " + uid);
         }
 
-        Job.JOBS.remove(uid);
+        // cancels the job if it is still waiting or running
+        manager.removeJob(uid);
     }
 
 }
@@ -24,11 +24,12 @@ import org.intermine.web.context.InterMineContext;
 import org.intermine.web.logic.config.FieldConfig;
 import org.intermine.web.logic.config.FieldConfigHelper;
 import org.intermine.web.logic.config.WebConfig;
+import org.intermine.webservice.server.core.AsyncJob.JobStatus;
 import org.intermine.webservice.server.core.JSONService;
+import org.intermine.webservice.server.core.JobManager;
 import org.intermine.webservice.server.exceptions.InternalErrorException;
 import org.intermine.webservice.server.exceptions.ResourceNotFoundException;
 import org.intermine.webservice.server.exceptions.ServiceException;
-import org.intermine.webservice.server.idresolution.Job.JobStatus;
 import org.intermine.webservice.server.output.JSONFormatter;
 import org.json.JSONObject;
 
@@ -46,13 +47,15 @@ public class JobResultsService extends JSONService
 
     @Override
     protected void execute() throws Exception {
-        Job job = Job.getJobById(jobId);
+        Job job = Job.getJobById(JobManager.getInstance(webProperties), jobId);
         if (job != null) {
             if (job.getStatus() != JobStatus.SUCCESS) {
                 ServiceException se;
                 if (job.getStatus() == JobStatus.ERROR) {
                     se = new ServiceException("Job failed: " +  job.getError().getMessage());
                     this.addOutputInfo("message", job.getError().getMessage());
+                } else if (job.getStatus() == JobStatus.CANCELLED) {
+                    se = new ServiceException("Job cancelled");
                 } else {
                     se = new ServiceException("Job not ready");
                 }
@@ -4,9 +4,10 @@ import java.util.Arrays;
 import java.util.Map;
 
 import org.intermine.api.InterMineAPI;
+import org.intermine.webservice.server.core.AsyncJob.JobStatus;
 import org.intermine.webservice.server.core.JSONService;
+import org.intermine.webservice.server.core.JobManager;
 import org.intermine.webservice.server.exceptions.ResourceNotFoundException;
-import org.intermine.webservice.server.idresolution.Job.JobStatus;
 import org.intermine.webservice.server.output.JSONFormatter;
 
 public class JobStatusService extends JSONService
@@ -21,12 +22,14 @@ public class JobStatusService extends JSONService
 
     @Override
     protected void execute() throws Exception {
-        Job job = Job.getJobById(jobId);
+        Job job = Job.getJobById(JobManager.getInstance(webProperties), jobId);
         if (job != null) {
-            if (job.getStatus() == JobStatus.ERROR) {
+            JobStatus status = job.getStatus();
+            if (status == JobStatus.ERROR) {
                 this.addOutputInfo("message", job.getError().getMessage());
             }
-            addResultValue(job.getStatus().name(), false);
+            this.addOutputInfo("progress", String.valueOf(job.getProgress()));
+            addResultValue(status.name(), false);
         } else {
             throw new ResourceNotFoundException("No such job: " + jobId);
         }
@@ -22,5 +22,6 @@ public class CSVFormatter extends FlatFileFormatter
 {
 	public CSVFormatter() {
 		setRowFormatter(new RowFormatterImpl(",", true));
+		setRowEncoder(new DelimitedRowEncoder(',', true));
 	}
 }
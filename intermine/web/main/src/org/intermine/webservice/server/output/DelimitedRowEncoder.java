@@ -0,0 +1,96 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import org.intermine.api.results.ResultElement;
+import org.intermine.pathquery.ConstraintValueParser;
+
+/**
+ * Encodes rows of results as delimited text, such as TSV or CSV. The output is the same as that
+ * of a ResultProcessor writing to a FlatFileFormatter with a RowFormatterImpl: each value is the
+ * string form of the cell, dates are in ISO format and empty cells are empty strings. If quoting
+ * is on every value is quoted, otherwise only empty values and values containing the delimiter
+ * are. Double quotes within quoted values are doubled.
+ */
+public class DelimitedRowEncoder extends RowEncoder<List<ResultElement>>
+{
+    private final char delimiter;
+    private final boolean quoted;
+
+    /**
+     * Constructor.
+     *
+     * @param delimiter the character between values
+     * @param quoted whether every value should be quoted
+     */
+    public DelimitedRowEncoder(char delimiter, boolean quoted) {
+        this.delimiter = delimiter;
+        this.quoted = quoted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(List<ResultElement> row, EncodingBuffer out) throws IOException {
+        int size = row.size();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.writeAscii(delimiter);
+            }
+            ResultElement el = row.get(i);
+            Object field = (el == null) ? null : el.getField();
+            if (field instanceof Integer || field instanceof Long) {
+                // digits never contain the delimiter, so only need quoting if everything is
+                if (quoted) {
+                    out.writeAscii('"');
+                }
+                out.writeLong(((Number) field).longValue());
+                if (quoted) {
+                    out.writeAscii('"');
+                }
+            } else {
+                String value;
+                if (field == null) {
+                    value = "";
+                } else if (field instanceof Date) {
+                    value = ConstraintValueParser.ISO_DATE_FORMAT.format((Date) field);
+                } else {
+                    value = field.toString();
+                }
+                writeValue(value, out);
+            }
+        }
+    }
+
+    private void writeValue(String value, EncodingBuffer out) throws IOException {
+        if (!quoted && value.length() > 0 && value.indexOf(delimiter) < 0) {
+            out.write(value);
+            return;
+        }
+        out.writeAscii('"');
+        int runStart = 0;
+        int quote = value.indexOf('"');
+        while (quote >= 0) {
+            // write up to and including the quote, then write it again
+            out.write(value, runStart, quote + 1);
+            out.writeAscii('"');
+            runStart = quote + 1;
+            quote = value.indexOf('"', runStart);
+        }
+        out.write(value, runStart, value.length());
+        out.writeAscii('"');
+    }
+}
@@ -0,0 +1,326 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A buffer that encodes text as UTF-8 straight into a byte array, and writes the array to an
+ * OutputStream whenever it fills up. Values can be written as they are, or escaped for JSON,
+ * without building an intermediate String for each value.
+ */
+public final class EncodingBuffer
+{
+    /** The default size of the buffer, in bytes */
+    public static final int DEFAULT_SIZE = 32 * 1024;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] NULL = "null".getBytes();
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int pos = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param out the stream to write to
+     */
+    public EncodingBuffer(OutputStream out) {
+        this(out, DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param out the stream to write to
+     * @param size the size of the buffer in bytes, at least 32
+     */
+    public EncodingBuffer(OutputStream out, int size) {
+        if (size < 32) {
+            throw new IllegalArgumentException("Buffer too small: " + size);
+        }
+        this.out = out;
+        this.buf = new byte[size];
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (pos + bytes > buf.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Writes the contents of the buffer to the stream, and flushes the stream.
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Writes an ASCII character, without any conversion.
+     *
+     * @param c a character less than 128
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeAscii(char c) throws IOException {
+        ensure(1);
+        buf[pos++] = (byte) c;
+    }
+
+    /**
+     * Writes some text as UTF-8.
+     *
+     * @param s the text
+     * @throws IOException if the stream cannot be written to
+     */
+    public void write(CharSequence s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+    /**
+     * Writes part of some text as UTF-8.
+     *
+     * @param s the text
+     * @param start the index of the first character to write
+     * @param end the index after the last character to write
+     * @throws IOException if the stream cannot be written to
+     */
+    public void write(CharSequence s, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (pos == buf.length) {
+                    flushBuffer();
+                }
+                buf[pos++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                writeCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                writeCodePoint(c);
+            }
+        }
+    }
+
+    /**
+     * Writes a single character as UTF-8. Unpaired surrogates are written as a question mark,
+     * as String.getBytes() does.
+     */
+    private void writeCodePoint(int cp) throws IOException {
+        ensure(4);
+        if (cp < 0x80) {
+            buf[pos++] = (byte) cp;
+        } else if (cp < 0x800) {
+            buf[pos++] = (byte) (0xc0 | (cp >> 6));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+        } else if (cp < 0x10000) {
+            if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+                buf[pos++] = (byte) '?';
+                return;
+            }
+            buf[pos++] = (byte) (0xe0 | (cp >> 12));
+            buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+        } else {
+            buf[pos++] = (byte) (0xf0 | (cp >> 18));
+            buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+            buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+        }
+    }
+
+    /**
+     * Writes an integer in decimal.
+     *
+     * @param value the number
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            ensure(MIN_LONG.length);
+            System.arraycopy(MIN_LONG, 0, buf, pos, MIN_LONG.length);
+            pos += MIN_LONG.length;
+            return;
+        }
+        ensure(20);
+        long v = value;
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long limit = 10; digits < 19 && v >= limit; limit *= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + (v % 10));
+            v /= 10;
+        }
+        pos += digits;
+    }
+
+    /**
+     * Writes a String as a JSON string literal, quoted and escaped in the same way as
+     * JSONObject.quote().
+     *
+     * @param s the text, or null for the JSON null value
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeJSONString(CharSequence s) throws IOException {
+        if (s == null) {
+            writeNull();
+            return;
+        }
+        writeAscii('"');
+        char c = 0;
+        int len = s.length();
+        int runStart = 0;
+        for (int i = 0; i < len; i++) {
+            char b = c;
+            c = s.charAt(i);
+            String escape = null;
+            switch (c) {
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '/':
+                    if (b == '<') {
+                        escape = "\\/";
+                    }
+                    break;
+                case '\b':
+                    escape = "\\b";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\f':
+                    escape = "\\f";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                default:
+                    if (c < ' ' || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+                        write(s, runStart, i);
+                        runStart = i + 1;
+                        writeUnicodeEscape(c);
+                    }
+            }
+            if (escape != null) {
+                write(s, runStart, i);
+                runStart = i + 1;
+                write(escape);
+            }
+        }
+        write(s, runStart, len);
+        writeAscii('"');
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        ensure(6);
+        buf[pos++] = '\\';
+        buf[pos++] = 'u';
+        buf[pos++] = HEX[(c >> 12) & 0xf];
+        buf[pos++] = HEX[(c >> 8) & 0xf];
+        buf[pos++] = HEX[(c >> 4) & 0xf];
+        buf[pos++] = HEX[c & 0xf];
+    }
+
+    /**
+     * Writes the JSON null value.
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeNull() throws IOException {
+        ensure(NULL.length);
+        System.arraycopy(NULL, 0, buf, pos, NULL.length);
+        pos += NULL.length;
+    }
+
+    /**
+     * Writes a value as JSON, in the same way that JSONObject would. Maps and collections are
+     * written as objects and arrays, numbers and booleans as literals, and anything else as a
+     * string.
+     *
+     * @param value the value, which may be null
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeJSONValue(Object value) throws IOException {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            writeNull();
+        } else if (value instanceof String) {
+            writeJSONString((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            try {
+                write(JSONObject.numberToString((Number) value));
+            } catch (JSONException e) {
+                // NaN and infinity have no JSON representation
+                writeNull();
+            }
+        } else if (value instanceof Boolean) {
+            write(value.toString());
+        } else if (value instanceof Map<?, ?>) {
+            writeAscii('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    writeAscii(',');
+                }
+                first = false;
+                writeJSONString(String.valueOf(entry.getKey()));
+                writeAscii(':');
+                writeJSONValue(entry.getValue());
+            }
+            writeAscii('}');
+        } else if (value instanceof Collection<?>) {
+            writeAscii('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    writeAscii(',');
+                }
+                first = false;
+                writeJSONValue(element);
+            }
+            writeAscii(']');
+        } else {
+            writeJSONString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+import org.intermine.api.results.ResultElement;
+import org.intermine.webservice.server.exceptions.InternalErrorException;
+
+/**
+ * An output that streams data straight to the response's byte stream, in UTF-8. Items of results
+ * can be written with a RowEncoder, which avoids creating Strings and JSON objects for every row.
+ * Lists of Strings are formatted with the associated formatter, as for StreamedOutput, and the
+ * header and footer always are, so the two can be mixed.
+ *
+ * Anything already written to the response's writer is flushed before this output writes.
+ *
+ **/
+public class EncodingOutput extends Output
+{
+    private final PrintWriter writer;
+    private final EncodingBuffer buffer;
+    private final Formatter formatter;
+    private final String separator;
+    private int resultsCount = 0;
+    private boolean headerPrinted = false;
+    private boolean lineOpen = false;
+
+    /**
+     * Constructor.
+     *
+     * @param writer the response's writer, which is closed when this output is flushed
+     * @param os the stream the writer wraps
+     * @param formatter associated formatter that formats the header, footer and any Strings
+     * @param separator Platform specific line-separator for the request.
+     */
+    public EncodingOutput(PrintWriter writer, OutputStream os, Formatter formatter,
+            String separator) {
+        this.writer = writer;
+        this.buffer = new EncodingBuffer(os);
+        this.formatter = formatter;
+        this.separator = (separator == null) ? System.getProperty("line.separator") : separator;
+    }
+
+    /**
+     * Returns the encoder the formatter provides for rows of results, if any.
+     *
+     * @return an encoder, or null if rows must be formatted as Strings
+     */
+    public RowEncoder<List<ResultElement>> getRowEncoder() {
+        return formatter.getRowEncoder();
+    }
+
+    private void ensureHeaderIsPrinted() throws IOException {
+        if (!headerPrinted) {
+            writer.flush();
+            String header = formatter.formatHeader(getHeaderAttributes());
+            if (header != null && header.length() > 0) {
+                buffer.write(header);
+                lineOpen = true;
+            }
+            headerPrinted = true;
+        }
+    }
+
+    private void endLine() throws IOException {
+        if (lineOpen) {
+            buffer.write(separator);
+            lineOpen = false;
+        }
+    }
+
+    /**
+     * Writes an item with an encoder. Items written by the same encoder are separated by its
+     * item delimiter.
+     *
+     * @param item the item
+     * @param encoder the encoder to write it with
+     * @param <T> the type of the item
+     */
+    public <T> void addEncodedItem(T item, RowEncoder<? super T> encoder) {
+        try {
+            ensureHeaderIsPrinted();
+            if (resultsCount > 0) {
+                buffer.write(encoder.getItemDelimiter());
+            }
+            endLine();
+            encoder.encode(item, buffer);
+            lineOpen = true;
+        } catch (IOException e) {
+            throw new InternalErrorException("Could not write results", e);
+        }
+        if (formatter instanceof JSONFormatter) {
+            ((JSONFormatter) formatter).declarePrinted();
+        }
+        resultsCount++;
+    }
+
+    /**
+     * Formats an item with the formatter and writes it.
+     * @param item data
+     **/
+    @Override
+    public void addResultItem(List<String> item) {
+        try {
+            ensureHeaderIsPrinted();
+            endLine();
+            buffer.write(formatter.formatResult(item));
+            lineOpen = true;
+        } catch (IOException e) {
+            throw new InternalErrorException("Could not write results", e);
+        }
+        resultsCount++;
+    }
+
+    /**
+     * Finish writing. Writes the footer and closes the response's writer.
+     */
+    @Override
+    public void flush() {
+        try {
+            ensureHeaderIsPrinted();
+            endLine();
+            buffer.write(formatter.formatFooter(getError(), getCode()));
+            buffer.flush();
+        } catch (IOException e) {
+            throw new InternalErrorException("Could not write results", e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setHeaderAttributes(Map<String, Object> attributes) {
+        if (headerPrinted) {
+            throw new RuntimeException("Attempt to set header attributes "
+                + "although header was printed already.");
+        }
+        super.setHeaderAttributes(attributes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getResultsCount() {
+        return resultsCount;
+    }
+}
@@ -3,6 +3,7 @@ package org.intermine.webservice.server.output;
 import java.util.List;
 import java.util.Map;
 
+import org.intermine.api.results.ResultElement;
 import org.intermine.web.logic.export.RowFormatter;
 
 /**
@@ -19,6 +20,7 @@ public abstract class FlatFileFormatter extends Formatter {
     /** The key for the header columns **/
     public static final String COLUMN_HEADERS = "view";
     protected RowFormatter labourer = null;
+    private RowEncoder<List<ResultElement>> rowEncoder = null;
 
     /**
      * Get the row formatter
@@ -36,6 +38,20 @@ public abstract class FlatFileFormatter extends Formatter {
         labourer = fmtr;
     }
 
+    /**
+     * Set the encoder that writes rows in the same format as the row formatter.
+     * @param encoder A RowEncoder implementation
+     */
+    protected void setRowEncoder(RowEncoder<List<ResultElement>> encoder) {
+        rowEncoder = encoder;
+    }
+
+    /** {@inheritDoc}} **/
+    @Override
+    public RowEncoder<List<ResultElement>> getRowEncoder() {
+        return rowEncoder;
+    }
+
     /** {@inheritDoc}} **/
     @Override
     public String formatHeader(Map<String, Object> attributes) {
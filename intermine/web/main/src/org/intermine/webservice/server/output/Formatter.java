@@ -13,6 +13,7 @@ package org.intermine.webservice.server.output;
 import java.util.List;
 import java.util.Map;
 
+import org.intermine.api.results.ResultElement;
 
 /**
  * Abstract class for formatting result data.
@@ -41,4 +42,13 @@ public abstract class Formatter
      */
     public abstract String formatFooter(String errorMessage, int errorCode);
 
+    /**
+     * Returns an encoder that writes rows of results in this format straight to an
+     * EncodingOutput, without formatting them as Strings first.
+     * @return an encoder, or null if this formatter has none (default = null)
+     */
+    public RowEncoder<List<ResultElement>> getRowEncoder() {
+        return null;
+    }
+
 }
@@ -30,6 +30,26 @@ public class JSONObjResultProcessor extends JSONResultProcessor
         // Empty constructor
     }
 
+    /**
+     * Writes the objects straight to the output without creating JSON objects, if the output
+     * supports it.
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Iterator<List<ResultElement>> resultIt, Output output) {
+        if (output instanceof EncodingOutput) {
+            EncodingOutput encodingOutput = (EncodingOutput) output;
+            JSONObjectEncoder encoder = new JSONObjectEncoder();
+            JSONResultsIterator jsonIter
+                = new JSONResultsIterator((ExportResultsIterator) resultIt);
+            while (jsonIter.hasNext()) {
+                encodingOutput.addEncodedItem(jsonIter.nextMap(), encoder);
+            }
+        } else {
+            super.write(resultIt, output);
+        }
+    }
+
     @Override
     protected Iterator<? extends Object> getResultsIterator(Iterator<List<ResultElement>> it) {
         JSONResultsIterator jsonIter = new JSONResultsIterator((ExportResultsIterator) it);
@@ -0,0 +1,36 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Encodes the nested maps built by JSONResultsIterator as JSON objects, without creating a
+ * JSONObject for each of them.
+ */
+public class JSONObjectEncoder extends RowEncoder<Map<String, Object>>
+{
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(Map<String, Object> item, EncodingBuffer out) throws IOException {
+        out.writeJSONValue(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getItemDelimiter() {
+        return ",";
+    }
+}
@@ -77,6 +77,14 @@ public class JSONResultsIterator implements Iterator<JSONObject>
      * {@inheritDoc}
      */
     public JSONObject next() {
+        return new JSONObject(nextMap());
+    }
+
+    /**
+     * Returns the next object as nested maps and lists, rather than as a JSONObject.
+     * @return A map from field name to value
+     */
+    public Map<String, Object> nextMap() {
         Map<String, Object> nextJsonMap = new HashMap<String, Object>();
         Integer lastId = null;
 
@@ -98,8 +106,7 @@ public class JSONResultsIterator implements Iterator<JSONObject>
                 lastId = currentId;
             }
         }
-        JSONObject nextObj = new JSONObject(nextJsonMap);
-        return nextObj;
+        return nextJsonMap;
     }
 
     private void addRowToJsonMap(List<ResultElement> results,
@@ -0,0 +1,91 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+import java.io.IOException;
+import java.util.List;
+
+import org.intermine.api.results.ResultElement;
+import org.intermine.objectstore.query.ClobAccess;
+
+/**
+ * Encodes rows of results as JSON arrays. A minimal encoder writes just the value of each cell,
+ * like MinimalJsonIterator. A full encoder writes an object for each cell with its value, class,
+ * id, column and link, like JSONRowIterator, but without creating a map and a JSONObject for
+ * every cell.
+ */
+public class JSONRowEncoder extends RowEncoder<List<ResultElement>>
+{
+    private final TableCellFormatter cellFormatter;
+
+    /**
+     * Constructor.
+     *
+     * @param cellFormatter the formatter to make links with for full output, or null for
+     * minimal output
+     */
+    public JSONRowEncoder(TableCellFormatter cellFormatter) {
+        this.cellFormatter = cellFormatter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(List<ResultElement> row, EncodingBuffer out) throws IOException {
+        out.writeAscii('[');
+        int size = row.size();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.writeAscii(',');
+            }
+            ResultElement cell = row.get(i);
+            if (cellFormatter == null) {
+                // In the case of flattened outerjoins, the cell is null.
+                out.writeJSONValue(cell == null ? null : cookedValue(cell));
+            } else {
+                encodeCell(cell, out);
+            }
+        }
+        out.writeAscii(']');
+    }
+
+    private void encodeCell(ResultElement cell, EncodingBuffer out) throws IOException {
+        if (cell == null) {
+            out.write("{\"url\":null,\"value\":null,\"column\":null}");
+            return;
+        }
+        out.write("{\"url\":");
+        out.writeJSONString(cellFormatter.getLink(cell));
+        out.write(",\"class\":");
+        out.writeJSONString(cell.getType());
+        out.write(",\"id\":");
+        out.writeJSONValue(cell.getId());
+        out.write(",\"column\":");
+        out.writeJSONString(cell.getPath().toStringNoConstraints());
+        out.write(",\"value\":");
+        out.writeJSONValue(cookedValue(cell));
+        out.writeAscii('}');
+    }
+
+    private static Object cookedValue(ResultElement cell) {
+        Object raw = cell.getField();
+        // CLOBs must be written as strings, not as beans
+        return (raw instanceof ClobAccess) ? raw.toString() : raw;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getItemDelimiter() {
+        return ",";
+    }
+}
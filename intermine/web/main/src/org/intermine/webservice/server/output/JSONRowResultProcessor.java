@@ -45,6 +45,25 @@ public class JSONRowResultProcessor extends JSONResultProcessor
         this.verbosity = verbosity;
     }
 
+    /**
+     * Writes the rows straight to the output without creating JSON objects, if the output
+     * supports it.
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Iterator<List<ResultElement>> resultIt, Output output) {
+        if (output instanceof EncodingOutput) {
+            EncodingOutput encodingOutput = (EncodingOutput) output;
+            JSONRowEncoder encoder = new JSONRowEncoder(
+                    verbosity == Verbosity.MINIMAL ? null : new TableCellFormatter(im));
+            while (resultIt.hasNext()) {
+                encodingOutput.addEncodedItem(resultIt.next(), encoder);
+            }
+        } else {
+            super.write(resultIt, output);
+        }
+    }
+
     @Override
     protected Iterator<? extends Object> getResultsIterator(Iterator<List<ResultElement>> it) {
         Iterator<JSONArray> jsonIter;
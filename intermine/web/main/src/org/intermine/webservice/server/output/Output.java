@@ -66,6 +66,16 @@ public abstract class Output
      */
     public static final int SC_UNAUTHORIZED = 401;
 
+    /**
+     * The client has made too many requests, or has too many running.
+     */
+    public static final int SC_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The service is too busy to handle the request at the moment.
+     */
+    public static final int SC_SERVICE_UNAVAILABLE = 503;
+
     /**
      * Request will only accept content in a format we cannot provide.
      */
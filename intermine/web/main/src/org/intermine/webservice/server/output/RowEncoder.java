@@ -0,0 +1,41 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+
+/**
+ * Writes items of results, such as rows or objects, straight to an EncodingBuffer, as a faster
+ * alternative to formatting them as Strings for a Formatter.
+ *
+ * @param <T> the type of item this encoder writes
+ */
+public abstract class RowEncoder<T>
+{
+    /**
+     * Writes one item, without any line separator.
+     *
+     * @param item the item to write
+     * @param out the buffer to write to
+     * @throws IOException if the output cannot be written to
+     */
+    public abstract void encode(T item, EncodingBuffer out) throws IOException;
+
+    /**
+     * Returns the text that separates one item from the next, before the line separator. For
+     * example, JSON arrays need a comma.
+     *
+     * @return the delimiter (default = the empty string)
+     */
+    public String getItemDelimiter() {
+        return "";
+    }
+}
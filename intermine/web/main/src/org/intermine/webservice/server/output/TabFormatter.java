@@ -23,6 +23,7 @@ public class TabFormatter extends FlatFileFormatter
      */
     public TabFormatter() {
         setRowFormatter(new RowFormatterImpl("\t", true));
+        setRowEncoder(new DelimitedRowEncoder('\t', true));
     }
 
     /**
@@ -31,5 +32,6 @@ public class TabFormatter extends FlatFileFormatter
      */
     public TabFormatter(boolean quoted) {
         setRowFormatter(new RowFormatterImpl("\t", quoted));
+        setRowEncoder(new DelimitedRowEncoder('\t', quoted));
     }
 }
@@ -28,6 +28,23 @@ public class TableCellFormatter
         this.redirector = im.getLinkRedirector();
     }
     
+    /**
+     * Get the link to the report page (or the redirected page) for the object in a cell.
+     * @param cell The result element with the data
+     * @return A link
+     */
+    public String getLink(ResultCell cell) {
+        String link = null;
+        // Try to generate a link using the redirector.
+        if (redirector != null && cell.getObject() instanceof InterMineObject) {
+            link = redirector.generateLink(im, (InterMineObject) cell.getObject());
+        }
+        if (link == null) {
+            link = PortalHelper.generateReportPath(cell);
+        }
+        return link;
+    }
+
     public Map<String, Object> toMap(ResultCell cell) {
         Map<String, Object> mapping = new HashMap<String, Object>();
         if (cell == null) {
@@ -35,15 +52,7 @@ public class TableCellFormatter
             mapping.put(CELL_KEY_VALUE, null);
             mapping.put(CELL_KEY_COLUMN, null);
         } else {
-            String link = null;
-            // Try to generate a link using the redirector.
-            if (redirector != null && cell.getObject() instanceof InterMineObject) {
-                link = redirector.generateLink(im, (InterMineObject) cell.getObject());
-            }
-            if (link == null) {
-                link = PortalHelper.generateReportPath(cell);
-            }
-            mapping.put(CELL_KEY_URL, link);
+            mapping.put(CELL_KEY_URL, getLink(cell));
             mapping.put(CELL_KEY_CLASS, cell.getType());
             mapping.put(CELL_KEY_ID, cell.getId());
             mapping.put(CELL_KEY_COLUMN, cell.getPath().toStringNoConstraints());
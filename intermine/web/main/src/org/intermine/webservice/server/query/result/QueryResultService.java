@@ -50,6 +50,7 @@ import org.intermine.webservice.server.core.ResultProcessor;
 import org.intermine.webservice.server.exceptions.BadRequestException;
 import org.intermine.webservice.server.exceptions.InternalErrorException;
 import org.intermine.webservice.server.exceptions.ServiceException;
+import org.intermine.webservice.server.output.EncodingOutput;
 import org.intermine.webservice.server.output.FlatFileFormatter;
 import org.intermine.webservice.server.output.HTMLTableFormatter;
 import org.intermine.webservice.server.output.JSONCountFormatter;
@@ -252,7 +253,7 @@ public class QueryResultService extends AbstractQueryService
         if (wantsCount) {
             return new StreamedOutput(out, new JSONCountFormatter(), separator);
         }
-        return new StreamedOutput(out, new JSONTableFormatter(), separator);
+        return new EncodingOutput(out, getRawOutputStream(), new JSONTableFormatter(), separator);
     }
 
     /**
@@ -324,21 +325,29 @@ public class QueryResultService extends AbstractQueryService
             // Going faster means writing to the DB. Don't do this if it is pointless.
             canGoFaster = firstResult > BATCH_SIZE || maxResults > BATCH_SIZE;
             executor.setBatchSize(BATCH_SIZE);
+            // Large ranges are read through a cursor, rather than re-running the query per batch
+            executor.setStreaming(true);
             it = executor.execute(pq, firstResult, maxResults);
         }
 
         ResultProcessor processor = makeResultProcessor();
-        if (it.hasNext()) { // Prime the batch fetching pumps
-            try {
-                if (canGoFaster) {
-                    ((ExportResultsIterator) it).goFaster();
-                }
-                processor.write(it, output);
-            } finally {
-                if (canGoFaster) {
-                    ((ExportResultsIterator) it).releaseGoFaster();
+        try {
+            if (it.hasNext()) { // Prime the batch fetching pumps
+                try {
+                    if (canGoFaster) {
+                        ((ExportResultsIterator) it).goFaster();
+                    }
+                    processor.write(it, output);
+                } finally {
+                    if (canGoFaster) {
+                        ((ExportResultsIterator) it).releaseGoFaster();
+                    }
                 }
             }
+        } finally {
+            if (it instanceof ExportResultsIterator) {
+                ((ExportResultsIterator) it).close();
+            }
         }
     }
 
@@ -58,7 +58,8 @@ public class QuickSearch extends JSONService
     protected void execute() throws Exception {
         javax.servlet.ServletContext servletContext = request.getSession().getServletContext();
         String contextPath = servletContext.getRealPath("/");
-        KeywordSearch.initKeywordSearch(im, contextPath);
+        KeywordSearch.initKeywordSearch(im, contextPath,
+                webProperties.getProperty("project.releaseVersion"));
 
         QuickSearchRequest input = new QuickSearchRequest();
         Vector<KeywordSearchFacetData> facets = KeywordSearch.getFacets();
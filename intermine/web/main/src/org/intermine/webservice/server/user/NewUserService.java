@@ -28,7 +28,7 @@ import org.intermine.util.Emailer;
 import org.intermine.util.MailUtils;
 import org.intermine.web.context.InterMineContext;
 import org.intermine.webservice.server.core.JSONService;
-import org.intermine.webservice.server.core.RateLimitHistory;
+import org.intermine.webservice.server.core.RateLimiter;
 import org.intermine.webservice.server.exceptions.BadRequestException;
 import org.intermine.webservice.server.exceptions.InternalErrorException;
 import org.intermine.webservice.server.exceptions.RateLimitException;
@@ -46,7 +46,7 @@ public class NewUserService extends JSONService
 
     private static final Logger LOG = Logger.getLogger(NewUserService.class);
     private int maxNewUsersPerAddressPerHour = 1000;
-    private static RateLimitHistory requestHistory = null;
+    private static RateLimiter requestHistory = null;
 
     /**
      * Constructor.
@@ -65,7 +65,8 @@ public class NewUserService extends JSONService
                     maxNewUsersPerAddressPerHour = 1000;
                 }
             }
-            requestHistory = new RateLimitHistory((60 * 60), maxNewUsersPerAddressPerHour);
+            requestHistory = new RateLimiter("NewUserService", (60 * 60),
+                    maxNewUsersPerAddressPerHour);
         }
     }
 
@@ -73,11 +74,10 @@ public class NewUserService extends JSONService
     protected void validateState() {
         super.validateState();
         final String ipAddr = request.getRemoteAddr();
-        if (!requestHistory.isWithinLimit(ipAddr)) {
-            throw new RateLimitException(ipAddr, maxNewUsersPerAddressPerHour);
+        // Check and record this request in one step
+        if (!requestHistory.tryAcquire(ipAddr)) {
+            throw new RateLimitException(ipAddr, requestHistory.getMaxRequests());
         }
-        // Record this request...
-        requestHistory.recordRequest(ipAddr);
     }
 
     @Override
@@ -0,0 +1,103 @@
+package org.intermine.web.logic.widget;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.math3.distribution.HypergeometricDistribution;
+
+public class EnrichmentEngineTest extends TestCase
+{
+    private static final String[] CORRECTIONS = new String[] {"Bonferroni",
+        "Benjamini Hochberg", "Holm-Bonferroni", "None"};
+
+    public void testLogFactorial() throws Exception {
+        assertEquals(0.0, EnrichmentEngine.logFactorial(0), 0.0);
+        assertEquals(Math.log(120.0), EnrichmentEngine.logFactorial(5), 1e-12);
+        // beyond the initial table
+        assertEquals(EnrichmentEngine.logFactorial(4999) + Math.log(5000),
+                EnrichmentEngine.logFactorial(5000), 1e-9);
+    }
+
+    public void testUpperTailMatchesCommonsMath() throws Exception {
+        Random random = new Random(42);
+        for (int test = 0; test < 2000; test++) {
+            int populationSize = 1 + random.nextInt(test % 2 == 0 ? 100 : 30000);
+            int populationCount = random.nextInt(populationSize + 1);
+            int sampleSize = random.nextInt(populationSize + 1);
+            int sampleCount = random.nextInt(Math.min(populationCount, sampleSize) + 2);
+            double expected = new HypergeometricDistribution(populationSize, populationCount,
+                    sampleSize).upperCumulativeProbability(sampleCount);
+            double actual = EnrichmentEngine.upperTail(populationSize, populationCount,
+                    sampleSize, sampleCount);
+            String message = populationSize + ", " + populationCount + ", " + sampleSize + ", "
+                + sampleCount;
+            assertEquals(message, expected, actual, Math.max(1e-12, expected * 1e-8));
+        }
+    }
+
+    public void testBatch() throws Exception {
+        double[] pValues = EnrichmentEngine.upperTail(100, 10, new int[] {0, 20, 50, 20},
+                new int[] {0, 5, 10, 11});
+        assertEquals(1.0, pValues[0], 0.0);
+        assertEquals(EnrichmentEngine.upperTail(100, 20, 10, 5), pValues[1], 0.0);
+        assertTrue(pValues[2] > 0.0 && pValues[2] < 0.001);
+        assertEquals(0.0, pValues[3], 0.0);
+    }
+
+    public void testSortedOrder() throws Exception {
+        double[] values = new double[] {0.5, 0.1, 0.5, 0.0, 1.0, 0.1};
+        int[] order = EnrichmentEngine.sortedOrder(values);
+        assertEquals(6, order.length);
+        int[] expected = new int[] {3, 1, 5, 0, 2, 4};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], order[i]);
+        }
+    }
+
+    public void testCorrectionsMatchErrorCorrection() throws Exception {
+        Random random = new Random(7);
+        String[] terms = new String[500];
+        double[] pValues = new double[terms.length];
+        Map<String, BigDecimal> results = new HashMap<String, BigDecimal>();
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = "GO:" + i;
+            // plenty of ties, and a spread of magnitudes
+            pValues[i] = Math.pow(10.0, -random.nextInt(12)) * (1 + random.nextInt(3));
+            pValues[i] = Math.min(1.0, pValues[i]);
+            results.put(terms[i], new BigDecimal(pValues[i]));
+        }
+        for (String correction : CORRECTIONS) {
+            for (double max : new double[] {1.0, 0.05}) {
+                Map<String, BigDecimal> expected = ErrorCorrection.adjustPValues(correction,
+                        results, new Double(max), 20000);
+                double[] actual = EnrichmentEngine.adjustPValues(correction, pValues, max, 20000);
+                int reported = 0;
+                for (int i = 0; i < terms.length; i++) {
+                    BigDecimal value = expected.get(terms[i]);
+                    if (value == null) {
+                        assertTrue(correction + " " + terms[i], Double.isNaN(actual[i]));
+                    } else {
+                        reported++;
+                        assertEquals(correction + " " + terms[i], value.doubleValue(), actual[i],
+                                value.doubleValue() * 1e-12);
+                    }
+                }
+                assertEquals(expected.size(), reported);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.intermine.web.logic.widget;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.intermine.objectstore.ObjectStore;
+import org.intermine.objectstore.dummy.ObjectStoreDummyImpl;
+
+public class PopulationCountsCacheTest extends TestCase
+{
+    public void testDigest() {
+        String digest = PopulationCountsCache.digest(Arrays.asList(3, 1, 2));
+        assertEquals(digest, PopulationCountsCache.digest(Arrays.asList(1, 2, 3)));
+        assertTrue(digest.startsWith("3:"));
+        assertFalse(digest.equals(PopulationCountsCache.digest(Arrays.asList(1, 2, 4))));
+        assertFalse(digest.equals(PopulationCountsCache.digest(Arrays.asList(1, 23))));
+    }
+
+    public void testCache() {
+        ObjectStore os1 = new ObjectStoreDummyImpl();
+        ObjectStore os2 = new ObjectStoreDummyImpl();
+        PopulationCountsCache cache = PopulationCountsCache.getInstance(os1);
+        assertSame(cache, PopulationCountsCache.getInstance(os1));
+        assertNotSame(cache, PopulationCountsCache.getInstance(os2));
+
+        Map<String, PopulationInfo> counts = new HashMap<String, PopulationInfo>();
+        counts.put("GO:0001", new PopulationInfo(12, null));
+        cache.putCounts("go_enrichment\tbiological_process", counts);
+        cache.putTotal("go_enrichment\tbiological_process", new PopulationInfo(100, null));
+        assertEquals(12, cache.getCounts("go_enrichment\tbiological_process").get("GO:0001")
+                .getSize());
+        assertEquals(100, cache.getTotal("go_enrichment\tbiological_process").getSize());
+        assertNull(cache.getCounts("go_enrichment\tcellular_component"));
+        assertNull(PopulationCountsCache.getInstance(os2)
+                .getTotal("go_enrichment\tbiological_process"));
+
+        cache.clear();
+        assertNull(cache.getCounts("go_enrichment\tbiological_process"));
+    }
+}
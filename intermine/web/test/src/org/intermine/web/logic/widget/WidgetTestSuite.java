@@ -12,6 +12,8 @@ public class WidgetTestSuite extends TestSuite{
         suite.addTestSuite(WidgetConfigTest.class);
         suite.addTestSuite(WidgetConfigUtilTest.class);
         suite.addTestSuite(WidgetLdrTest.class);
+        suite.addTestSuite(PopulationCountsCacheTest.class);
+        suite.addTestSuite(EnrichmentEngineTest.class);
         return suite;
     }
 }
@@ -0,0 +1,244 @@
+package org.intermine.web.search;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.intermine.api.InterMineAPITestCase;
+import org.intermine.model.testmodel.Company;
+import org.intermine.model.testmodel.CompanyShadow;
+import org.intermine.model.testmodel.Department;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.model.testmodel.Manager;
+import org.intermine.modelproduction.MetadataManager;
+import org.intermine.objectstore.ObjectStoreWriter;
+import org.intermine.objectstore.ObjectStoreWriterFactory;
+import org.intermine.objectstore.intermine.ObjectStoreInterMineImpl;
+import org.intermine.sql.Database;
+
+import com.browseengine.bobo.api.BrowseHit;
+import com.browseengine.bobo.api.BrowseResult;
+
+public class KeywordSearchTest extends InterMineAPITestCase
+{
+    private static final String[] TERMS = {"companya", "companyb", "departmenta",
+        "departmentb", "employee3", "employee16", "manager1"};
+
+    private File cacheRoot;
+    private List<Employee> employees;
+
+    public KeywordSearchTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        KeywordSearch.close();
+        cacheRoot = File.createTempFile("keyword_search_test", "");
+        cacheRoot.delete();
+        cacheRoot.mkdir();
+
+        ObjectStoreWriter osw = ObjectStoreWriterFactory.getObjectStoreWriter("osw.unittest");
+        try {
+            employees = new ArrayList<Employee>();
+            for (String letter : new String[] {"A", "B"}) {
+                Company company = new CompanyShadow();
+                company.setName("Company" + letter);
+                osw.store(company);
+                Department department = new Department();
+                department.setName("Department" + letter);
+                department.setCompany(company);
+                osw.store(department);
+                for (int i = 0; i < 10; i++) {
+                    Employee employee = new Employee();
+                    employee.setName("Employee" + employees.size());
+                    employee.setDepartment(department);
+                    osw.store(employee);
+                    employees.add(employee);
+                }
+                Manager manager = new Manager();
+                manager.setName("Manager" + ("A".equals(letter) ? "1" : "2"));
+                manager.setDepartment(department);
+                osw.store(manager);
+            }
+        } finally {
+            osw.close();
+        }
+    }
+
+    public void tearDown() throws Exception {
+        KeywordSearch.close();
+        Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+        MetadataManager.deleteLargeBinary(db, MetadataManager.SEARCH_INDEX);
+        MetadataManager.deleteLargeBinary(db, MetadataManager.SEARCH_INDEX_DIRECTORY);
+        MetadataManager.store(db, MetadataManager.SEARCH_INDEX_VERSION, null);
+        delete(cacheRoot);
+        super.tearDown();
+    }
+
+    public void testPartitionedIndexing() throws Exception {
+        KeywordSearch.setIndexThreads(1);
+        Map<String, List<Integer>> single = buildAndSearch("single");
+        assertEquals(Collections.singletonList(employees.get(3).getId()),
+                searchClass("employee3", "Employee"));
+
+        // Each partition fetches the references of its own objects, so the documents must be the
+        // same as when everything is indexed in one pass
+        KeywordSearch.setIndexThreads(4);
+        Map<String, List<Integer>> partitioned = buildAndSearch("partitioned");
+        assertEquals(single, partitioned);
+        assertEquals(Collections.singletonList(employees.get(16).getId()),
+                searchClass("employee16", "Employee"));
+    }
+
+    public void testUpdateIndexInDatabase() throws Exception {
+        KeywordSearch.setIndexThreads(2);
+        Map<String, List<Integer>> before = buildAndSearch("1");
+
+        Employee renamed = employees.get(3);
+        renamed.setName("Renamed3");
+        Employee added = new Employee();
+        added.setName("Employee99");
+        added.setDepartment(employees.get(0).getDepartment());
+        ObjectStoreWriter osw = ObjectStoreWriterFactory.getObjectStoreWriter("osw.unittest");
+        try {
+            osw.store(renamed);
+            osw.store(added);
+        } finally {
+            osw.close();
+        }
+
+        KeywordSearch.close();
+        KeywordSearch.updateIndexInDatabase(os, im.getClassKeys(),
+                Collections.singleton("Employee"));
+        KeywordSearch.close();
+        KeywordSearch.initKeywordSearch(im, cacheRoot.getPath(), "1");
+
+        assertEquals(Collections.singletonList(renamed.getId()),
+                searchClass("renamed3", "Employee"));
+        assertEquals(Collections.emptyList(), searchClass("employee3", "Employee"));
+        assertEquals(Collections.singletonList(added.getId()),
+                searchClass("employee99", "Employee"));
+        // Managers are Employees, so they were re-indexed once rather than duplicated
+        assertEquals(before.get("manager1"), search("manager1"));
+        // Companies were not re-indexed, and are still there
+        assertEquals(before.get("companya"), search("companya"));
+        assertEquals(before.get("companyb"), search("companyb"));
+    }
+
+    public void testStaleCacheRejected() throws Exception {
+        Database db = ((ObjectStoreInterMineImpl) os).getDatabase();
+        File cacheDirectory = new File(new File(cacheRoot, "keyword_search_index"), "1");
+        Map<String, List<Integer>> first = buildAndSearch("1");
+        String version = MetadataManager.retrieve(db, MetadataManager.SEARCH_INDEX_VERSION);
+        assertNotNull(version);
+        assertEquals(version, readVersion(cacheDirectory));
+
+        // A cache matching the version in the database is used as it is
+        File marker = new File(cacheDirectory, "marker");
+        assertTrue(marker.createNewFile());
+        KeywordSearch.close();
+        KeywordSearch.initKeywordSearch(im, cacheRoot.getPath(), "1");
+        assertTrue(marker.exists());
+        assertEquals(first, searchAll());
+
+        // After the index in the database is rebuilt, the cached copy is out of date
+        Employee renamed = employees.get(3);
+        renamed.setName("Renamed3");
+        ObjectStoreWriter osw = ObjectStoreWriterFactory.getObjectStoreWriter("osw.unittest");
+        try {
+            osw.store(renamed);
+        } finally {
+            osw.close();
+        }
+        Thread.sleep(10);
+        KeywordSearch.close();
+        KeywordSearch.saveIndexToDatabase(os, im.getClassKeys());
+        String newVersion = MetadataManager.retrieve(db, MetadataManager.SEARCH_INDEX_VERSION);
+        assertFalse(version.equals(newVersion));
+
+        KeywordSearch.close();
+        KeywordSearch.initKeywordSearch(im, cacheRoot.getPath(), "1");
+        assertFalse(marker.exists());
+        assertEquals(newVersion, readVersion(cacheDirectory));
+        assertEquals(Collections.singletonList(renamed.getId()),
+                searchClass("renamed3", "Employee"));
+    }
+
+    /**
+     * Builds the index into the database, loads it into a webapp cache for the given release, and
+     * runs all the test searches.
+     */
+    private Map<String, List<Integer>> buildAndSearch(String releaseVersion) throws Exception {
+        KeywordSearch.close();
+        KeywordSearch.saveIndexToDatabase(os, im.getClassKeys());
+        KeywordSearch.close();
+        KeywordSearch.initKeywordSearch(im, cacheRoot.getPath(), releaseVersion);
+        return searchAll();
+    }
+
+    private Map<String, List<Integer>> searchAll() {
+        Map<String, List<Integer>> retval = new LinkedHashMap<String, List<Integer>>();
+        for (String term : TERMS) {
+            retval.put(term, search(term));
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the ids of all the hits, sorted, so that duplicate documents are counted.
+     */
+    private List<Integer> search(String term) {
+        return searchClass(term, null);
+    }
+
+    private List<Integer> searchClass(String term, String category) {
+        Map<String, String> facetValues = new HashMap<String, String>();
+        if (category != null) {
+            facetValues.put("Category", category);
+        }
+        BrowseResult result = KeywordSearch.runBrowseSearch(term, 0, facetValues, null, false);
+        assertNotNull(result);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (BrowseHit hit : result.getHits()) {
+            ids.add(Integer.valueOf(hit.getStoredFields().getFieldable("id").stringValue()));
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static String readVersion(File cacheDirectory) throws Exception {
+        BufferedReader reader = new BufferedReader(new FileReader(new File(cacheDirectory,
+                        "index.version")));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
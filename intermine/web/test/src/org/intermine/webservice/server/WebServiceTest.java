@@ -0,0 +1,42 @@
+package org.intermine.webservice.server;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class WebServiceTest extends TestCase
+{
+    private static final Set<String> PROXIES =
+        new HashSet<String>(Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+    public void testClientAddress() {
+        // Not through a proxy, so the header is not believed
+        assertEquals("1.2.3.4", WebService.getClientAddress("1.2.3.4", null, PROXIES));
+        assertEquals("1.2.3.4", WebService.getClientAddress("1.2.3.4", "5.6.7.8", PROXIES));
+        assertEquals("1.2.3.4", WebService.getClientAddress("1.2.3.4", "5.6.7.8",
+                    Collections.<String>emptySet()));
+
+        assertEquals("10.0.0.1", WebService.getClientAddress("10.0.0.1", null, PROXIES));
+        assertEquals("5.6.7.8", WebService.getClientAddress("10.0.0.1", "5.6.7.8", PROXIES));
+        // Through two proxies
+        assertEquals("5.6.7.8", WebService.getClientAddress("10.0.0.1", "5.6.7.8, 10.0.0.2",
+                    PROXIES));
+        // The client can put anything at the start of the header
+        assertEquals("5.6.7.8", WebService.getClientAddress("10.0.0.1",
+                    "9.9.9.9, 5.6.7.8, 10.0.0.2", PROXIES));
+        assertEquals("10.0.0.2", WebService.getClientAddress("10.0.0.1", " ,10.0.0.2", PROXIES));
+    }
+}
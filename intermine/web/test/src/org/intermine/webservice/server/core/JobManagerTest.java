@@ -0,0 +1,198 @@
+package org.intermine.webservice.server.core;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.intermine.webservice.server.core.AsyncJob.JobStatus;
+import org.intermine.webservice.server.core.JobManager.TooManyJobsException;
+
+public class JobManagerTest extends TestCase
+{
+    private static class TestManager extends JobManager
+    {
+        long now = 0;
+
+        TestManager(int threads, int queueSize, int maxJobsPerUser, int expirySeconds,
+                long maxResultSize) {
+            super(threads, queueSize, maxJobsPerUser, expirySeconds, maxResultSize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class TestJob extends AsyncJob
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final long size;
+        final boolean fail;
+
+        TestJob(String owner, long size, boolean block, boolean fail) {
+            super(owner, null);
+            this.size = size;
+            this.fail = fail;
+            if (!block) {
+                release.countDown();
+            }
+        }
+
+        @Override
+        protected void execute() throws Exception {
+            try {
+                setProgress(50);
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                if (fail) {
+                    throw new IllegalStateException("failed");
+                }
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public long getResultSize() {
+            return size;
+        }
+    }
+
+    private TestManager manager;
+
+    public void tearDown() {
+        manager.shutdown();
+    }
+
+    public void testRun() throws Exception {
+        manager = new TestManager(2, 10, 2, 60, 1000);
+        TestJob job = new TestJob("a", 1, true, false);
+        String uid = manager.submit(job);
+        assertSame(job, manager.getJob(uid));
+        assertTrue(job.started.await(10, TimeUnit.SECONDS));
+        assertEquals(JobStatus.RUNNING, job.getStatus());
+        assertEquals(50, job.getProgress());
+        job.release.countDown();
+        waitFor(job);
+        assertEquals(JobStatus.SUCCESS, job.getStatus());
+        assertEquals(100, job.getProgress());
+        assertTrue(job.wasSuccessful());
+
+        TestJob failing = new TestJob("a", 1, false, true);
+        manager.submit(failing);
+        waitFor(failing);
+        assertEquals(JobStatus.ERROR, failing.getStatus());
+        assertEquals("failed", failing.getError().getMessage());
+    }
+
+    public void testPerUserLimit() throws Exception {
+        manager = new TestManager(1, 10, 2, 60, 1000);
+        TestJob first = new TestJob("a", 1, true, false);
+        TestJob second = new TestJob("a", 1, true, false);
+        manager.submit(first);
+        manager.submit(second);
+        try {
+            manager.submit(new TestJob("a", 1, true, false));
+            fail("Expected the job to be refused");
+        } catch (TooManyJobsException e) {
+            // expected
+        }
+        TestJob other = new TestJob("b", 1, false, false);
+        manager.submit(other);
+        assertEquals(JobStatus.PENDING, second.getStatus());
+        first.release.countDown();
+        second.release.countDown();
+        waitFor(first);
+        manager.submit(new TestJob("a", 1, false, false));
+    }
+
+    public void testQueueLimit() throws Exception {
+        manager = new TestManager(1, 1, 10, 60, 1000);
+        TestJob running = new TestJob("a", 1, true, false);
+        manager.submit(running);
+        assertTrue(running.started.await(10, TimeUnit.SECONDS));
+        manager.submit(new TestJob("b", 1, false, false));
+        try {
+            manager.submit(new TestJob("c", 1, false, false));
+            fail("Expected the job to be refused");
+        } catch (RejectedExecutionException e) {
+            assertFalse(e instanceof TooManyJobsException);
+        }
+        assertEquals(2, manager.getJobCount());
+        running.release.countDown();
+    }
+
+    public void testCancel() throws Exception {
+        manager = new TestManager(1, 10, 10, 60, 1000);
+        TestJob running = new TestJob("a", 1, true, false);
+        TestJob waiting = new TestJob("a", 1, false, false);
+        String runningUid = manager.submit(running);
+        String waitingUid = manager.submit(waiting);
+        assertTrue(running.started.await(10, TimeUnit.SECONDS));
+        assertSame(waiting, manager.removeJob(waitingUid));
+        assertEquals(JobStatus.CANCELLED, waiting.getStatus());
+        assertNull(manager.getJob(waitingUid));
+        assertTrue(running.cancel());
+        running.release.countDown();
+        assertTrue(running.finished.await(10, TimeUnit.SECONDS));
+        waitFor(running);
+        assertEquals(JobStatus.CANCELLED, running.getStatus());
+        assertEquals(1, waiting.started.getCount());
+        assertFalse(running.cancel());
+        assertSame(running, manager.getJob(runningUid));
+    }
+
+    public void testExpiry() throws Exception {
+        manager = new TestManager(1, 10, 10, 60, 1000);
+        TestJob job = new TestJob("a", 1, false, false);
+        String uid = manager.submit(job);
+        waitFor(job);
+        manager.now = job.getFinishedAt() + 59000L;
+        assertSame(job, manager.getJob(uid));
+        manager.now = job.getFinishedAt() + 60000L;
+        assertNull(manager.getJob(uid));
+    }
+
+    public void testResultSize() throws Exception {
+        manager = new TestManager(1, 10, 10, 60, 100);
+        TestJob first = new TestJob("a", 60, false, false);
+        String firstUid = manager.submit(first);
+        waitFor(first);
+        Thread.sleep(5);
+        TestJob second = new TestJob("a", 30, false, false);
+        String secondUid = manager.submit(second);
+        waitFor(second);
+        manager.now = second.getFinishedAt();
+        assertSame(first, manager.getJob(firstUid));
+        Thread.sleep(5);
+        TestJob third = new TestJob("a", 30, false, false);
+        String thirdUid = manager.submit(third);
+        waitFor(third);
+        // 120 is over the limit, so the oldest result is dropped
+        assertNull(manager.getJob(firstUid));
+        assertSame(second, manager.getJob(secondUid));
+        assertSame(third, manager.getJob(thirdUid));
+    }
+
+    private static void waitFor(AsyncJob job) throws InterruptedException {
+        for (int i = 0; (i < 1000) && !job.isFinished(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished());
+    }
+}
@@ -0,0 +1,106 @@
+package org.intermine.webservice.server.core;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+public class RateLimiterTest extends TestCase
+{
+    private static class TestLimiter extends RateLimiter
+    {
+        long now;
+
+        TestLimiter(long now, int periodInSeconds, int maxRequests) {
+            super("test", periodInSeconds, maxRequests);
+            this.now = now;
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    public void testLimit() throws Exception {
+        TestLimiter limiter = new TestLimiter(0L, 10, 3);
+        limiter.now = 1000L;
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.isWithinLimit("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.isWithinLimit("a"));
+        assertFalse(limiter.tryAcquire("a"));
+        // other clients are counted separately
+        assertTrue(limiter.tryAcquire("b"));
+        assertEquals(4, limiter.getAllowedCount());
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(2, limiter.getClientCount());
+    }
+
+    public void testSlidingWindow() throws Exception {
+        TestLimiter limiter = new TestLimiter(0L, 10, 4);
+        limiter.now = 9000L;
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire("a"));
+        }
+        assertFalse(limiter.tryAcquire("a"));
+        // half way through the next window, half of the previous window still counts
+        limiter.now = 15000L;
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+        // two windows later, nothing counts
+        limiter.now = 30000L;
+        assertTrue(limiter.tryAcquire("a"));
+    }
+
+    public void testRecordRequest() throws Exception {
+        TestLimiter limiter = new TestLimiter(0L, 10, 1);
+        limiter.recordRequest("a");
+        limiter.recordRequest("a");
+        assertFalse(limiter.isWithinLimit("a"));
+        assertFalse(limiter.tryAcquire("a"));
+    }
+
+    public void testIdleClientsExpire() throws Exception {
+        TestLimiter limiter = new TestLimiter(0L, 10, 5);
+        limiter.now = 1000L;
+        assertTrue(limiter.tryAcquire("a"));
+        limiter.now = 12000L;
+        assertTrue(limiter.tryAcquire("b"));
+        assertEquals(2, limiter.getClientCount());
+        limiter.now = 25000L;
+        assertTrue(limiter.tryAcquire("c"));
+        // a's window is two periods old, b's is only one
+        assertEquals(2, limiter.getClientCount());
+        assertTrue(limiter.getSummary().startsWith("Rate limiter test (5 per 10s): 3 allowed"));
+    }
+
+    public void testConcurrentRequests() throws Exception {
+        final RateLimiter limiter = new RateLimiter("test", 3600, 1000);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        limiter.tryAcquire("a");
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, limiter.getAllowedCount() + limiter.getRejectedCount());
+        assertTrue(limiter.getAllowedCount() <= 1000);
+    }
+}
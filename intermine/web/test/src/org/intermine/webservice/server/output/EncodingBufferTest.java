@@ -0,0 +1,95 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.json.JSONObject;
+
+/**
+ * Tests for EncodingBuffer.
+ */
+public class EncodingBufferTest extends TestCase
+{
+    private ByteArrayOutputStream baos;
+    private EncodingBuffer buffer;
+
+    public EncodingBufferTest(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() {
+        baos = new ByteArrayOutputStream();
+        // small, so that the tests cross the end of the buffer
+        buffer = new EncodingBuffer(baos, 32);
+    }
+
+    private String written() throws Exception {
+        buffer.flush();
+        return new String(baos.toByteArray(), "UTF-8");
+    }
+
+    public void testUtf8() throws Exception {
+        String text = "ascii éß 中文 😀 end";
+        buffer.write(text);
+        assertEquals(text, written());
+        assertTrue(Arrays.equals(text.getBytes("UTF-8"), baos.toByteArray()));
+    }
+
+    public void testUnpairedSurrogate() throws Exception {
+        String text = "a\ud83db\ude00";
+        buffer.write(text);
+        buffer.flush();
+        assertTrue(Arrays.equals(text.getBytes("UTF-8"), baos.toByteArray()));
+    }
+
+    public void testLongs() throws Exception {
+        long[] values = new long[] {0, 7, -7, 10, 99, 100, 123456789, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, 999999999999999999L, 1000000000000000000L, Long.MAX_VALUE,
+            Long.MIN_VALUE, -Long.MAX_VALUE};
+        StringBuilder expected = new StringBuilder();
+        for (long value : values) {
+            buffer.writeLong(value);
+            buffer.writeAscii(' ');
+            expected.append(value).append(' ');
+        }
+        assertEquals(expected.toString(), written());
+    }
+
+    public void testJSONString() throws Exception {
+        String text = "quote\" backslash\\ </tag> tab\t nl\n cr\r bs\b ff\f ctl\u0001"
+            + " c1\u0085 nbsp  sep  😀";
+        buffer.writeJSONString(text);
+        buffer.writeAscii(' ');
+        buffer.writeJSONString("");
+        buffer.writeAscii(' ');
+        buffer.writeJSONString(null);
+        assertEquals(JSONObject.quote(text) + " \"\" null", written());
+    }
+
+    public void testJSONValues() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("int", new Integer(-3));
+        map.put("double", new Double(2.50));
+        map.put("nan", new Double(Double.NaN));
+        map.put("bool", Boolean.TRUE);
+        map.put("null", null);
+        map.put("list", Arrays.asList("a", new Long(4), Arrays.asList()));
+        buffer.writeJSONValue(map);
+        assertEquals("{\"int\":-3,\"double\":2.5,\"nan\":null,\"bool\":true,\"null\":null,"
+                + "\"list\":[\"a\",4,[]]}", written());
+    }
+}
@@ -0,0 +1,145 @@
+package org.intermine.webservice.server.output;
+
+/*
+ * Copyright (C) 2002-2013 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.intermine.api.InterMineAPI;
+import org.intermine.api.query.MainHelper;
+import org.intermine.api.results.ExportResultsIterator;
+import org.intermine.metadata.Model;
+import org.intermine.model.testmodel.Employee;
+import org.intermine.objectstore.dummy.DummyResults;
+import org.intermine.objectstore.dummy.ObjectStoreDummyImpl;
+import org.intermine.objectstore.query.Query;
+import org.intermine.objectstore.query.Results;
+import org.intermine.objectstore.query.ResultsRow;
+import org.intermine.pathquery.PathQuery;
+import org.intermine.webservice.server.core.ResultProcessor;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Tests that an EncodingOutput writes the same results as a StreamedOutput.
+ */
+public class EncodingOutputTest extends TestCase
+{
+    private static final String[] NAMES = new String[] {"Tim Canterbury", "Gareth \"Keenan\"",
+        "Dawn\tTinsley", "", "Lee é中😀 </script>"};
+
+    private final Model model = Model.getInstanceByName("testmodel");
+    private final InterMineAPI api = new DummyAPI();
+
+    public EncodingOutputTest(String name) {
+        super(name);
+    }
+
+    private ExportResultsIterator makeIterator() throws Exception {
+        ObjectStoreDummyImpl os = new ObjectStoreDummyImpl();
+        os.setResultsSize(NAMES.length);
+        for (int i = 0; i < NAMES.length; i++) {
+            Employee employee = new Employee();
+            employee.setId(new Integer(i + 5));
+            employee.setName(NAMES[i]);
+            employee.setAge(20 + i);
+            ResultsRow row = new ResultsRow();
+            row.add(employee);
+            os.addRow(row);
+        }
+        PathQuery pq = new PathQuery(model);
+        pq.addViews("Employee.age", "Employee.name");
+        Map pathToQueryNode = new HashMap();
+        Query q = MainHelper.makeQuery(pq, new HashMap(), pathToQueryNode, null, null);
+        List resultList = os.execute(q, 0, NAMES.length, true, true, new HashMap());
+        Results results = new DummyResults(q, resultList);
+        return new ExportResultsIterator(pq, q, results, pathToQueryNode);
+    }
+
+    private String streamed(ResultProcessor processor, Formatter formatter) throws Exception {
+        StringWriter sw = new StringWriter();
+        Output output = new StreamedOutput(new PrintWriter(sw), formatter, "\n");
+        processor.write(makeIterator(), output);
+        output.flush();
+        return withoutTime(sw.toString());
+    }
+
+    private String encoded(ResultProcessor processor, Formatter formatter) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Output output = new EncodingOutput(new PrintWriter(baos), baos, formatter, "\n");
+        processor.write(makeIterator(), output);
+        output.flush();
+        return withoutTime(new String(baos.toByteArray(), "UTF-8"));
+    }
+
+    private static String withoutTime(String json) {
+        return json.replaceAll("\"executionTime\":\"[^\"]*\"", "\"executionTime\":\"\"");
+    }
+
+    public void testTab() throws Exception {
+        assertEquals(streamed(new ResultProcessor(), new TabFormatter()),
+                encoded(new ResultProcessor(), new TabFormatter()));
+        assertEquals(streamed(new ResultProcessor(), new TabFormatter(false)),
+                encoded(new ResultProcessor(), new TabFormatter(false)));
+    }
+
+    public void testCSV() throws Exception {
+        String expected = streamed(new ResultProcessor(), new CSVFormatter());
+        assertEquals(expected, encoded(new ResultProcessor(), new CSVFormatter()));
+        assertTrue(expected, expected.contains("\"Gareth \"\"Keenan\"\"\""));
+    }
+
+    public void testMinimalRows() throws Exception {
+        JSONRowResultProcessor processor
+            = new JSONRowResultProcessor(api, JSONRowResultProcessor.Verbosity.MINIMAL);
+        assertEquals(streamed(processor, new JSONTableFormatter()),
+                encoded(processor, new JSONTableFormatter()));
+    }
+
+    public void testFullRows() throws Exception {
+        JSONRowResultProcessor processor = new JSONRowResultProcessor(api);
+        // The cells are objects, whose keys may come in any order
+        assertSameJSON(streamed(processor, new JSONRowFormatter()),
+                encoded(processor, new JSONRowFormatter()));
+    }
+
+    public void testObjects() throws Exception {
+        JSONObjResultProcessor processor = new JSONObjResultProcessor();
+        assertSameJSON(streamed(processor, new JSONObjectFormatter()),
+                encoded(processor, new JSONObjectFormatter()));
+    }
+
+    private void assertSameJSON(String expected, String got) throws Exception {
+        JSONArray expectedResults = new JSONObject(expected).getJSONArray("results");
+        JSONArray gotResults = new JSONObject(got).getJSONArray("results");
+        assertEquals(expectedResults.length(), gotResults.length());
+        for (int i = 0; i < expectedResults.length(); i++) {
+            assertEquals(expectedResults.get(i).toString(), gotResults.get(i).toString());
+        }
+        assertEquals(expected.split("\n").length, got.split("\n").length);
+    }
+
+    public void testMixedItems() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PrintWriter writer = new PrintWriter(baos);
+        writer.print("raw ");
+        EncodingOutput output = new EncodingOutput(writer, baos, new TabFormatter(false), "\n");
+        output.addResultItem(java.util.Arrays.asList("a", "b"));
+        output.flush();
+        assertEquals("raw a\tb\n", new String(baos.toByteArray(), "UTF-8"));
+        assertEquals(1, output.getResultsCount());
+    }
+}
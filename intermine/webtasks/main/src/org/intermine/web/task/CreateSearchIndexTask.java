@@ -12,6 +12,7 @@ package org.intermine.web.task;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -37,6 +38,7 @@ public class CreateSearchIndexTask extends Task
 
     protected String osAlias = null;
     protected ObjectStore os;
+    protected String classes = null;
 
     /**
      * Set the alias of the main object store.
@@ -46,6 +48,16 @@ public class CreateSearchIndexTask extends Task
         this.osAlias = osAlias;
     }
 
+    /**
+     * Set the classes to re-index, as a comma or space separated list of class names.  If this
+     * is set, only objects of these classes and their subclasses are re-indexed in the existing
+     * index, instead of building the whole index.
+     * @param classes the class names
+     */
+    public void setClasses(String classes) {
+        this.classes = classes;
+    }
+
     private ObjectStore getObjectStore() throws Exception {
         if (osAlias == null) {
             throw new BuildException("objectStoreWriter attribute is not set");
@@ -98,7 +110,12 @@ public class CreateSearchIndexTask extends Task
             ClassKeyHelper.readKeys(os.getModel(), classKeyProperties);
 
         //index and save
-        KeywordSearch.saveIndexToDatabase(os, classKeys);
+        if (classes != null && classes.trim().length() > 0) {
+            KeywordSearch.updateIndexInDatabase(os, classKeys,
+                    Arrays.asList(classes.trim().split("[\\s,]+")));
+        } else {
+            KeywordSearch.saveIndexToDatabase(os, classKeys);
+        }
         KeywordSearch.deleteIndexDirectory();
     }
 